@@ -0,0 +1,59 @@
+package com.gnopai.leady;
+
+import com.fatboyindustrial.gsonjavatime.ZonedDateTimeConverter;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static com.fatboyindustrial.gsonjavatime.Converters.ZONED_DATE_TIME_TYPE;
+
+/**
+ * Compares parsing and writing leads with {@link LeadTypeAdapter} against Gson's reflective adapter
+ * plus the gson-javatime converter, which is what {@link LeadyMain#createGson()} used before. The
+ * input is held in memory, so only the JSON handling is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LeadCodecBenchmark {
+    @Param("100000")
+    int leadCount;
+
+    @Param({"reflective", "leadTypeAdapter"})
+    String codec;
+
+    private Gson gson;
+    private JsonLeadReader jsonLeadReader;
+    private LeadList leadList;
+    private String json;
+
+    @Setup
+    public void setUp() {
+        gson = codec.equals("reflective")
+                ? new GsonBuilder().registerTypeAdapter(ZONED_DATE_TIME_TYPE, new ZonedDateTimeConverter()).create()
+                : LeadyMain.createGson();
+        jsonLeadReader = new JsonLeadReader(gson);
+        leadList = new LeadList(new LeadGenerator(0.3, 0.5, 0.5).generateLeads(leadCount, 0));
+        json = gson.toJson(leadList);
+    }
+
+    @Benchmark
+    public void readLeads(Blackhole blackhole) {
+        try (Stream<Lead> leads = jsonLeadReader.readLeads(new StringReader(json))) {
+            leads.forEach(blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public String writeLeads() {
+        return gson.toJson(leadList);
+    }
+}
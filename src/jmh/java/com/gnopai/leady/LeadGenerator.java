@@ -0,0 +1,65 @@
+package com.gnopai.leady;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static java.time.ZoneOffset.UTC;
+
+/**
+ * Generates synthetic lead feeds with a tunable mix of duplicates.
+ */
+class LeadGenerator {
+    private static final ZonedDateTime START = ZonedDateTime.of(2014, 5, 7, 17, 30, 20, 0, UTC);
+
+    private final double duplicateRatio;
+    private final double emailCollisionRatio;
+    private final double updateRate;
+
+    /**
+     * @param duplicateRatio      fraction of leads that repeat an earlier lead's id or email
+     * @param emailCollisionRatio fraction of those duplicates that share the email rather than the id
+     * @param updateRate          fraction of those duplicates that are newer, and so replace the earlier lead
+     */
+    LeadGenerator(double duplicateRatio, double emailCollisionRatio, double updateRate) {
+        this.duplicateRatio = duplicateRatio;
+        this.emailCollisionRatio = emailCollisionRatio;
+        this.updateRate = updateRate;
+    }
+
+    List<Lead> generateLeads(int leadCount, long seed) {
+        Random random = new Random(seed);
+        List<Lead> leads = new ArrayList<>(leadCount);
+        for (int i = 0; i < leadCount; i++) {
+            if (i > 0 && random.nextDouble() < duplicateRatio) {
+                leads.add(duplicateLead(random, leads.get(random.nextInt(i)), i));
+            } else {
+                leads.add(newLead(random, i));
+            }
+        }
+        return leads;
+    }
+
+    private Lead newLead(Random random, int index) {
+        return Lead.builder()
+                .id(Long.toHexString(random.nextLong()) + index)
+                .email("user" + index + "@example.com")
+                .firstName("First" + random.nextInt(1_000))
+                .lastName("Last" + random.nextInt(10_000))
+                .address(random.nextInt(10_000) + " Main St")
+                .entryDate(START.plusSeconds(index))
+                .build();
+    }
+
+    private Lead duplicateLead(Random random, Lead original, int index) {
+        Lead duplicate = newLead(random, index);
+        duplicate = random.nextDouble() < emailCollisionRatio
+                ? duplicate.withEmail(original.getEmail())
+                : duplicate.withId(original.getId());
+        // older duplicates lose to whatever they collide with, newer ones replace it
+        return random.nextDouble() < updateRate
+                ? duplicate
+                : duplicate.withEntryDate(START.minusSeconds(index));
+    }
+}
@@ -0,0 +1,165 @@
+package com.gnopai.leady;
+
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * End-to-end benchmarks for each phase of a run: parsing the input file, deduplicating, diffing
+ * replaced leads and writing the output. Run with {@code ./gradlew jmh}, which also records
+ * allocation rates through the GC profiler.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LeadyBenchmark {
+    @Param("100000")
+    int leadCount;
+
+    @Param("0.3")
+    double duplicateRatio;
+
+    @Param("0.5")
+    double emailCollisionRatio;
+
+    @Param("0.5")
+    double updateRate;
+
+    private final LeadChangeFinder leadChangeFinder = new LeadChangeFinder();
+    private JsonLeadReader jsonLeadReader;
+    private final MappedLeadReader mappedLeadReader = new MappedLeadReader();
+    private NdjsonLeadReader ndjsonLeadReader;
+    private JsonLeadWriter jsonLeadWriter;
+    private LeadList leadList;
+    private LeadList dedupedLeadList;
+    private Path directory;
+    private Path inputFile;
+    private Path ndjsonInputFile;
+    private Path outputFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        Gson gson = LeadyMain.createGson();
+        jsonLeadReader = new JsonLeadReader(gson);
+        ndjsonLeadReader = new NdjsonLeadReader(gson);
+        jsonLeadWriter = new JsonLeadWriter(gson);
+
+        List<Lead> leads = new LeadGenerator(duplicateRatio, emailCollisionRatio, updateRate).generateLeads(leadCount, 0);
+        leadList = new LeadList(leads);
+        dedupedLeadList = new LeadDeduplicator(leadChangeFinder, new NoOpLeadUpdateReporter()).deduplicateLeads(leadList);
+
+        directory = Files.createTempDirectory("leady-benchmark");
+        inputFile = directory.resolve("leads.json");
+        ndjsonInputFile = directory.resolve("leads.ndjson");
+        outputFile = directory.resolve("deduped_leads.json");
+        jsonLeadWriter.writeLeads(leads, inputFile);
+        new NdjsonLeadWriter(gson).writeLeads(leads, ndjsonInputFile);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(inputFile);
+        Files.deleteIfExists(ndjsonInputFile);
+        Files.deleteIfExists(outputFile);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public void readLeads(Blackhole blackhole) {
+        try (Stream<Lead> leads = jsonLeadReader.readLeads(inputFile)) {
+            leads.forEach(blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public void readLeadsMapped(Blackhole blackhole) {
+        try (Stream<Lead> leads = mappedLeadReader.readLeads(inputFile)) {
+            leads.forEach(blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public void readLeadsNdjson(Blackhole blackhole) {
+        try (Stream<Lead> leads = ndjsonLeadReader.readLeads(ndjsonInputFile)) {
+            leads.forEach(blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public LeadList deduplicateLeads(Blackhole blackhole) {
+        return new LeadDeduplicator(leadChangeFinder, new BlackholeLeadUpdateReporter(blackhole)).deduplicateLeads(leadList);
+    }
+
+    @Benchmark
+    public List<Lead> sortLeads() {
+        return LeadSorter.sortLeads(leadList.getLeads());
+    }
+
+    @Benchmark
+    public List<Lead> sortLeadsWithComparator() {
+        return leadList.getLeads().stream()
+                .sorted(LeadDeduplicator.LEAD_ORDER)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public void findLeadChanges(Blackhole blackhole) {
+        List<Lead> leads = leadList.getLeads();
+        for (int i = 1; i < leads.size(); i++) {
+            blackhole.consume(leadChangeFinder.findLeadChanges(leads.get(i - 1), leads.get(i)));
+        }
+    }
+
+    @Benchmark
+    public void writeLeads() throws IOException {
+        jsonLeadWriter.writeLeads(dedupedLeadList.getLeads(), outputFile);
+    }
+
+    private static class NoOpLeadUpdateReporter implements LeadUpdateReporter {
+        @Override
+        public void reportLeadAdded(Lead lead) {
+        }
+
+        @Override
+        public void reportLeadChanged(LeadChange leadChange) {
+        }
+
+        @Override
+        public void reportLeadIgnored(Lead lead) {
+        }
+    }
+
+    private static class BlackholeLeadUpdateReporter implements LeadUpdateReporter {
+        private final Blackhole blackhole;
+
+        BlackholeLeadUpdateReporter(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void reportLeadAdded(Lead lead) {
+            blackhole.consume(lead);
+        }
+
+        @Override
+        public void reportLeadChanged(LeadChange leadChange) {
+            blackhole.consume(leadChange);
+        }
+
+        @Override
+        public void reportLeadIgnored(Lead lead) {
+            blackhole.consume(lead);
+        }
+    }
+}
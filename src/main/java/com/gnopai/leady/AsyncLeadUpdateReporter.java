@@ -0,0 +1,230 @@
+package com.gnopai.leady;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Hands lead updates off to a dedicated writer thread, so the deduplicator never waits on the
+ * underlying reporter's I/O. Updates go through a bounded ring buffer and are drained in batches, in
+ * the order they were reported. Failures on the writer thread surface on the next report, flush or close.
+ * Once closed, reporting or flushing throws rather than waiting on a writer thread that has stopped.
+ * <p>
+ * The writer thread's throughput, time spent waiting for updates and buffer depth are counted as the
+ * {@code report} stage.
+ */
+public class AsyncLeadUpdateReporter implements LeadUpdateReporter {
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    public static final int DEFAULT_BATCH_SIZE = 1 << 10;
+
+    public enum BackPressure {
+        /**
+         * Reporting waits for room in the buffer, so no update is ever lost.
+         */
+        BLOCK,
+        /**
+         * Updates that don't fit in the buffer are dropped and counted.
+         */
+        DROP
+    }
+
+    private static final Consumer<LeadUpdateReporter> END_OF_UPDATES = reporter -> {
+    };
+
+    private final LeadUpdateReporter delegate;
+    private final BlockingQueue<Consumer<LeadUpdateReporter>> updates;
+    private final BackPressure backPressure;
+    private final int batchSize;
+    private final Thread writerThread;
+    private final AtomicLong droppedUpdates = new AtomicLong();
+    private final StageCounters counters = new StageCounters("report");
+    private volatile Throwable writerFailure;
+    private volatile boolean closed;
+
+    public AsyncLeadUpdateReporter(LeadUpdateReporter delegate) {
+        this(delegate, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE, BackPressure.BLOCK);
+    }
+
+    public AsyncLeadUpdateReporter(LeadUpdateReporter delegate, int capacity, int batchSize, BackPressure backPressure) {
+        this.delegate = delegate;
+        this.updates = new ArrayBlockingQueue<>(capacity);
+        this.backPressure = backPressure;
+        this.batchSize = batchSize;
+        this.writerThread = new Thread(this::writeUpdates, "lead-update-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    @Override
+    public void reportLeadAdded(Lead lead) {
+        enqueue(reporter -> reporter.reportLeadAdded(lead));
+    }
+
+    @Override
+    public void reportLeadChanged(LeadChange leadChange) {
+        enqueue(reporter -> reporter.reportLeadChanged(leadChange));
+    }
+
+    @Override
+    public void reportLeadIgnored(Lead lead) {
+        enqueue(reporter -> reporter.reportLeadIgnored(lead));
+    }
+
+    /**
+     * Waits until everything reported so far has been written and flushed by the delegate.
+     */
+    @Override
+    public void flush() {
+        checkOpen();
+        checkWriter();
+        FlushBarrier flushBarrier = new FlushBarrier();
+        put(flushBarrier);
+        flushBarrier.await();
+        checkWriter();
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        put(END_OF_UPDATES);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for lead updates to be written", e);
+        }
+        delegate.close();
+        checkWriter();
+    }
+
+    public long getDroppedUpdates() {
+        return droppedUpdates.get();
+    }
+
+    public StageCounters getCounters() {
+        return counters;
+    }
+
+    private void enqueue(Consumer<LeadUpdateReporter> update) {
+        checkOpen();
+        checkWriter();
+        if (backPressure == BackPressure.BLOCK) {
+            put(update);
+        } else if (!updates.offer(update)) {
+            droppedUpdates.incrementAndGet();
+        }
+    }
+
+    private void put(Consumer<LeadUpdateReporter> update) {
+        try {
+            updates.put(update);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while reporting a lead update", e);
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Lead update reporter is closed");
+        }
+    }
+
+    private void checkWriter() {
+        if (writerFailure != null) {
+            throw new RuntimeException("Failed to write lead updates", writerFailure);
+        }
+    }
+
+    private void writeUpdates() {
+        long startNanos = counters.start();
+        try {
+            List<Consumer<LeadUpdateReporter>> batch = new ArrayList<>(batchSize);
+            while (true) {
+                try {
+                    batch.add(takeUpdate());
+                } catch (InterruptedException e) {
+                    writerFailure = e;
+                    return;
+                }
+                updates.drainTo(batch, batchSize - 1);
+                int updateCount = 0;
+                for (Consumer<LeadUpdateReporter> update : batch) {
+                    if (update == END_OF_UPDATES) {
+                        break;
+                    }
+                    runUpdate(update);
+                    updateCount++;
+                }
+                // the updates drained along with the end marker still count
+                counters.addItems(updateCount);
+                if (updateCount < batch.size()) {
+                    return;
+                }
+                batch.clear();
+            }
+        } finally {
+            counters.finish(startNanos);
+        }
+    }
+
+    private Consumer<LeadUpdateReporter> takeUpdate() throws InterruptedException {
+        counters.sampleQueueDepth(updates.size());
+        Consumer<LeadUpdateReporter> update = updates.poll();
+        if (update != null) {
+            return update;
+        }
+        long blockedSince = System.nanoTime();
+        update = updates.take();
+        counters.addBlockedTime(System.nanoTime() - blockedSince);
+        return update;
+    }
+
+    private void runUpdate(Consumer<LeadUpdateReporter> update) {
+        if (writerFailure != null) {
+            // keep draining after a failure, so reporting threads never block on a full buffer
+            if (update instanceof FlushBarrier) {
+                ((FlushBarrier) update).release();
+            }
+            return;
+        }
+        try {
+            update.accept(delegate);
+        } catch (Throwable e) {
+            writerFailure = e;
+            if (update instanceof FlushBarrier) {
+                ((FlushBarrier) update).release();
+            }
+        }
+    }
+
+    private static class FlushBarrier implements Consumer<LeadUpdateReporter> {
+        private final CountDownLatch flushed = new CountDownLatch(1);
+
+        @Override
+        public void accept(LeadUpdateReporter reporter) {
+            reporter.flush();
+            release();
+        }
+
+        void release() {
+            flushed.countDown();
+        }
+
+        void await() {
+            try {
+                flushed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for lead updates to be written", e);
+            }
+        }
+    }
+}
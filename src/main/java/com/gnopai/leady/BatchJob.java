@@ -0,0 +1,12 @@
+package com.gnopai.leady;
+
+import lombok.Value;
+
+/**
+ * One input file to deduplicate in a {@link LeadyBatch}, and where to write its output.
+ */
+@Value
+public class BatchJob {
+    String inputFile;
+    String outputFile;
+}
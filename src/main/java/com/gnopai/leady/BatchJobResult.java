@@ -0,0 +1,30 @@
+package com.gnopai.leady;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * How a {@link BatchJob} went: how long it waited for a worker and then ran, its lead counts and
+ * phase timings, and the error it failed with, which is null if it succeeded.
+ */
+@Value
+@Builder
+public class BatchJobResult {
+    String inputFile;
+    String outputFile;
+    long waitMillis;
+    long runMillis;
+    long leadsRead;
+    long leadsAdded;
+    long leadsChanged;
+    long leadsIgnored;
+    long parseMillis;
+    long deduplicateMillis;
+    long sortMillis;
+    long writeMillis;
+    String error;
+
+    public boolean isFailed() {
+        return error != null;
+    }
+}
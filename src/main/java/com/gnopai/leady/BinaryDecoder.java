@@ -0,0 +1,74 @@
+package com.gnopai.leady;
+
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Reads values written by {@link BinaryEncoder} from a {@link ByteBuffer}.
+ */
+class BinaryDecoder {
+    private final ByteBuffer buffer;
+
+    BinaryDecoder(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    boolean hasRemaining() {
+        return buffer.hasRemaining();
+    }
+
+    int readByte() {
+        return buffer.get() & 0xFF;
+    }
+
+    byte[] readBytes(int length) {
+        byte[] value = new byte[length];
+        buffer.get(value);
+        return value;
+    }
+
+    long readVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte next = buffer.get();
+            value |= (long) (next & 0x7F) << shift;
+            if (next >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varint at position " + buffer.position());
+    }
+
+    int readVarInt() {
+        return Math.toIntExact(readVarLong());
+    }
+
+    long readZigZagLong() {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    String readString() {
+        int length = readVarInt() - 1;
+        if (length < 0) {
+            return null;
+        }
+        if (!buffer.hasArray()) {
+            return new String(readBytes(length), UTF_8);
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    /**
+     * Moves past a string without decoding it.
+     */
+    void skipString() {
+        int length = readVarInt() - 1;
+        if (length > 0) {
+            buffer.position(buffer.position() + length);
+        }
+    }
+}
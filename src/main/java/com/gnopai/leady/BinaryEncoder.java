@@ -0,0 +1,95 @@
+package com.gnopai.leady;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Builds up binary records in a growable byte array. Integers are LEB128 varints, signed ones
+ * zig-zag encoded first, and strings are a varint of (byte length + 1) followed by UTF-8, with 0
+ * meaning null. {@link BinaryDecoder} reads the same encoding back.
+ */
+class BinaryEncoder {
+    private byte[] bytes;
+    private int size;
+
+    BinaryEncoder(int initialCapacity) {
+        this.bytes = new byte[initialCapacity];
+    }
+
+    void writeByte(int value) {
+        ensureCapacity(1);
+        bytes[size++] = (byte) value;
+    }
+
+    void writeBytes(byte[] value) {
+        ensureCapacity(value.length);
+        System.arraycopy(value, 0, bytes, size, value.length);
+        size += value.length;
+    }
+
+    void writeVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[size++] = (byte) value;
+    }
+
+    void writeZigZagLong(long value) {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    void writeString(String value) {
+        if (value == null) {
+            writeVarLong(0);
+            return;
+        }
+        byte[] encoded = value.getBytes(UTF_8);
+        writeVarLong(encoded.length + 1L);
+        writeBytes(encoded);
+    }
+
+    /**
+     * Appends another encoder's contents, prefixed with their length.
+     */
+    void writeLengthPrefixed(BinaryEncoder record) {
+        writeVarLong(record.size);
+        ensureCapacity(record.size);
+        System.arraycopy(record.bytes, 0, bytes, size, record.size);
+        size += record.size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void reset() {
+        size = 0;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(bytes, size);
+    }
+
+    void copyTo(ByteBuffer buffer) {
+        buffer.put(bytes, 0, size);
+    }
+
+    void writeTo(WritableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, size);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void ensureCapacity(int additionalBytes) {
+        if (size + additionalBytes > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + additionalBytes));
+        }
+    }
+}
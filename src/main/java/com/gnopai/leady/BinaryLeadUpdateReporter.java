@@ -0,0 +1,169 @@
+package com.gnopai.leady;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Writes lead updates to an audit log file in a compact binary form, which {@link LeadAuditLogDecoder}
+ * turns back into the text {@link StandardOutLeadUpdateReporter} would have printed.
+ * <p>
+ * The file starts with {@link #MAGIC} and a format version byte, followed by one record per update:
+ * a varint length, then a type byte and the record body. Added and ignored records hold the lead's id
+ * and email; changed records hold the original id and email and the field diffs. Field names and
+ * time zones are dictionary encoded: a reference of 0 is followed by a new name, which gets the next
+ * number starting from 1. Timestamps are stored as the zig-zag encoded difference in epoch seconds
+ * from the previous timestamp in the log, plus the nanos and the zone.
+ * <p>
+ * Not thread safe; wrap it in an {@link AsyncLeadUpdateReporter} to report from several threads.
+ */
+public class BinaryLeadUpdateReporter implements LeadUpdateReporter {
+    static final byte[] MAGIC = "LEADYLOG".getBytes(US_ASCII);
+    static final int FORMAT_VERSION = 1;
+
+    static final int LEAD_ADDED = 1;
+    static final int LEAD_CHANGED = 2;
+    static final int LEAD_IGNORED = 3;
+
+    static final int NULL_VALUE = 0;
+    static final int STRING_VALUE = 1;
+    static final int TIMESTAMP_VALUE = 2;
+
+    static final int NEW_NAME = 0;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final BinaryEncoder record = new BinaryEncoder(256);
+    private final BinaryEncoder framedRecord = new BinaryEncoder(256);
+    private final Map<String, Integer> fieldNames = new HashMap<>();
+    private final Map<String, Integer> zoneIds = new HashMap<>();
+    private long previousEpochSecond;
+
+    public BinaryLeadUpdateReporter(Path file) {
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            this.channel = FileChannel.open(file, CREATE, WRITE, TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open audit log " + file, e);
+        }
+        buffer.put(MAGIC).put((byte) FORMAT_VERSION);
+    }
+
+    @Override
+    public void reportLeadAdded(Lead lead) {
+        record.writeByte(LEAD_ADDED);
+        record.writeString(lead.getId());
+        record.writeString(lead.getEmail());
+        writeRecord();
+    }
+
+    @Override
+    public void reportLeadChanged(LeadChange leadChange) {
+        record.writeByte(LEAD_CHANGED);
+        record.writeString(leadChange.getOriginalId());
+        record.writeString(leadChange.getOriginalEmail());
+        record.writeVarLong(leadChange.getFieldDiffs().size());
+        for (LeadChange.FieldDiff fieldDiff : leadChange.getFieldDiffs()) {
+            writeName(fieldNames, fieldDiff.getFieldName());
+            writeValue(fieldDiff.getOldValue());
+            writeValue(fieldDiff.getNewValue());
+        }
+        writeRecord();
+    }
+
+    @Override
+    public void reportLeadIgnored(Lead lead) {
+        record.writeByte(LEAD_IGNORED);
+        record.writeString(lead.getId());
+        record.writeString(lead.getEmail());
+        writeRecord();
+    }
+
+    @Override
+    public void flush() {
+        try {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write audit log", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            flush();
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to close audit log", e);
+            }
+        }
+    }
+
+    private void writeName(Map<String, Integer> dictionary, String name) {
+        Integer reference = dictionary.get(name);
+        if (reference != null) {
+            record.writeVarLong(reference);
+            return;
+        }
+        dictionary.put(name, dictionary.size() + 1);
+        record.writeVarLong(NEW_NAME);
+        record.writeString(name);
+    }
+
+    private void writeValue(Object value) {
+        if (value == null) {
+            record.writeByte(NULL_VALUE);
+        } else if (value instanceof ZonedDateTime) {
+            ZonedDateTime timestamp = (ZonedDateTime) value;
+            long epochSecond = timestamp.toEpochSecond();
+            record.writeByte(TIMESTAMP_VALUE);
+            record.writeZigZagLong(epochSecond - previousEpochSecond);
+            record.writeVarLong(timestamp.getNano());
+            writeName(zoneIds, timestamp.getZone().getId());
+            previousEpochSecond = epochSecond;
+        } else {
+            // anything else only ever shows up in the log as its string form
+            record.writeByte(STRING_VALUE);
+            record.writeString(value.toString());
+        }
+    }
+
+    private void writeRecord() {
+        framedRecord.writeLengthPrefixed(record);
+        record.reset();
+        try {
+            if (framedRecord.size() > buffer.remaining()) {
+                flush();
+            }
+            if (framedRecord.size() > buffer.capacity()) {
+                framedRecord.writeTo(channel);
+            } else {
+                framedRecord.copyTo(buffer);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write audit log", e);
+        } finally {
+            framedRecord.reset();
+        }
+    }
+}
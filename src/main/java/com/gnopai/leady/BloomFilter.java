@@ -0,0 +1,120 @@
+package com.gnopai.leady;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A Bloom filter of strings, sized for a given number of keys at a given false-positive rate. Its bit
+ * count is rounded up to a power of two, so the rate it reaches is usually somewhat better than asked
+ * for while it holds no more than that many keys, and worse after.
+ * <p>
+ * Each key is hashed once to 64 bits over its UTF-8 bytes, and the probe positions are derived from
+ * that hash by double hashing, so a lookup costs one pass over the key plus a few random memory reads.
+ */
+class BloomFilter {
+    private static final double LN_2 = Math.log(2);
+    // a long[] can't be indexed past Integer.MAX_VALUE words
+    private static final long MAX_BITS = 1L << 36;
+
+    private final long[] words;
+    private final long bitMask;
+    private final int hashCount;
+    private final long capacity;
+    private long keyCount;
+
+    BloomFilter(long capacity, double falsePositiveRate) {
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("False-positive rate must be between 0 and 1, got " + falsePositiveRate);
+        }
+        long bits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (LN_2 * LN_2));
+        long bitCount = Math.min(MAX_BITS, Math.max(Long.SIZE, Long.highestOneBit(bits - 1) << 1));
+        this.words = new long[(int) (bitCount / Long.SIZE)];
+        this.bitMask = bitCount - 1;
+        this.hashCount = (int) Math.max(1, Math.min(30, Math.round(-Math.log(falsePositiveRate) / LN_2)));
+        this.capacity = capacity;
+    }
+
+    /**
+     * Adds the key, unless the filter might already contain it, in which case its bits are already set
+     * and it doesn't count towards the capacity again.
+     */
+    void put(String key) {
+        if (mightContain(key)) {
+            return;
+        }
+        long hash = hash(key);
+        long step = stepOf(hash);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = hash & bitMask;
+            words[(int) (bit >>> 6)] |= 1L << bit;
+            hash += step;
+        }
+        keyCount++;
+    }
+
+    /**
+     * False if the key was definitely never put; true if it was, or on a false positive.
+     */
+    boolean mightContain(String key) {
+        long hash = hash(key);
+        long step = stepOf(hash);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = hash & bitMask;
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+            hash += step;
+        }
+        return true;
+    }
+
+    /**
+     * Whether the filter holds as many keys as it was sized for.
+     */
+    boolean isFull() {
+        return keyCount >= capacity;
+    }
+
+    long getCapacity() {
+        return capacity;
+    }
+
+    long getBitCount() {
+        return bitMask + 1;
+    }
+
+    // hashes the key's UTF-8 bytes, as Utf8KeyIndex stores them, so a key that doesn't survive
+    // encoding, such as one with a lone surrogate, hashes the same as the key the index gives back
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c >= 0x80) {
+                return hash(key.getBytes(UTF_8));
+            }
+            hash = (hash ^ c) * 0x100000001b3L;
+        }
+        return mix(hash ^ key.length());
+    }
+
+    private static long hash(byte[] key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        return mix(hash ^ key.length);
+    }
+
+    // odd, so that every probe lands on a different bit while there are fewer probes than bits
+    private static long stepOf(long hash) {
+        return mix(hash) | 1;
+    }
+
+    // the 64-bit finalizer from MurmurHash3
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+}
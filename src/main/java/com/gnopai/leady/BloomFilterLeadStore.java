@@ -0,0 +1,180 @@
+package com.gnopai.leady;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Keeps a {@link BloomFilter} of the ids and another of the emails saved to a store, so a lookup of a
+ * key the store has never seen, as for most leads in a typical feed, is answered without touching the
+ * store's indexes. That matters most for a {@link MVStoreLeadStore}, where a miss can mean reading
+ * index pages from disk. A Bloom filter has no false negatives, so lookups return what the store
+ * would; a false positive only costs the lookup that would have happened anyway.
+ * <p>
+ * Leads already in the store are added to the filters up front, so an existing store can be wrapped.
+ * Each filter is sized for twice the keys the store had then, and whenever it fills up it's rebuilt
+ * from the store's keys at twice the size, which keeps the false-positive rate near the one asked for
+ * at the cost of one pass over the keys per doubling. Null keys are always looked up in the store.
+ */
+class BloomFilterLeadStore implements LeadStore {
+    static final long MIN_CAPACITY = 1 << 16;
+
+    private final LeadStore delegate;
+    private final double falsePositiveRate;
+    private final Counters counters;
+    private BloomFilter idFilter;
+    private BloomFilter emailFilter;
+
+    BloomFilterLeadStore(LeadStore delegate, double falsePositiveRate, Counters counters) {
+        this.delegate = delegate;
+        this.falsePositiveRate = falsePositiveRate;
+        this.counters = counters;
+        long capacity = Math.max(MIN_CAPACITY, 2L * delegate.size());
+        this.idFilter = buildFilter(capacity, delegate::forEachId);
+        this.emailFilter = buildFilter(capacity, delegate::forEachEmail);
+    }
+
+    @Override
+    public int findLeadById(String id) {
+        return findLead(idFilter, id, delegate::findLeadById);
+    }
+
+    @Override
+    public int findLeadByEmail(String email) {
+        return findLead(emailFilter, email, delegate::findLeadByEmail);
+    }
+
+    private int findLead(BloomFilter filter, String key, ToIntFunction<String> lookup) {
+        if (key == null) {
+            return lookup.applyAsInt(null);
+        }
+        if (!filter.mightContain(key)) {
+            counters.skipped.increment();
+            return NO_LEAD;
+        }
+        int handle = lookup.applyAsInt(key);
+        (handle != NO_LEAD ? counters.hits : counters.falsePositives).increment();
+        return handle;
+    }
+
+    @Override
+    public int findMatchingLead(Lead lead) {
+        return delegate.findMatchingLead(lead);
+    }
+
+    @Override
+    public Lead getLead(int handle) {
+        return delegate.getLead(handle);
+    }
+
+    @Override
+    public boolean isEnteredAfter(int handle, ZonedDateTime entryDate) {
+        return delegate.isEnteredAfter(handle, entryDate);
+    }
+
+    @Override
+    public int addLead(Lead lead) {
+        int handle = delegate.addLead(lead);
+        addKeys(lead);
+        return handle;
+    }
+
+    @Override
+    public void updateLead(int handle, Lead lead) {
+        delegate.updateLead(handle, lead);
+        addKeys(lead);
+    }
+
+    private void addKeys(Lead lead) {
+        if (lead.getId() != null) {
+            idFilter.put(lead.getId());
+            if (idFilter.isFull()) {
+                idFilter = buildFilter(idFilter.getCapacity() * 2, delegate::forEachId);
+            }
+        }
+        if (lead.getEmail() != null) {
+            emailFilter.put(lead.getEmail());
+            if (emailFilter.isFull()) {
+                emailFilter = buildFilter(emailFilter.getCapacity() * 2, delegate::forEachEmail);
+            }
+        }
+    }
+
+    private BloomFilter buildFilter(long capacity, Consumer<Consumer<String>> forEachKey) {
+        BloomFilter filter = new BloomFilter(capacity, falsePositiveRate);
+        forEachKey.accept(key -> {
+            if (key != null) {
+                filter.put(key);
+            }
+        });
+        // a store with more keys than leads, from many replaced ones, can fill the filter straight away
+        return filter.isFull() ? buildFilter(capacity * 2, forEachKey) : filter;
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public List<Lead> getLeads() {
+        return delegate.getLeads();
+    }
+
+    @Override
+    public List<Lead> getSortedLeads() {
+        return delegate.getSortedLeads();
+    }
+
+    @Override
+    public void forEachId(Consumer<String> consumer) {
+        delegate.forEachId(consumer);
+    }
+
+    @Override
+    public void forEachEmail(Consumer<String> consumer) {
+        delegate.forEachEmail(consumer);
+    }
+
+    /**
+     * How the filters did, which can be shared by several stores and read while they're in use. Each
+     * lookup of a non-null key is either skipped, found in the store, or a false positive that the
+     * store then didn't find.
+     */
+    static class Counters {
+        private final LongAdder skipped = new LongAdder();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder falsePositives = new LongAdder();
+
+        long getSkipped() {
+            return skipped.sum();
+        }
+
+        long getHits() {
+            return hits.sum();
+        }
+
+        long getFalsePositives() {
+            return falsePositives.sum();
+        }
+
+        /**
+         * The share of lookups for keys the store didn't have that still went to the store.
+         */
+        double getFalsePositiveRate() {
+            long misses = getSkipped() + getFalsePositives();
+            return misses == 0 ? 0 : (double) getFalsePositives() / misses;
+        }
+
+        /**
+         * A one-line summary, e.g. {@code key filter: 200000 lookups, 150000 skipped, 49900 hits, 100
+         * false positives (0.07% of misses)}.
+         */
+        String summarize() {
+            return String.format("key filter: %d lookups, %d skipped, %d hits, %d false positives (%.2f%% of misses)",
+                    getSkipped() + getHits() + getFalsePositives(), getSkipped(), getHits(), getFalsePositives(), getFalsePositiveRate() * 100);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.gnopai.leady;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+
+import static com.gnopai.leady.ValueDictionary.NULL_CODE;
+
+/**
+ * A {@link LeadStore} that keeps leads as columns rather than {@link Lead} objects, so a surviving
+ * lead costs a row of primitives instead of a lead, its strings and the four objects behind its entry
+ * date. Names and addresses repeat across leads, so their columns hold codes into a
+ * {@link ValueDictionary} per column; ids and emails are nearly all distinct, so their columns hold
+ * the strings themselves. Entry dates are stored as epoch seconds, nanoseconds and a zone code, which
+ * rebuild the same {@code ZonedDateTime}.
+ * <p>
+ * Lead objects are only made when a lead is looked up, such as to report a change to it or to write
+ * the output. Deciding whether a duplicate replaces a lead, and sorting the leads, work on the columns.
+ * The id and email indexes are {@link Utf8KeyIndex}es, as in {@link CompactLeadStore}.
+ */
+class ColumnarLeadStore implements LeadStore {
+    private static final int INITIAL_CAPACITY = 1 << 8;
+
+    private final Utf8KeyIndex leadHandlesById = new Utf8KeyIndex();
+    private final Utf8KeyIndex leadHandlesByEmail = new Utf8KeyIndex();
+    private final ValueDictionary<String> firstNames = new ValueDictionary<>();
+    private final ValueDictionary<String> lastNames = new ValueDictionary<>();
+    private final ValueDictionary<String> addresses = new ValueDictionary<>();
+    private final ValueDictionary<ZoneId> zones = new ValueDictionary<>();
+    private String[] ids = new String[INITIAL_CAPACITY];
+    private String[] emails = new String[INITIAL_CAPACITY];
+    private int[] firstNameCodes = new int[INITIAL_CAPACITY];
+    private int[] lastNameCodes = new int[INITIAL_CAPACITY];
+    private int[] addressCodes = new int[INITIAL_CAPACITY];
+    private long[] entryEpochSeconds = new long[INITIAL_CAPACITY];
+    private int[] entryNanos = new int[INITIAL_CAPACITY];
+    // NULL_CODE for leads without an entry date
+    private int[] entryZoneCodes = new int[INITIAL_CAPACITY];
+    private int leadCount;
+
+    @Override
+    public int findLeadById(String id) {
+        return leadHandlesById.get(id);
+    }
+
+    @Override
+    public int findLeadByEmail(String email) {
+        return leadHandlesByEmail.get(email);
+    }
+
+    @Override
+    public Lead getLead(int handle) {
+        if (handle < 0 || handle >= leadCount) {
+            throw new IndexOutOfBoundsException("No lead with handle " + handle);
+        }
+        return Lead.builder()
+                .id(ids[handle])
+                .email(emails[handle])
+                .firstName(firstNames.decode(firstNameCodes[handle]))
+                .lastName(lastNames.decode(lastNameCodes[handle]))
+                .address(addresses.decode(addressCodes[handle]))
+                .entryDate(getEntryDate(handle))
+                .build();
+    }
+
+    private ZonedDateTime getEntryDate(int handle) {
+        int zoneCode = entryZoneCodes[handle];
+        if (zoneCode == NULL_CODE) {
+            return null;
+        }
+        return ZonedDateTime.ofInstant(Instant.ofEpochSecond(entryEpochSeconds[handle], entryNanos[handle]), zones.decode(zoneCode));
+    }
+
+    @Override
+    public boolean isEnteredAfter(int handle, ZonedDateTime entryDate) {
+        if (entryZoneCodes[handle] == NULL_CODE) {
+            return LeadStore.super.isEnteredAfter(handle, entryDate);
+        }
+        long epochSecond = entryDate.toEpochSecond();
+        return entryEpochSeconds[handle] > epochSecond
+                || (entryEpochSeconds[handle] == epochSecond && entryNanos[handle] > entryDate.getNano());
+    }
+
+    @Override
+    public int addLead(Lead lead) {
+        if (leadCount == ids.length) {
+            grow(leadCount * 2);
+        }
+        int handle = leadCount++;
+        updateLead(handle, lead);
+        return handle;
+    }
+
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        emails = Arrays.copyOf(emails, capacity);
+        firstNameCodes = Arrays.copyOf(firstNameCodes, capacity);
+        lastNameCodes = Arrays.copyOf(lastNameCodes, capacity);
+        addressCodes = Arrays.copyOf(addressCodes, capacity);
+        entryEpochSeconds = Arrays.copyOf(entryEpochSeconds, capacity);
+        entryNanos = Arrays.copyOf(entryNanos, capacity);
+        entryZoneCodes = Arrays.copyOf(entryZoneCodes, capacity);
+    }
+
+    @Override
+    public void updateLead(int handle, Lead lead) {
+        ids[handle] = lead.getId();
+        emails[handle] = lead.getEmail();
+        firstNameCodes[handle] = firstNames.encode(lead.getFirstName());
+        lastNameCodes[handle] = lastNames.encode(lead.getLastName());
+        addressCodes[handle] = addresses.encode(lead.getAddress());
+        ZonedDateTime entryDate = lead.getEntryDate();
+        entryEpochSeconds[handle] = entryDate != null ? entryDate.toEpochSecond() : 0;
+        entryNanos[handle] = entryDate != null ? entryDate.getNano() : 0;
+        entryZoneCodes[handle] = entryDate != null ? zones.encode(entryDate.getZone()) : NULL_CODE;
+        leadHandlesById.put(lead.getId(), handle);
+        leadHandlesByEmail.put(lead.getEmail(), handle);
+    }
+
+    @Override
+    public int size() {
+        return leadCount;
+    }
+
+    /**
+     * A view that makes each lead as it's read.
+     */
+    @Override
+    public List<Lead> getLeads() {
+        return new ColumnarLeads();
+    }
+
+    /**
+     * Sorted by keys taken straight from the entry date columns, making leads only for ties and then
+     * as the returned view is read. The view reads the store as it is then, so the store shouldn't be
+     * changed while it's in use.
+     */
+    @Override
+    public List<Lead> getSortedLeads() {
+        long[] keys = new long[leadCount];
+        for (int i = 0; i < leadCount; i++) {
+            if (entryZoneCodes[i] == NULL_CODE) {
+                return LeadStore.super.getSortedLeads();
+            }
+            try {
+                keys[i] = LeadSorter.sortKey(entryEpochSeconds[i], entryNanos[i]);
+            } catch (ArithmeticException e) {
+                return LeadStore.super.getSortedLeads();
+            }
+        }
+        return LeadSorter.sortedView(this::getLead, LeadSorter.sortOrder(keys, this::getLead));
+    }
+
+    @Override
+    public void forEachId(Consumer<String> consumer) {
+        leadHandlesById.forEach((id, handle) -> consumer.accept(id));
+    }
+
+    @Override
+    public void forEachEmail(Consumer<String> consumer) {
+        leadHandlesByEmail.forEach((email, handle) -> consumer.accept(email));
+    }
+
+    private class ColumnarLeads extends AbstractList<Lead> implements RandomAccess {
+        @Override
+        public Lead get(int index) {
+            return getLead(index);
+        }
+
+        @Override
+        public int size() {
+            return leadCount;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.gnopai.leady;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The default {@link LeadStore}. Leads live in a plain array indexed by handle, and the id and email
+ * indexes are {@link Utf8KeyIndex}es, so the store adds a few ints plus the UTF-8 bytes of each key
+ * on top of the leads themselves.
+ */
+class CompactLeadStore implements LeadStore {
+    private final Utf8KeyIndex leadHandlesById;
+    private final Utf8KeyIndex leadHandlesByEmail;
+    private Lead[] leads;
+    private int leadCount;
+
+    CompactLeadStore() {
+        this(new Utf8KeyIndex(), new Utf8KeyIndex(), new Lead[1 << 8], 0);
+    }
+
+    /**
+     * Takes over already populated indexes and leads, as restored by {@link LeadSnapshot}.
+     */
+    CompactLeadStore(Utf8KeyIndex leadHandlesById, Utf8KeyIndex leadHandlesByEmail, Lead[] leads, int leadCount) {
+        this.leadHandlesById = leadHandlesById;
+        this.leadHandlesByEmail = leadHandlesByEmail;
+        this.leads = leads.length > 0 ? leads : new Lead[1];
+        this.leadCount = leadCount;
+    }
+
+    @Override
+    public int findLeadById(String id) {
+        return leadHandlesById.get(id);
+    }
+
+    @Override
+    public int findLeadByEmail(String email) {
+        return leadHandlesByEmail.get(email);
+    }
+
+    @Override
+    public Lead getLead(int handle) {
+        return leads[handle];
+    }
+
+    @Override
+    public int addLead(Lead lead) {
+        if (leadCount == leads.length) {
+            leads = Arrays.copyOf(leads, leadCount * 2);
+        }
+        int handle = leadCount++;
+        updateLead(handle, lead);
+        return handle;
+    }
+
+    @Override
+    public void updateLead(int handle, Lead lead) {
+        leads[handle] = lead;
+        leadHandlesById.put(lead.getId(), handle);
+        leadHandlesByEmail.put(lead.getEmail(), handle);
+    }
+
+    @Override
+    public int size() {
+        return leadCount;
+    }
+
+    @Override
+    public List<Lead> getLeads() {
+        return Collections.unmodifiableList(Arrays.asList(leads).subList(0, leadCount));
+    }
+
+    @Override
+    public void forEachId(Consumer<String> consumer) {
+        leadHandlesById.forEach((id, handle) -> consumer.accept(id));
+    }
+
+    @Override
+    public void forEachEmail(Consumer<String> consumer) {
+        leadHandlesByEmail.forEach((email, handle) -> consumer.accept(email));
+    }
+
+    Utf8KeyIndex getLeadHandlesById() {
+        return leadHandlesById;
+    }
+
+    Utf8KeyIndex getLeadHandlesByEmail() {
+        return leadHandlesByEmail;
+    }
+}
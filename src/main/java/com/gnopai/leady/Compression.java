@@ -0,0 +1,101 @@
+package com.gnopai.leady;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * How a lead file is compressed. Input is recognized by its first bytes, so compressed files can be
+ * read whatever they're called, while output is compressed when asked to or when the file name ends
+ * in the format's extension. Compressing and decompressing run on a thread of their own, overlapping
+ * with parsing and serializing.
+ */
+public enum Compression {
+    NONE(""),
+    GZIP(".gz");
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int BUFFER_SIZE = 1 << 16;
+    // blocks of BUFFER_SIZE that can be queued between the compressing thread and the parser or serializer
+    private static final int BLOCKS_AHEAD = 8;
+
+    private final String extension;
+
+    Compression(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * The compression a file name asks for, by its extension.
+     */
+    public static Compression forFileName(String fileName) {
+        return fileName.toLowerCase(Locale.ROOT).endsWith(GZIP.extension) ? GZIP : NONE;
+    }
+
+    /**
+     * The file name without the compression extension, for telling what's inside.
+     */
+    public static String stripExtension(String fileName) {
+        Compression compression = forFileName(fileName);
+        return fileName.substring(0, fileName.length() - compression.extension.length());
+    }
+
+    /**
+     * Opens a file for reading, decompressing it if it starts like a compressed file.
+     */
+    public static InputStream newInputStream(Path path) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE);
+        try {
+            if (isGzip(in)) {
+                return new ReadAheadInputStream(new GZIPInputStream(in, BUFFER_SIZE), BUFFER_SIZE, BLOCKS_AHEAD, "gzip-reader");
+            }
+            return in;
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Whether the file starts like a compressed file.
+     */
+    public static boolean isCompressed(Path path) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path), 2)) {
+            return isGzip(in);
+        }
+    }
+
+    private static boolean isGzip(InputStream in) throws IOException {
+        in.mark(2);
+        int first = in.read();
+        int second = in.read();
+        in.reset();
+        return first >= 0 && second >= 0 && (first | (second << 8)) == GZIP_MAGIC;
+    }
+
+    /**
+     * Creates or truncates a file for writing in this format.
+     */
+    public OutputStream newOutputStream(Path path) throws IOException {
+        OutputStream out = Files.newOutputStream(path, CREATE, TRUNCATE_EXISTING, WRITE);
+        if (this == NONE) {
+            return out;
+        }
+        try {
+            return new WriteBehindOutputStream(new GZIPOutputStream(out, BUFFER_SIZE), BUFFER_SIZE, BLOCKS_AHEAD, "gzip-writer");
+        } catch (IOException | RuntimeException e) {
+            out.close();
+            throw e;
+        }
+    }
+}
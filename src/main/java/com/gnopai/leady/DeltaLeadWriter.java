@@ -0,0 +1,266 @@
+package com.gnopai.leady;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static com.gnopai.leady.LeadDeduplicator.LEAD_ORDER;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Writes the leads with the wrapped writer as usual, and alongside them a delta file of what changed
+ * since the previous output, so downstream loaders can apply just the changes. The delta is
+ * newline-delimited JSON with a record per change:
+ * <pre>
+ * {"op":"insert","lead":{"_id":"...",...}}
+ * {"op":"update","_id":"...","email":"...","changes":[{"field":"email","old":"...","new":"..."}]}
+ * {"op":"remove","_id":"...","email":"..."}
+ * </pre>
+ * Updates and removals name the lead by its id and email in the previous output, and updates list the
+ * fields that changed as {@link LeadChangeFinder} finds them.
+ * <p>
+ * Both outputs are in {@link LeadDeduplicator#LEAD_ORDER}, so the previous output is merge-joined
+ * with the new leads as the wrapped writer iterates them, in a single streaming pass. A lead whose
+ * entry date changed sits at a different point in each, so unmatched leads are held by id until the
+ * end of the pass: one that turns up on the other side becomes an update, and the rest are written
+ * as removals and then insertions. Only changed leads are held.
+ * <p>
+ * The previous output defaults to the file being written, which is then written to a temporary file
+ * alongside and moved into place once the delta is complete. A missing previous output counts as
+ * empty, so the first delta inserts everything.
+ */
+public class DeltaLeadWriter implements LeadWriter {
+    private final LeadWriter leadWriter;
+    private final LeadReader previousLeadReader;
+    private final Path previousOutputFile;
+    private final Path deltaFile;
+    private final LeadChangeFinder leadChangeFinder;
+    private final Gson gson;
+    private final TypeAdapter<Lead> leadAdapter;
+
+    /**
+     * @param previousOutputFile the previous output, or null for the file being written
+     */
+    public DeltaLeadWriter(LeadWriter leadWriter, LeadReader previousLeadReader, Path previousOutputFile, Path deltaFile,
+                           LeadChangeFinder leadChangeFinder, Gson gson) {
+        this.leadWriter = leadWriter;
+        this.previousLeadReader = previousLeadReader;
+        this.previousOutputFile = previousOutputFile;
+        this.deltaFile = deltaFile;
+        this.leadChangeFinder = leadChangeFinder;
+        this.gson = gson;
+        this.leadAdapter = gson.getAdapter(Lead.class);
+    }
+
+    @Override
+    public void writeLeads(Iterable<Lead> leads, Path path) throws IOException {
+        Path previousFile = previousOutputFile != null ? previousOutputFile : path;
+        boolean previousExists = Files.exists(previousFile);
+        boolean replacesPrevious = previousExists && Files.exists(path) && Files.isSameFile(previousFile, path);
+        // the temporary file keeps the output's name at the end, as writers take the compression from it
+        Path outputFile = replacesPrevious ? path.resolveSibling(".tmp-" + ProcessHandle.current().pid() + "-" + path.getFileName()) : path;
+
+        try {
+            try (Stream<Lead> previousLeads = previousExists ? previousLeadReader.readLeads(previousFile) : Stream.empty();
+                 BufferedWriter writer = JsonLeadWriter.newBufferedWriter(deltaFile, JsonLeadWriter.DEFAULT_BUFFER_SIZE, null)) {
+                JsonWriter jsonWriter = gson.newJsonWriter(writer);
+                // a strict writer only allows a single top-level value
+                jsonWriter.setLenient(true);
+                DeltaMerge deltaMerge = new DeltaMerge(previousLeads.iterator(), previousFile, writer, jsonWriter);
+                leadWriter.writeLeads(() -> new MergingIterator(leads.iterator(), deltaMerge), outputFile);
+                deltaMerge.finish();
+                jsonWriter.flush();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (replacesPrevious) {
+                Files.move(outputFile, path, REPLACE_EXISTING, ATOMIC_MOVE);
+            }
+        } finally {
+            if (replacesPrevious) {
+                Files.deleteIfExists(outputFile);
+            }
+        }
+    }
+
+    /**
+     * Passes each lead on to the merge as the wrapped writer takes it.
+     */
+    private static class MergingIterator implements Iterator<Lead> {
+        private final Iterator<Lead> leads;
+        private final DeltaMerge deltaMerge;
+
+        MergingIterator(Iterator<Lead> leads, DeltaMerge deltaMerge) {
+            this.leads = leads;
+            this.deltaMerge = deltaMerge;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return leads.hasNext();
+        }
+
+        @Override
+        public Lead next() {
+            Lead lead = leads.next();
+            deltaMerge.accept(lead);
+            return lead;
+        }
+    }
+
+    private class DeltaMerge {
+        private final Iterator<Lead> previousLeads;
+        private final Path previousFile;
+        private final BufferedWriter writer;
+        private final JsonWriter jsonWriter;
+        private final Map<String, Lead> pendingRemovals = new LinkedHashMap<>();
+        private final Map<String, Lead> pendingInsertions = new LinkedHashMap<>();
+        private Lead previousLead;
+
+        DeltaMerge(Iterator<Lead> previousLeads, Path previousFile, BufferedWriter writer, JsonWriter jsonWriter) {
+            this.previousLeads = previousLeads;
+            this.previousFile = previousFile;
+            this.writer = writer;
+            this.jsonWriter = jsonWriter;
+            advancePrevious();
+        }
+
+        void accept(Lead lead) {
+            while (previousLead != null && LEAD_ORDER.compare(previousLead, lead) < 0) {
+                removed(previousLead);
+                advancePrevious();
+            }
+            if (previousLead != null && LEAD_ORDER.compare(previousLead, lead) == 0) {
+                if (!previousLead.equals(lead)) {
+                    writeUpdate(previousLead, lead);
+                }
+                advancePrevious();
+            } else {
+                inserted(lead);
+            }
+        }
+
+        void finish() {
+            while (previousLead != null) {
+                removed(previousLead);
+                advancePrevious();
+            }
+            pendingRemovals.values().forEach(this::writeRemove);
+            pendingInsertions.values().forEach(this::writeInsert);
+        }
+
+        private void advancePrevious() {
+            Lead lastLead = previousLead;
+            previousLead = previousLeads.hasNext() ? previousLeads.next() : null;
+            if (lastLead != null && previousLead != null && LEAD_ORDER.compare(lastLead, previousLead) > 0) {
+                throw new IllegalArgumentException("Previous output " + previousFile + " isn't sorted by entry date and id, at lead " + previousLead.getId());
+            }
+        }
+
+        private void removed(Lead lead) {
+            Lead insertedLead = pendingInsertions.remove(lead.getId());
+            if (insertedLead != null) {
+                writeUpdate(lead, insertedLead);
+                return;
+            }
+            Lead displacedLead = pendingRemovals.put(lead.getId(), lead);
+            if (displacedLead != null) {
+                writeRemove(displacedLead);
+            }
+        }
+
+        private void inserted(Lead lead) {
+            Lead removedLead = pendingRemovals.remove(lead.getId());
+            if (removedLead != null) {
+                writeUpdate(removedLead, lead);
+                return;
+            }
+            Lead displacedLead = pendingInsertions.put(lead.getId(), lead);
+            if (displacedLead != null) {
+                writeInsert(displacedLead);
+            }
+        }
+
+        private void writeInsert(Lead lead) {
+            try {
+                jsonWriter.beginObject();
+                jsonWriter.name("op").value("insert");
+                jsonWriter.name("lead");
+                leadAdapter.write(jsonWriter, lead);
+                endRecord();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void writeUpdate(Lead oldLead, Lead newLead) {
+            LeadChange leadChange = leadChangeFinder.findLeadChanges(oldLead, newLead);
+            List<LeadChange.FieldDiff> fieldDiffs = leadChange.getFieldDiffs().stream()
+                    .sorted(Comparator.comparing(LeadChange.FieldDiff::getFieldName))
+                    .collect(toList());
+            try {
+                jsonWriter.beginObject();
+                jsonWriter.name("op").value("update");
+                jsonWriter.name("_id").value(leadChange.getOriginalId());
+                jsonWriter.name("email").value(leadChange.getOriginalEmail());
+                jsonWriter.name("changes").beginArray();
+                // a field that changed to or from null still needs both values
+                jsonWriter.setSerializeNulls(true);
+                for (LeadChange.FieldDiff fieldDiff : fieldDiffs) {
+                    jsonWriter.beginObject();
+                    jsonWriter.name("field").value(fieldDiff.getFieldName());
+                    jsonWriter.name("old");
+                    writeValue(fieldDiff.getOldValue());
+                    jsonWriter.name("new");
+                    writeValue(fieldDiff.getNewValue());
+                    jsonWriter.endObject();
+                }
+                jsonWriter.setSerializeNulls(false);
+                jsonWriter.endArray();
+                endRecord();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void writeValue(Object value) throws IOException {
+            if (value == null) {
+                jsonWriter.nullValue();
+            } else {
+                gson.toJson(value, value.getClass(), jsonWriter);
+            }
+        }
+
+        private void writeRemove(Lead lead) {
+            try {
+                jsonWriter.beginObject();
+                jsonWriter.name("op").value("remove");
+                jsonWriter.name("_id").value(lead.getId());
+                jsonWriter.name("email").value(lead.getEmail());
+                endRecord();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        // the JSON writer doesn't buffer, so the newline can go straight to the underlying writer
+        private void endRecord() throws IOException {
+            jsonWriter.endObject();
+            writer.write('\n');
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.gnopai.leady;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Matches leads whose emails are the same once surrounding whitespace and case are ignored, so
+ * {@code "John@X.com "} matches {@code "john@x.com"}.
+ */
+public class EmailLeadMatcher implements LeadMatcher {
+
+    @Override
+    public List<String> getMatchKeys(Lead lead) {
+        String email = lead.getEmail();
+        if (email == null || email.isBlank()) {
+            return List.of();
+        }
+        return List.of(email.strip().toLowerCase(Locale.ROOT));
+    }
+}
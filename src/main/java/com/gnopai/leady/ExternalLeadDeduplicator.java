@@ -0,0 +1,379 @@
+package com.gnopai.leady;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Comparator.comparing;
+
+/**
+ * Deduplicates inputs that don't fit in memory by spilling them to disk. Leads are grouped by their
+ * id and email keys (see {@link LeadKeyGroups}), and whole groups are hash-partitioned into bucket
+ * files sized to fit the memory budget. Each bucket is then deduplicated on its own, and the sorted
+ * buckets are merged into the output.
+ * <p>
+ * At most 256 spill files are open at once, or fewer on a small budget. With more buckets than that,
+ * the leads are first split into ranges of buckets and each range is split again, and the sorted
+ * buckets are merged a batch at a time into longer runs until they can all be merged at once. The
+ * files' buffers are sized from the budget, and the key groups and buffers have to fit in it, as does
+ * the biggest group of leads, since a group is always deduplicated in one go; otherwise the run fails
+ * up front rather than going over the budget.
+ * <p>
+ * The input is read twice. The output is identical to an in-memory run; updates are reported in input
+ * order within a bucket, but bucket by bucket.
+ */
+public class ExternalLeadDeduplicator {
+    // rough on-heap cost of a deduplicated lead beyond its strings, used to size buckets
+    private static final long LEAD_OVERHEAD_BYTES = 400;
+    static final int DEFAULT_MAX_OPEN_FILES = 256;
+    // needing more buckets than this means the budget is far too small for the input
+    private static final int MAX_BUCKETS = 1 << 16;
+    private static final int MIN_BUFFER_CHARS = 1 << 10;
+    private static final int MAX_BUFFER_CHARS = 1 << 13;
+    // what an open spill file costs on top of its buffer, mostly the charset coder's byte buffer
+    private static final int OPEN_FILE_OVERHEAD_BYTES = 1 << 13;
+
+    private final LeadChangeFinder leadChangeFinder;
+    private final LeadUpdateReporter leadUpdateReporter;
+    private final LeadWriter leadWriter;
+    private final TypeAdapter<Lead> leadAdapter;
+    private final long memoryBudget;
+    private final Path tempDirectory;
+    private final int maxOpenFiles;
+    private final int bufferChars;
+    private final LeadyMetrics leadyMetrics;
+
+    public ExternalLeadDeduplicator(LeadChangeFinder leadChangeFinder,
+                                    LeadUpdateReporter leadUpdateReporter,
+                                    LeadWriter leadWriter,
+                                    Gson gson,
+                                    long memoryBudget,
+                                    Path tempDirectory) {
+        this(leadChangeFinder, leadUpdateReporter, leadWriter, gson, memoryBudget, tempDirectory, DEFAULT_MAX_OPEN_FILES, null);
+    }
+
+    /**
+     * With metrics, each bucket's deduplicate and sort phases are timed and its store lookups are
+     * counted, as for an in-memory run.
+     */
+    ExternalLeadDeduplicator(LeadChangeFinder leadChangeFinder,
+                             LeadUpdateReporter leadUpdateReporter,
+                             LeadWriter leadWriter,
+                             Gson gson,
+                             long memoryBudget,
+                             Path tempDirectory,
+                             int maxOpenFiles,
+                             LeadyMetrics leadyMetrics) {
+        if (maxOpenFiles < 2) {
+            throw new IllegalArgumentException("At least 2 spill files must be allowed open at once, got " + maxOpenFiles);
+        }
+        this.leadChangeFinder = leadChangeFinder;
+        this.leadUpdateReporter = leadUpdateReporter;
+        this.leadWriter = leadWriter;
+        this.leadAdapter = gson.getAdapter(Lead.class);
+        this.memoryBudget = memoryBudget;
+        this.tempDirectory = tempDirectory;
+        this.leadyMetrics = leadyMetrics;
+        // an eighth of the budget goes to the files open at once, which can mean fewer of them with small buffers
+        long openFilesBudget = memoryBudget / 8;
+        this.maxOpenFiles = (int) Math.max(2, Math.min(maxOpenFiles, openFilesBudget / (OPEN_FILE_OVERHEAD_BYTES + 2L * MIN_BUFFER_CHARS)));
+        this.bufferChars = (int) Math.max(MIN_BUFFER_CHARS, Math.min(MAX_BUFFER_CHARS, (openFilesBudget / this.maxOpenFiles - OPEN_FILE_OVERHEAD_BYTES) / 2));
+    }
+
+    public void deduplicateLeads(Supplier<Stream<Lead>> leads, Path outputFile) {
+        deduplicateLeads(leads, leads, outputFile);
+    }
+
+    /**
+     * Like {@link #deduplicateLeads(Supplier, Path)}, but with the first pass over the input, which
+     * only groups the leads' keys, read from {@code groupingLeads}. That lets a metered reader count
+     * the input once rather than once per pass.
+     */
+    public void deduplicateLeads(Supplier<Stream<Lead>> groupingLeads, Supplier<Stream<Lead>> leads, Path outputFile) {
+        Path workDirectory = createWorkDirectory();
+        try {
+            List<Path> buckets = partitionLeads(groupingLeads, leads, workDirectory);
+            List<Path> sortedRuns = new ArrayList<>(buckets.size());
+            for (Path bucket : buckets) {
+                sortedRuns.add(deduplicateBucket(bucket));
+            }
+            mergeSortedRuns(sortedRuns, outputFile);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to deduplicate leads through temp directory " + workDirectory, e);
+        } catch (UncheckedIOException e) {
+            throw new RuntimeException("Failed to deduplicate leads through temp directory " + workDirectory, e.getCause());
+        } finally {
+            deleteWorkDirectory(workDirectory);
+        }
+    }
+
+    private List<Path> partitionLeads(Supplier<Stream<Lead>> groupingLeads, Supplier<Stream<Lead>> leads, Path workDirectory) throws IOException {
+        LeadKeyGroups keyGroups = new LeadKeyGroups();
+        long estimatedBytes = 0;
+        try (Stream<Lead> leadStream = groupingLeads.get()) {
+            for (Iterator<Lead> iterator = leadStream.iterator(); iterator.hasNext(); ) {
+                Lead lead = iterator.next();
+                long leadBytes = estimateSize(lead);
+                keyGroups.add(lead, leadBytes);
+                estimatedBytes += leadBytes;
+            }
+        }
+
+        long openFilesBytes = maxOpenFiles * (OPEN_FILE_OVERHEAD_BYTES + 2L * bufferChars);
+        if (keyGroups.heapBytes() + openFilesBytes > memoryBudget) {
+            throw new IllegalArgumentException(String.format("A memory budget of %d bytes is too small for this input: grouping its %d ids and emails"
+                    + " takes about %d bytes, plus %d for spill file buffers", memoryBudget, keyGroups.keyCount(), keyGroups.heapBytes(), openFilesBytes));
+        }
+        // only half the budget goes to a bucket, leaving room for the deduplicator
+        long bucketBudget = Math.max(1, memoryBudget / 2);
+        if (keyGroups.largestGroupBytes() > bucketBudget) {
+            throw new IllegalArgumentException(String.format("A memory budget of %d bytes is too small for this input: its biggest group of leads"
+                    + " linked by shared ids or emails takes about %d bytes, and a group is deduplicated in one go", memoryBudget, keyGroups.largestGroupBytes()));
+        }
+        long bucketCount = 1 + estimatedBytes / bucketBudget;
+        if (bucketCount > MAX_BUCKETS) {
+            throw new IllegalArgumentException(String.format("A memory budget of %d bytes is too small for this input: it would take %d buckets",
+                    memoryBudget, bucketCount));
+        }
+        return splitLeads(leads, keyGroups, (int) bucketCount, 0, (int) bucketCount, workDirectory);
+    }
+
+    /**
+     * Writes each lead to the file of its bucket, for the given range of buckets. With more buckets in
+     * the range than files that can be open at once, the leads are split into smaller ranges first, and
+     * each of those is split again from its own file.
+     */
+    private List<Path> splitLeads(Supplier<Stream<Lead>> leads, LeadKeyGroups keyGroups, int bucketCount, int firstBucket, int rangeBuckets,
+                                  Path workDirectory) throws IOException {
+        int subrangeBuckets = rangeBuckets <= maxOpenFiles ? 1 : (rangeBuckets + maxOpenFiles - 1) / maxOpenFiles;
+        int subrangeCount = (rangeBuckets + subrangeBuckets - 1) / subrangeBuckets;
+        List<Path> files = new ArrayList<>(subrangeCount);
+        List<Writer> writers = new ArrayList<>(subrangeCount);
+        try (Stream<Lead> leadStream = leads.get()) {
+            for (int i = 0; i < subrangeCount; i++) {
+                int subrangeStart = firstBucket + i * subrangeBuckets;
+                int subrangeEnd = Math.min(firstBucket + rangeBuckets, subrangeStart + subrangeBuckets) - 1;
+                // named by both ends, since a range and the first of its own subranges start at the same bucket
+                Path file = workDirectory.resolve(subrangeBuckets == 1 ? "bucket-" + subrangeStart : "buckets-" + subrangeStart + "-to-" + subrangeEnd);
+                files.add(file);
+                writers.add(newSpillWriter(file));
+            }
+            for (Iterator<Lead> iterator = leadStream.iterator(); iterator.hasNext(); ) {
+                Lead lead = iterator.next();
+                int bucket = Math.floorMod(mix(keyGroups.groupOf(lead)), bucketCount);
+                if (bucket >= firstBucket && bucket < firstBucket + rangeBuckets) {
+                    writeSpilledLead(writers.get((bucket - firstBucket) / subrangeBuckets), lead);
+                }
+            }
+        } finally {
+            for (Writer writer : writers) {
+                writer.close();
+            }
+        }
+        if (subrangeBuckets == 1) {
+            return files;
+        }
+
+        List<Path> buckets = new ArrayList<>(rangeBuckets);
+        for (int i = 0; i < subrangeCount; i++) {
+            Path subrange = files.get(i);
+            int subrangeStart = firstBucket + i * subrangeBuckets;
+            int subrangeSize = Math.min(subrangeBuckets, rangeBuckets - i * subrangeBuckets);
+            buckets.addAll(splitLeads(() -> readSpilledLeads(subrange), keyGroups, bucketCount, subrangeStart, subrangeSize, workDirectory));
+            Files.delete(subrange);
+        }
+        return buckets;
+    }
+
+    private Path deduplicateBucket(Path bucket) throws IOException {
+        LeadList dedupedLeads;
+        try (Stream<Lead> leads = readSpilledLeads(bucket)) {
+            dedupedLeads = new LeadDeduplicator(leadChangeFinder, leadUpdateReporter, CompactLeadStore::new, leadyMetrics).deduplicateLeads(leads);
+        }
+        Files.delete(bucket);
+
+        Path sortedRun = bucket.resolveSibling(bucket.getFileName() + ".sorted");
+        writeSpilledLeads(dedupedLeads.getLeads(), sortedRun);
+        return sortedRun;
+    }
+
+    /**
+     * Merges the sorted runs a batch at a time into longer runs, until there are few enough to merge
+     * into the output in one go.
+     */
+    private void mergeSortedRuns(List<Path> sortedRuns, Path outputFile) throws IOException {
+        List<Path> runs = sortedRuns;
+        for (int pass = 0; runs.size() > maxOpenFiles; pass++) {
+            List<Path> mergedRuns = new ArrayList<>((runs.size() + maxOpenFiles - 1) / maxOpenFiles);
+            for (int i = 0; i < runs.size(); i += maxOpenFiles) {
+                List<Path> batch = runs.subList(i, Math.min(runs.size(), i + maxOpenFiles));
+                Path mergedRun = batch.get(0).resolveSibling("merged-" + pass + "-" + mergedRuns.size());
+                mergeRuns(batch, this::writeSpilledLeads, mergedRun);
+                for (Path run : batch) {
+                    Files.delete(run);
+                }
+                mergedRuns.add(mergedRun);
+            }
+            runs = mergedRuns;
+        }
+        mergeRuns(runs, leadWriter, outputFile);
+    }
+
+    private void mergeRuns(List<Path> sortedRuns, LeadWriter writer, Path outputFile) throws IOException {
+        List<Stream<Lead>> runStreams = new ArrayList<>(sortedRuns.size());
+        try {
+            PriorityQueue<SortedRun> runs = new PriorityQueue<>(Math.max(1, sortedRuns.size()),
+                    comparing(SortedRun::getCurrentLead, LeadDeduplicator.LEAD_ORDER));
+            for (Path sortedRun : sortedRuns) {
+                Stream<Lead> runStream = readSpilledLeads(sortedRun);
+                runStreams.add(runStream);
+                SortedRun run = new SortedRun(runStream.iterator());
+                if (run.advance()) {
+                    runs.add(run);
+                }
+            }
+            writer.writeLeads(() -> new MergingIterator(runs), outputFile);
+        } finally {
+            runStreams.forEach(Stream::close);
+        }
+    }
+
+    private void writeSpilledLeads(Iterable<Lead> leads, Path file) throws IOException {
+        try (Writer writer = newSpillWriter(file)) {
+            for (Lead lead : leads) {
+                writeSpilledLead(writer, lead);
+            }
+        }
+    }
+
+    private void writeSpilledLead(Writer writer, Lead lead) throws IOException {
+        // Gson escapes line breaks inside strings, so each lead is exactly one line
+        writer.write(leadAdapter.toJson(lead));
+        writer.write('\n');
+    }
+
+    private Writer newSpillWriter(Path file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file), UTF_8), bufferChars);
+    }
+
+    private Stream<Lead> readSpilledLeads(Path file) {
+        BufferedReader reader;
+        try {
+            reader = new BufferedReader(new InputStreamReader(Files.newInputStream(file), UTF_8), bufferChars);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return reader.lines()
+                .map(this::parseSpilledLead)
+                .onClose(() -> {
+                    try {
+                        reader.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    private Lead parseSpilledLead(String line) {
+        try {
+            return leadAdapter.fromJson(line);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path createWorkDirectory() {
+        try {
+            Files.createDirectories(tempDirectory);
+            return Files.createTempDirectory(tempDirectory, "leady-");
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to create a work directory in " + tempDirectory, e);
+        }
+    }
+
+    private void deleteWorkDirectory(Path workDirectory) {
+        try (Stream<Path> files = Files.list(workDirectory)) {
+            for (Iterator<Path> iterator = files.iterator(); iterator.hasNext(); ) {
+                Files.deleteIfExists(iterator.next());
+            }
+            Files.deleteIfExists(workDirectory);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to clean up temp directory " + workDirectory, e);
+        }
+    }
+
+    private static long estimateSize(Lead lead) {
+        return LEAD_OVERHEAD_BYTES + 2L * (length(lead.getId()) + length(lead.getEmail()) + length(lead.getFirstName())
+                + length(lead.getLastName()) + length(lead.getAddress()));
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    private static int mix(int group) {
+        int hash = group * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static class SortedRun {
+        private final Iterator<Lead> leads;
+        private Lead currentLead;
+
+        SortedRun(Iterator<Lead> leads) {
+            this.leads = leads;
+        }
+
+        Lead getCurrentLead() {
+            return currentLead;
+        }
+
+        boolean advance() {
+            currentLead = leads.hasNext() ? leads.next() : null;
+            return currentLead != null;
+        }
+    }
+
+    private static class MergingIterator implements Iterator<Lead> {
+        private final PriorityQueue<SortedRun> runs;
+
+        MergingIterator(PriorityQueue<SortedRun> runs) {
+            this.runs = runs;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !runs.isEmpty();
+        }
+
+        @Override
+        public Lead next() {
+            SortedRun run = runs.poll();
+            if (run == null) {
+                throw new NoSuchElementException();
+            }
+            Lead lead = run.getCurrentLead();
+            if (run.advance()) {
+                runs.add(run);
+            }
+            return lead;
+        }
+    }
+}
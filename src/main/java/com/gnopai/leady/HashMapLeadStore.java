@@ -0,0 +1,71 @@
+package com.gnopai.leady;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A straightforward {@link LeadStore} on top of {@link HashMap}s, kept as a reference implementation.
+ */
+class HashMapLeadStore implements LeadStore {
+    private final Map<String, Integer> leadHandlesById = new HashMap<>();
+    private final Map<String, Integer> leadHandlesByEmail = new HashMap<>();
+    private final List<Lead> leads = new ArrayList<>();
+
+    @Override
+    public int findLeadById(String id) {
+        return leadHandlesById.getOrDefault(id, NO_LEAD);
+    }
+
+    @Override
+    public int findLeadByEmail(String email) {
+        return leadHandlesByEmail.getOrDefault(email, NO_LEAD);
+    }
+
+    @Override
+    public Lead getLead(int handle) {
+        return leads.get(handle);
+    }
+
+    @Override
+    public int addLead(Lead lead) {
+        leads.add(lead);
+        int handle = leads.size() - 1;
+        indexLead(handle, lead);
+        return handle;
+    }
+
+    @Override
+    public void updateLead(int handle, Lead lead) {
+        leads.set(handle, lead);
+        indexLead(handle, lead);
+    }
+
+    private void indexLead(int handle, Lead lead) {
+        leadHandlesById.put(lead.getId(), handle);
+        leadHandlesByEmail.put(lead.getEmail(), handle);
+    }
+
+    @Override
+    public int size() {
+        return leads.size();
+    }
+
+    @Override
+    public List<Lead> getLeads() {
+        return Collections.unmodifiableList(leads);
+    }
+
+    @Override
+    public void forEachId(Consumer<String> consumer) {
+        leadHandlesById.keySet().forEach(consumer);
+    }
+
+    @Override
+    public void forEachEmail(Consumer<String> consumer) {
+        leadHandlesByEmail.keySet().forEach(consumer);
+    }
+}
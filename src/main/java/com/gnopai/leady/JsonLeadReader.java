@@ -0,0 +1,140 @@
+package com.gnopai.leady;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterator.ORDERED;
+import static java.util.Spliterators.spliteratorUnknownSize;
+
+/**
+ * Reads a {@code {"leads": [...]}} document one lead at a time, so only the lead currently being
+ * parsed needs to be held in memory rather than the whole file. Compressed files are decompressed as
+ * they're read.
+ */
+public class JsonLeadReader implements LeadReader {
+    private static final String LEADS_FIELD = "leads";
+
+    private final TypeAdapter<Lead> leadAdapter;
+    private final Gson gson;
+
+    public JsonLeadReader(Gson gson) {
+        this.leadAdapter = gson.getAdapter(Lead.class);
+        this.gson = gson;
+    }
+
+    @Override
+    public Stream<Lead> readLeads(Path path) {
+        try {
+            return readLeads(new BufferedReader(new InputStreamReader(Compression.newInputStream(path), UTF_8)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Like {@link #readLeads(Path)}, but from an already open reader, which the stream closes.
+     */
+    public Stream<Lead> readLeads(Reader reader) {
+        JsonReader jsonReader = gson.newJsonReader(reader);
+        jsonReader.setLenient(true); // match the leniency of Gson.fromJson
+        LeadIterator leadIterator = new LeadIterator(jsonReader);
+        return StreamSupport.stream(spliteratorUnknownSize(leadIterator, ORDERED | NONNULL), false)
+                .onClose(leadIterator::close);
+    }
+
+    private class LeadIterator implements Iterator<Lead> {
+        private final JsonReader jsonReader;
+        private boolean inLeadsArray;
+        private boolean finished;
+
+        LeadIterator(JsonReader jsonReader) {
+            this.jsonReader = jsonReader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                if (!inLeadsArray && !finished) {
+                    openLeadsArray();
+                }
+                if (finished) {
+                    return false;
+                }
+                if (jsonReader.hasNext()) {
+                    return true;
+                }
+                jsonReader.endArray();
+                skipRemainingFields();
+                return false;
+            } catch (MalformedJsonException | IllegalStateException e) {
+                throw new JsonSyntaxException(e);
+            } catch (IOException e) {
+                throw new JsonIOException(e);
+            }
+        }
+
+        @Override
+        public Lead next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                return leadAdapter.read(jsonReader);
+            } catch (MalformedJsonException | IllegalStateException e) {
+                throw new JsonSyntaxException(e);
+            } catch (IOException e) {
+                throw new JsonIOException(e);
+            }
+        }
+
+        private void openLeadsArray() throws IOException {
+            jsonReader.beginObject();
+            while (jsonReader.hasNext()) {
+                if (LEADS_FIELD.equals(jsonReader.nextName()) && jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+                    jsonReader.beginArray();
+                    inLeadsArray = true;
+                    return;
+                }
+                jsonReader.skipValue();
+            }
+            jsonReader.endObject();
+            finished = true;
+        }
+
+        private void skipRemainingFields() throws IOException {
+            while (jsonReader.hasNext()) {
+                jsonReader.nextName();
+                jsonReader.skipValue();
+            }
+            jsonReader.endObject();
+            inLeadsArray = false;
+            finished = true;
+        }
+
+        void close() {
+            try {
+                jsonReader.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
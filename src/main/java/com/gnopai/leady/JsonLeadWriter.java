@@ -0,0 +1,76 @@
+package com.gnopai.leady;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Writes leads as a {@code {"leads": [...]}} document one lead at a time, so the serialized output
+ * never has to be held in memory. The output is identical to {@code gson.toJson(new LeadList(leads))}.
+ * <p>
+ * It's compressed with the given {@link Compression}, or if none is given, with the one the file name
+ * asks for.
+ */
+public class JsonLeadWriter implements LeadWriter {
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    private final TypeAdapter<Lead> leadAdapter;
+    private final Gson gson;
+    private final int bufferSize;
+    private final Compression compression;
+
+    public JsonLeadWriter(Gson gson) {
+        this(gson, DEFAULT_BUFFER_SIZE);
+    }
+
+    public JsonLeadWriter(Gson gson, int bufferSize) {
+        this(gson, bufferSize, null);
+    }
+
+    public JsonLeadWriter(Gson gson, int bufferSize, Compression compression) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive, got " + bufferSize);
+        }
+        this.leadAdapter = gson.getAdapter(Lead.class);
+        this.gson = gson;
+        this.bufferSize = bufferSize;
+        this.compression = compression;
+    }
+
+    @Override
+    public void writeLeads(Iterable<Lead> leads, Path path) throws IOException {
+        try (JsonWriter jsonWriter = gson.newJsonWriter(newBufferedWriter(path, bufferSize, compression))) {
+            // toJson escapes HTML characters unless told not to, but newJsonWriter leaves them as they are
+            jsonWriter.setHtmlSafe(gson.htmlSafe());
+            jsonWriter.beginObject();
+            jsonWriter.name("leads");
+            jsonWriter.beginArray();
+            for (Lead lead : leads) {
+                leadAdapter.write(jsonWriter, lead);
+            }
+            jsonWriter.endArray();
+            jsonWriter.endObject();
+        }
+    }
+
+    /**
+     * Opens the file for writing, compressed with the given compression or else the one the file name
+     * asks for.
+     */
+    static BufferedWriter newBufferedWriter(Path path, int bufferSize, Compression compression) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        Compression fileCompression = compression != null ? compression : Compression.forFileName(path.getFileName().toString());
+        return new BufferedWriter(new OutputStreamWriter(fileCompression.newOutputStream(path), UTF_8), bufferSize);
+    }
+}
@@ -0,0 +1,163 @@
+package com.gnopai.leady;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+import static com.gnopai.leady.BinaryLeadUpdateReporter.*;
+
+/**
+ * Replays an audit log written by {@link BinaryLeadUpdateReporter} into another reporter. Run as a
+ * program, it prints the log in the same text form as {@link StandardOutLeadUpdateReporter}.
+ * Each decoder carries the log's dictionaries as it goes, so use a fresh one per log.
+ */
+public class LeadAuditLogDecoder {
+    private final List<String> fieldNames = new ArrayList<>();
+    private final List<ZoneId> zoneIds = new ArrayList<>();
+    private long previousEpochSecond;
+
+    public void decode(Path file, LeadUpdateReporter leadUpdateReporter) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            readHeader(in);
+            byte[] record = new byte[256];
+            int length;
+            while ((length = readRecordLength(in)) >= 0) {
+                if (length > record.length) {
+                    record = new byte[Math.max(length, record.length * 2)];
+                }
+                in.readFully(record, 0, length);
+                replayRecord(new BinaryDecoder(ByteBuffer.wrap(record, 0, length)), leadUpdateReporter);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read audit log " + file, e);
+        }
+    }
+
+    private void readHeader(DataInputStream in) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a lead audit log");
+        }
+        int version = in.readUnsignedByte();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported audit log version " + version);
+        }
+    }
+
+    /**
+     * Reads the varint that starts each record, or returns -1 at the end of the log.
+     */
+    private int readRecordLength(InputStream in) throws IOException {
+        int length = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int next = in.read();
+            if (next < 0) {
+                if (shift == 0) {
+                    return -1;
+                }
+                throw new EOFException("Audit log ends part way through a record");
+            }
+            length |= (next & 0x7F) << shift;
+            if ((next & 0x80) == 0) {
+                return length;
+            }
+        }
+        throw new IOException("Malformed record length");
+    }
+
+    private void replayRecord(BinaryDecoder record, LeadUpdateReporter leadUpdateReporter) throws IOException {
+        int type = record.readByte();
+        switch (type) {
+            case LEAD_ADDED:
+                leadUpdateReporter.reportLeadAdded(readLead(record));
+                break;
+            case LEAD_CHANGED:
+                leadUpdateReporter.reportLeadChanged(readLeadChange(record));
+                break;
+            case LEAD_IGNORED:
+                leadUpdateReporter.reportLeadIgnored(readLead(record));
+                break;
+            default:
+                throw new IOException("Unknown audit log record type " + type);
+        }
+    }
+
+    private Lead readLead(BinaryDecoder record) {
+        return Lead.builder()
+                .id(record.readString())
+                .email(record.readString())
+                .build();
+    }
+
+    private LeadChange readLeadChange(BinaryDecoder record) throws IOException {
+        String originalId = record.readString();
+        String originalEmail = record.readString();
+        int fieldDiffCount = record.readVarInt();
+        // kept in logged order, so the text comes out the same as when the change was reported
+        Set<LeadChange.FieldDiff> fieldDiffs = new LinkedHashSet<>();
+        for (int i = 0; i < fieldDiffCount; i++) {
+            String fieldName = readName(record, fieldNames, name -> name);
+            Object oldValue = readValue(record);
+            Object newValue = readValue(record);
+            fieldDiffs.add(new LeadChange.FieldDiff(fieldName, oldValue, newValue));
+        }
+        return new LeadChange(originalId, originalEmail, fieldDiffs);
+    }
+
+    private Object readValue(BinaryDecoder record) throws IOException {
+        int tag = record.readByte();
+        switch (tag) {
+            case NULL_VALUE:
+                return null;
+            case STRING_VALUE:
+                return record.readString();
+            case TIMESTAMP_VALUE:
+                long epochSecond = previousEpochSecond + record.readZigZagLong();
+                int nano = record.readVarInt();
+                ZoneId zoneId = readName(record, zoneIds, ZoneId::of);
+                previousEpochSecond = epochSecond;
+                return ZonedDateTime.ofInstant(Instant.ofEpochSecond(epochSecond, nano), zoneId);
+            default:
+                throw new IOException("Unknown audit log value type " + tag);
+        }
+    }
+
+    private <T> T readName(BinaryDecoder record, List<T> dictionary, Function<String, T> parser) throws IOException {
+        int reference = record.readVarInt();
+        if (reference == NEW_NAME) {
+            T name = parser.apply(record.readString());
+            dictionary.add(name);
+            return name;
+        }
+        if (reference > dictionary.size()) {
+            throw new IOException("Unknown dictionary reference " + reference);
+        }
+        return dictionary.get(reference - 1);
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.err.println("Usage: LeadAuditLogDecoder <audit log file>");
+            System.exit(1);
+        }
+        try (LeadUpdateReporter leadUpdateReporter = new StandardOutLeadUpdateReporter()) {
+            new LeadAuditLogDecoder().decode(Paths.get(args[0]), leadUpdateReporter);
+        }
+    }
+}
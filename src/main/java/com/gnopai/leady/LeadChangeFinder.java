@@ -1,41 +1,81 @@
 package com.gnopai.leady;
 
+import lombok.Value;
+
 import java.beans.IntrospectionException;
 import java.beans.PropertyDescriptor;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.Function;
 
 import static java.beans.Introspector.getBeanInfo;
+import static java.lang.invoke.MethodType.methodType;
 import static java.util.Arrays.stream;
-import static java.util.stream.Collectors.toSet;
 
 public class LeadChangeFinder {
+    // resolved once; each getter is a generated lambda class, so reading a field is a plain virtual call
+    private static final LeadField[] LEAD_FIELDS = resolveLeadFields();
 
     public LeadChange findLeadChanges(Lead oldLead, Lead newLead) {
         return new LeadChange(oldLead.getId(), oldLead.getEmail(), findFieldChanges(oldLead, newLead));
     }
 
     private Set<LeadChange.FieldDiff> findFieldChanges(Lead oldLead, Lead newLead) {
-        return stream(getLeadProperties())
-                .map(propertyDescriptor -> createFieldDiff(propertyDescriptor, oldLead, newLead))
-                .filter(LeadChange.FieldDiff::hasChanged)
-                .collect(toSet());
+        Set<LeadChange.FieldDiff> fieldDiffs = null;
+        for (LeadField field : LEAD_FIELDS) {
+            Object oldValue = field.getGetter().apply(oldLead);
+            Object newValue = field.getGetter().apply(newLead);
+            if (!Objects.equals(oldValue, newValue)) {
+                if (fieldDiffs == null) {
+                    fieldDiffs = new HashSet<>();
+                }
+                fieldDiffs.add(new LeadChange.FieldDiff(field.getName(), oldValue, newValue));
+            }
+        }
+        return fieldDiffs == null ? Set.of() : fieldDiffs;
     }
 
-    private PropertyDescriptor[] getLeadProperties() {
+    private static LeadField[] resolveLeadFields() {
         try {
-            return getBeanInfo(Lead.class).getPropertyDescriptors();
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            return stream(getBeanInfo(Lead.class, Object.class).getPropertyDescriptors())
+                    .filter(propertyDescriptor -> propertyDescriptor.getReadMethod() != null)
+                    .map(propertyDescriptor -> createLeadField(lookup, propertyDescriptor))
+                    .toArray(LeadField[]::new);
         } catch (IntrospectionException e) {
             throw new RuntimeException(e);
         }
     }
 
-    private LeadChange.FieldDiff createFieldDiff(PropertyDescriptor propertyDescriptor, Lead oldObject, Lead newObject) {
+    @SuppressWarnings("unchecked")
+    private static LeadField createLeadField(MethodHandles.Lookup lookup, PropertyDescriptor propertyDescriptor) {
+        Method readMethod = propertyDescriptor.getReadMethod();
         try {
-            Method getter = propertyDescriptor.getReadMethod();
-            return new LeadChange.FieldDiff(propertyDescriptor.getName(), getter.invoke(oldObject), getter.invoke(newObject));
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+            MethodHandle getter = lookup.unreflect(readMethod);
+            CallSite callSite = LambdaMetafactory.metafactory(
+                    lookup,
+                    "apply",
+                    methodType(Function.class),
+                    methodType(Object.class, Object.class),
+                    getter,
+                    getter.type()
+            );
+            Function<Lead, Object> function = (Function<Lead, Object>) callSite.getTarget().invokeExact();
+            return new LeadField(propertyDescriptor.getName(), function);
+        } catch (Throwable e) {
+            throw new RuntimeException("Failed to create getter for " + readMethod, e);
         }
     }
+
+    @Value
+    private static class LeadField {
+        String name;
+        Function<Lead, Object> getter;
+    }
 }
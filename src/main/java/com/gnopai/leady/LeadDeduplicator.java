@@ -1,106 +1,116 @@
 package com.gnopai.leady;
 
-import lombok.Value;
-
 import java.util.*;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
+import static com.gnopai.leady.LeadStore.NO_LEAD;
 import static java.util.Comparator.comparing;
-import static java.util.stream.Collectors.toList;
 
 public class LeadDeduplicator {
+    static final Comparator<Lead> LEAD_ORDER = comparing(Lead::getEntryDate).thenComparing(Lead::getId);
+
     private final LeadChangeFinder leadChangeFinder;
     private final LeadUpdateReporter leadUpdateReporter;
+    private final Supplier<LeadStore> leadStoreFactory;
+    private final LeadyMetrics leadyMetrics;
 
     public LeadDeduplicator(LeadChangeFinder leadChangeFinder, LeadUpdateReporter leadUpdateReporter) {
+        this(leadChangeFinder, leadUpdateReporter, CompactLeadStore::new);
+    }
+
+    public LeadDeduplicator(LeadChangeFinder leadChangeFinder, LeadUpdateReporter leadUpdateReporter, Supplier<LeadStore> leadStoreFactory) {
+        this(leadChangeFinder, leadUpdateReporter, leadStoreFactory, null);
+    }
+
+    /**
+     * With metrics, the deduplicate and sort phases are timed and store lookups are counted. The change
+     * finder and reporter are used as given, so instrument those too to count diffs and updates.
+     */
+    LeadDeduplicator(LeadChangeFinder leadChangeFinder, LeadUpdateReporter leadUpdateReporter, Supplier<LeadStore> leadStoreFactory, LeadyMetrics leadyMetrics) {
         this.leadChangeFinder = leadChangeFinder;
         this.leadUpdateReporter = leadUpdateReporter;
+        this.leadStoreFactory = leadStoreFactory;
+        this.leadyMetrics = leadyMetrics;
     }
 
     public LeadList deduplicateLeads(LeadList leadList) {
-        LeadStore leadStore = new LeadStore();
-        leadList.getLeads().forEach(lead -> processLead(leadStore, lead));
-        return new LeadList(sortLeads(leadStore.getLeadRecords()));
+        return deduplicateLeads(leadList.getLeads().stream());
     }
 
-    private void processLead(LeadStore leadStore, Lead lead) {
-        leadStore.getExistingLeadRecord(lead).ifPresentOrElse(
-                existingRecord -> processExistingLead(leadStore, lead, existingRecord),
-                () -> processNewLead(leadStore, lead)
-        );
+    /**
+     * Deduplicates leads as they arrive, so only the surviving leads are kept in memory. The stream
+     * must be sequential, since later entries win ties.
+     */
+    public LeadList deduplicateLeads(Stream<Lead> leads) {
+        return deduplicateLeads(leads, leadStoreFactory.get());
     }
 
-    private void processNewLead(LeadStore leadStore, Lead lead) {
-        leadUpdateReporter.reportLeadAdded(lead);
-        leadStore.addLead(lead);
+    /**
+     * Deduplicates leads on top of whatever the store already holds, such as the result of an earlier
+     * run, and leaves the final state in the store.
+     */
+    public LeadList deduplicateLeads(Stream<Lead> leads, LeadStore leadStore) {
+        processLeads(leads, leadStore);
+        long startNanos = System.nanoTime();
+        List<Lead> sortedLeads = leadStore.getSortedLeads();
+        if (leadyMetrics != null) {
+            leadyMetrics.getSortTimer().recordSince(startNanos);
+        }
+        return new LeadList(sortedLeads);
     }
 
-    private void processExistingLead(LeadStore leadStore, Lead lead, LeadRecord existingRecord) {
-        if (!shouldReplaceLead(existingRecord.getLead(), lead)) {
-            leadUpdateReporter.reportLeadIgnored(lead);
+    /**
+     * Like {@link #deduplicateLeads(Stream, LeadStore)}, but without sorting the store's leads
+     * afterwards, for callers that apply many small batches to one store.
+     */
+    void processLeads(Stream<Lead> leads, LeadStore leadStore) {
+        if (leadyMetrics == null) {
+            leads.forEachOrdered(lead -> processLead(leadStore, lead));
             return;
         }
-
-        LeadChange leadChange = leadChangeFinder.findLeadChanges(existingRecord.getLead(), lead);
-        leadUpdateReporter.reportLeadChanged(leadChange);
-        leadStore.updateLead(existingRecord, lead);
-    }
-
-    private boolean shouldReplaceLead(Lead existingLead, Lead newLead) {
-        boolean newLeadIsOlder = newLead.getEntryDate().isBefore(existingLead.getEntryDate());
-        return !newLeadIsOlder; // new lead is equal-to-or-newer-than old lead
-    }
-
-    private List<Lead> sortLeads(Collection<LeadRecord> leads) {
-        return leads.stream()
-                .map(LeadRecord::getLead)
-                .sorted(comparing(Lead::getEntryDate).thenComparing(Lead::getId))
-                .collect(toList());
+        long startNanos = System.nanoTime();
+        LeadStore instrumentedLeadStore = leadyMetrics.instrument(leadStore);
+        leads.forEachOrdered(lead -> processLead(instrumentedLeadStore, lead));
+        leadyMetrics.getDeduplicateTimer().recordSince(startNanos);
     }
 
-    private static class LeadStore {
-        private final Map<String, String> leadKeysById = new HashMap<>();
-        private final Map<String, String> leadKeysByEmail = new HashMap<>();
-        private final Map<String, LeadRecord> leadRecords = new HashMap<>();
-
-        public Optional<LeadRecord> getExistingLeadRecord(Lead lead) {
-            return getLeadRecordById(lead.getId())
-                    .or(() -> getLeadRecordByEmail(lead.getEmail()));
-        }
-
-        private Optional<LeadRecord> getLeadRecordById(String id) {
-            return Optional.ofNullable(leadKeysById.get(id))
-                    .map(leadRecords::get);
-        }
-
-        private Optional<LeadRecord> getLeadRecordByEmail(String email) {
-            return Optional.ofNullable(leadKeysByEmail.get(email))
-                    .map(leadRecords::get);
+    private void processLead(LeadStore leadStore, Lead lead) {
+        int existingLead = findExistingLead(leadStore, lead);
+        if (existingLead == NO_LEAD) {
+            processNewLead(leadStore, lead);
+        } else {
+            processExistingLead(leadStore, lead, existingLead);
         }
+    }
 
-        public void addLead(Lead lead) {
-            String key = lead.getId(); // we'll just use the original lead's ID as the ongoing primary key
-            saveRecord(key, lead);
+    private int findExistingLead(LeadStore leadStore, Lead lead) {
+        int existingLead = leadStore.findLeadById(lead.getId());
+        if (existingLead == NO_LEAD) {
+            existingLead = leadStore.findLeadByEmail(lead.getEmail());
         }
+        return existingLead != NO_LEAD ? existingLead : leadStore.findMatchingLead(lead);
+    }
 
-        public void updateLead(LeadRecord existingRecord, Lead updatedLead) {
-            saveRecord(existingRecord.getKey(), updatedLead);
-        }
+    private void processNewLead(LeadStore leadStore, Lead lead) {
+        leadUpdateReporter.reportLeadAdded(lead);
+        leadStore.addLead(lead);
+    }
 
-        private void saveRecord(String key, Lead lead) {
-            LeadRecord leadRecord = new LeadRecord(key, lead);
-            leadRecords.put(key, leadRecord);
-            leadKeysById.put(lead.getId(), key);
-            leadKeysByEmail.put(lead.getEmail(), key);
+    private void processExistingLead(LeadStore leadStore, Lead lead, int existingLeadHandle) {
+        if (!shouldReplaceLead(leadStore, existingLeadHandle, lead)) {
+            leadUpdateReporter.reportLeadIgnored(lead);
+            return;
         }
 
-        public Collection<LeadRecord> getLeadRecords() {
-            return leadRecords.values();
-        }
+        Lead existingLead = leadStore.getLead(existingLeadHandle);
+        LeadChange leadChange = leadChangeFinder.findLeadChanges(existingLead, lead);
+        leadUpdateReporter.reportLeadChanged(leadChange);
+        leadStore.updateLead(existingLeadHandle, lead);
     }
 
-    @Value
-    private static class LeadRecord {
-        String key;
-        Lead lead;
+    private boolean shouldReplaceLead(LeadStore leadStore, int existingLeadHandle, Lead newLead) {
+        boolean newLeadIsOlder = leadStore.isEnteredAfter(existingLeadHandle, newLead.getEntryDate());
+        return !newLeadIsOlder; // new lead is equal-to-or-newer-than old lead
     }
 }
@@ -0,0 +1,141 @@
+package com.gnopai.leady;
+
+import java.util.Arrays;
+
+/**
+ * Union-find over 64-bit hashes of lead ids and emails, used to group leads that could affect each
+ * other without keeping the leads themselves in memory. Each key costs a handful of primitive array
+ * slots. Hash collisions can only merge unrelated groups, which makes a group bigger but never
+ * changes the result of deduplicating it. Each group also adds up the estimated size of its leads, so
+ * a group too big to deduplicate within a memory budget can be found before trying.
+ */
+class LeadKeyGroups {
+    private static final long ID_SEED = 0x9E3779B97F4A7C15L;
+    private static final long EMAIL_SEED = 0xC2B2AE3D27D4EB4FL;
+    private static final long EMPTY = 0;
+
+    private long[] keys = new long[1 << 10];
+    private int[] elements = new int[keys.length];
+    private int[] parents = new int[1 << 10];
+    // per group root, the estimated size of the group's leads
+    private long[] groupBytes = new long[parents.length];
+    private int size;
+
+    /**
+     * Links the lead's id and email keys into one group, and adds the lead's estimated size to it.
+     */
+    void add(Lead lead, long bytes) {
+        int root = union(elementFor(hash(ID_SEED, lead.getId())), elementFor(hash(EMAIL_SEED, lead.getEmail())));
+        groupBytes[root] += bytes;
+    }
+
+    /**
+     * Returns a number identifying the lead's group; only valid for leads that have been added.
+     */
+    int groupOf(Lead lead) {
+        return find(elementFor(hash(ID_SEED, lead.getId())));
+    }
+
+    int keyCount() {
+        return size;
+    }
+
+    /**
+     * The estimated size of the leads in the biggest group.
+     */
+    long largestGroupBytes() {
+        long largest = 0;
+        for (int element = 0; element < size; element++) {
+            if (parents[element] == element) {
+                largest = Math.max(largest, groupBytes[element]);
+            }
+        }
+        return largest;
+    }
+
+    /**
+     * Roughly how much heap the groups take.
+     */
+    long heapBytes() {
+        return (long) keys.length * Long.BYTES + (long) elements.length * Integer.BYTES
+                + (long) parents.length * (Integer.BYTES + Long.BYTES);
+    }
+
+    private int elementFor(long key) {
+        int mask = keys.length - 1;
+        int slot = (int) key & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return elements[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        elements[slot] = size;
+        if (size == parents.length) {
+            parents = Arrays.copyOf(parents, size * 2);
+            groupBytes = Arrays.copyOf(groupBytes, size * 2);
+        }
+        parents[size] = size;
+        size++;
+        if (size * 2 > keys.length) {
+            resize();
+        }
+        return size - 1;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldElements = elements;
+        keys = new long[oldKeys.length * 2];
+        elements = new int[keys.length];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = (int) oldKeys[i] & mask;
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                elements[slot] = oldElements[i];
+            }
+        }
+    }
+
+    private int find(int element) {
+        while (parents[element] != element) {
+            parents[element] = parents[parents[element]]; // path halving
+            element = parents[element];
+        }
+        return element;
+    }
+
+    private int union(int first, int second) {
+        int firstRoot = find(first);
+        int secondRoot = find(second);
+        if (firstRoot == secondRoot) {
+            return firstRoot;
+        }
+        int root = Math.min(firstRoot, secondRoot);
+        int child = Math.max(firstRoot, secondRoot);
+        parents[child] = root;
+        groupBytes[root] += groupBytes[child];
+        return root;
+    }
+
+    private static long hash(long seed, String key) {
+        long hash = seed;
+        if (key != null) {
+            for (int i = 0; i < key.length(); i++) {
+                hash = (hash ^ key.charAt(i)) * 0x100000001B3L;
+            }
+        }
+        // finish with a murmur3 mix so the low bits used for slots are well spread
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash == EMPTY ? 1 : hash;
+    }
+}
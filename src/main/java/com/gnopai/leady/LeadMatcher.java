@@ -0,0 +1,24 @@
+package com.gnopai.leady;
+
+import java.util.List;
+
+/**
+ * A way of recognizing a lead as the same as an earlier one when neither its id nor its email match
+ * exactly. Each matcher turns a lead into blocking keys, and only leads that share a key are compared
+ * with {@link #matches}, which keeps matching close to linear however many leads there are.
+ */
+public interface LeadMatcher {
+
+    /**
+     * The lead's blocking keys, or an empty list if it lacks the fields this matcher needs.
+     */
+    List<String> getMatchKeys(Lead lead);
+
+    /**
+     * Whether a lead is the same as an earlier lead that shares one of its keys. By default sharing a
+     * key is enough.
+     */
+    default boolean matches(Lead lead, Lead candidate) {
+        return true;
+    }
+}
@@ -0,0 +1,16 @@
+package com.gnopai.leady;
+
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * Reads the leads in a {@code {"leads": [...]}} input file.
+ */
+public interface LeadReader {
+
+    /**
+     * Lazily streams the leads in the given file, in file order. The returned stream holds the file
+     * open until it is closed, and reports malformed input as a {@link com.google.gson.JsonParseException}.
+     */
+    Stream<Lead> readLeads(Path path);
+}
@@ -0,0 +1,311 @@
+package com.gnopai.leady;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Saves the full state of a {@link CompactLeadStore} to a file, so a later run can pick up where this
+ * one left off and only process new leads. That includes the ids and emails of replaced leads, which
+ * still point at the lead that replaced them.
+ * <p>
+ * The file holds {@link #MAGIC} and a version, the lead count, the leads in handle order in blocks of
+ * {@link BinaryEncoder} records, and then the raw arrays of the id and email indexes. Loading maps the
+ * file into memory a region at a time and copies the index arrays straight out of it.
+ */
+class LeadSnapshot {
+    static final byte[] MAGIC = "LEADYSNP".getBytes(US_ASCII);
+    static final int FORMAT_VERSION = 1;
+
+    private static final int BLOCK_SIZE = 1 << 20;
+    private static final int NEW_ZONE = 0;
+
+    private LeadSnapshot() {
+    }
+
+    /**
+     * Writes the snapshot to a temporary file first and then moves it into place, so a failed save
+     * leaves the previous snapshot intact, and a snapshot can be saved over the one it was loaded from.
+     */
+    static void save(CompactLeadStore leadStore, Path file) {
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            if (file.toAbsolutePath().getParent() != null) {
+                Files.createDirectories(file.toAbsolutePath().getParent());
+            }
+            try (Output out = new Output(FileChannel.open(tempFile, CREATE, WRITE, TRUNCATE_EXISTING))) {
+                out.putBytes(MAGIC, MAGIC.length);
+                out.putInt(FORMAT_VERSION);
+                out.putInt(leadStore.size());
+                writeLeads(leadStore.getLeads(), out);
+                leadStore.getLeadHandlesById().writeTo(out);
+                leadStore.getLeadHandlesByEmail().writeTo(out);
+            }
+            Files.move(tempFile, file, REPLACE_EXISTING, ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to save lead snapshot " + file, e);
+        }
+    }
+
+    /**
+     * Loads the snapshot if the file exists, or returns an empty store for the first run.
+     */
+    static CompactLeadStore loadIfExists(Path file) {
+        return Files.exists(file) ? load(file) : new CompactLeadStore();
+    }
+
+    static CompactLeadStore load(Path file) {
+        try (Input in = new Input(FileChannel.open(file, READ))) {
+            byte[] magic = in.getBytes(new byte[MAGIC.length], MAGIC.length);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a lead snapshot");
+            }
+            int version = in.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported lead snapshot version " + version);
+            }
+            int leadCount = in.getInt();
+            Lead[] leads = readLeads(in, leadCount);
+            Utf8KeyIndex leadHandlesById = Utf8KeyIndex.readFrom(in);
+            Utf8KeyIndex leadHandlesByEmail = Utf8KeyIndex.readFrom(in);
+            return new CompactLeadStore(leadHandlesById, leadHandlesByEmail, leads, leadCount);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load lead snapshot " + file, e);
+        }
+    }
+
+    private static void writeLeads(List<Lead> leads, Output out) throws IOException {
+        BinaryEncoder block = new BinaryEncoder(BLOCK_SIZE + (BLOCK_SIZE >> 2));
+        Map<ZoneId, Integer> zoneIds = new HashMap<>();
+        int leadsInBlock = 0;
+        for (Lead lead : leads) {
+            writeLead(lead, block, zoneIds);
+            leadsInBlock++;
+            if (block.size() >= BLOCK_SIZE) {
+                writeBlock(block, leadsInBlock, out);
+                leadsInBlock = 0;
+            }
+        }
+        if (leadsInBlock > 0) {
+            writeBlock(block, leadsInBlock, out);
+        }
+    }
+
+    private static void writeBlock(BinaryEncoder block, int leadCount, Output out) throws IOException {
+        out.putInt(block.size());
+        out.putInt(leadCount);
+        out.putEncoded(block);
+        block.reset();
+    }
+
+    private static void writeLead(Lead lead, BinaryEncoder out, Map<ZoneId, Integer> zoneIds) {
+        out.writeString(lead.getId());
+        out.writeString(lead.getEmail());
+        out.writeString(lead.getFirstName());
+        out.writeString(lead.getLastName());
+        out.writeString(lead.getAddress());
+        ZonedDateTime entryDate = lead.getEntryDate();
+        if (entryDate == null) {
+            out.writeByte(0);
+            return;
+        }
+        out.writeByte(1);
+        out.writeZigZagLong(entryDate.toEpochSecond());
+        out.writeVarLong(entryDate.getNano());
+        Integer zoneReference = zoneIds.get(entryDate.getZone());
+        if (zoneReference != null) {
+            out.writeVarLong(zoneReference);
+        } else {
+            zoneIds.put(entryDate.getZone(), zoneIds.size() + 1);
+            out.writeVarLong(NEW_ZONE);
+            out.writeString(entryDate.getZone().getId());
+        }
+    }
+
+    private static Lead[] readLeads(Input in, int leadCount) throws IOException {
+        Lead[] leads = new Lead[Math.max(leadCount, 1 << 8)];
+        List<ZoneId> zoneIds = new ArrayList<>();
+        int leadsRead = 0;
+        while (leadsRead < leadCount) {
+            int blockSize = in.getInt();
+            int leadsInBlock = in.getInt();
+            if (leadsInBlock <= 0 || leadsInBlock > leadCount - leadsRead) {
+                throw new IOException("Corrupt lead block of " + leadsInBlock + " leads");
+            }
+            BinaryDecoder block = new BinaryDecoder(in.map(blockSize));
+            for (int i = 0; i < leadsInBlock; i++) {
+                leads[leadsRead++] = readLead(block, zoneIds);
+            }
+        }
+        return leads;
+    }
+
+    private static Lead readLead(BinaryDecoder in, List<ZoneId> zoneIds) throws IOException {
+        Lead.LeadBuilder lead = Lead.builder()
+                .id(in.readString())
+                .email(in.readString())
+                .firstName(in.readString())
+                .lastName(in.readString())
+                .address(in.readString());
+        if (in.readByte() == 0) {
+            return lead.build();
+        }
+        long epochSecond = in.readZigZagLong();
+        int nano = in.readVarInt();
+        int zoneReference = in.readVarInt();
+        ZoneId zoneId;
+        if (zoneReference == NEW_ZONE) {
+            zoneId = ZoneId.of(in.readString());
+            zoneIds.add(zoneId);
+        } else if (zoneReference <= zoneIds.size()) {
+            zoneId = zoneIds.get(zoneReference - 1);
+        } else {
+            throw new IOException("Unknown zone reference " + zoneReference);
+        }
+        return lead.entryDate(ZonedDateTime.ofInstant(Instant.ofEpochSecond(epochSecond, nano), zoneId)).build();
+    }
+
+    /**
+     * Buffered writes to a file channel.
+     */
+    static class Output implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            ensureRemaining(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putInts(int[] values, int count) throws IOException {
+            for (int offset = 0; offset < count; ) {
+                ensureRemaining(Integer.BYTES);
+                int chunk = Math.min(count - offset, buffer.remaining() / Integer.BYTES);
+                buffer.asIntBuffer().put(values, offset, chunk);
+                buffer.position(buffer.position() + chunk * Integer.BYTES);
+                offset += chunk;
+            }
+        }
+
+        void putBytes(byte[] values, int count) throws IOException {
+            for (int offset = 0; offset < count; ) {
+                ensureRemaining(1);
+                int chunk = Math.min(count - offset, buffer.remaining());
+                buffer.put(values, offset, chunk);
+                offset += chunk;
+            }
+        }
+
+        void putEncoded(BinaryEncoder encoded) throws IOException {
+            flush();
+            encoded.writeTo(channel);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+                channel.force(false);
+            } finally {
+                channel.close();
+            }
+        }
+
+        private void ensureRemaining(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Reads a file by mapping one region at a time, so files larger than a single mapping can handle
+     * still load.
+     */
+    static class Input implements AutoCloseable {
+        // mapping arrays in chunks keeps each mapping well below the 2 GiB limit
+        private static final int MAX_MAPPING = 1 << 28;
+
+        private final FileChannel channel;
+        private final ByteBuffer intBuffer = ByteBuffer.allocate(Integer.BYTES);
+        private long position;
+
+        Input(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        int getInt() throws IOException {
+            intBuffer.clear();
+            while (intBuffer.hasRemaining()) {
+                if (channel.read(intBuffer, position + intBuffer.position()) < 0) {
+                    throw new IOException("Unexpected end of snapshot");
+                }
+            }
+            position += Integer.BYTES;
+            return intBuffer.getInt(0);
+        }
+
+        int[] getInts(int[] target, int count) throws IOException {
+            for (int offset = 0; offset < count; ) {
+                int chunk = Math.min(count - offset, MAX_MAPPING / Integer.BYTES);
+                map((long) chunk * Integer.BYTES).asIntBuffer().get(target, offset, chunk);
+                offset += chunk;
+            }
+            return target;
+        }
+
+        byte[] getBytes(byte[] target, int count) throws IOException {
+            for (int offset = 0; offset < count; ) {
+                int chunk = Math.min(count - offset, MAX_MAPPING);
+                map(chunk).get(target, offset, chunk);
+                offset += chunk;
+            }
+            return target;
+        }
+
+        MappedByteBuffer map(long length) throws IOException {
+            if (position + length > channel.size()) {
+                throw new IOException("Unexpected end of snapshot");
+            }
+            MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            position += length;
+            return mapping;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
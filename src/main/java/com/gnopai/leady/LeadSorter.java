@@ -0,0 +1,197 @@
+package com.gnopai.leady;
+
+import java.time.ZonedDateTime;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.IntFunction;
+
+import static com.gnopai.leady.LeadDeduplicator.LEAD_ORDER;
+
+/**
+ * Sorts leads into {@link LeadDeduplicator#LEAD_ORDER} without comparing {@code ZonedDateTime}s for
+ * every pair. Each lead gets a primitive key, its entry instant in epoch nanoseconds, and the keys
+ * are radix sorted along with the leads' positions. Only leads whose instants are equal are then
+ * compared with the full order, which breaks ties on zone and id exactly as before. The radix sort is
+ * stable, so the result is the same as a stable sort with the comparator.
+ * <p>
+ * The sorted list is a view through the sorted positions rather than a second copy of the leads.
+ * Stores that don't hold leads as objects can sort by keys of their own and have leads looked up
+ * only as the view is read.
+ */
+class LeadSorter {
+    // below this, the fixed cost of the radix passes outweighs the comparisons it saves
+    private static final int MIN_RADIX_SORT_SIZE = 256;
+    private static final int DIGIT_BITS = 11;
+    private static final int DIGIT_COUNT = 1 << DIGIT_BITS;
+    private static final int DIGIT_MASK = DIGIT_COUNT - 1;
+    private static final int PASS_COUNT = (Long.SIZE + DIGIT_BITS - 1) / DIGIT_BITS;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    static List<Lead> sortLeads(Collection<Lead> leads) {
+        Lead[] leadArray = leads.toArray(new Lead[0]);
+        long[] keys = leadArray.length < MIN_RADIX_SORT_SIZE ? null : sortKeys(leadArray);
+        if (keys == null) {
+            Arrays.sort(leadArray, LEAD_ORDER);
+            return Arrays.asList(leadArray);
+        }
+        IntFunction<Lead> leadAt = i -> leadArray[i];
+        return sortedView(leadAt, sortOrder(keys, leadAt));
+    }
+
+    /**
+     * The positions from 0 to {@code keys.length - 1} in lead order, given the {@link #sortKey} of
+     * each position's lead. Leads are only looked up for positions whose keys tie, to compare them
+     * with the full order. The keys are left sorted.
+     */
+    static int[] sortOrder(long[] keys, IntFunction<Lead> leadAt) {
+        int[] order = new int[keys.length];
+        Arrays.setAll(order, i -> i);
+        if (keys.length > 1) {
+            radixSort(keys, order);
+            sortTies(leadAt, keys, order);
+        }
+        return order;
+    }
+
+    /**
+     * A list of the leads at the given positions, looked up as it's read.
+     */
+    static List<Lead> sortedView(IntFunction<Lead> leadAt, int[] order) {
+        return new SortedLeads(leadAt, order);
+    }
+
+    /**
+     * An instant in epoch nanoseconds, with the sign bit flipped so keys sort as unsigned numbers.
+     *
+     * @throws ArithmeticException if the instant is outside the years a long of nanoseconds can hold,
+     *                             roughly 1677 to 2262
+     */
+    static long sortKey(long epochSecond, int nano) {
+        return Math.addExact(Math.multiplyExact(epochSecond, NANOS_PER_SECOND), nano) ^ Long.MIN_VALUE;
+    }
+
+    /**
+     * The leads' {@link #sortKey}s, or null if a lead has no entry date or is out of range for a key.
+     * Those are left to the comparator.
+     */
+    private static long[] sortKeys(Lead[] leads) {
+        long[] keys = new long[leads.length];
+        for (int i = 0; i < leads.length; i++) {
+            ZonedDateTime entryDate = leads[i].getEntryDate();
+            if (entryDate == null) {
+                return null;
+            }
+            try {
+                keys[i] = sortKey(entryDate.toEpochSecond(), entryDate.getNano());
+            } catch (ArithmeticException e) {
+                return null;
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Least-significant-digit radix sort of the keys, carrying the positions along. Digits that are
+     * the same for every key, such as the high bits of dates from the same few years, are skipped.
+     */
+    private static void radixSort(long[] keys, int[] order) {
+        int size = keys.length;
+        int[][] counts = new int[PASS_COUNT][DIGIT_COUNT];
+        for (long key : keys) {
+            for (int pass = 0; pass < PASS_COUNT; pass++) {
+                counts[pass][digit(key, pass)]++;
+            }
+        }
+
+        long[] fromKeys = keys;
+        int[] fromOrder = order;
+        long[] toKeys = new long[size];
+        int[] toOrder = new int[size];
+        for (int pass = 0; pass < PASS_COUNT; pass++) {
+            int[] offsets = counts[pass];
+            if (offsets[digit(fromKeys[0], pass)] == size) {
+                continue;
+            }
+            int offset = 0;
+            for (int digit = 0; digit < DIGIT_COUNT; digit++) {
+                int count = offsets[digit];
+                offsets[digit] = offset;
+                offset += count;
+            }
+            for (int i = 0; i < size; i++) {
+                int position = offsets[digit(fromKeys[i], pass)]++;
+                toKeys[position] = fromKeys[i];
+                toOrder[position] = fromOrder[i];
+            }
+            long[] swapKeys = fromKeys;
+            fromKeys = toKeys;
+            toKeys = swapKeys;
+            int[] swapOrder = fromOrder;
+            fromOrder = toOrder;
+            toOrder = swapOrder;
+        }
+
+        if (fromKeys != keys) {
+            System.arraycopy(fromKeys, 0, keys, 0, size);
+            System.arraycopy(fromOrder, 0, order, 0, size);
+        }
+    }
+
+    private static int digit(long key, int pass) {
+        return (int) (key >>> (pass * DIGIT_BITS)) & DIGIT_MASK;
+    }
+
+    /**
+     * Sorts each run of equal instants with the full order, keeping equal leads in their current
+     * order.
+     */
+    private static void sortTies(IntFunction<Lead> leadAt, long[] sortedKeys, int[] order) {
+        int runStart = 0;
+        for (int i = 1; i <= order.length; i++) {
+            if (i == order.length || sortedKeys[i] != sortedKeys[runStart]) {
+                if (i - runStart > 1) {
+                    sortRun(leadAt, order, runStart, i);
+                }
+                runStart = i;
+            }
+        }
+    }
+
+    private static void sortRun(IntFunction<Lead> leadAt, int[] order, int from, int to) {
+        // each lead in the run is looked up once, rather than on every comparison
+        Lead[] leads = new Lead[to - from];
+        Integer[] run = new Integer[to - from];
+        for (int i = from; i < to; i++) {
+            leads[i - from] = leadAt.apply(order[i]);
+            run[i - from] = i - from;
+        }
+        Arrays.sort(run, (a, b) -> LEAD_ORDER.compare(leads[a], leads[b]));
+        int[] positions = Arrays.copyOfRange(order, from, to);
+        for (int i = from; i < to; i++) {
+            order[i] = positions[run[i - from]];
+        }
+    }
+
+    private static class SortedLeads extends AbstractList<Lead> implements RandomAccess {
+        private final IntFunction<Lead> leadAt;
+        private final int[] order;
+
+        SortedLeads(IntFunction<Lead> leadAt, int[] order) {
+            this.leadAt = leadAt;
+            this.order = order;
+        }
+
+        @Override
+        public Lead get(int index) {
+            return leadAt.apply(order[index]);
+        }
+
+        @Override
+        public int size() {
+            return order.length;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.gnopai.leady;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The deduplicator's working set: the surviving leads, plus indexes from every id and email that has
+ * been saved to the lead that currently owns it. Leads are addressed by int handles, which stay
+ * stable for the life of the store.
+ * <p>
+ * {@link CompactLeadStore} keeps everything on the heap, {@link ColumnarLeadStore} keeps it on the heap
+ * in columns, and {@link MVStoreLeadStore} keeps it in a file with a bounded cache. Other
+ * implementations can be given to {@link LeadDeduplicator}.
+ */
+public interface LeadStore {
+    int NO_LEAD = -1;
+
+    /**
+     * Returns the handle of the lead most recently saved with this id, or {@link #NO_LEAD}.
+     */
+    int findLeadById(String id);
+
+    /**
+     * Returns the handle of the lead most recently saved with this email, or {@link #NO_LEAD}.
+     */
+    int findLeadByEmail(String email);
+
+    /**
+     * Returns the handle of an earlier lead that the store's {@link LeadMatcher}s consider the same as
+     * this one, or {@link #NO_LEAD}. Stores only match on exact ids and emails unless they're wrapped in
+     * a {@link MatchingLeadStore}.
+     */
+    default int findMatchingLead(Lead lead) {
+        return NO_LEAD;
+    }
+
+    Lead getLead(int handle);
+
+    /**
+     * Whether the lead behind the handle was entered after the given date, which decides whether a
+     * duplicate replaces it.
+     */
+    default boolean isEnteredAfter(int handle, ZonedDateTime entryDate) {
+        return getLead(handle).getEntryDate().isAfter(entryDate);
+    }
+
+    /**
+     * Stores a new lead and indexes its id and email, returning its handle.
+     */
+    int addLead(Lead lead);
+
+    /**
+     * Replaces the lead behind a handle and indexes the new id and email. Keys of the replaced lead
+     * keep pointing at the handle.
+     */
+    void updateLead(int handle, Lead lead);
+
+    int size();
+
+    /**
+     * The current leads, in handle order.
+     */
+    List<Lead> getLeads();
+
+    /**
+     * The current leads, in {@link LeadDeduplicator#LEAD_ORDER}. This may be a view that reads the
+     * leads from the store as it goes, so read it before changing or closing the store.
+     */
+    default List<Lead> getSortedLeads() {
+        return LeadSorter.sortLeads(getLeads());
+    }
+
+    /**
+     * Passes every id that has been saved to the store to the consumer, including those of replaced
+     * leads, in no particular order. Used to build a {@link BloomFilterLeadStore} over the store.
+     */
+    void forEachId(Consumer<String> consumer);
+
+    /**
+     * Like {@link #forEachId(Consumer)}, for emails.
+     */
+    void forEachEmail(Consumer<String> consumer);
+}
@@ -0,0 +1,205 @@
+package com.gnopai.leady;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Reads and writes leads without going through Gson's reflective adapter, producing the same JSON and
+ * the same {@link Lead}s. Entry dates in the usual {@code 2014-05-07T17:30:20Z} or
+ * {@code 2014-05-07T17:30:20.123-04:00} forms are parsed by hand; anything else, such as region ids or
+ * omitted seconds, falls back to the {@link DateTimeFormatter} that the gson-javatime converter uses.
+ * <p>
+ * Stateless, and so safe to share between threads like any other Gson adapter.
+ */
+class LeadTypeAdapter extends TypeAdapter<Lead> {
+    // what gson-javatime's ZonedDateTimeConverter parses and formats with
+    private static final DateTimeFormatter ENTRY_DATE_FORMAT = DateTimeFormatter.ISO_DATE_TIME;
+
+    @Override
+    public void write(JsonWriter out, Lead lead) throws IOException {
+        if (lead == null) {
+            out.nullValue();
+            return;
+        }
+        // same field order and null handling as the reflective adapter
+        out.beginObject();
+        out.name("_id").value(lead.getId());
+        out.name("email").value(lead.getEmail());
+        out.name("firstName").value(lead.getFirstName());
+        out.name("lastName").value(lead.getLastName());
+        out.name("address").value(lead.getAddress());
+        out.name("entryDate");
+        if (lead.getEntryDate() == null) {
+            out.nullValue();
+        } else {
+            out.value(ENTRY_DATE_FORMAT.format(lead.getEntryDate()));
+        }
+        out.endObject();
+    }
+
+    @Override
+    public Lead read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        String id = null;
+        String email = null;
+        String firstName = null;
+        String lastName = null;
+        String address = null;
+        ZonedDateTime entryDate = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "_id":
+                    id = readString(in);
+                    break;
+                case "email":
+                    email = readString(in);
+                    break;
+                case "firstName":
+                    firstName = readString(in);
+                    break;
+                case "lastName":
+                    lastName = readString(in);
+                    break;
+                case "address":
+                    address = readString(in);
+                    break;
+                case "entryDate":
+                    String value = readString(in);
+                    entryDate = value == null ? null : parseEntryDate(value);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return new Lead(id, email, firstName, lastName, address, entryDate);
+    }
+
+    private static String readString(JsonReader in) throws IOException {
+        JsonToken token = in.peek();
+        if (token == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        if (token == JsonToken.BOOLEAN) {
+            return Boolean.toString(in.nextBoolean());
+        }
+        return in.nextString();
+    }
+
+    static ZonedDateTime parseEntryDate(String value) {
+        ZonedDateTime entryDate = parseCommonEntryDate(value);
+        if (entryDate != null) {
+            return entryDate;
+        }
+        try {
+            return ENTRY_DATE_FORMAT.parse(value, ZonedDateTime::from);
+        } catch (DateTimeException e) {
+            throw new JsonSyntaxException("Invalid entryDate " + value, e);
+        }
+    }
+
+    /**
+     * Parses {@code yyyy-MM-ddTHH:mm:ss}, an optional fraction of up to nine digits, and a {@code Z}
+     * or {@code +HH:MM} or {@code -HH:MM} offset, returning null for anything else.
+     */
+    private static ZonedDateTime parseCommonEntryDate(String value) {
+        int length = value.length();
+        if (length < 20 || value.charAt(4) != '-' || value.charAt(7) != '-' || value.charAt(10) != 'T'
+                || value.charAt(13) != ':' || value.charAt(16) != ':') {
+            return null;
+        }
+        int year = digits(value, 0, 4);
+        int month = digits(value, 5, 2);
+        int day = digits(value, 8, 2);
+        int hour = digits(value, 11, 2);
+        int minute = digits(value, 14, 2);
+        int second = digits(value, 17, 2);
+        if ((year | month | day | hour | minute | second) < 0) {
+            return null;
+        }
+
+        int position = 19;
+        int nano = 0;
+        if (value.charAt(position) == '.') {
+            int fractionStart = ++position;
+            while (position < length && position - fractionStart < 9 && isDigit(value.charAt(position))) {
+                nano = nano * 10 + (value.charAt(position++) - '0');
+            }
+            int fractionDigits = position - fractionStart;
+            if (fractionDigits == 0) {
+                return null;
+            }
+            for (int i = fractionDigits; i < 9; i++) {
+                nano *= 10;
+            }
+        }
+
+        ZoneOffset offset = parseOffset(value, position);
+        if (offset == null) {
+            return null;
+        }
+        try {
+            return ZonedDateTime.of(LocalDateTime.of(year, month, day, hour, minute, second, nano), offset);
+        } catch (DateTimeException e) {
+            return null; // out of range fields; let the formatter produce the error
+        }
+    }
+
+    private static ZoneOffset parseOffset(String value, int position) {
+        int remaining = value.length() - position;
+        if (remaining == 1 && value.charAt(position) == 'Z') {
+            return ZoneOffset.UTC;
+        }
+        if (remaining != 6 || value.charAt(position + 3) != ':') {
+            return null;
+        }
+        char sign = value.charAt(position);
+        int hours = digits(value, position + 1, 2);
+        int minutes = digits(value, position + 4, 2);
+        if ((sign != '+' && sign != '-') || (hours | minutes) < 0 || hours > 18 || minutes > 59) {
+            return null;
+        }
+        int totalSeconds = (hours * 3600 + minutes * 60) * (sign == '-' ? -1 : 1);
+        try {
+            return ZoneOffset.ofTotalSeconds(totalSeconds); // cached for whole quarter hours
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the number in the given run of ASCII digits, or -1 if any of them isn't a digit.
+     */
+    private static int digits(String value, int start, int count) {
+        int number = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = value.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            number = number * 10 + (c - '0');
+        }
+        return number;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -1,10 +1,26 @@
 package com.gnopai.leady;
 
-public interface LeadUpdateReporter {
+import java.io.Closeable;
+
+public interface LeadUpdateReporter extends Closeable {
 
     void reportLeadAdded(Lead lead);
 
     void reportLeadChanged(LeadChange leadChange);
 
     void reportLeadIgnored(Lead lead);
+
+    /**
+     * Pushes out anything reported so far that the reporter is still holding on to.
+     */
+    default void flush() {
+    }
+
+    /**
+     * Flushes and releases the reporter; nothing may be reported afterwards.
+     */
+    @Override
+    default void close() {
+        flush();
+    }
 }
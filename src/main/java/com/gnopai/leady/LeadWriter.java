@@ -0,0 +1,16 @@
+package com.gnopai.leady;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Writes deduplicated leads to an output file.
+ */
+public interface LeadWriter {
+
+    /**
+     * Writes the leads to the given file in iteration order, replacing anything already there and
+     * creating its directory if needed. The leads are only iterated once.
+     */
+    void writeLeads(Iterable<Lead> leads, Path path) throws IOException;
+}
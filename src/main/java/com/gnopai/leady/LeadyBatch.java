@@ -0,0 +1,269 @@
+package com.gnopai.leady;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * Deduplicates many input files in one JVM, running them as independent jobs on a fixed pool of
+ * worker threads. The jobs share the JVM's warmed-up code and whatever the {@link JobRunner} shares
+ * between them, such as the {@code Gson} instance, instead of each paying for a JVM start. Each job
+ * gets its own {@link LeadyMetrics}, which its counts and timings in the summary are taken from, and
+ * a job that fails is recorded in its result without stopping the others.
+ */
+public class LeadyBatch {
+    private static final Gson SUMMARY_GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final String GLOB_CHARACTERS = "*?[{";
+
+    /**
+     * Sets up and runs one job, instrumenting it with the given metrics.
+     */
+    public interface JobRunner {
+        void run(BatchJob job, LeadyMetrics leadyMetrics) throws Exception;
+    }
+
+    private final int threads;
+    private final JobRunner jobRunner;
+
+    public LeadyBatch(int threads, JobRunner jobRunner) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Batch threads must be at least 1, got " + threads);
+        }
+        this.threads = threads;
+        this.jobRunner = jobRunner;
+    }
+
+    /**
+     * Runs the jobs, returning their results in the same order.
+     */
+    public List<BatchJobResult> run(List<BatchJob> jobs) {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, jobs.size())), newThreadFactory());
+        try {
+            long submittedNanos = System.nanoTime();
+            List<Future<BatchJobResult>> futures = jobs.stream()
+                    .map(job -> executor.submit(() -> runJob(job, submittedNanos)))
+                    .collect(toList());
+            List<BatchJobResult> results = new ArrayList<>(jobs.size());
+            for (Future<BatchJobResult> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for batch jobs", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to run batch job", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private BatchJobResult runJob(BatchJob job, long submittedNanos) {
+        long startNanos = System.nanoTime();
+        LeadyMetrics leadyMetrics = new LeadyMetrics();
+        String error = null;
+        try {
+            jobRunner.run(job, leadyMetrics);
+        } catch (Exception e) {
+            error = describe(e);
+        }
+        return BatchJobResult.builder()
+                .inputFile(job.getInputFile())
+                .outputFile(job.getOutputFile())
+                .waitMillis(TimeUnit.NANOSECONDS.toMillis(startNanos - submittedNanos))
+                .runMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos))
+                .leadsRead(leadyMetrics.getLeadsRead())
+                .leadsAdded(leadyMetrics.getLeadsAdded())
+                .leadsChanged(leadyMetrics.getLeadsChanged())
+                .leadsIgnored(leadyMetrics.getLeadsIgnored())
+                .parseMillis(leadyMetrics.getParseMillis())
+                .deduplicateMillis(leadyMetrics.getDeduplicateMillis())
+                .sortMillis(leadyMetrics.getSortMillis())
+                .writeMillis(leadyMetrics.getWriteMillis())
+                .error(error)
+                .build();
+    }
+
+    // the messages down the cause chain, which name the file and then what went wrong with it,
+    // skipping causes whose messages were already repeated by the exceptions wrapping them
+    private static String describe(Throwable throwable) {
+        StringBuilder description = new StringBuilder(String.valueOf(throwable.getMessage()));
+        for (Throwable cause = throwable.getCause(); cause != null && cause != cause.getCause(); cause = cause.getCause()) {
+            if (cause.getMessage() == null || description.indexOf(cause.getMessage()) < 0) {
+                description.append(": ").append(cause);
+            }
+        }
+        return description.toString();
+    }
+
+    private static ThreadFactory newThreadFactory() {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "leady-batch-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * The jobs for {@code --batch}: the lines of the manifest, if {@code batch} names a file, or
+     * otherwise every file matching it as a glob, such as {@code feeds/*.json} or
+     * {@code feeds/**.ndjson.gz}, in path order.
+     */
+    public static List<BatchJob> findJobs(String batch, Path outputDirectory) {
+        Path batchPath = Paths.get(batch);
+        List<BatchJob> jobs = Files.isRegularFile(batchPath)
+                ? readManifest(batchPath, outputDirectory)
+                : findGlobJobs(batch, outputDirectory);
+        checkJobs(jobs);
+        return jobs;
+    }
+
+    /**
+     * A manifest has a job per line: the input file, then optionally whitespace and the output file,
+     * which is otherwise the input's file name in the output directory. Blank lines and lines
+     * starting with {@code #} are skipped.
+     */
+    static List<BatchJob> readManifest(Path manifest, Path outputDirectory) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(manifest, UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read batch manifest " + manifest, e);
+        }
+        List<BatchJob> jobs = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] files = line.split("\\s+");
+            if (files.length > 2) {
+                throw new IllegalArgumentException("Expected an input file and optional output file on line " + (i + 1) + " of " + manifest + " but got " + line);
+            }
+            String outputFile = files.length == 2 ? files[1] : defaultOutputFile(files[0], outputDirectory);
+            jobs.add(new BatchJob(files[0], outputFile));
+        }
+        return jobs;
+    }
+
+    static List<BatchJob> findGlobJobs(String glob, Path outputDirectory) {
+        // walk from the deepest directory before any wildcards, matching paths relative to it
+        String[] segments = glob.split("/");
+        int baseSegments = 0;
+        while (baseSegments < segments.length - 1 && segments[baseSegments].chars().noneMatch(c -> GLOB_CHARACTERS.indexOf(c) >= 0)) {
+            baseSegments++;
+        }
+        String base = String.join("/", List.of(segments).subList(0, baseSegments));
+        Path baseDirectory = Paths.get(base.isEmpty() && glob.startsWith("/") ? "/" : base);
+        PathMatcher pathMatcher = FileSystems.getDefault().getPathMatcher("glob:" + String.join("/", List.of(segments).subList(baseSegments, segments.length)));
+        if (!Files.isDirectory(baseDirectory)) {
+            throw new IllegalArgumentException("No batch manifest or input files match " + glob);
+        }
+
+        List<BatchJob> jobs;
+        try (Stream<Path> paths = Files.walk(baseDirectory)) {
+            jobs = paths.filter(Files::isRegularFile)
+                    .filter(path -> pathMatcher.matches(baseDirectory.relativize(path)))
+                    .sorted()
+                    .map(path -> new BatchJob(path.toString(), defaultOutputFile(path.toString(), outputDirectory)))
+                    .collect(toList());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to find input files matching " + glob, e);
+        }
+        if (jobs.isEmpty()) {
+            throw new IllegalArgumentException("No batch manifest or input files match " + glob);
+        }
+        return jobs;
+    }
+
+    private static String defaultOutputFile(String inputFile, Path outputDirectory) {
+        return outputDirectory.resolve(Paths.get(inputFile).getFileName()).toString();
+    }
+
+    // jobs run concurrently, so two writing the same file, or one overwriting another's input, would race
+    private static void checkJobs(List<BatchJob> jobs) {
+        Set<Path> inputFiles = jobs.stream().map(job -> normalize(job.getInputFile())).collect(toSet());
+        Set<Path> outputFiles = new HashSet<>();
+        for (BatchJob job : jobs) {
+            Path outputFile = normalize(job.getOutputFile());
+            if (inputFiles.contains(outputFile)) {
+                throw new IllegalArgumentException("Batch output file " + job.getOutputFile() + " is also an input file");
+            }
+            if (!outputFiles.add(outputFile)) {
+                throw new IllegalArgumentException("More than one batch job writes to " + job.getOutputFile());
+            }
+        }
+    }
+
+    private static Path normalize(String file) {
+        return Paths.get(file).toAbsolutePath().normalize();
+    }
+
+    /**
+     * A table of the results, a line per job, followed by the totals.
+     */
+    public static String summarize(List<BatchJobResult> results, long elapsedMillis) {
+        StringBuilder summary = new StringBuilder();
+        String format = "%-40s %9s %9s %9s %9s %9s %9s %9s %9s %9s  %s%n";
+        summary.append(String.format(format, "input", "read", "added", "changed", "ignored", "wait ms", "parse ms", "dedup ms", "write ms", "total ms", "status"));
+        long leadsRead = 0;
+        long failures = 0;
+        for (BatchJobResult result : results) {
+            summary.append(String.format(format,
+                    result.getInputFile(),
+                    result.getLeadsRead(),
+                    result.getLeadsAdded(),
+                    result.getLeadsChanged(),
+                    result.getLeadsIgnored(),
+                    result.getWaitMillis(),
+                    result.getParseMillis(),
+                    result.getDeduplicateMillis(),
+                    result.getWriteMillis(),
+                    result.getRunMillis(),
+                    result.isFailed() ? "FAILED: " + result.getError() : "ok"
+            ));
+            leadsRead += result.getLeadsRead();
+            failures += result.isFailed() ? 1 : 0;
+        }
+        summary.append(String.format("%d jobs, %d failed, %d leads read in %d ms%n", results.size(), failures, leadsRead, elapsedMillis));
+        return summary.toString();
+    }
+
+    public static void writeSummary(List<BatchJobResult> results, Path path) {
+        try {
+            Path directory = path.toAbsolutePath().getParent();
+            if (directory != null) {
+                Files.createDirectories(directory);
+            }
+            try (Writer writer = Files.newBufferedWriter(path, UTF_8)) {
+                SUMMARY_GSON.toJson(results, writer);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write batch summary to " + path, e);
+        }
+    }
+}
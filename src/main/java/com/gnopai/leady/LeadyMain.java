@@ -3,35 +3,71 @@ package com.gnopai.leady;
 import com.fatboyindustrial.gsonjavatime.ZonedDateTimeConverter;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
 
-import java.nio.file.Files;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import static com.fatboyindustrial.gsonjavatime.Converters.ZONED_DATE_TIME_TYPE;
-import static java.nio.charset.Charset.defaultCharset;
-import static java.nio.file.StandardOpenOption.CREATE;
-import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
 
 public class LeadyMain {
     private final LeadDeduplicator leadDeduplicator;
-    private final Gson gson;
+    private final LeadReader leadReader;
+    private final LeadWriter leadWriter;
 
-    public LeadyMain(LeadDeduplicator leadDeduplicator, Gson gson) {
+    public LeadyMain(LeadDeduplicator leadDeduplicator, LeadReader leadReader, LeadWriter leadWriter) {
         this.leadDeduplicator = leadDeduplicator;
-        this.gson = gson;
+        this.leadReader = leadReader;
+        this.leadWriter = leadWriter;
     }
 
     public void run(String inputFile, String outputFile) {
-        LeadList leadList = readLeadsFromFile(inputFile);
-        LeadList dedupedLeadList = leadDeduplicator.deduplicateLeads(leadList);
+        LeadList dedupedLeadList = deduplicateLeadsFromFile(inputFile, leadDeduplicator::deduplicateLeads);
         writeLeadsToFile(dedupedLeadList, outputFile);
     }
 
-    private LeadList readLeadsFromFile(String fileName) {
+    /**
+     * Deduplicates the input on top of the leads saved in the snapshot file, if it exists, and saves
+     * the combined state back to it. The output is the same as a full run over every input the
+     * snapshot has seen, and only the new leads' updates are reported. Leads are matched by id and
+     * email only, since lead matchers can't be carried over from earlier runs.
+     */
+    public void run(String inputFile, String outputFile, String snapshotFile) {
+        Path snapshotPath = Paths.get(snapshotFile);
+        CompactLeadStore leadStore = LeadSnapshot.loadIfExists(snapshotPath);
+        run(inputFile, outputFile, leadStore);
+        LeadSnapshot.save(leadStore, snapshotPath);
+    }
+
+    /**
+     * Deduplicates the input on top of the leads already in the store, leaving the combined state in
+     * it. The output covers every lead in the store.
+     */
+    public void run(String inputFile, String outputFile, LeadStore leadStore) {
+        LeadList dedupedLeadList = deduplicateLeadsFromFile(inputFile, leads -> leadDeduplicator.deduplicateLeads(leads, leadStore));
+        writeLeadsToFile(dedupedLeadList, outputFile);
+    }
+
+    private LeadList deduplicateLeadsFromFile(String fileName, Function<Stream<Lead>, LeadList> deduplicator) {
+        try (Stream<Lead> leads = readLeadsFromFile(fileName)) {
+            return deduplicator.apply(leads);
+        } catch (JsonParseException e) {
+            throw new RuntimeException("Failed to read leads from input file " + fileName, e);
+        }
+    }
+
+    private Stream<Lead> readLeadsFromFile(String fileName) {
         try {
-            String json = String.join(" ", Files.readAllLines(Paths.get(fileName)));
-            return gson.fromJson(json, LeadList.class);
+            return leadReader.readLeads(Paths.get(fileName));
         } catch (Exception e) {
             throw new RuntimeException("Failed to read leads from input file " + fileName, e);
         }
@@ -39,26 +75,402 @@ public class LeadyMain {
 
     private void writeLeadsToFile(LeadList leads, String fileName) {
         try {
-            String json = gson.toJson(leads);
-            Path filePath = Paths.get(fileName);
-            Files.createDirectories(filePath.getParent());
-            Files.write(filePath, json.getBytes(defaultCharset()), CREATE, TRUNCATE_EXISTING);
+            leadWriter.writeLeads(leads.getLeads(), Paths.get(fileName));
         } catch (Exception e) {
             throw new RuntimeException("Failed to write deduplicated leads to output file " + fileName, e);
         }
     }
 
     public static void main(String[] args) {
-        LeadyMain leadyMain = new LeadyMain(
-                new LeadDeduplicator(new LeadChangeFinder(), new StandardOutLeadUpdateReporter()),
-                new GsonBuilder()
-                        .registerTypeAdapter(ZONED_DATE_TIME_TYPE, new ZonedDateTimeConverter())
-                        .create()
-        );
-
-        String inputFileName = args.length >= 1 ? args[0] : "src/main/resources/sample_leads.json";
-        String outputFileName = args.length >= 2 ? args[1] : "out/deduped_leads.json";
-        leadyMain.run(inputFileName, outputFileName);
-        System.out.println("Results written to " + outputFileName);
+        LeadyOptions options = LeadyOptions.parse(args);
+        if (options.getBatch() != null) {
+            runBatch(options);
+            return;
+        }
+        Gson gson = createGson();
+        LeadyMetrics leadyMetrics = createLeadyMetrics(options);
+        List<LeadMatcher> leadMatchers = createLeadMatchers(options);
+
+        if (options.getSnapshotFile() != null && options.getStoreFile() != null) {
+            throw new IllegalArgumentException("--snapshot can't be combined with --store");
+        }
+        if (!"compact".equals(options.getLeadStore()) && (options.getSnapshotFile() != null || options.getStoreFile() != null)) {
+            throw new IllegalArgumentException("--lead-store can't be combined with --snapshot or --store");
+        }
+        // the match indexes aren't saved, and rebuilding them from the surviving leads misses the replaced ones
+        if (!leadMatchers.isEmpty() && (options.getSnapshotFile() != null || options.getStoreFile() != null)) {
+            throw new IllegalArgumentException("--match can't be combined with --snapshot or --store");
+        }
+        if (options.getPort() > 0 && options.getDeltaFile() != null) {
+            throw new IllegalArgumentException("--delta can't be combined with --port");
+        }
+        // the delta is taken against a single previous output file
+        if (options.getPartition() != null && options.getDeltaFile() != null) {
+            throw new IllegalArgumentException("--partition can't be combined with --delta");
+        }
+        if (options.getPort() > 0) {
+            serve(options, gson, leadMatchers, leadyMetrics);
+            return;
+        }
+        // the external deduplicator groups the input on its own, without the leads already in a store
+        if ((options.getSnapshotFile() != null || options.getStoreFile() != null) && options.getMemoryBudget() > 0) {
+            throw new IllegalArgumentException("--snapshot and --store can't be combined with --memory-budget");
+        }
+        // the parallel and external deduplicators split the input by exact ids and emails
+        if (!leadMatchers.isEmpty() && (options.getParallelism() > 1 || options.getMemoryBudget() > 0)) {
+            throw new IllegalArgumentException("--match can't be combined with --parallelism or --memory-budget");
+        }
+        if (!"compact".equals(options.getLeadStore()) && (options.getParallelism() > 1 || options.getMemoryBudget() > 0)) {
+            throw new IllegalArgumentException("--lead-store can't be combined with --parallelism or --memory-budget");
+        }
+        // a snapshot run's store is loaded and saved within LeadyMain
+        if (options.getKeyFilter() > 0 && (options.getSnapshotFile() != null || options.getParallelism() > 1 || options.getMemoryBudget() > 0)) {
+            throw new IllegalArgumentException("--key-filter can't be combined with --snapshot, --parallelism or --memory-budget");
+        }
+        BloomFilterLeadStore.Counters keyFilterCounters = options.getKeyFilter() > 0 ? new BloomFilterLeadStore.Counters() : null;
+
+        LeadReader leadReader = createLeadReader(options, options.getInputFile(), gson, leadyMetrics);
+        LeadWriter leadWriter = createLeadWriter(options, options.getOutputFile(), gson, leadyMetrics);
+        LeadChangeFinder leadChangeFinder = createLeadChangeFinder(leadyMetrics);
+        LeadUpdateReporter baseLeadUpdateReporter = createLeadUpdateReporter(options);
+        List<StageCounters> stageCounters = new ArrayList<>();
+        if (leadReader instanceof PrefetchingLeadReader) {
+            stageCounters.add(((PrefetchingLeadReader) leadReader).getParseCounters());
+            stageCounters.add(((PrefetchingLeadReader) leadReader).getDeduplicateCounters());
+        }
+        if (baseLeadUpdateReporter instanceof AsyncLeadUpdateReporter) {
+            stageCounters.add(((AsyncLeadUpdateReporter) baseLeadUpdateReporter).getCounters());
+        }
+
+        // closing the reporter flushes any buffered updates before we report completion
+        try (LeadUpdateReporter leadUpdateReporter = leadyMetrics != null ? leadyMetrics.instrument(baseLeadUpdateReporter) : baseLeadUpdateReporter) {
+            if (options.getMemoryBudget() > 0) {
+                ExternalLeadDeduplicator externalLeadDeduplicator = new ExternalLeadDeduplicator(
+                        leadChangeFinder,
+                        leadUpdateReporter,
+                        leadWriter,
+                        gson,
+                        options.getMemoryBudget(),
+                        Paths.get(options.getTempDirectory()),
+                        ExternalLeadDeduplicator.DEFAULT_MAX_OPEN_FILES,
+                        leadyMetrics
+                );
+                Path inputFile = Paths.get(options.getInputFile());
+                // the grouping pass reads unmetered, so the metrics count the input once
+                LeadReader groupingLeadReader = createLeadReader(options, options.getInputFile(), gson, null);
+                externalLeadDeduplicator.deduplicateLeads(() -> groupingLeadReader.readLeads(inputFile), () -> leadReader.readLeads(inputFile), Paths.get(options.getOutputFile()));
+            } else {
+                ForkJoinPool forkJoinPool = createForkJoinPool(options);
+                try {
+                    LeadDeduplicator leadDeduplicator = createLeadDeduplicator(options, forkJoinPool, leadChangeFinder, leadUpdateReporter, leadMatchers, keyFilterCounters, leadyMetrics);
+                    LeadyMain leadyMain = new LeadyMain(leadDeduplicator, leadReader, leadWriter);
+                    if (options.getSnapshotFile() != null) {
+                        leadyMain.run(options.getInputFile(), options.getOutputFile(), options.getSnapshotFile());
+                    } else if (options.getStoreFile() != null) {
+                        try (MVStoreLeadStore leadStore = openLeadStore(options)) {
+                            leadyMain.run(options.getInputFile(), options.getOutputFile(), withKeyFilter(options, leadStore, keyFilterCounters));
+                        }
+                    } else {
+                        leadyMain.run(options.getInputFile(), options.getOutputFile());
+                    }
+                } finally {
+                    shutdown(forkJoinPool);
+                }
+            }
+        }
+        System.out.println(options.getPartition() != null
+                ? "Results written to parts listed in the manifest next to " + options.getOutputFile()
+                : "Results written to " + options.getOutputFile());
+        if (options.getDeltaFile() != null) {
+            System.out.println("Changes since the previous results written to " + options.getDeltaFile());
+        }
+        if (options.isStageStats()) {
+            stageCounters.forEach(counters -> System.err.println(counters.summarize()));
+        }
+        if (keyFilterCounters != null) {
+            System.err.println(keyFilterCounters.summarize());
+        }
+        finishLeadyMetrics(options, leadyMetrics);
+    }
+
+    static Gson createGson() {
+        return new GsonBuilder()
+                .registerTypeAdapter(ZONED_DATE_TIME_TYPE, new ZonedDateTimeConverter())
+                .registerTypeAdapter(Lead.class, new LeadTypeAdapter())
+                .create();
+    }
+
+    /**
+     * Runs each input file given by {@code --batch} as a separate job with its own reader, writer,
+     * deduplicator and metrics, sharing one {@code Gson} instance. Each job's updates go to a binary
+     * audit log next to its output file, since jobs printing them at once would interleave.
+     */
+    private static void runBatch(LeadyOptions options) {
+        if (options.getPort() > 0 || options.getSnapshotFile() != null || options.getStoreFile() != null
+                || options.getMemoryBudget() > 0 || options.getAuditLogFile() != null
+                || options.getMetricsFile() != null || options.isJmx() || options.isStageStats() || options.getDeltaFile() != null
+                || options.getKeyFilter() > 0) {
+            throw new IllegalArgumentException("--batch can't be combined with --port, --snapshot, --store, --memory-budget, --audit-log, --metrics, --jmx, --stage-stats, --delta or --key-filter");
+        }
+        List<LeadMatcher> leadMatchers = createLeadMatchers(options);
+        if (!leadMatchers.isEmpty() && options.getParallelism() > 1) {
+            throw new IllegalArgumentException("--match can't be combined with --parallelism");
+        }
+        if (!"compact".equals(options.getLeadStore()) && options.getParallelism() > 1) {
+            throw new IllegalArgumentException("--lead-store can't be combined with --parallelism");
+        }
+        Gson gson = createGson();
+        List<BatchJob> jobs = LeadyBatch.findJobs(options.getBatch(), Paths.get(options.getBatchOutputDirectory()));
+        LeadyBatch leadyBatch = new LeadyBatch(options.getBatchThreads(), (job, leadyMetrics) -> runBatchJob(options, gson, leadMatchers, job, leadyMetrics));
+
+        long startNanos = System.nanoTime();
+        List<BatchJobResult> results = leadyBatch.run(jobs);
+        System.out.print(LeadyBatch.summarize(results, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)));
+        if (options.getBatchSummaryFile() != null) {
+            LeadyBatch.writeSummary(results, Paths.get(options.getBatchSummaryFile()));
+        }
+        long failures = results.stream().filter(BatchJobResult::isFailed).count();
+        if (failures > 0) {
+            throw new RuntimeException(failures + " of " + results.size() + " batch jobs failed");
+        }
+    }
+
+    private static void runBatchJob(LeadyOptions options, Gson gson, List<LeadMatcher> leadMatchers, BatchJob job, LeadyMetrics leadyMetrics) {
+        LeadReader leadReader = createLeadReader(options, job.getInputFile(), gson, leadyMetrics);
+        LeadWriter leadWriter = createLeadWriter(options, job.getOutputFile(), gson, leadyMetrics);
+        LeadUpdateReporter baseLeadUpdateReporter = createLeadUpdateReporter(options, new BinaryLeadUpdateReporter(Paths.get(job.getOutputFile() + ".audit.log")));
+        ForkJoinPool forkJoinPool = createForkJoinPool(options);
+        try (LeadUpdateReporter leadUpdateReporter = leadyMetrics.instrument(baseLeadUpdateReporter)) {
+            LeadDeduplicator leadDeduplicator = createLeadDeduplicator(options, forkJoinPool, createLeadChangeFinder(leadyMetrics), leadUpdateReporter, leadMatchers, null, leadyMetrics);
+            new LeadyMain(leadDeduplicator, leadReader, leadWriter).run(job.getInputFile(), job.getOutputFile());
+        } finally {
+            shutdown(forkJoinPool);
+        }
+    }
+
+    /**
+     * Runs as a {@link LeadyServer} on the loopback interface until the JVM is shut down, saving the
+     * store to the snapshot file or closing the store file on the way out if there is one.
+     */
+    private static void serve(LeadyOptions options, Gson gson, List<LeadMatcher> leadMatchers, LeadyMetrics leadyMetrics) {
+        Path snapshotFile = options.getSnapshotFile() != null ? Paths.get(options.getSnapshotFile()) : null;
+        CompactLeadStore snapshotLeadStore = snapshotFile != null ? LeadSnapshot.loadIfExists(snapshotFile) : null;
+        MVStoreLeadStore fileLeadStore = options.getStoreFile() != null ? openLeadStore(options) : null;
+        LeadStore baseLeadStore = fileLeadStore != null ? fileLeadStore : snapshotLeadStore != null ? snapshotLeadStore : createLeadStore(options);
+        BloomFilterLeadStore.Counters keyFilterCounters = options.getKeyFilter() > 0 ? new BloomFilterLeadStore.Counters() : null;
+        LeadStore leadStore = withKeyFilter(options, baseLeadStore, keyFilterCounters);
+        LeadStore workingLeadStore = leadMatchers.isEmpty() ? leadStore : new MatchingLeadStore(leadStore, leadMatchers);
+        LeadUpdateReporter leadUpdateReporter = createLeadUpdateReporter(options);
+        LeadyServer leadyServer = leadyMetrics != null
+                ? new LeadyServer(gson, leadyMetrics.instrument(new LeadChangeFinder()), leadyMetrics.instrument(leadUpdateReporter), leadyMetrics.instrument(workingLeadStore))
+                : new LeadyServer(gson, new LeadChangeFinder(), leadUpdateReporter, workingLeadStore);
+        leadyServer.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), options.getPort()), options.getServerThreads());
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            leadyServer.close();
+            if (snapshotLeadStore != null) {
+                LeadSnapshot.save(snapshotLeadStore, snapshotFile);
+            }
+            if (fileLeadStore != null) {
+                fileLeadStore.close();
+            }
+            leadUpdateReporter.close();
+            if (keyFilterCounters != null) {
+                System.err.println(keyFilterCounters.summarize());
+            }
+            finishLeadyMetrics(options, leadyMetrics);
+        }, "leady-server-shutdown"));
+        System.out.println("Listening on port " + leadyServer.getPort());
+    }
+
+    /**
+     * Metrics are only collected when they're going somewhere, so the hot paths aren't instrumented
+     * otherwise.
+     */
+    private static LeadyMetrics createLeadyMetrics(LeadyOptions options) {
+        if (options.getMetricsFile() == null && !options.isJmx()) {
+            return null;
+        }
+        LeadyMetrics leadyMetrics = new LeadyMetrics();
+        leadyMetrics.takeMemorySnapshot("start");
+        if (options.isJmx()) {
+            leadyMetrics.registerMBean();
+        }
+        return leadyMetrics;
+    }
+
+    private static void finishLeadyMetrics(LeadyOptions options, LeadyMetrics leadyMetrics) {
+        if (leadyMetrics == null) {
+            return;
+        }
+        leadyMetrics.takeMemorySnapshot("end");
+        if (options.getMetricsFile() != null) {
+            leadyMetrics.writeSummary(Paths.get(options.getMetricsFile()));
+        }
+    }
+
+    private static LeadReader createLeadReader(LeadyOptions options, String inputFile, Gson gson, LeadyMetrics leadyMetrics) {
+        LeadReader leadReader = createFormatLeadReader(options, inputFile, gson);
+        if (leadyMetrics != null) {
+            // inside the prefetching reader, so only the parser thread's time is counted
+            leadReader = leadyMetrics.instrument(leadReader);
+        }
+        if (options.getReadAheadBatches() > 0) {
+            return new PrefetchingLeadReader(leadReader, options.getReadAheadBatches());
+        }
+        return leadReader;
+    }
+
+    private static LeadReader createFormatLeadReader(LeadyOptions options, String inputFile, Gson gson) {
+        return createFormatLeadReader(options.getReader() != null ? options.getReader() : formatOf(inputFile), gson);
+    }
+
+    private static LeadReader createFormatLeadReader(String reader, Gson gson) {
+        switch (reader) {
+            case "json":
+                return new JsonLeadReader(gson);
+            case "mapped":
+                return new MappedLeadReader();
+            case "ndjson":
+                return new NdjsonLeadReader(gson);
+            default:
+                throw new IllegalArgumentException("Unknown reader " + reader);
+        }
+    }
+
+    private static LeadWriter createLeadWriter(LeadyOptions options, String outputFile, Gson gson, LeadyMetrics leadyMetrics) {
+        LeadWriter leadWriter = createFormatLeadWriter(options, outputFile, gson);
+        if (options.getPartition() != null) {
+            leadWriter = new PartitionedLeadWriter(leadWriter, PartitionedLeadWriter.Partitioning.parse(options.getPartition()), options.getPartitionThreads());
+        }
+        if (options.getDeltaFile() != null) {
+            // the previous output was written the same way as this one
+            String previousOutputFile = options.getDeltaBaseFile() != null ? options.getDeltaBaseFile() : outputFile;
+            String previousFormat = options.getWriter() != null ? options.getWriter() : formatOf(previousOutputFile);
+            LeadReader previousLeadReader = createFormatLeadReader(previousFormat, gson);
+            if (options.getReadAheadBatches() > 0) {
+                // parsed on a background thread while the new output is serialized
+                previousLeadReader = new PrefetchingLeadReader(previousLeadReader, options.getReadAheadBatches());
+            }
+            leadWriter = new DeltaLeadWriter(
+                    leadWriter,
+                    previousLeadReader,
+                    options.getDeltaBaseFile() != null ? Paths.get(options.getDeltaBaseFile()) : null,
+                    Paths.get(options.getDeltaFile()),
+                    new LeadChangeFinder(),
+                    gson
+            );
+        }
+        return leadyMetrics != null ? leadyMetrics.instrument(leadWriter) : leadWriter;
+    }
+
+    private static LeadWriter createFormatLeadWriter(LeadyOptions options, String outputFile, Gson gson) {
+        String writer = options.getWriter() != null ? options.getWriter() : formatOf(outputFile);
+        switch (writer) {
+            case "json":
+                return new JsonLeadWriter(gson, options.getOutputBufferSize(), options.getCompression());
+            case "ndjson":
+                return new NdjsonLeadWriter(gson, options.getOutputBufferSize(), options.getCompression());
+            default:
+                throw new IllegalArgumentException("Unknown writer " + writer);
+        }
+    }
+
+    private static String formatOf(String fileName) {
+        String lowerCaseFileName = Compression.stripExtension(fileName).toLowerCase();
+        return lowerCaseFileName.endsWith(".ndjson") || lowerCaseFileName.endsWith(".jsonl") ? "ndjson" : "json";
+    }
+
+    private static LeadUpdateReporter createLeadUpdateReporter(LeadyOptions options) {
+        return createLeadUpdateReporter(options, options.getAuditLogFile() != null
+                ? new BinaryLeadUpdateReporter(Paths.get(options.getAuditLogFile()))
+                : new StandardOutLeadUpdateReporter());
+    }
+
+    private static LeadUpdateReporter createLeadUpdateReporter(LeadyOptions options, LeadUpdateReporter leadUpdateReporter) {
+        if (options.getReportQueueSize() > 0) {
+            return new AsyncLeadUpdateReporter(
+                    leadUpdateReporter,
+                    options.getReportQueueSize(),
+                    AsyncLeadUpdateReporter.DEFAULT_BATCH_SIZE,
+                    options.getReportBackPressure()
+            );
+        }
+        return leadUpdateReporter;
+    }
+
+    private static LeadChangeFinder createLeadChangeFinder(LeadyMetrics leadyMetrics) {
+        LeadChangeFinder leadChangeFinder = new LeadChangeFinder();
+        return leadyMetrics != null ? leadyMetrics.instrument(leadChangeFinder) : leadChangeFinder;
+    }
+
+    private static LeadStore createLeadStore(LeadyOptions options) {
+        switch (options.getLeadStore()) {
+            case "compact":
+                return new CompactLeadStore();
+            case "columnar":
+                return new ColumnarLeadStore();
+            default:
+                throw new IllegalArgumentException("Unknown lead store " + options.getLeadStore());
+        }
+    }
+
+    private static LeadStore withKeyFilter(LeadyOptions options, LeadStore leadStore, BloomFilterLeadStore.Counters keyFilterCounters) {
+        return options.getKeyFilter() > 0 ? new BloomFilterLeadStore(leadStore, options.getKeyFilter(), keyFilterCounters) : leadStore;
+    }
+
+    private static MVStoreLeadStore openLeadStore(LeadyOptions options) {
+        int cacheMegabytes = (int) Math.max(1, options.getStoreCacheSize() >> 20);
+        return MVStoreLeadStore.open(Paths.get(options.getStoreFile()), cacheMegabytes);
+    }
+
+    private static List<LeadMatcher> createLeadMatchers(LeadyOptions options) {
+        if (options.getMatch() == null || options.getMatch().isBlank()) {
+            return List.of();
+        }
+        List<LeadMatcher> leadMatchers = new ArrayList<>();
+        for (String match : options.getMatch().split(",")) {
+            switch (match.strip()) {
+                case "email":
+                    leadMatchers.add(new EmailLeadMatcher());
+                    break;
+                case "name-address":
+                    leadMatchers.add(new NameAddressLeadMatcher(options.getMatchThreshold()));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown matcher " + match);
+            }
+        }
+        return leadMatchers;
+    }
+
+    /**
+     * The pool a parallel run deduplicates on, or null for a sequential one. The caller shuts it down
+     * once the run is over, so its threads don't outlive it, e.g. across the jobs of a batch.
+     */
+    private static ForkJoinPool createForkJoinPool(LeadyOptions options) {
+        return options.getParallelism() > 1 ? new ForkJoinPool(options.getParallelism()) : null;
+    }
+
+    private static void shutdown(ForkJoinPool forkJoinPool) {
+        if (forkJoinPool != null) {
+            forkJoinPool.shutdown();
+        }
+    }
+
+    private static LeadDeduplicator createLeadDeduplicator(LeadyOptions options,
+                                                           ForkJoinPool forkJoinPool,
+                                                           LeadChangeFinder leadChangeFinder,
+                                                           LeadUpdateReporter leadUpdateReporter,
+                                                           List<LeadMatcher> leadMatchers,
+                                                           BloomFilterLeadStore.Counters keyFilterCounters,
+                                                           LeadyMetrics leadyMetrics) {
+        if (forkJoinPool != null) {
+            return new ParallelLeadDeduplicator(leadChangeFinder, leadUpdateReporter, forkJoinPool, leadyMetrics);
+        }
+        Supplier<LeadStore> leadStoreFactory = leadMatchers.isEmpty()
+                ? () -> withKeyFilter(options, createLeadStore(options), keyFilterCounters)
+                : () -> new MatchingLeadStore(withKeyFilter(options, createLeadStore(options), keyFilterCounters), leadMatchers);
+        return new LeadDeduplicator(leadChangeFinder, leadUpdateReporter, leadStoreFactory, leadyMetrics);
     }
 }
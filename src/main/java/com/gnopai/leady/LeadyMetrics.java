@@ -0,0 +1,464 @@
+package com.gnopai.leady;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static com.gnopai.leady.LeadStore.NO_LEAD;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterator.ORDERED;
+import static java.util.Spliterators.spliteratorUnknownSize;
+
+/**
+ * Counters and timings for a run. The {@code instrument} methods wrap the reader, writer, reporter,
+ * change finder and store so they count into these metrics, and {@link LeadDeduplicator} times its
+ * deduplicate and sort phases when given them. Nothing is counted unless something is instrumented,
+ * and the hot paths only add to uncontended {@link LongAdder}s, so the metrics can stay on.
+ * <p>
+ * The metrics can be written out as a JSON summary file, and read live over JMX once registered.
+ */
+public class LeadyMetrics implements LeadyMetricsMXBean {
+    public static final String MBEAN_NAME = "com.gnopai.leady:type=LeadyMetrics";
+
+    private static final Gson SUMMARY_GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private final LongAdder leadsRead = new LongAdder();
+    private final LongAdder leadsAdded = new LongAdder();
+    private final LongAdder leadsChanged = new LongAdder();
+    private final LongAdder leadsIgnored = new LongAdder();
+    private final LongAdder idMatches = new LongAdder();
+    private final LongAdder emailMatches = new LongAdder();
+    private final LongAdder matcherMatches = new LongAdder();
+    private final PhaseTimer parseTimer = new PhaseTimer();
+    private final PhaseTimer deduplicateTimer = new PhaseTimer();
+    private final PhaseTimer diffTimer = new PhaseTimer();
+    private final PhaseTimer sortTimer = new PhaseTimer();
+    private final PhaseTimer writeTimer = new PhaseTimer();
+    private final Map<String, MemorySnapshot> memorySnapshots = new LinkedHashMap<>();
+
+    public LeadReader instrument(LeadReader leadReader) {
+        return new MetricsLeadReader(leadReader);
+    }
+
+    public LeadWriter instrument(LeadWriter leadWriter) {
+        return new MetricsLeadWriter(leadWriter);
+    }
+
+    public LeadUpdateReporter instrument(LeadUpdateReporter leadUpdateReporter) {
+        return new MetricsLeadUpdateReporter(leadUpdateReporter);
+    }
+
+    public LeadChangeFinder instrument(LeadChangeFinder leadChangeFinder) {
+        return new MetricsLeadChangeFinder(leadChangeFinder);
+    }
+
+    public LeadStore instrument(LeadStore leadStore) {
+        return new MetricsLeadStore(leadStore);
+    }
+
+    /**
+     * Records the JVM's memory figures under the given label, replacing any earlier snapshot with it.
+     */
+    public void takeMemorySnapshot(String label) {
+        MemorySnapshot memorySnapshot = MemorySnapshot.capture();
+        synchronized (memorySnapshots) {
+            memorySnapshots.put(label, memorySnapshot);
+        }
+    }
+
+    /**
+     * Parsing, timed once per input file read, excluding time the consumer spends between leads.
+     */
+    public PhaseTimer getParseTimer() {
+        return parseTimer;
+    }
+
+    /**
+     * Applying leads to the store, timed once per deduplicator pass. Unless parsing runs ahead on its
+     * own thread, this includes the parse time.
+     */
+    public PhaseTimer getDeduplicateTimer() {
+        return deduplicateTimer;
+    }
+
+    /**
+     * Finding the changed fields of a replaced lead, timed per replacement.
+     */
+    public PhaseTimer getDiffTimer() {
+        return diffTimer;
+    }
+
+    public PhaseTimer getSortTimer() {
+        return sortTimer;
+    }
+
+    /**
+     * Writing the output, timed once per file, including producing the leads being written.
+     */
+    public PhaseTimer getWriteTimer() {
+        return writeTimer;
+    }
+
+    @Override
+    public long getLeadsRead() {
+        return leadsRead.sum();
+    }
+
+    @Override
+    public long getLeadsAdded() {
+        return leadsAdded.sum();
+    }
+
+    @Override
+    public long getLeadsChanged() {
+        return leadsChanged.sum();
+    }
+
+    @Override
+    public long getLeadsIgnored() {
+        return leadsIgnored.sum();
+    }
+
+    @Override
+    public long getIdMatches() {
+        return idMatches.sum();
+    }
+
+    @Override
+    public long getEmailMatches() {
+        return emailMatches.sum();
+    }
+
+    @Override
+    public long getMatcherMatches() {
+        return matcherMatches.sum();
+    }
+
+    @Override
+    public long getParseMillis() {
+        return parseTimer.getTotalTime(TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public long getDeduplicateMillis() {
+        return deduplicateTimer.getTotalTime(TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public long getDiffCount() {
+        return diffTimer.getCount();
+    }
+
+    @Override
+    public long getDiffMillis() {
+        return diffTimer.getTotalTime(TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public long getSortMillis() {
+        return sortTimer.getTotalTime(TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public long getWriteMillis() {
+        return writeTimer.getTotalTime(TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public String getSummaryJson() {
+        return SUMMARY_GSON.toJson(summarize());
+    }
+
+    public Map<String, Object> summarize() {
+        Map<String, Object> leads = new LinkedHashMap<>();
+        leads.put("read", getLeadsRead());
+        leads.put("added", getLeadsAdded());
+        leads.put("changed", getLeadsChanged());
+        leads.put("ignored", getLeadsIgnored());
+        leads.put("idMatches", getIdMatches());
+        leads.put("emailMatches", getEmailMatches());
+        leads.put("matcherMatches", getMatcherMatches());
+
+        Map<String, Object> phases = new LinkedHashMap<>();
+        phases.put("parse", parseTimer.summarize());
+        phases.put("deduplicate", deduplicateTimer.summarize());
+        phases.put("diff", diffTimer.summarize());
+        phases.put("sort", sortTimer.summarize());
+        phases.put("write", writeTimer.summarize());
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("leads", leads);
+        summary.put("phases", phases);
+        synchronized (memorySnapshots) {
+            summary.put("memory", new LinkedHashMap<>(memorySnapshots));
+        }
+        return summary;
+    }
+
+    public void writeSummary(Path path) {
+        try {
+            Path directory = path.toAbsolutePath().getParent();
+            if (directory != null) {
+                Files.createDirectories(directory);
+            }
+            try (Writer writer = Files.newBufferedWriter(path, UTF_8)) {
+                SUMMARY_GSON.toJson(summarize(), writer);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write metrics to " + path, e);
+        }
+    }
+
+    public void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(MBEAN_NAME));
+        } catch (JMException e) {
+            throw new RuntimeException("Failed to register metrics MBean " + MBEAN_NAME, e);
+        }
+    }
+
+    private class MetricsLeadReader implements LeadReader {
+        private final LeadReader delegate;
+
+        MetricsLeadReader(LeadReader delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Stream<Lead> readLeads(Path path) {
+            Stream<Lead> leads = delegate.readLeads(path);
+            TimedIterator timedIterator = new TimedIterator(leads.iterator());
+            return StreamSupport.stream(spliteratorUnknownSize(timedIterator, ORDERED | NONNULL), false)
+                    .onClose(() -> {
+                        timedIterator.finish();
+                        leads.close();
+                    });
+        }
+    }
+
+    /**
+     * Sums the time spent inside the delegate in a plain field, and records it once at the end. Each
+     * lead is timed from the start of {@code hasNext} to the end of {@code next}, which callers make
+     * back to back, so there's only one clock read on either side of it.
+     */
+    private class TimedIterator implements Iterator<Lead> {
+        private static final long NOT_STARTED = Long.MIN_VALUE;
+
+        private final Iterator<Lead> delegate;
+        private long leadStartNanos = NOT_STARTED;
+        private long parseNanos;
+        private long leadCount;
+        private boolean finished;
+
+        TimedIterator(Iterator<Lead> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (leadStartNanos == NOT_STARTED) {
+                leadStartNanos = System.nanoTime();
+            }
+            boolean hasNext = delegate.hasNext();
+            if (!hasNext) {
+                parseNanos += System.nanoTime() - leadStartNanos;
+                leadStartNanos = NOT_STARTED;
+                finish();
+            }
+            return hasNext;
+        }
+
+        @Override
+        public Lead next() {
+            if (leadStartNanos == NOT_STARTED) {
+                leadStartNanos = System.nanoTime();
+            }
+            try {
+                Lead lead = delegate.next();
+                leadCount++;
+                return lead;
+            } finally {
+                parseNanos += System.nanoTime() - leadStartNanos;
+                leadStartNanos = NOT_STARTED;
+            }
+        }
+
+        void finish() {
+            if (!finished) {
+                finished = true;
+                parseTimer.record(parseNanos);
+                leadsRead.add(leadCount);
+            }
+        }
+    }
+
+    private class MetricsLeadWriter implements LeadWriter {
+        private final LeadWriter delegate;
+
+        MetricsLeadWriter(LeadWriter delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void writeLeads(Iterable<Lead> leads, Path path) throws IOException {
+            long startNanos = System.nanoTime();
+            try {
+                delegate.writeLeads(leads, path);
+            } finally {
+                writeTimer.recordSince(startNanos);
+            }
+        }
+    }
+
+    private class MetricsLeadUpdateReporter implements LeadUpdateReporter {
+        private final LeadUpdateReporter delegate;
+
+        MetricsLeadUpdateReporter(LeadUpdateReporter delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void reportLeadAdded(Lead lead) {
+            leadsAdded.increment();
+            delegate.reportLeadAdded(lead);
+        }
+
+        @Override
+        public void reportLeadChanged(LeadChange leadChange) {
+            leadsChanged.increment();
+            delegate.reportLeadChanged(leadChange);
+        }
+
+        @Override
+        public void reportLeadIgnored(Lead lead) {
+            leadsIgnored.increment();
+            delegate.reportLeadIgnored(lead);
+        }
+
+        @Override
+        public void flush() {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+    }
+
+    private class MetricsLeadChangeFinder extends LeadChangeFinder {
+        private final LeadChangeFinder delegate;
+
+        MetricsLeadChangeFinder(LeadChangeFinder delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public LeadChange findLeadChanges(Lead oldLead, Lead newLead) {
+            long startNanos = System.nanoTime();
+            try {
+                return delegate.findLeadChanges(oldLead, newLead);
+            } finally {
+                diffTimer.recordSince(startNanos);
+            }
+        }
+    }
+
+    private class MetricsLeadStore implements LeadStore {
+        private final LeadStore delegate;
+
+        MetricsLeadStore(LeadStore delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int findLeadById(String id) {
+            int handle = delegate.findLeadById(id);
+            if (handle != NO_LEAD) {
+                idMatches.increment();
+            }
+            return handle;
+        }
+
+        @Override
+        public int findLeadByEmail(String email) {
+            int handle = delegate.findLeadByEmail(email);
+            if (handle != NO_LEAD) {
+                emailMatches.increment();
+            }
+            return handle;
+        }
+
+        @Override
+        public int findMatchingLead(Lead lead) {
+            int handle = delegate.findMatchingLead(lead);
+            if (handle != NO_LEAD) {
+                matcherMatches.increment();
+            }
+            return handle;
+        }
+
+        @Override
+        public Lead getLead(int handle) {
+            return delegate.getLead(handle);
+        }
+
+        @Override
+        public boolean isEnteredAfter(int handle, ZonedDateTime entryDate) {
+            return delegate.isEnteredAfter(handle, entryDate);
+        }
+
+        @Override
+        public int addLead(Lead lead) {
+            return delegate.addLead(lead);
+        }
+
+        @Override
+        public void updateLead(int handle, Lead lead) {
+            delegate.updateLead(handle, lead);
+        }
+
+        @Override
+        public int size() {
+            return delegate.size();
+        }
+
+        @Override
+        public List<Lead> getLeads() {
+            return delegate.getLeads();
+        }
+
+        @Override
+        public List<Lead> getSortedLeads() {
+            return delegate.getSortedLeads();
+        }
+
+        @Override
+        public void forEachId(Consumer<String> consumer) {
+            delegate.forEachId(consumer);
+        }
+
+        @Override
+        public void forEachEmail(Consumer<String> consumer) {
+            delegate.forEachEmail(consumer);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.gnopai.leady;
+
+/**
+ * The JMX view of {@link LeadyMetrics}, registered as {@value LeadyMetrics#MBEAN_NAME}. Times are in
+ * milliseconds.
+ */
+public interface LeadyMetricsMXBean {
+
+    long getLeadsRead();
+
+    long getLeadsAdded();
+
+    long getLeadsChanged();
+
+    long getLeadsIgnored();
+
+    long getIdMatches();
+
+    long getEmailMatches();
+
+    long getMatcherMatches();
+
+    long getParseMillis();
+
+    long getDeduplicateMillis();
+
+    long getDiffCount();
+
+    long getDiffMillis();
+
+    long getSortMillis();
+
+    long getWriteMillis();
+
+    /**
+     * Everything above, plus histograms and memory snapshots, in the form of the summary file.
+     */
+    String getSummaryJson();
+}
@@ -0,0 +1,198 @@
+package com.gnopai.leady;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Command line options. The first two positional arguments are the input and output files, and
+ * everything else is given as {@code --name=value} flags.
+ */
+@Value
+@Builder
+public class LeadyOptions {
+    @Builder.Default String inputFile = "src/main/resources/sample_leads.json";
+    @Builder.Default String outputFile = "out/deduped_leads.json";
+    // null picks the format from the file extension
+    String reader;
+    String writer;
+    // null compresses the output if its file name ends in .gz; compressed input is always detected
+    Compression compression;
+    @Builder.Default int readAheadBatches = 16;
+    boolean stageStats;
+    String metricsFile;
+    boolean jmx;
+    @Builder.Default int outputBufferSize = JsonLeadWriter.DEFAULT_BUFFER_SIZE;
+    @Builder.Default int parallelism = 1;
+    @Builder.Default long memoryBudget = 0;
+    @Builder.Default String tempDirectory = System.getProperty("java.io.tmpdir");
+    @Builder.Default int reportQueueSize = AsyncLeadUpdateReporter.DEFAULT_CAPACITY;
+    @Builder.Default AsyncLeadUpdateReporter.BackPressure reportBackPressure = AsyncLeadUpdateReporter.BackPressure.BLOCK;
+    String auditLogFile;
+    // also write what changed since the previous output, which defaults to the output file's current contents
+    String deltaFile;
+    String deltaBaseFile;
+    // split the output into part files plus a manifest, e.g. "rows:1000000", "size:256m" or "date:day"
+    String partition;
+    @Builder.Default int partitionThreads = Runtime.getRuntime().availableProcessors();
+    // how sequential runs and the server hold leads in memory: "compact" or "columnar"
+    @Builder.Default String leadStore = "compact";
+    // false-positive rate of a Bloom filter in front of the store's id and email lookups; 0 for none
+    double keyFilter;
+    String snapshotFile;
+    String storeFile;
+    @Builder.Default long storeCacheSize = MVStoreLeadStore.DEFAULT_CACHE_MEGABYTES << 20;
+    // comma-separated matchers to try after the exact id and email match, such as "email,name-address"
+    String match;
+    @Builder.Default double matchThreshold = NameAddressLeadMatcher.DEFAULT_THRESHOLD;
+    @Builder.Default int port = 0;
+    @Builder.Default int serverThreads = Runtime.getRuntime().availableProcessors();
+    // a manifest file or a glob of input files, in place of the input and output files
+    String batch;
+    @Builder.Default int batchThreads = Runtime.getRuntime().availableProcessors();
+    @Builder.Default String batchOutputDirectory = "out";
+    String batchSummaryFile;
+
+    public static LeadyOptions parse(String... args) {
+        LeadyOptionsBuilder builder = builder();
+        int positionalIndex = 0;
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                setPositional(builder, positionalIndex++, arg);
+                continue;
+            }
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            setFlag(builder, arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return builder.build();
+    }
+
+    private static void setPositional(LeadyOptionsBuilder builder, int index, String value) {
+        switch (index) {
+            case 0:
+                builder.inputFile(value);
+                break;
+            case 1:
+                builder.outputFile(value);
+                break;
+            default:
+                throw new IllegalArgumentException("Unexpected argument " + value);
+        }
+    }
+
+    private static void setFlag(LeadyOptionsBuilder builder, String name, String value) {
+        switch (name) {
+            case "reader":
+                builder.reader(value);
+                break;
+            case "writer":
+                builder.writer(value);
+                break;
+            case "compression":
+                builder.compression(Compression.valueOf(value.toUpperCase()));
+                break;
+            case "read-ahead":
+                builder.readAheadBatches(Integer.parseInt(value));
+                break;
+            case "stage-stats":
+                builder.stageStats(Boolean.parseBoolean(value));
+                break;
+            case "metrics":
+                builder.metricsFile(value);
+                break;
+            case "jmx":
+                builder.jmx(Boolean.parseBoolean(value));
+                break;
+            case "output-buffer-size":
+                builder.outputBufferSize(Integer.parseInt(value));
+                break;
+            case "parallelism":
+                builder.parallelism(Integer.parseInt(value));
+                break;
+            case "memory-budget":
+                builder.memoryBudget(parseSize(value));
+                break;
+            case "temp-dir":
+                builder.tempDirectory(value);
+                break;
+            case "report-queue-size":
+                builder.reportQueueSize(Integer.parseInt(value));
+                break;
+            case "report-back-pressure":
+                builder.reportBackPressure(AsyncLeadUpdateReporter.BackPressure.valueOf(value.toUpperCase()));
+                break;
+            case "audit-log":
+                builder.auditLogFile(value);
+                break;
+            case "delta":
+                builder.deltaFile(value);
+                break;
+            case "delta-base":
+                builder.deltaBaseFile(value);
+                break;
+            case "partition":
+                builder.partition(value);
+                break;
+            case "partition-threads":
+                builder.partitionThreads(Integer.parseInt(value));
+                break;
+            case "lead-store":
+                builder.leadStore(value);
+                break;
+            case "key-filter":
+                builder.keyFilter(Double.parseDouble(value));
+                break;
+            case "snapshot":
+                builder.snapshotFile(value);
+                break;
+            case "store":
+                builder.storeFile(value);
+                break;
+            case "store-cache":
+                builder.storeCacheSize(parseSize(value));
+                break;
+            case "match":
+                builder.match(value);
+                break;
+            case "match-threshold":
+                builder.matchThreshold(Double.parseDouble(value));
+                break;
+            case "port":
+                builder.port(Integer.parseInt(value));
+                break;
+            case "server-threads":
+                builder.serverThreads(Integer.parseInt(value));
+                break;
+            case "batch":
+                builder.batch(value);
+                break;
+            case "batch-threads":
+                builder.batchThreads(Integer.parseInt(value));
+                break;
+            case "batch-output-dir":
+                builder.batchOutputDirectory(value);
+                break;
+            case "batch-summary":
+                builder.batchSummaryFile(value);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown option --" + name);
+        }
+    }
+
+    static long parseSize(String value) {
+        String lowerCaseValue = value.toLowerCase();
+        long multiplier = 1;
+        if (lowerCaseValue.endsWith("k")) {
+            multiplier = 1L << 10;
+        } else if (lowerCaseValue.endsWith("m")) {
+            multiplier = 1L << 20;
+        } else if (lowerCaseValue.endsWith("g")) {
+            multiplier = 1L << 30;
+        }
+        String number = multiplier == 1 ? lowerCaseValue : lowerCaseValue.substring(0, lowerCaseValue.length() - 1);
+        return Long.parseLong(number) * multiplier;
+    }
+}
@@ -0,0 +1,201 @@
+package com.gnopai.leady;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.Value;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Keeps a warm deduplicator and lead store resident and takes lead batches over HTTP.
+ * {@code POST /leads} with a {@code {"leads": [...]}} body deduplicates the batch against everything
+ * received so far and responds with the updates it made, in order. {@code GET /leads} responds with
+ * the current deduplicated leads, in the same form and order as the output file of a one-shot run.
+ * <p>
+ * Connections are multiplexed by the JDK HTTP server's selector thread and handled on a fixed pool.
+ * Batches are parsed concurrently but applied one at a time, so the store always ends up as if the
+ * batches had been concatenated into one input file, in the order they were applied.
+ */
+public class LeadyServer implements Closeable {
+    static final String LEADS_PATH = "/leads";
+
+    private final Gson gson;
+    private final JsonLeadReader jsonLeadReader;
+    private final LeadChangeFinder leadChangeFinder;
+    private final LeadUpdateReporter leadUpdateReporter;
+    private final LeadStore leadStore;
+    private final Object leadStoreLock = new Object();
+    private HttpServer httpServer;
+    private ExecutorService executor;
+
+    /**
+     * @param leadUpdateReporter also receives every update, in the order batches are applied, and is
+     *                           flushed after each batch
+     */
+    LeadyServer(Gson gson, LeadChangeFinder leadChangeFinder, LeadUpdateReporter leadUpdateReporter, LeadStore leadStore) {
+        this.gson = gson;
+        this.jsonLeadReader = new JsonLeadReader(gson);
+        this.leadChangeFinder = leadChangeFinder;
+        this.leadUpdateReporter = leadUpdateReporter;
+        this.leadStore = leadStore;
+    }
+
+    public void start(InetSocketAddress address, int threads) {
+        try {
+            httpServer = HttpServer.create(address, 0);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to listen on " + address, e);
+        }
+        executor = Executors.newFixedThreadPool(threads);
+        httpServer.setExecutor(executor);
+        httpServer.createContext(LEADS_PATH, this::handleLeads);
+        httpServer.start();
+    }
+
+    public int getPort() {
+        return httpServer.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting connections and waits briefly for batches in flight, so the store can be safely
+     * saved afterwards.
+     */
+    @Override
+    public void close() {
+        httpServer.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void handleLeads(HttpExchange exchange) {
+        try {
+            if (!LEADS_PATH.equals(exchange.getRequestURI().getPath())) {
+                sendJson(exchange, 404, Map.of("error", "Not found"));
+            } else if ("POST".equals(exchange.getRequestMethod())) {
+                postLeads(exchange);
+            } else if ("GET".equals(exchange.getRequestMethod())) {
+                getLeads(exchange);
+            } else {
+                exchange.getResponseHeaders().set("Allow", "GET, POST");
+                sendJson(exchange, 405, Map.of("error", "Method not allowed"));
+            }
+        } catch (RuntimeException e) {
+            if (exchange.getResponseCode() == -1) {
+                sendJson(exchange, 500, Map.of("error", String.valueOf(e.getMessage())));
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void postLeads(HttpExchange exchange) {
+        List<Lead> batch;
+        try (Stream<Lead> leads = jsonLeadReader.readLeads(new InputStreamReader(exchange.getRequestBody(), UTF_8))) {
+            batch = leads.collect(toList());
+        } catch (JsonParseException e) {
+            sendJson(exchange, 400, Map.of("error", "Malformed lead batch: " + e.getMessage()));
+            return;
+        }
+        for (Lead lead : batch) {
+            if (lead.getId() == null || lead.getEntryDate() == null) {
+                // rejected up front, since these would fail part way through the batch
+                sendJson(exchange, 400, Map.of("error", "Every lead needs an _id and an entryDate"));
+                return;
+            }
+        }
+
+        BatchUpdateRecorder batchUpdateRecorder = new BatchUpdateRecorder(leadUpdateReporter);
+        synchronized (leadStoreLock) {
+            new LeadDeduplicator(leadChangeFinder, batchUpdateRecorder).processLeads(batch.stream(), leadStore);
+            // otherwise a buffering reporter would hold the updates until the server shuts down
+            leadUpdateReporter.flush();
+        }
+        sendJson(exchange, 200, new BatchResult(batchUpdateRecorder.updates));
+    }
+
+    private void getLeads(HttpExchange exchange) {
+        List<Lead> leads;
+        synchronized (leadStoreLock) {
+            leads = new ArrayList<>(leadStore.getLeads());
+        }
+        sendJson(exchange, 200, new LeadList(LeadSorter.sortLeads(leads)));
+    }
+
+    private void sendJson(HttpExchange exchange, int status, Object body) {
+        try {
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, 0);
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), UTF_8))) {
+                gson.toJson(body, writer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Value
+    static class BatchResult {
+        List<LeadUpdate> updates;
+    }
+
+    /**
+     * One update in a batch result: {@code lead} is set for added and ignored leads, and
+     * {@code change} for changed ones.
+     */
+    @Value
+    static class LeadUpdate {
+        String type;
+        Lead lead;
+        LeadChange change;
+    }
+
+    private static class BatchUpdateRecorder implements LeadUpdateReporter {
+        private final LeadUpdateReporter leadUpdateReporter;
+        private final List<LeadUpdate> updates = new ArrayList<>();
+
+        BatchUpdateRecorder(LeadUpdateReporter leadUpdateReporter) {
+            this.leadUpdateReporter = leadUpdateReporter;
+        }
+
+        @Override
+        public void reportLeadAdded(Lead lead) {
+            updates.add(new LeadUpdate("added", lead, null));
+            leadUpdateReporter.reportLeadAdded(lead);
+        }
+
+        @Override
+        public void reportLeadChanged(LeadChange leadChange) {
+            updates.add(new LeadUpdate("changed", null, leadChange));
+            leadUpdateReporter.reportLeadChanged(leadChange);
+        }
+
+        @Override
+        public void reportLeadIgnored(Lead lead) {
+            updates.add(new LeadUpdate("ignored", lead, null));
+            leadUpdateReporter.reportLeadIgnored(lead);
+        }
+    }
+}
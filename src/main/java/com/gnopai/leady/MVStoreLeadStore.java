@@ -0,0 +1,249 @@
+package com.gnopai.leady;
+
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A {@link LeadStore} kept in an MVStore file, the embedded B-tree store from H2. The leads and their
+ * id and email indexes live on disk with only a bounded cache of pages in memory, so the store can
+ * grow larger than the heap, and a later run can reopen the file to carry on from where this one
+ * left off, as with a snapshot. Changes are written out in the background as they build up, and in
+ * full on {@link #close()}, which also compacts the file.
+ * <p>
+ * Each lead is stored as one {@link BinaryEncoder} record, with its entry date as epoch seconds,
+ * nanoseconds and zone id. Null ids and emails are indexed like any other key, as in the other
+ * stores, but in a map of their own since MVStore keys can't be null.
+ */
+public class MVStoreLeadStore implements LeadStore, AutoCloseable {
+    public static final int DEFAULT_CACHE_MEGABYTES = 64;
+
+    // most time on close goes to moving live pages out of chunks left sparse by replaced leads
+    private static final long MAX_COMPACT_MILLIS = 5_000;
+
+    // id, email, first name, last name and address, ahead of the entry date in each record
+    private static final int STRING_FIELD_COUNT = 5;
+
+    private static final int NULL_ID = 0;
+    private static final int NULL_EMAIL = 1;
+
+    private final MVStore mvStore;
+    private final MVMap<Integer, byte[]> leads;
+    private final MVMap<String, Integer> leadHandlesById;
+    private final MVMap<String, Integer> leadHandlesByEmail;
+    private final MVMap<Integer, Integer> nullKeyLeadHandles;
+    private int leadCount;
+
+    private MVStoreLeadStore(MVStore mvStore) {
+        this.mvStore = mvStore;
+        this.leads = mvStore.openMap("leads");
+        this.leadHandlesById = mvStore.openMap("leadHandlesById");
+        this.leadHandlesByEmail = mvStore.openMap("leadHandlesByEmail");
+        this.nullKeyLeadHandles = mvStore.openMap("nullKeyLeadHandles");
+        this.leadCount = leads.size();
+    }
+
+    /**
+     * Opens the store in the given file, creating it if it doesn't exist yet.
+     */
+    public static MVStoreLeadStore open(Path file, int cacheMegabytes) {
+        try {
+            if (file.toAbsolutePath().getParent() != null) {
+                Files.createDirectories(file.toAbsolutePath().getParent());
+            }
+            MVStore mvStore = new MVStore.Builder()
+                    .fileName(file.toString())
+                    .cacheSize(cacheMegabytes)
+                    // the default of 1 MiB commits so often that rewritten index pages make up most of the file
+                    .autoCommitBufferSize(Math.max(1, cacheMegabytes / 4) << 10)
+                    .open();
+            // replaced leads are never read again, so old versions needn't be kept
+            mvStore.setVersionsToKeep(0);
+            return new MVStoreLeadStore(mvStore);
+        } catch (IOException | IllegalStateException e) {
+            throw new RuntimeException("Failed to open lead store " + file, e);
+        }
+    }
+
+    @Override
+    public int findLeadById(String id) {
+        return findLead(leadHandlesById, NULL_ID, id);
+    }
+
+    @Override
+    public int findLeadByEmail(String email) {
+        return findLead(leadHandlesByEmail, NULL_EMAIL, email);
+    }
+
+    private int findLead(MVMap<String, Integer> leadHandles, int nullKey, String key) {
+        Integer handle = key != null ? leadHandles.get(key) : nullKeyLeadHandles.get(nullKey);
+        return handle != null ? handle : NO_LEAD;
+    }
+
+    @Override
+    public Lead getLead(int handle) {
+        byte[] encodedLead = leads.get(handle);
+        return encodedLead != null ? decodeLead(encodedLead) : null;
+    }
+
+    @Override
+    public int addLead(Lead lead) {
+        int handle = leadCount++;
+        updateLead(handle, lead);
+        return handle;
+    }
+
+    @Override
+    public void updateLead(int handle, Lead lead) {
+        leads.put(handle, encodeLead(lead));
+        indexLead(leadHandlesById, NULL_ID, lead.getId(), handle);
+        indexLead(leadHandlesByEmail, NULL_EMAIL, lead.getEmail(), handle);
+    }
+
+    private void indexLead(MVMap<String, Integer> leadHandles, int nullKey, String key, int handle) {
+        if (key != null) {
+            leadHandles.put(key, handle);
+        } else {
+            nullKeyLeadHandles.put(nullKey, handle);
+        }
+    }
+
+    @Override
+    public int size() {
+        return leadCount;
+    }
+
+    /**
+     * A view that reads the leads from the store as it's iterated, rather than a copy.
+     */
+    @Override
+    public List<Lead> getLeads() {
+        return new AbstractList<>() {
+            @Override
+            public Lead get(int index) {
+                return getLead(index);
+            }
+
+            @Override
+            public int size() {
+                return leadCount;
+            }
+
+            @Override
+            public Iterator<Lead> iterator() {
+                Iterator<byte[]> encodedLeads = leads.values().iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return encodedLeads.hasNext();
+                    }
+
+                    @Override
+                    public Lead next() {
+                        return decodeLead(encodedLeads.next());
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Sorts on the entry dates alone, reading them from each record without decoding the rest of the
+     * lead, and returns a view that reads the leads back from the store in that order. Only a sort key
+     * and a position per lead are held in memory, unless a lead has no entry date or one outside the
+     * range of a sort key, in which case every lead is loaded and sorted as by the other stores.
+     */
+    @Override
+    public List<Lead> getSortedLeads() {
+        long[] keys = new long[leadCount];
+        // handles run from 0 with none missing, so the leads come out of the map in handle order
+        int handle = 0;
+        for (byte[] encodedLead : leads.values()) {
+            BinaryDecoder in = new BinaryDecoder(ByteBuffer.wrap(encodedLead));
+            for (int i = 0; i < STRING_FIELD_COUNT; i++) {
+                in.skipString();
+            }
+            if (in.readByte() == 0) {
+                return LeadStore.super.getSortedLeads();
+            }
+            try {
+                keys[handle++] = LeadSorter.sortKey(in.readZigZagLong(), in.readVarInt());
+            } catch (ArithmeticException e) {
+                return LeadStore.super.getSortedLeads();
+            }
+        }
+        return LeadSorter.sortedView(this::getLead, LeadSorter.sortOrder(keys, this::getLead));
+    }
+
+    /**
+     * Passes the ids in key order, reading them from the index a page at a time. A null id isn't
+     * included.
+     */
+    @Override
+    public void forEachId(Consumer<String> consumer) {
+        leadHandlesById.keySet().forEach(consumer);
+    }
+
+    /**
+     * Like {@link #forEachId(Consumer)}, for emails.
+     */
+    @Override
+    public void forEachEmail(Consumer<String> consumer) {
+        leadHandlesByEmail.keySet().forEach(consumer);
+    }
+
+    /**
+     * Writes out any changes and closes the file.
+     */
+    @Override
+    public void close() {
+        mvStore.close(MAX_COMPACT_MILLIS);
+    }
+
+    static byte[] encodeLead(Lead lead) {
+        BinaryEncoder out = new BinaryEncoder(128);
+        out.writeString(lead.getId());
+        out.writeString(lead.getEmail());
+        out.writeString(lead.getFirstName());
+        out.writeString(lead.getLastName());
+        out.writeString(lead.getAddress());
+        ZonedDateTime entryDate = lead.getEntryDate();
+        if (entryDate == null) {
+            out.writeByte(0);
+        } else {
+            out.writeByte(1);
+            out.writeZigZagLong(entryDate.toEpochSecond());
+            out.writeVarLong(entryDate.getNano());
+            out.writeString(entryDate.getZone().getId());
+        }
+        return out.toByteArray();
+    }
+
+    static Lead decodeLead(byte[] encodedLead) {
+        BinaryDecoder in = new BinaryDecoder(ByteBuffer.wrap(encodedLead));
+        Lead.LeadBuilder lead = Lead.builder()
+                .id(in.readString())
+                .email(in.readString())
+                .firstName(in.readString())
+                .lastName(in.readString())
+                .address(in.readString());
+        if (in.readByte() == 0) {
+            return lead.build();
+        }
+        long epochSecond = in.readZigZagLong();
+        int nano = in.readVarInt();
+        ZoneId zoneId = ZoneId.of(in.readString());
+        return lead.entryDate(ZonedDateTime.ofInstant(Instant.ofEpochSecond(epochSecond, nano), zoneId)).build();
+    }
+}
@@ -0,0 +1,516 @@
+package com.gnopai.leady;
+
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterator.ORDERED;
+import static java.util.Spliterators.spliteratorUnknownSize;
+
+/**
+ * Reads a {@code {"leads": [...]}} document by memory mapping the file and tokenizing the UTF-8 bytes
+ * directly, instead of decoding the whole file into chars first. Whitespace, unknown fields and
+ * everything outside the leads array are skipped over as bytes; only the values of the six lead
+ * fields become Strings. Files larger than a single mapping are read one window at a time.
+ * <p>
+ * Unlike {@link JsonLeadReader}, this only accepts strict JSON, not Gson's lenient extensions such as
+ * comments or unquoted strings.
+ */
+public class MappedLeadReader implements LeadReader {
+    static final long DEFAULT_WINDOW_SIZE = 1L << 30;
+
+    private final long windowSize;
+
+    public MappedLeadReader() {
+        this(DEFAULT_WINDOW_SIZE);
+    }
+
+    MappedLeadReader(long windowSize) {
+        this.windowSize = Math.min(windowSize, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Stream<Lead> readLeads(Path path) {
+        try {
+            if (Compression.isCompressed(path)) {
+                throw new IllegalArgumentException("Compressed files can't be memory mapped: " + path);
+            }
+            LeadIterator leadIterator = new LeadIterator(new MappedInput(FileChannel.open(path, READ), windowSize));
+            return StreamSupport.stream(spliteratorUnknownSize(leadIterator, ORDERED | NONNULL), false)
+                    .onClose(leadIterator::close);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Byte-at-a-time access to a file through a sliding window of mappings. Old windows are unmapped
+     * once they're garbage collected.
+     */
+    private static class MappedInput {
+        private static final int END_OF_INPUT = -1;
+
+        private final FileChannel channel;
+        private final long windowSize;
+        private final long size;
+        private MappedByteBuffer window;
+        private long windowStart;
+        private int windowLength;
+        private int index;
+
+        MappedInput(FileChannel channel, long windowSize) throws IOException {
+            this.channel = channel;
+            this.windowSize = windowSize;
+            this.size = channel.size();
+        }
+
+        int peek() throws IOException {
+            if (index == windowLength && !nextWindow()) {
+                return END_OF_INPUT;
+            }
+            return window.get(index) & 0xFF;
+        }
+
+        int read() throws IOException {
+            int next = peek();
+            if (next != END_OF_INPUT) {
+                index++;
+            }
+            return next;
+        }
+
+        long position() {
+            return windowStart + index;
+        }
+
+        /**
+         * Copies printable ASCII bytes other than quotes and backslashes, the bulk of most strings,
+         * straight out of the current window, stopping at the first other byte or the window's end.
+         */
+        int readPlainAscii(char[] target, int offset) {
+            int limit = Math.min(windowLength, index + target.length - offset);
+            int start = index;
+            while (index < limit) {
+                byte next = window.get(index);
+                if (next < 0x20 || next == '"' || next == '\\') {
+                    break;
+                }
+                target[offset + index - start] = (char) next;
+                index++;
+            }
+            return index - start;
+        }
+
+        private boolean nextWindow() throws IOException {
+            windowStart += windowLength;
+            index = 0;
+            if (windowStart >= size) {
+                windowLength = 0;
+                return false;
+            }
+            windowLength = (int) Math.min(windowSize, size - windowStart);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowLength);
+            return true;
+        }
+
+        void close() throws IOException {
+            window = null;
+            channel.close();
+        }
+    }
+
+    private static class LeadIterator implements Iterator<Lead> {
+        private final MappedInput in;
+        private char[] chars = new char[256];
+        private int charCount;
+        private boolean inLeadsArray;
+        private boolean firstLead;
+        private boolean finished;
+        private Lead nextLead;
+
+        LeadIterator(MappedInput in) {
+            this.in = in;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (nextLead != null) {
+                return true;
+            }
+            try {
+                if (!inLeadsArray && !finished) {
+                    openLeadsArray();
+                }
+                if (finished) {
+                    return false;
+                }
+                if (!nextArrayElement()) {
+                    skipRemainingFields();
+                    return false;
+                }
+                nextLead = readLead();
+                return true;
+            } catch (IOException e) {
+                throw new JsonIOException(e);
+            }
+        }
+
+        @Override
+        public Lead next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Lead lead = nextLead;
+            nextLead = null;
+            return lead;
+        }
+
+        void close() {
+            try {
+                in.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void openLeadsArray() throws IOException {
+            expect('{');
+            if (consumeIf('}')) {
+                finished = true;
+                return;
+            }
+            do {
+                readName();
+                boolean isLeadsField = charsEqual("leads");
+                expect(':');
+                if (isLeadsField && consumeIf('[')) {
+                    inLeadsArray = true;
+                    firstLead = true;
+                    return;
+                }
+                skipValue();
+            } while (consumeIf(','));
+            expect('}');
+            finished = true;
+        }
+
+        private boolean nextArrayElement() throws IOException {
+            if (consumeIf(']')) {
+                return false;
+            }
+            if (!firstLead) {
+                expect(',');
+            }
+            firstLead = false;
+            return true;
+        }
+
+        private void skipRemainingFields() throws IOException {
+            inLeadsArray = false;
+            finished = true;
+            while (consumeIf(',')) {
+                readName();
+                expect(':');
+                skipValue();
+            }
+            expect('}');
+        }
+
+        private Lead readLead() throws IOException {
+            String id = null;
+            String email = null;
+            String firstName = null;
+            String lastName = null;
+            String address = null;
+            ZonedDateTime entryDate = null;
+
+            expect('{');
+            if (consumeIf('}')) {
+                return new Lead(null, null, null, null, null, null);
+            }
+            do {
+                readName();
+                expect(':');
+                if (charsEqual("_id")) {
+                    id = readStringValue();
+                } else if (charsEqual("email")) {
+                    email = readStringValue();
+                } else if (charsEqual("firstName")) {
+                    firstName = readStringValue();
+                } else if (charsEqual("lastName")) {
+                    lastName = readStringValue();
+                } else if (charsEqual("address")) {
+                    address = readStringValue();
+                } else if (charsEqual("entryDate")) {
+                    String value = readStringValue();
+                    entryDate = value == null ? null : LeadTypeAdapter.parseEntryDate(value);
+                } else {
+                    skipValue();
+                }
+            } while (consumeIf(','));
+            expect('}');
+
+            return new Lead(id, email, firstName, lastName, address, entryDate);
+        }
+
+        private void readName() throws IOException {
+            expect('"');
+            readString();
+        }
+
+        /**
+         * Reads a string, number, boolean or null the way Gson reads a String field.
+         */
+        private String readStringValue() throws IOException {
+            int next = skipWhitespace();
+            if (next == '"') {
+                in.read();
+                readString();
+                return new String(chars, 0, charCount);
+            }
+            if (next == 'n') {
+                expectLiteral("null");
+                return null;
+            }
+            if (next == 't') {
+                expectLiteral("true");
+                return "true";
+            }
+            if (next == 'f') {
+                expectLiteral("false");
+                return "false";
+            }
+            if (next == '-' || (next >= '0' && next <= '9')) {
+                charCount = 0;
+                while (isNumberByte(in.peek())) {
+                    appendChar((char) in.read());
+                }
+                return new String(chars, 0, charCount);
+            }
+            throw syntaxError("Expected a string");
+        }
+
+        /**
+         * Decodes the rest of a string, after its opening quote, into {@link #chars}.
+         */
+        private void readString() throws IOException {
+            charCount = 0;
+            while (true) {
+                charCount += in.readPlainAscii(chars, charCount);
+                int next = in.read();
+                if (next == '"') {
+                    return;
+                } else if (next == '\\') {
+                    readEscape();
+                } else if (next < 0x80 && next >= 0) {
+                    appendChar((char) next);
+                } else if (next == MappedInput.END_OF_INPUT) {
+                    throw syntaxError("Unterminated string");
+                } else {
+                    readMultiByteCharacter(next);
+                }
+            }
+        }
+
+        private void readEscape() throws IOException {
+            int escaped = in.read();
+            switch (escaped) {
+                case '"':
+                case '\\':
+                case '/':
+                    appendChar((char) escaped);
+                    break;
+                case 'b':
+                    appendChar('\b');
+                    break;
+                case 'f':
+                    appendChar('\f');
+                    break;
+                case 'n':
+                    appendChar('\n');
+                    break;
+                case 'r':
+                    appendChar('\r');
+                    break;
+                case 't':
+                    appendChar('\t');
+                    break;
+                case 'u':
+                    int codeUnit = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digit = Character.digit(in.read(), 16);
+                        if (digit < 0) {
+                            throw syntaxError("Invalid unicode escape");
+                        }
+                        codeUnit = (codeUnit << 4) | digit;
+                    }
+                    appendChar((char) codeUnit);
+                    break;
+                default:
+                    throw syntaxError("Invalid escape sequence");
+            }
+        }
+
+        private void readMultiByteCharacter(int first) throws IOException {
+            int continuationBytes;
+            int codePoint;
+            int minimum;
+            if (first >= 0xC2 && first <= 0xDF) {
+                continuationBytes = 1;
+                codePoint = first & 0x1F;
+                minimum = 0x80;
+            } else if (first >= 0xE0 && first <= 0xEF) {
+                continuationBytes = 2;
+                codePoint = first & 0x0F;
+                minimum = 0x800;
+            } else if (first >= 0xF0 && first <= 0xF4) {
+                continuationBytes = 3;
+                codePoint = first & 0x07;
+                minimum = 0x10000;
+            } else {
+                throw syntaxError("Malformed UTF-8");
+            }
+            for (int i = 0; i < continuationBytes; i++) {
+                int next = in.read();
+                if ((next & 0xC0) != 0x80) {
+                    throw syntaxError("Malformed UTF-8");
+                }
+                codePoint = (codePoint << 6) | (next & 0x3F);
+            }
+            if (codePoint < minimum || codePoint > Character.MAX_CODE_POINT
+                    || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+                throw syntaxError("Malformed UTF-8");
+            }
+            if (codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                appendChar(Character.highSurrogate(codePoint));
+                appendChar(Character.lowSurrogate(codePoint));
+            } else {
+                appendChar((char) codePoint);
+            }
+        }
+
+        /**
+         * Skips any value without decoding it.
+         */
+        private void skipValue() throws IOException {
+            int next = skipWhitespace();
+            if (next == '"') {
+                in.read();
+                skipString();
+            } else if (next == '{' || next == '[') {
+                skipContainer();
+            } else if (next == MappedInput.END_OF_INPUT) {
+                throw syntaxError("Expected a value");
+            } else {
+                while (isLiteralByte(in.peek())) {
+                    in.read();
+                }
+            }
+        }
+
+        private void skipContainer() throws IOException {
+            int depth = 0;
+            do {
+                int next = in.read();
+                if (next == '{' || next == '[') {
+                    depth++;
+                } else if (next == '}' || next == ']') {
+                    depth--;
+                } else if (next == '"') {
+                    skipString();
+                } else if (next == MappedInput.END_OF_INPUT) {
+                    throw syntaxError("Unterminated " + (depth > 0 ? "object or array" : "value"));
+                }
+            } while (depth > 0);
+        }
+
+        private void skipString() throws IOException {
+            while (true) {
+                int next = in.read();
+                if (next == '"') {
+                    return;
+                } else if (next == '\\') {
+                    in.read();
+                } else if (next == MappedInput.END_OF_INPUT) {
+                    throw syntaxError("Unterminated string");
+                }
+            }
+        }
+
+        private void expect(char expected) throws IOException {
+            if (!consumeIf(expected)) {
+                throw syntaxError("Expected '" + expected + "'");
+            }
+        }
+
+        private boolean consumeIf(char expected) throws IOException {
+            if (skipWhitespace() == expected) {
+                in.read();
+                return true;
+            }
+            return false;
+        }
+
+        private void expectLiteral(String literal) throws IOException {
+            for (int i = 0; i < literal.length(); i++) {
+                if (in.read() != literal.charAt(i)) {
+                    throw syntaxError("Expected " + literal);
+                }
+            }
+        }
+
+        private int skipWhitespace() throws IOException {
+            int next = in.peek();
+            while (next == ' ' || next == '\n' || next == '\r' || next == '\t') {
+                in.read();
+                next = in.peek();
+            }
+            return next;
+        }
+
+        private boolean charsEqual(String name) {
+            if (charCount != name.length()) {
+                return false;
+            }
+            for (int i = 0; i < charCount; i++) {
+                if (chars[i] != name.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void appendChar(char c) {
+            if (charCount == chars.length) {
+                chars = Arrays.copyOf(chars, charCount * 2);
+            }
+            chars[charCount++] = c;
+        }
+
+        private JsonSyntaxException syntaxError(String message) {
+            return new JsonSyntaxException(message + " at byte " + in.position());
+        }
+
+        private static boolean isNumberByte(int b) {
+            return (b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.' || b == 'e' || b == 'E';
+        }
+
+        private static boolean isLiteralByte(int b) {
+            return b != MappedInput.END_OF_INPUT && b != ',' && b != '}' && b != ']'
+                    && b != ' ' && b != '\n' && b != '\r' && b != '\t';
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.gnopai.leady;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Adds {@link LeadMatcher}s to a store, keeping an index per matcher from each blocking key to the
+ * handles of the leads that have had it. As with ids and emails, keys of a replaced lead keep
+ * pointing at its handle. The indexes only live in memory and can't be rebuilt from a store's current
+ * leads, which lack the keys of the leads they replaced, so only an empty store can be wrapped.
+ */
+class MatchingLeadStore implements LeadStore {
+    // only the most recent leads in a block are kept and compared, so a very common key can't make
+    // matching quadratic or its index grow without bound
+    static final int MAX_CANDIDATES = 64;
+
+    private final LeadStore delegate;
+    private final List<LeadMatcher> leadMatchers;
+    private final List<Map<String, HandleList>> matchIndexes = new ArrayList<>();
+
+    MatchingLeadStore(LeadStore delegate, List<LeadMatcher> leadMatchers) {
+        if (delegate.size() > 0) {
+            throw new IllegalArgumentException("Lead matchers can only be added to an empty store, got one with " + delegate.size() + " leads");
+        }
+        this.delegate = delegate;
+        this.leadMatchers = List.copyOf(leadMatchers);
+        for (int i = 0; i < leadMatchers.size(); i++) {
+            matchIndexes.add(new HashMap<>());
+        }
+    }
+
+    @Override
+    public int findLeadById(String id) {
+        return delegate.findLeadById(id);
+    }
+
+    @Override
+    public int findLeadByEmail(String email) {
+        return delegate.findLeadByEmail(email);
+    }
+
+    /**
+     * Tries each matcher in turn, returning the most recently saved lead that matches.
+     */
+    @Override
+    public int findMatchingLead(Lead lead) {
+        for (int i = 0; i < leadMatchers.size(); i++) {
+            LeadMatcher leadMatcher = leadMatchers.get(i);
+            Map<String, HandleList> matchIndex = matchIndexes.get(i);
+            for (String key : leadMatcher.getMatchKeys(lead)) {
+                HandleList handles = matchIndex.get(key);
+                if (handles == null) {
+                    continue;
+                }
+                for (int j = handles.size - 1; j >= 0; j--) {
+                    if (leadMatcher.matches(lead, delegate.getLead(handles.handles[j]))) {
+                        return handles.handles[j];
+                    }
+                }
+            }
+        }
+        return NO_LEAD;
+    }
+
+    @Override
+    public Lead getLead(int handle) {
+        return delegate.getLead(handle);
+    }
+
+    @Override
+    public boolean isEnteredAfter(int handle, ZonedDateTime entryDate) {
+        return delegate.isEnteredAfter(handle, entryDate);
+    }
+
+    @Override
+    public int addLead(Lead lead) {
+        int handle = delegate.addLead(lead);
+        indexLead(handle, lead);
+        return handle;
+    }
+
+    @Override
+    public void updateLead(int handle, Lead lead) {
+        delegate.updateLead(handle, lead);
+        indexLead(handle, lead);
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public List<Lead> getLeads() {
+        return delegate.getLeads();
+    }
+
+    @Override
+    public List<Lead> getSortedLeads() {
+        return delegate.getSortedLeads();
+    }
+
+    @Override
+    public void forEachId(Consumer<String> consumer) {
+        delegate.forEachId(consumer);
+    }
+
+    @Override
+    public void forEachEmail(Consumer<String> consumer) {
+        delegate.forEachEmail(consumer);
+    }
+
+    private void indexLead(int handle, Lead lead) {
+        for (int i = 0; i < leadMatchers.size(); i++) {
+            Map<String, HandleList> matchIndex = matchIndexes.get(i);
+            for (String key : leadMatchers.get(i).getMatchKeys(lead)) {
+                matchIndex.computeIfAbsent(key, k -> new HandleList()).add(handle);
+            }
+        }
+    }
+
+    /**
+     * The handles of the most recent leads with a key, oldest first, holding at most
+     * {@link #MAX_CANDIDATES} of them.
+     */
+    private static class HandleList {
+        private int[] handles = new int[1];
+        private int size;
+
+        void add(int handle) {
+            // the handle moves to the end, as the most recent lead with this key
+            for (int i = size - 1; i >= 0; i--) {
+                if (handles[i] == handle) {
+                    System.arraycopy(handles, i + 1, handles, i, size - i - 1);
+                    handles[size - 1] = handle;
+                    return;
+                }
+            }
+            if (size == MAX_CANDIDATES) {
+                // the oldest lead would never be compared again
+                System.arraycopy(handles, 1, handles, 0, size - 1);
+                size--;
+            } else if (size == handles.length) {
+                handles = Arrays.copyOf(handles, Math.min(MAX_CANDIDATES, size * 2));
+            }
+            handles[size++] = handle;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.gnopai.leady;
+
+import lombok.Value;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * The JVM's heap and garbage collection figures at one point in a run.
+ */
+@Value
+public class MemorySnapshot {
+    long heapUsedBytes;
+    long heapCommittedBytes;
+    // the highest heap use so far, summed over the heap pools' own peaks
+    long peakHeapUsedBytes;
+    // bytes allocated by the threads alive at the time over their lifetimes, or -1 if the JVM can't tell
+    long allocatedBytes;
+    long gcCount;
+    long gcTimeMillis;
+
+    public static MemorySnapshot capture() {
+        MemoryUsage heapUsage = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        long peakHeapUsedBytes = 0;
+        for (MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (memoryPool.getType() == MemoryType.HEAP && memoryPool.getPeakUsage() != null) {
+                peakHeapUsedBytes += memoryPool.getPeakUsage().getUsed();
+            }
+        }
+        long gcCount = 0;
+        long gcTimeMillis = 0;
+        for (GarbageCollectorMXBean garbageCollector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += Math.max(garbageCollector.getCollectionCount(), 0);
+            gcTimeMillis += Math.max(garbageCollector.getCollectionTime(), 0);
+        }
+        return new MemorySnapshot(heapUsage.getUsed(), heapUsage.getCommitted(), peakHeapUsedBytes,
+                allocatedBytes(), gcCount, gcTimeMillis);
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+        if (!allocationMXBean.isThreadAllocatedMemorySupported() || !allocationMXBean.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        long allocatedBytes = 0;
+        for (long threadAllocatedBytes : allocationMXBean.getThreadAllocatedBytes(threadMXBean.getAllThreadIds())) {
+            allocatedBytes += Math.max(threadAllocatedBytes, 0);
+        }
+        return allocatedBytes;
+    }
+}
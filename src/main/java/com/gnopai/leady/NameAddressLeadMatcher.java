@@ -0,0 +1,184 @@
+package com.gnopai.leady;
+
+import java.text.Normalizer;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Matches leads for the same person at the same address, allowing for typos, accents, case and
+ * punctuation. Leads are blocked by the Soundex code of the last name plus the house number (or the
+ * Soundex code of the first word of the address, if it has no number), and leads in the same block
+ * match when both their full names and their addresses are at least {@code threshold} similar by
+ * Jaro-Winkler distance.
+ */
+public class NameAddressLeadMatcher implements LeadMatcher {
+    public static final double DEFAULT_THRESHOLD = 0.9;
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^\\p{Alnum}]+");
+    private static final String SOUNDEX_CODES = "01230120022455012623010202";
+
+    private final double threshold;
+
+    public NameAddressLeadMatcher() {
+        this(DEFAULT_THRESHOLD);
+    }
+
+    public NameAddressLeadMatcher(double threshold) {
+        if (threshold <= 0 || threshold > 1) {
+            throw new IllegalArgumentException("Match threshold must be above 0 and at most 1, got " + threshold);
+        }
+        this.threshold = threshold;
+    }
+
+    @Override
+    public List<String> getMatchKeys(Lead lead) {
+        String lastName = normalize(lead.getLastName());
+        String address = normalize(lead.getAddress());
+        if (lastName.isEmpty() || address.isEmpty()) {
+            return List.of();
+        }
+        return List.of(soundex(lastName) + ':' + addressBlock(address));
+    }
+
+    @Override
+    public boolean matches(Lead lead, Lead candidate) {
+        return jaroWinkler(fullName(lead), fullName(candidate)) >= threshold
+                && jaroWinkler(normalize(lead.getAddress()), normalize(candidate.getAddress())) >= threshold;
+    }
+
+    private static String fullName(Lead lead) {
+        return (normalize(lead.getFirstName()) + ' ' + normalize(lead.getLastName())).strip();
+    }
+
+    /**
+     * Lower case ASCII letters and digits, with accents removed and anything else collapsed into
+     * single spaces.
+     */
+    static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80) {
+                String decomposed = DIACRITICS.matcher(Normalizer.normalize(value, Normalizer.Form.NFD)).replaceAll("");
+                return NON_ALPHANUMERIC.matcher(decomposed.toLowerCase(Locale.ROOT)).replaceAll(" ").strip();
+            }
+        }
+        return normalizeAscii(value);
+    }
+
+    // the same as the general case for ASCII input, which is nearly all of it, without regexes
+    private static String normalizeAscii(String value) {
+        StringBuilder normalized = new StringBuilder(value.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                c = (char) (c + ('a' - 'A'));
+            }
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                if (pendingSpace && normalized.length() > 0) {
+                    normalized.append(' ');
+                }
+                pendingSpace = false;
+                normalized.append(c);
+            } else {
+                pendingSpace = true;
+            }
+        }
+        return normalized.toString();
+    }
+
+    private static String addressBlock(String address) {
+        String[] words = address.split(" ");
+        for (String word : words) {
+            if (word.chars().anyMatch(Character::isDigit)) {
+                return word;
+            }
+        }
+        return soundex(words[0]);
+    }
+
+    /**
+     * American Soundex: the first letter, then up to three digits for the consonant sounds that
+     * follow it. Characters other than ASCII letters are skipped.
+     */
+    static String soundex(String word) {
+        StringBuilder code = new StringBuilder(4);
+        char previousDigit = 0;
+        for (int i = 0; i < word.length() && code.length() < 4; i++) {
+            char c = word.charAt(i);
+            if (c < 'a' || c > 'z') {
+                continue;
+            }
+            char digit = SOUNDEX_CODES.charAt(c - 'a');
+            if (code.length() == 0) {
+                code.append(Character.toUpperCase(c));
+            } else if (digit != '0' && digit != previousDigit) {
+                code.append(digit);
+            }
+            // h and w don't separate letters with the same code, but vowels do
+            if (c != 'h' && c != 'w') {
+                previousDigit = digit;
+            }
+        }
+        if (code.length() == 0) {
+            return "";
+        }
+        while (code.length() < 4) {
+            code.append('0');
+        }
+        return code.toString();
+    }
+
+    static double jaroWinkler(String a, String b) {
+        if (a.equals(b)) {
+            return 1;
+        }
+        if (a.isEmpty() || b.isEmpty()) {
+            return 0;
+        }
+        int window = Math.max(0, Math.max(a.length(), b.length()) / 2 - 1);
+        boolean[] aMatched = new boolean[a.length()];
+        boolean[] bMatched = new boolean[b.length()];
+        int matches = 0;
+        for (int i = 0; i < a.length(); i++) {
+            int end = Math.min(b.length(), i + window + 1);
+            for (int j = Math.max(0, i - window); j < end; j++) {
+                if (!bMatched[j] && a.charAt(i) == b.charAt(j)) {
+                    aMatched[i] = true;
+                    bMatched[j] = true;
+                    matches++;
+                    break;
+                }
+            }
+        }
+        if (matches == 0) {
+            return 0;
+        }
+
+        int transpositions = 0;
+        int j = 0;
+        for (int i = 0; i < a.length(); i++) {
+            if (aMatched[i]) {
+                while (!bMatched[j]) {
+                    j++;
+                }
+                if (a.charAt(i) != b.charAt(j)) {
+                    transpositions++;
+                }
+                j++;
+            }
+        }
+        double m = matches;
+        double jaro = (m / a.length() + m / b.length() + (m - transpositions / 2.0) / m) / 3;
+
+        int prefix = 0;
+        while (prefix < Math.min(4, Math.min(a.length(), b.length())) && a.charAt(prefix) == b.charAt(prefix)) {
+            prefix++;
+        }
+        return jaro + prefix * 0.1 * (1 - jaro);
+    }
+}
@@ -0,0 +1,287 @@
+package com.gnopai.leady;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterator.ORDERED;
+import static java.util.Spliterators.spliteratorUnknownSize;
+
+/**
+ * Reads newline-delimited JSON, one lead object per line, skipping blank lines. The file is cut into
+ * chunks at line boundaries, which are parsed concurrently on the executor while the stream hands the
+ * leads out in file order, so deduplication sees the same order as a sequential read. Only a bounded
+ * number of chunks are read ahead of the stream's consumer.
+ */
+public class NdjsonLeadReader implements LeadReader {
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    private final TypeAdapter<Lead> leadAdapter;
+    private final Gson gson;
+    private final Executor executor;
+    private final int chunkSize;
+    private final int maxChunksAhead;
+
+    /**
+     * Parses on the common fork-join pool, keeping two chunks per processor in flight.
+     */
+    public NdjsonLeadReader(Gson gson) {
+        this(gson, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE, 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    public NdjsonLeadReader(Gson gson, Executor executor, int chunkSize, int maxChunksAhead) {
+        if (chunkSize <= 0 || maxChunksAhead <= 0) {
+            throw new IllegalArgumentException("Chunk size and chunks ahead must be positive, got " + chunkSize + " and " + maxChunksAhead);
+        }
+        this.leadAdapter = gson.getAdapter(Lead.class);
+        this.gson = gson;
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+        this.maxChunksAhead = maxChunksAhead;
+    }
+
+    @Override
+    public Stream<Lead> readLeads(Path path) {
+        try {
+            LeadIterator leadIterator = new LeadIterator(Compression.newInputStream(path));
+            return StreamSupport.stream(spliteratorUnknownSize(leadIterator, ORDERED | NONNULL), false)
+                    .onClose(leadIterator::close);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Chunk parseChunk(byte[] bytes, int length) {
+        int lineCount = 0;
+        int leadLineCount = 0;
+        boolean blankLine = true;
+        for (int i = 0; i < length; i++) {
+            byte b = bytes[i];
+            if (b == '\n') {
+                lineCount++;
+                leadLineCount += blankLine ? 0 : 1;
+                blankLine = true;
+            } else if (!isBlank(b)) {
+                blankLine = false;
+            }
+        }
+        leadLineCount += blankLine ? 0 : 1;
+
+        String text = new String(bytes, 0, length, UTF_8);
+        List<Lead> leads = new ArrayList<>(leadLineCount);
+        try {
+            JsonReader jsonReader = newJsonReader(text);
+            while (jsonReader.peek() != JsonToken.END_DOCUMENT) {
+                leads.add(readLead(jsonReader));
+            }
+        } catch (IOException | RuntimeException e) {
+            return parseLineByLine(text, lineCount);
+        }
+        // a lead spread over several lines, or several on one line, would parse fine as a whole
+        if (leads.size() != leadLineCount) {
+            return parseLineByLine(text, lineCount);
+        }
+        return new Chunk(leads, lineCount, -1, null);
+    }
+
+    /**
+     * The slow path for a chunk that didn't parse as one lead per line, which finds the first bad line.
+     */
+    private Chunk parseLineByLine(String text, int lineCount) {
+        List<Lead> leads = new ArrayList<>();
+        int lineStart = 0;
+        for (int line = 0; lineStart < text.length(); line++) {
+            int lineEnd = text.indexOf('\n', lineStart);
+            lineEnd = lineEnd < 0 ? text.length() : lineEnd;
+            String lineText = text.substring(lineStart, lineEnd);
+            lineStart = lineEnd + 1;
+            if (lineText.chars().allMatch(c -> c < 0x80 && isBlank((byte) c))) {
+                continue;
+            }
+            try {
+                JsonReader jsonReader = newJsonReader(lineText);
+                Lead lead = readLead(jsonReader);
+                if (jsonReader.peek() != JsonToken.END_DOCUMENT) {
+                    throw new JsonSyntaxException("Expected one lead per line");
+                }
+                leads.add(lead);
+            } catch (IOException | RuntimeException e) {
+                return new Chunk(leads, lineCount, line, e);
+            }
+        }
+        return new Chunk(leads, lineCount, -1, null);
+    }
+
+    private JsonReader newJsonReader(String text) {
+        JsonReader jsonReader = gson.newJsonReader(new StringReader(text));
+        jsonReader.setLenient(true); // match JsonLeadReader, and allow a top-level value per line
+        return jsonReader;
+    }
+
+    private Lead readLead(JsonReader jsonReader) throws IOException {
+        JsonToken token = jsonReader.peek();
+        if (token != JsonToken.BEGIN_OBJECT) {
+            throw new JsonSyntaxException("Expected a lead object but was " + token);
+        }
+        return leadAdapter.read(jsonReader);
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    private static class Chunk {
+        final List<Lead> leads;
+        final int lineCount;
+        // line within the chunk that failed to parse, after the leads before it, or -1
+        final int errorLine;
+        final Exception error;
+
+        Chunk(List<Lead> leads, int lineCount, int errorLine, Exception error) {
+            this.leads = leads;
+            this.lineCount = lineCount;
+            this.errorLine = errorLine;
+            this.error = error;
+        }
+    }
+
+    private class LeadIterator implements Iterator<Lead> {
+        private final InputStream in;
+        private final Deque<CompletableFuture<Chunk>> chunksAhead = new ArrayDeque<>();
+        // the start of a line that didn't fit in the last chunk read
+        private byte[] remainder = new byte[0];
+        private int remainderLength;
+        private boolean endOfInput;
+        private Chunk chunk;
+        private Iterator<Lead> chunkLeads = Collections.emptyIterator();
+        private long chunkFirstLine = 1;
+
+        LeadIterator(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!chunkLeads.hasNext()) {
+                if (chunk != null) {
+                    if (chunk.error != null) {
+                        throw new JsonSyntaxException("Malformed lead on line " + (chunkFirstLine + chunk.errorLine), chunk.error);
+                    }
+                    chunkFirstLine += chunk.lineCount;
+                    chunk = null;
+                }
+                readAhead();
+                if (chunksAhead.isEmpty()) {
+                    return false;
+                }
+                chunk = join(chunksAhead.removeFirst());
+                chunkLeads = chunk.leads.iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public Lead next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return chunkLeads.next();
+        }
+
+        private void readAhead() {
+            try {
+                while (!endOfInput && chunksAhead.size() < maxChunksAhead) {
+                    readChunk();
+                }
+            } catch (IOException e) {
+                throw new JsonIOException(e);
+            }
+        }
+
+        private void readChunk() throws IOException {
+            byte[] bytes = Arrays.copyOf(remainder, remainderLength + chunkSize);
+            int length = remainderLength;
+            int searchFrom = remainderLength;
+            while (true) {
+                length += in.readNBytes(bytes, length, bytes.length - length);
+                if (length < bytes.length) {
+                    endOfInput = true;
+                    remainderLength = 0;
+                    if (length > 0) {
+                        submit(bytes, length);
+                    }
+                    return;
+                }
+                int chunkEnd = lastLineEnd(bytes, searchFrom, length);
+                if (chunkEnd > 0) {
+                    remainderLength = length - chunkEnd;
+                    if (remainder.length < remainderLength) {
+                        remainder = new byte[Math.max(remainderLength, 2 * remainder.length)];
+                    }
+                    System.arraycopy(bytes, chunkEnd, remainder, 0, remainderLength);
+                    submit(bytes, chunkEnd);
+                    return;
+                }
+                // a single line longer than the chunk size
+                searchFrom = length;
+                bytes = Arrays.copyOf(bytes, 2 * bytes.length);
+            }
+        }
+
+        private int lastLineEnd(byte[] bytes, int from, int to) {
+            for (int i = to - 1; i >= from; i--) {
+                if (bytes[i] == '\n') {
+                    return i + 1;
+                }
+            }
+            return -1;
+        }
+
+        private void submit(byte[] bytes, int length) {
+            chunksAhead.addLast(CompletableFuture.supplyAsync(() -> parseChunk(bytes, length), executor));
+        }
+
+        private Chunk join(CompletableFuture<Chunk> future) {
+            try {
+                return future.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+
+        void close() {
+            chunksAhead.forEach(future -> future.cancel(false));
+            chunksAhead.clear();
+            try {
+                in.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.gnopai.leady;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Writes leads as newline-delimited JSON, one lead per line, in the same form as each entry of the
+ * {@code {"leads": [...]}} document written by {@link JsonLeadWriter}. The output is compressed as
+ * described there.
+ */
+public class NdjsonLeadWriter implements LeadWriter {
+    private final TypeAdapter<Lead> leadAdapter;
+    private final Gson gson;
+    private final int bufferSize;
+    private final Compression compression;
+
+    public NdjsonLeadWriter(Gson gson) {
+        this(gson, JsonLeadWriter.DEFAULT_BUFFER_SIZE);
+    }
+
+    public NdjsonLeadWriter(Gson gson, int bufferSize) {
+        this(gson, bufferSize, null);
+    }
+
+    public NdjsonLeadWriter(Gson gson, int bufferSize, Compression compression) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive, got " + bufferSize);
+        }
+        this.leadAdapter = gson.getAdapter(Lead.class);
+        this.gson = gson;
+        this.bufferSize = bufferSize;
+        this.compression = compression;
+    }
+
+    @Override
+    public void writeLeads(Iterable<Lead> leads, Path path) throws IOException {
+        try (BufferedWriter writer = JsonLeadWriter.newBufferedWriter(path, bufferSize, compression)) {
+            JsonWriter jsonWriter = gson.newJsonWriter(writer);
+            // a strict writer only allows a single top-level value
+            jsonWriter.setLenient(true);
+            // escaped as by JsonLeadWriter, which newJsonWriter doesn't do on its own
+            jsonWriter.setHtmlSafe(gson.htmlSafe());
+            for (Lead lead : leads) {
+                leadAdapter.write(jsonWriter, lead);
+                writer.write('\n');
+            }
+            jsonWriter.flush();
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package com.gnopai.leady;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static com.gnopai.leady.LeadStore.NO_LEAD;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Deduplicates leads across a {@link ForkJoinPool}. Leads that are connected through a shared id or
+ * email, directly or through a chain of other leads, are grouped with a union-find. Leads in different
+ * groups can never affect each other, so each group is run through a plain {@link LeadDeduplicator}
+ * on its own and the results are merged. The output, and the order in which updates are reported,
+ * are identical to the sequential path.
+ * <p>
+ * The pool is the caller's to shut down.
+ */
+public class ParallelLeadDeduplicator extends LeadDeduplicator {
+    private static final Object NULL_KEY = new Object();
+
+    private final LeadChangeFinder leadChangeFinder;
+    private final LeadUpdateReporter leadUpdateReporter;
+    private final ForkJoinPool forkJoinPool;
+    private final LeadyMetrics leadyMetrics;
+
+    public ParallelLeadDeduplicator(LeadChangeFinder leadChangeFinder, LeadUpdateReporter leadUpdateReporter, ForkJoinPool forkJoinPool) {
+        this(leadChangeFinder, leadUpdateReporter, forkJoinPool, null);
+    }
+
+    /**
+     * With metrics, grouping and deduplicating the groups are timed together as the deduplicate phase,
+     * sorting the merged result as the sort phase, and the groups' store lookups are counted.
+     */
+    ParallelLeadDeduplicator(LeadChangeFinder leadChangeFinder, LeadUpdateReporter leadUpdateReporter, ForkJoinPool forkJoinPool, LeadyMetrics leadyMetrics) {
+        super(leadChangeFinder, leadUpdateReporter);
+        this.leadChangeFinder = leadChangeFinder;
+        this.leadUpdateReporter = leadUpdateReporter;
+        this.forkJoinPool = forkJoinPool;
+        this.leadyMetrics = leadyMetrics;
+    }
+
+    /**
+     * Collects the whole stream before deduplicating, since groups can only be found once every lead
+     * has been seen.
+     */
+    @Override
+    public LeadList deduplicateLeads(Stream<Lead> leads) {
+        return deduplicateLeads(new LeadList(leads.collect(toList())));
+    }
+
+    /**
+     * Deduplicates on top of the leads already in the store, with the same output, updates and final
+     * store state as the sequential path. The store is only used from the calling thread, since not
+     * every store is safe to read concurrently: each lead's id and email are looked up in it first,
+     * leads that hit the same stored lead join one group, and each group runs against an overlay of
+     * the stored leads it touches. The groups' writes are then applied to the store in input order.
+     * Lead matchers aren't consulted, so a {@link MatchingLeadStore} is rejected.
+     */
+    @Override
+    public LeadList deduplicateLeads(Stream<Lead> leads, LeadStore leadStore) {
+        if (leadStore instanceof MatchingLeadStore) {
+            throw new IllegalArgumentException("Parallel deduplication can't use lead matchers");
+        }
+        List<Lead> leadList = leads.collect(toList());
+        int leadCount = leadList.size();
+        int[] storedHandlesById = new int[leadCount];
+        int[] storedHandlesByEmail = new int[leadCount];
+        Map<Integer, Lead> storedLeads = new HashMap<>();
+
+        long startNanos = System.nanoTime();
+        for (int leadIndex = 0; leadIndex < leadCount; leadIndex++) {
+            Lead lead = leadList.get(leadIndex);
+            storedHandlesById[leadIndex] = leadStore.findLeadById(lead.getId());
+            storedHandlesByEmail[leadIndex] = leadStore.findLeadByEmail(lead.getEmail());
+            for (int handle : new int[]{storedHandlesById[leadIndex], storedHandlesByEmail[leadIndex]}) {
+                if (handle != NO_LEAD) {
+                    storedLeads.computeIfAbsent(handle, leadStore::getLead);
+                }
+            }
+        }
+
+        // each group sets only its own leads' slots, and the join below publishes them
+        List<Consumer<LeadUpdateReporter>> updates = new ArrayList<>(Collections.nCopies(leadCount, null));
+        List<Consumer<LeadStore>> writes = new ArrayList<>(Collections.nCopies(leadCount, null));
+        int storedLeadCount = leadStore.size();
+        forkJoinPool.submit(() -> findLeadGroups(leadList, storedHandlesById, storedHandlesByEmail).parallelStream()
+                .forEach(group -> {
+                    StoredLeadOverlay overlay = new StoredLeadOverlay(storedLeads, storedLeadCount);
+                    List<Lead> groupLeads = new ArrayList<>(group.size());
+                    for (int i = 0; i < group.size(); i++) {
+                        int leadIndex = group.getLeadIndex(i);
+                        groupLeads.add(leadList.get(leadIndex));
+                        overlay.addStoredHandles(leadList.get(leadIndex), storedHandlesById[leadIndex], storedHandlesByEmail[leadIndex]);
+                    }
+                    GroupUpdateRecorder recorder = new GroupUpdateRecorder(group, updates);
+                    overlay.recordWritesTo(() -> group.getLeadIndex(recorder.position - 1), writes);
+                    LeadStore groupStore = leadyMetrics != null ? leadyMetrics.instrument(overlay) : overlay;
+                    new LeadDeduplicator(leadChangeFinder, recorder).processLeads(groupLeads.stream(), groupStore);
+                })
+        ).join();
+
+        // writes are applied in input order, so the store ends up as the sequential path would leave it
+        for (int leadIndex = 0; leadIndex < leadCount; leadIndex++) {
+            if (writes.get(leadIndex) != null) {
+                writes.get(leadIndex).accept(leadStore);
+            }
+        }
+        if (leadyMetrics != null) {
+            leadyMetrics.getDeduplicateTimer().recordSince(startNanos);
+        }
+
+        for (Consumer<LeadUpdateReporter> update : updates) {
+            update.accept(leadUpdateReporter);
+        }
+        startNanos = System.nanoTime();
+        List<Lead> sortedLeads = leadStore.getSortedLeads();
+        if (leadyMetrics != null) {
+            leadyMetrics.getSortTimer().recordSince(startNanos);
+        }
+        return new LeadList(sortedLeads);
+    }
+
+    @Override
+    public LeadList deduplicateLeads(LeadList leadList) {
+        List<Lead> leads = leadList.getLeads();
+        // each group sets only its own leads' slots, and the join below publishes them
+        List<Consumer<LeadUpdateReporter>> updates = new ArrayList<>(Collections.nCopies(leads.size(), null));
+
+        long startNanos = System.nanoTime();
+        List<Lead> dedupedLeads = forkJoinPool.submit(() -> findLeadGroups(leads).parallelStream()
+                .flatMap(group -> deduplicateGroup(leads, group, updates))
+                .collect(toList())
+        ).join();
+        if (leadyMetrics != null) {
+            leadyMetrics.getDeduplicateTimer().recordSince(startNanos);
+        }
+
+        // updates are held back and reported in input order, as the sequential path would have
+        for (Consumer<LeadUpdateReporter> update : updates) {
+            update.accept(leadUpdateReporter);
+        }
+        startNanos = System.nanoTime();
+        List<Lead> sortedLeads = LeadSorter.sortLeads(dedupedLeads);
+        if (leadyMetrics != null) {
+            leadyMetrics.getSortTimer().recordSince(startNanos);
+        }
+        return new LeadList(sortedLeads);
+    }
+
+    private Stream<Lead> deduplicateGroup(List<Lead> leads, LeadGroup group, List<Consumer<LeadUpdateReporter>> updates) {
+        if (group.size() == 1) {
+            Lead lead = leads.get(group.getLeadIndex(0));
+            updates.set(group.getLeadIndex(0), reporter -> reporter.reportLeadAdded(lead));
+            return Stream.of(lead);
+        }
+
+        List<Lead> groupLeads = new ArrayList<>(group.size());
+        for (int i = 0; i < group.size(); i++) {
+            groupLeads.add(leads.get(group.getLeadIndex(i)));
+        }
+        // the group's store counts its lookups, but the phases are timed once for the whole input
+        Supplier<LeadStore> leadStoreFactory = leadyMetrics != null ? () -> leadyMetrics.instrument(new CompactLeadStore()) : CompactLeadStore::new;
+        LeadDeduplicator groupDeduplicator = new LeadDeduplicator(leadChangeFinder, new GroupUpdateRecorder(group, updates), leadStoreFactory);
+        return groupDeduplicator.deduplicateLeads(new LeadList(groupLeads)).getLeads().stream();
+    }
+
+    /**
+     * Groups the leads by shared id or email, and by the stored leads they hit, given as one handle per
+     * lead in each of the stored handle arrays.
+     */
+    private List<LeadGroup> findLeadGroups(List<Lead> leads, int[]... storedHandles) {
+        int leadCount = leads.size();
+        ConcurrentUnionFind unionFind = new ConcurrentUnionFind(leadCount);
+        Map<Object, Integer> firstLeadById = new ConcurrentHashMap<>();
+        Map<Object, Integer> firstLeadByEmail = new ConcurrentHashMap<>();
+        Map<Object, Integer> firstLeadByStoredHandle = new ConcurrentHashMap<>();
+        IntStream.range(0, leadCount).parallel().forEach(leadIndex -> {
+            Lead lead = leads.get(leadIndex);
+            linkByKey(unionFind, firstLeadById, lead.getId(), leadIndex);
+            linkByKey(unionFind, firstLeadByEmail, lead.getEmail(), leadIndex);
+            for (int[] handles : storedHandles) {
+                if (handles[leadIndex] != NO_LEAD) {
+                    linkByKey(unionFind, firstLeadByStoredHandle, handles[leadIndex], leadIndex);
+                }
+            }
+        });
+
+        int[] roots = IntStream.range(0, leadCount).parallel().map(unionFind::find).toArray();
+
+        // bucket the lead indexes by root, keeping input order within each group
+        int[] groupEnds = new int[leadCount];
+        for (int root : roots) {
+            groupEnds[root]++;
+        }
+        List<LeadGroup> groups = new ArrayList<>();
+        int[] groupedIndexes = new int[leadCount];
+        int offset = 0;
+        for (int root = 0; root < leadCount; root++) {
+            int groupSize = groupEnds[root];
+            if (groupSize > 0) {
+                groups.add(new LeadGroup(groupedIndexes, offset, offset + groupSize));
+            }
+            groupEnds[root] = offset;
+            offset += groupSize;
+        }
+        for (int leadIndex = 0; leadIndex < leadCount; leadIndex++) {
+            groupedIndexes[groupEnds[roots[leadIndex]]++] = leadIndex;
+        }
+        return groups;
+    }
+
+    private void linkByKey(ConcurrentUnionFind unionFind, Map<Object, Integer> firstLeadByKey, Object key, int leadIndex) {
+        // the sequential store treats null like any other key, so null ids or emails link leads too
+        Integer firstLeadIndex = firstLeadByKey.putIfAbsent(key == null ? NULL_KEY : key, leadIndex);
+        if (firstLeadIndex != null) {
+            unionFind.union(firstLeadIndex, leadIndex);
+        }
+    }
+
+    private static class LeadGroup {
+        private final int[] leadIndexes;
+        private final int start;
+        private final int end;
+
+        LeadGroup(int[] leadIndexes, int start, int end) {
+            this.leadIndexes = leadIndexes;
+            this.start = start;
+            this.end = end;
+        }
+
+        int size() {
+            return end - start;
+        }
+
+        int getLeadIndex(int position) {
+            return leadIndexes[start + position];
+        }
+    }
+
+    /**
+     * Records a group's updates against the input positions of its leads. {@link LeadDeduplicator}
+     * reports exactly one update per lead, in order, so the n-th update belongs to the n-th lead.
+     */
+    private static class GroupUpdateRecorder implements LeadUpdateReporter {
+        private final LeadGroup group;
+        private final List<Consumer<LeadUpdateReporter>> updates;
+        private int position;
+
+        GroupUpdateRecorder(LeadGroup group, List<Consumer<LeadUpdateReporter>> updates) {
+            this.group = group;
+            this.updates = updates;
+        }
+
+        @Override
+        public void reportLeadAdded(Lead lead) {
+            record(reporter -> reporter.reportLeadAdded(lead));
+        }
+
+        @Override
+        public void reportLeadChanged(LeadChange leadChange) {
+            record(reporter -> reporter.reportLeadChanged(leadChange));
+        }
+
+        @Override
+        public void reportLeadIgnored(Lead lead) {
+            record(reporter -> reporter.reportLeadIgnored(lead));
+        }
+
+        private void record(Consumer<LeadUpdateReporter> update) {
+            updates.set(group.getLeadIndex(position++), update);
+        }
+    }
+
+    /**
+     * A group's view of the store: the stored leads its leads hit, with the group's own writes on top.
+     * Only the lookups for the group's keys are known, which is all {@link LeadDeduplicator} asks for.
+     * New leads get handles past the end of the store, and each write is recorded against the input
+     * position of the lead being processed, to be applied to the real store later.
+     */
+    private static class StoredLeadOverlay implements LeadStore {
+        private final Map<Integer, Lead> storedLeads;
+        private final int storedLeadCount;
+        private final Map<String, Integer> handlesById = new HashMap<>();
+        private final Map<String, Integer> handlesByEmail = new HashMap<>();
+        private final Map<Integer, Lead> writtenLeads = new HashMap<>();
+        // the real handles of the group's new leads, in the order they're added to the store
+        private final List<Integer> addedHandles = new ArrayList<>();
+        private int addedLeadCount;
+        private IntSupplier currentLeadIndex;
+        private List<Consumer<LeadStore>> writes;
+
+        StoredLeadOverlay(Map<Integer, Lead> storedLeads, int storedLeadCount) {
+            this.storedLeads = storedLeads;
+            this.storedLeadCount = storedLeadCount;
+        }
+
+        void addStoredHandles(Lead lead, int handleById, int handleByEmail) {
+            if (handleById != NO_LEAD) {
+                handlesById.put(lead.getId(), handleById);
+            }
+            if (handleByEmail != NO_LEAD) {
+                handlesByEmail.put(lead.getEmail(), handleByEmail);
+            }
+        }
+
+        void recordWritesTo(IntSupplier currentLeadIndex, List<Consumer<LeadStore>> writes) {
+            this.currentLeadIndex = currentLeadIndex;
+            this.writes = writes;
+        }
+
+        @Override
+        public int findLeadById(String id) {
+            return handlesById.getOrDefault(id, NO_LEAD);
+        }
+
+        @Override
+        public int findLeadByEmail(String email) {
+            return handlesByEmail.getOrDefault(email, NO_LEAD);
+        }
+
+        @Override
+        public Lead getLead(int handle) {
+            Lead lead = writtenLeads.get(handle);
+            return lead != null ? lead : storedLeads.get(handle);
+        }
+
+        @Override
+        public int addLead(Lead lead) {
+            int handle = storedLeadCount + addedLeadCount++;
+            index(handle, lead);
+            // the group's adds reach the store in the same order, so they line up with addedHandles
+            writes.set(currentLeadIndex.getAsInt(), leadStore -> addedHandles.add(leadStore.addLead(lead)));
+            return handle;
+        }
+
+        @Override
+        public void updateLead(int handle, Lead lead) {
+            index(handle, lead);
+            writes.set(currentLeadIndex.getAsInt(), leadStore -> leadStore.updateLead(toStoreHandle(handle), lead));
+        }
+
+        private void index(int handle, Lead lead) {
+            writtenLeads.put(handle, lead);
+            handlesById.put(lead.getId(), handle);
+            handlesByEmail.put(lead.getEmail(), handle);
+        }
+
+        private int toStoreHandle(int handle) {
+            return handle < storedLeadCount ? handle : addedHandles.get(handle - storedLeadCount);
+        }
+
+        @Override
+        public int size() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<Lead> getLeads() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void forEachId(Consumer<String> consumer) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void forEachEmail(Consumer<String> consumer) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Lock-free union-find over lead indexes. Roots are only ever linked with a compare-and-set, always
+     * under the smaller index, so concurrent unions can't form cycles.
+     */
+    private static class ConcurrentUnionFind {
+        private final AtomicIntegerArray parents;
+
+        ConcurrentUnionFind(int size) {
+            int[] initialParents = new int[size];
+            Arrays.setAll(initialParents, index -> index);
+            this.parents = new AtomicIntegerArray(initialParents);
+        }
+
+        int find(int element) {
+            int current = element;
+            while (true) {
+                int parent = parents.get(current);
+                if (parent == current) {
+                    return current;
+                }
+                int grandparent = parents.get(parent);
+                if (grandparent != parent) {
+                    parents.compareAndSet(current, parent, grandparent); // path halving
+                }
+                current = grandparent;
+            }
+        }
+
+        void union(int first, int second) {
+            while (true) {
+                int firstRoot = find(first);
+                int secondRoot = find(second);
+                if (firstRoot == secondRoot) {
+                    return;
+                }
+                int root = Math.min(firstRoot, secondRoot);
+                int child = Math.max(firstRoot, secondRoot);
+                if (parents.compareAndSet(child, child, root)) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.gnopai.leady;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.time.ZoneOffset.UTC;
+
+/**
+ * Splits the output into part files, written concurrently by a pool of threads with the wrapped
+ * writer, plus a manifest listing them. For an output file of {@code out/leads.json}, the parts are
+ * {@code out/leads-part-00000.json} and so on, and the manifest is {@code out/leads.manifest.json}.
+ * Parts and the manifest from an earlier run with the same name are deleted first, and the new
+ * manifest is only moved into place once every part has been written, so a failed run leaves no
+ * manifest behind.
+ * <p>
+ * The leads are split in iteration order, which is the global lead order, and the manifest lists the
+ * parts in that order with each one's lead count, size and first and last entry date and id. Reading
+ * the parts in manifest order gives back the whole output. Each part's leads are held until it's
+ * written, with at most twice as many parts in hand as there are threads.
+ */
+public class PartitionedLeadWriter implements LeadWriter {
+    private static final Gson MANIFEST_GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+    private static final DateTimeFormatter ENTRY_DATE_FORMAT = DateTimeFormatter.ISO_DATE_TIME;
+
+    private final LeadWriter leadWriter;
+    private final Partitioning partitioning;
+    private final int threads;
+
+    public PartitionedLeadWriter(LeadWriter leadWriter, Partitioning partitioning, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Partition writer threads must be at least 1, got " + threads);
+        }
+        this.leadWriter = leadWriter;
+        this.partitioning = partitioning;
+        this.threads = threads;
+    }
+
+    @Override
+    public void writeLeads(Iterable<Lead> leads, Path path) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        String fileName = path.getFileName().toString();
+        String baseName = Compression.stripExtension(fileName);
+        int extensionStart = baseName.lastIndexOf('.') > 0 ? baseName.lastIndexOf('.') : baseName.length();
+        String partPrefix = fileName.substring(0, extensionStart) + "-part-";
+        String partSuffix = fileName.substring(extensionStart);
+        Path manifestFile = directory.resolve(fileName.substring(0, extensionStart) + ".manifest.json");
+        // the old manifest goes with the old parts, so it can't list parts that are no longer there
+        Files.deleteIfExists(manifestFile);
+        deleteParts(directory, partPrefix, partSuffix);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, newThreadFactory());
+        // bounds the parts held in memory while waiting for a thread
+        Semaphore partsInHand = new Semaphore(threads * 2);
+        List<Future<Map<String, Object>>> parts = new ArrayList<>();
+        try {
+            List<Lead> partLeads = new ArrayList<>();
+            long partBytes = 0;
+            for (Lead lead : leads) {
+                if (!partLeads.isEmpty() && partitioning.startsNewPart(partLeads, partBytes, lead)) {
+                    parts.add(submitPart(executor, partsInHand, partLeads, directory.resolve(partFileName(partPrefix, parts.size(), partSuffix))));
+                    partLeads = new ArrayList<>();
+                    partBytes = 0;
+                }
+                partLeads.add(lead);
+                partBytes += Partitioning.estimateBytes(lead);
+            }
+            if (!partLeads.isEmpty()) {
+                parts.add(submitPart(executor, partsInHand, partLeads, directory.resolve(partFileName(partPrefix, parts.size(), partSuffix))));
+            }
+
+            List<Map<String, Object>> partSummaries = new ArrayList<>(parts.size());
+            for (Future<Map<String, Object>> part : parts) {
+                partSummaries.add(part.get());
+            }
+            writeManifest(manifestFile, partSummaries);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing output parts", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw new RuntimeException("Failed to write output part", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Future<Map<String, Object>> submitPart(ExecutorService executor, Semaphore partsInHand, List<Lead> partLeads, Path partFile)
+            throws InterruptedException {
+        partsInHand.acquire();
+        return executor.submit(() -> {
+            try {
+                leadWriter.writeLeads(partLeads, partFile);
+                return summarizePart(partLeads, partFile);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                partsInHand.release();
+            }
+        });
+    }
+
+    private static Map<String, Object> summarizePart(List<Lead> partLeads, Path partFile) throws IOException {
+        Lead firstLead = partLeads.get(0);
+        Lead lastLead = partLeads.get(partLeads.size() - 1);
+        Map<String, Object> part = new LinkedHashMap<>();
+        part.put("file", partFile.getFileName().toString());
+        part.put("leadCount", partLeads.size());
+        part.put("bytes", Files.size(partFile));
+        part.put("firstEntryDate", formatEntryDate(firstLead.getEntryDate()));
+        part.put("firstId", firstLead.getId());
+        part.put("lastEntryDate", formatEntryDate(lastLead.getEntryDate()));
+        part.put("lastId", lastLead.getId());
+        return part;
+    }
+
+    private static String formatEntryDate(ZonedDateTime entryDate) {
+        return entryDate != null ? ENTRY_DATE_FORMAT.format(entryDate) : null;
+    }
+
+    private void writeManifest(Path manifestFile, List<Map<String, Object>> parts) throws IOException {
+        Map<String, Object> manifest = new LinkedHashMap<>();
+        manifest.put("partitioning", partitioning.toString());
+        manifest.put("leadCount", parts.stream().mapToLong(part -> ((Number) part.get("leadCount")).longValue()).sum());
+        manifest.put("parts", parts);
+        Path tempFile = manifestFile.resolveSibling(manifestFile.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tempFile, UTF_8)) {
+            MANIFEST_GSON.toJson(manifest, writer);
+        }
+        Files.move(tempFile, manifestFile, REPLACE_EXISTING, ATOMIC_MOVE);
+    }
+
+    private static String partFileName(String partPrefix, int part, String partSuffix) {
+        return String.format("%s%05d%s", partPrefix, part, partSuffix);
+    }
+
+    private static void deleteParts(Path directory, String partPrefix, String partSuffix) throws IOException {
+        DirectoryStream.Filter<Path> isPart = file -> {
+            String fileName = file.getFileName().toString();
+            return fileName.length() > partPrefix.length() + partSuffix.length()
+                    && fileName.startsWith(partPrefix)
+                    && fileName.endsWith(partSuffix)
+                    && fileName.substring(partPrefix.length(), fileName.length() - partSuffix.length()).chars().allMatch(Character::isDigit);
+        };
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, isPart)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static ThreadFactory newThreadFactory() {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "leady-part-writer-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Where the output is split: every {@code rows:N} leads, at roughly every {@code size:N} bytes of
+     * uncompressed JSON (with a {@code k}, {@code m} or {@code g} suffix allowed), or whenever the
+     * entry date moves into a new UTC {@code date:hour}, {@code date:day}, {@code date:month} or
+     * {@code date:year}.
+     */
+    public static class Partitioning {
+        // the field names, quotes and punctuation of a serialized lead, plus a typical entry date
+        private static final int LEAD_OVERHEAD_BYTES = 100;
+
+        private final String spec;
+        private final long rows;
+        private final long bytes;
+        private final ChronoUnit dateUnit;
+
+        private Partitioning(String spec, long rows, long bytes, ChronoUnit dateUnit) {
+            this.spec = spec;
+            this.rows = rows;
+            this.bytes = bytes;
+            this.dateUnit = dateUnit;
+        }
+
+        public static Partitioning parse(String spec) {
+            int separator = spec.indexOf(':');
+            String kind = separator < 0 ? spec : spec.substring(0, separator);
+            String value = separator < 0 ? "" : spec.substring(separator + 1);
+            switch (kind) {
+                case "rows":
+                    return new Partitioning(spec, requirePositive(Long.parseLong(value), spec), 0, null);
+                case "size":
+                    return new Partitioning(spec, 0, requirePositive(LeadyOptions.parseSize(value), spec), null);
+                case "date":
+                    return new Partitioning(spec, 0, 0, parseDateUnit(value));
+                default:
+                    throw new IllegalArgumentException("Expected rows:N, size:N or date:UNIT for partitioning but got " + spec);
+            }
+        }
+
+        private static long requirePositive(long value, String spec) {
+            if (value <= 0) {
+                throw new IllegalArgumentException("Partition size must be positive, got " + spec);
+            }
+            return value;
+        }
+
+        private static ChronoUnit parseDateUnit(String unit) {
+            switch (unit) {
+                case "hour":
+                    return ChronoUnit.HOURS;
+                case "day":
+                    return ChronoUnit.DAYS;
+                case "month":
+                    return ChronoUnit.MONTHS;
+                case "year":
+                    return ChronoUnit.YEARS;
+                default:
+                    throw new IllegalArgumentException("Expected hour, day, month or year to partition by date but got " + unit);
+            }
+        }
+
+        boolean startsNewPart(List<Lead> partLeads, long partBytes, Lead lead) {
+            if (rows > 0) {
+                return partLeads.size() >= rows;
+            }
+            if (bytes > 0) {
+                return partBytes + estimateBytes(lead) > bytes;
+            }
+            return !datePeriod(partLeads.get(partLeads.size() - 1).getEntryDate()).equals(datePeriod(lead.getEntryDate()));
+        }
+
+        private ZonedDateTime datePeriod(ZonedDateTime entryDate) {
+            ZonedDateTime utcEntryDate = entryDate.withZoneSameInstant(UTC);
+            switch (dateUnit) {
+                case MONTHS:
+                    return utcEntryDate.truncatedTo(ChronoUnit.DAYS).withDayOfMonth(1);
+                case YEARS:
+                    return utcEntryDate.truncatedTo(ChronoUnit.DAYS).withDayOfYear(1);
+                default:
+                    return utcEntryDate.truncatedTo(dateUnit);
+            }
+        }
+
+        static long estimateBytes(Lead lead) {
+            return LEAD_OVERHEAD_BYTES + length(lead.getId()) + length(lead.getEmail()) + length(lead.getFirstName())
+                    + length(lead.getLastName()) + length(lead.getAddress());
+        }
+
+        private static int length(String value) {
+            return value != null ? value.length() : 0;
+        }
+
+        @Override
+        public String toString() {
+            return spec;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.gnopai.leady;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accumulates the durations of a phase or operation that runs repeatedly: how often it ran, the total
+ * and longest time, and a histogram with a bucket per power of two nanoseconds, from which percentiles
+ * are estimated. Recording is a few uncontended adds, cheap enough for per-operation timing, and is
+ * safe from any number of threads.
+ */
+public class PhaseTimer {
+    // bucket n holds durations of at least 2^(n-1) and less than 2^n nanoseconds, bucket 0 holds zero
+    private static final int BUCKET_COUNT = 64;
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+
+    public PhaseTimer() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        long duration = Math.max(nanos, 0);
+        count.increment();
+        totalNanos.add(duration);
+        if (duration > maxNanos.get()) {
+            maxNanos.accumulateAndGet(duration, Math::max);
+        }
+        buckets[Math.min(BUCKET_COUNT - 1, Long.SIZE - Long.numberOfLeadingZeros(duration))].increment();
+    }
+
+    /**
+     * Records the time since {@code startNanos}, as returned by {@link System#nanoTime()}.
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotalTime(TimeUnit unit) {
+        return unit.convert(totalNanos.sum(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getMaxTime(TimeUnit unit) {
+        return unit.convert(maxNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * An upper bound on the given percentile, from 0 to 100, of the recorded durations in nanoseconds:
+     * the top of the histogram bucket it falls in, capped at the longest duration.
+     */
+    public long getPercentileNanos(double percentile) {
+        long total = count.sum();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += buckets[bucket].sum();
+            if (seen >= Math.max(rank, 1)) {
+                return Math.min(bucketLimit(bucket), maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+
+    /**
+     * The timings as a JSON-friendly map, with durations in microseconds and the non-empty histogram
+     * buckets keyed by their exclusive upper bound in nanoseconds.
+     */
+    public Map<String, Object> summarize() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        long total = getCount();
+        summary.put("count", total);
+        summary.put("totalMicros", getTotalTime(TimeUnit.MICROSECONDS));
+        summary.put("meanMicros", total == 0 ? 0 : getTotalTime(TimeUnit.MICROSECONDS) / total);
+        summary.put("maxMicros", getMaxTime(TimeUnit.MICROSECONDS));
+        summary.put("p50Micros", TimeUnit.NANOSECONDS.toMicros(getPercentileNanos(50)));
+        summary.put("p90Micros", TimeUnit.NANOSECONDS.toMicros(getPercentileNanos(90)));
+        summary.put("p99Micros", TimeUnit.NANOSECONDS.toMicros(getPercentileNanos(99)));
+        List<Map<String, Long>> histogram = new ArrayList<>();
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            long bucketCount = buckets[bucket].sum();
+            if (bucketCount > 0) {
+                Map<String, Long> histogramBucket = new LinkedHashMap<>();
+                histogramBucket.put("belowNanos", bucketLimit(bucket));
+                histogramBucket.put("count", bucketCount);
+                histogram.add(histogramBucket);
+            }
+        }
+        summary.put("histogram", histogram);
+        return summary;
+    }
+
+    private static long bucketLimit(int bucket) {
+        return bucket >= BUCKET_COUNT - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+}
@@ -0,0 +1,191 @@
+package com.gnopai.leady;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterator.ORDERED;
+import static java.util.Spliterators.spliteratorUnknownSize;
+
+/**
+ * Parses ahead of the stream's consumer on a dedicated thread, so reading and parsing the input
+ * overlaps with deduplicating it rather than alternating with it on one thread. Leads are handed over
+ * in batches through a bounded queue, in the delegate's order, and parse failures surface on the
+ * consumer's side when it reaches them.
+ * <p>
+ * The {@code parse} counters cover the parser thread, and the {@code deduplicate} counters the
+ * stream's consumer, which is the deduplicator when run from {@link LeadyMain}. A reader can be used
+ * for several streams, one after another, and the counters add up.
+ */
+public class PrefetchingLeadReader implements LeadReader {
+    public static final int DEFAULT_BATCH_SIZE = 1 << 10;
+
+    private static final List<Lead> END_OF_LEADS = Collections.emptyList();
+
+    private final LeadReader delegate;
+    private final int queueCapacity;
+    private final int batchSize;
+    private final StageCounters parseCounters = new StageCounters("parse");
+    private final StageCounters deduplicateCounters = new StageCounters("deduplicate");
+
+    public PrefetchingLeadReader(LeadReader delegate, int queueCapacity) {
+        this(delegate, queueCapacity, DEFAULT_BATCH_SIZE);
+    }
+
+    public PrefetchingLeadReader(LeadReader delegate, int queueCapacity, int batchSize) {
+        if (queueCapacity <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Queue capacity and batch size must be positive, got " + queueCapacity + " and " + batchSize);
+        }
+        this.delegate = delegate;
+        this.queueCapacity = queueCapacity;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public Stream<Lead> readLeads(Path path) {
+        // opened here, so a missing file fails on the caller's thread
+        Stream<Lead> leads = delegate.readLeads(path);
+        LeadIterator leadIterator = new LeadIterator(leads);
+        return StreamSupport.stream(spliteratorUnknownSize(leadIterator, ORDERED | NONNULL), false)
+                .onClose(leadIterator::close);
+    }
+
+    public StageCounters getParseCounters() {
+        return parseCounters;
+    }
+
+    public StageCounters getDeduplicateCounters() {
+        return deduplicateCounters;
+    }
+
+    private class LeadIterator implements Iterator<Lead> {
+        private final BlockingQueue<List<Lead>> batches = new ArrayBlockingQueue<>(queueCapacity);
+        private final Thread parserThread;
+        private volatile Throwable parserFailure;
+        private Iterator<Lead> batch = Collections.emptyIterator();
+        private boolean finished;
+        private long startNanos = -1;
+
+        LeadIterator(Stream<Lead> leads) {
+            parserThread = new Thread(() -> parseLeads(leads), "lead-parser");
+            parserThread.setDaemon(true);
+            parserThread.start();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (startNanos < 0) {
+                startNanos = deduplicateCounters.start();
+            }
+            while (!batch.hasNext() && !finished) {
+                List<Lead> nextBatch = takeBatch();
+                if (nextBatch == END_OF_LEADS) {
+                    finish();
+                    if (parserFailure != null) {
+                        throw parserFailure instanceof RuntimeException
+                                ? (RuntimeException) parserFailure
+                                : new RuntimeException("Failed to parse leads", parserFailure);
+                    }
+                } else {
+                    deduplicateCounters.addItems(nextBatch.size());
+                    batch = nextBatch.iterator();
+                }
+            }
+            return batch.hasNext();
+        }
+
+        @Override
+        public Lead next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return batch.next();
+        }
+
+        private List<Lead> takeBatch() {
+            deduplicateCounters.sampleQueueDepth(batches.size());
+            List<Lead> nextBatch = batches.poll();
+            if (nextBatch != null) {
+                return nextBatch;
+            }
+            long blockedSince = System.nanoTime();
+            try {
+                return batches.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for leads to be parsed", e);
+            } finally {
+                deduplicateCounters.addBlockedTime(System.nanoTime() - blockedSince);
+            }
+        }
+
+        private void finish() {
+            if (!finished) {
+                finished = true;
+                deduplicateCounters.finish(startNanos);
+            }
+        }
+
+        private void parseLeads(Stream<Lead> leads) {
+            long parseStartNanos = parseCounters.start();
+            List<Lead> nextBatch = new ArrayList<>(batchSize);
+            try (leads) {
+                for (Iterator<Lead> iterator = leads.iterator(); iterator.hasNext(); ) {
+                    nextBatch.add(iterator.next());
+                    if (nextBatch.size() == batchSize) {
+                        putBatch(nextBatch);
+                        nextBatch = new ArrayList<>(batchSize);
+                    }
+                }
+            } catch (InterruptedException e) {
+                // the consumer closed the stream early, and nobody is waiting for the rest
+                parseCounters.finish(parseStartNanos);
+                return;
+            } catch (Throwable e) {
+                // handed over after the leads parsed before it
+                parserFailure = e;
+            }
+            try {
+                if (!nextBatch.isEmpty()) {
+                    putBatch(nextBatch);
+                }
+                parseCounters.finish(parseStartNanos);
+                batches.put(END_OF_LEADS);
+            } catch (InterruptedException e) {
+                // closed early, as above
+            }
+        }
+
+        private void putBatch(List<Lead> nextBatch) throws InterruptedException {
+            parseCounters.addItems(nextBatch.size());
+            if (batches.offer(nextBatch)) {
+                return;
+            }
+            long blockedSince = System.nanoTime();
+            batches.put(nextBatch);
+            parseCounters.addBlockedTime(System.nanoTime() - blockedSince);
+        }
+
+        void close() {
+            if (!finished && startNanos >= 0) {
+                finish();
+            }
+            finished = true;
+            parserThread.interrupt();
+            try {
+                parserThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while stopping the lead parser", e);
+            }
+        }
+    }
+}
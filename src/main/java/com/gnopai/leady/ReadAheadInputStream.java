@@ -0,0 +1,135 @@
+package com.gnopai.leady;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads ahead of its consumer on a dedicated thread, so that an expensive stream, such as a
+ * decompressor, runs alongside whatever consumes it rather than alternating with it. Bytes are handed
+ * over in blocks through a bounded queue, and read failures surface on the consumer's side once the
+ * bytes read before them have been consumed.
+ */
+class ReadAheadInputStream extends InputStream {
+    private static final byte[] END_OF_STREAM = new byte[0];
+
+    private final InputStream delegate;
+    private final int blockSize;
+    private final BlockingQueue<byte[]> blocks;
+    private final Thread readerThread;
+    private volatile Throwable readerFailure;
+    private byte[] block = new byte[0];
+    private int position;
+    private boolean finished;
+
+    ReadAheadInputStream(InputStream delegate, int blockSize, int blocksAhead, String threadName) {
+        if (blockSize <= 0 || blocksAhead <= 0) {
+            throw new IllegalArgumentException("Block size and blocks ahead must be positive, got " + blockSize + " and " + blocksAhead);
+        }
+        this.delegate = delegate;
+        this.blockSize = blockSize;
+        this.blocks = new ArrayBlockingQueue<>(blocksAhead);
+        this.readerThread = new Thread(this::readBlocks, threadName);
+        readerThread.setDaemon(true);
+        readerThread.start();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!nextBlock()) {
+            return -1;
+        }
+        return block[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!nextBlock()) {
+            return -1;
+        }
+        int count = Math.min(length, block.length - position);
+        System.arraycopy(block, position, bytes, offset, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return block.length - position;
+    }
+
+    /**
+     * Stops the reader thread, which closes the delegate.
+     */
+    @Override
+    public void close() throws IOException {
+        finished = true;
+        block = END_OF_STREAM;
+        position = 0;
+        readerThread.interrupt();
+        try {
+            readerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while stopping " + readerThread.getName());
+        }
+    }
+
+    private boolean nextBlock() throws IOException {
+        while (position == block.length) {
+            if (finished) {
+                return false;
+            }
+            byte[] nextBlock = takeBlock();
+            if (nextBlock == END_OF_STREAM) {
+                finished = true;
+                if (readerFailure != null) {
+                    throw new IOException("Failed to read on " + readerThread.getName(), readerFailure);
+                }
+                return false;
+            }
+            block = nextBlock;
+            position = 0;
+        }
+        return true;
+    }
+
+    private byte[] takeBlock() throws IOException {
+        try {
+            return blocks.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + readerThread.getName());
+        }
+    }
+
+    private void readBlocks() {
+        try (delegate) {
+            int length;
+            do {
+                byte[] nextBlock = new byte[blockSize];
+                length = delegate.readNBytes(nextBlock, 0, blockSize);
+                if (length > 0) {
+                    blocks.put(length == blockSize ? nextBlock : Arrays.copyOf(nextBlock, length));
+                }
+            } while (length == blockSize);
+        } catch (InterruptedException e) {
+            // the consumer closed the stream early, and nobody is waiting for the rest
+            return;
+        } catch (Throwable e) {
+            // handed over after the bytes read before it
+            readerFailure = e;
+        }
+        try {
+            blocks.put(END_OF_STREAM);
+        } catch (InterruptedException e) {
+            // closed early, as above
+        }
+    }
+}
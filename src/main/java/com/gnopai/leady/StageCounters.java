@@ -0,0 +1,92 @@
+package com.gnopai.leady;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput and queue counters for one stage of a run, such as parsing, deduplicating or reporting.
+ * A stage counts the items it handled and how long it was blocked on a queue, whether waiting for input
+ * or for room to hand its output on, and samples the depth of its queue as it goes. A stage that spends
+ * most of its time blocked is waiting on a neighbour, so the stage that blocks least is the bottleneck.
+ * <p>
+ * Counters are updated by the stage's own thread, and can be read from any other while it runs.
+ */
+public class StageCounters {
+    private final String name;
+    private final AtomicLong items = new AtomicLong();
+    private final AtomicLong runningNanos = new AtomicLong();
+    private final AtomicLong blockedNanos = new AtomicLong();
+    private final AtomicLong queueDepthSamples = new AtomicLong();
+    private final AtomicLong queueDepthTotal = new AtomicLong();
+    private final AtomicLong maxQueueDepth = new AtomicLong();
+
+    public StageCounters(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Starts timing a run of the stage, returning the start time to pass to {@link #finish(long)}.
+     * A stage can run several times, such as once per input file read, and the times add up.
+     */
+    public long start() {
+        return System.nanoTime();
+    }
+
+    public void finish(long startNanos) {
+        runningNanos.addAndGet(System.nanoTime() - startNanos);
+    }
+
+    public void addItems(long count) {
+        items.addAndGet(count);
+    }
+
+    public void addBlockedTime(long nanos) {
+        blockedNanos.addAndGet(nanos);
+    }
+
+    public void sampleQueueDepth(int depth) {
+        queueDepthSamples.incrementAndGet();
+        queueDepthTotal.addAndGet(depth);
+        maxQueueDepth.accumulateAndGet(depth, Math::max);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getItems() {
+        return items.get();
+    }
+
+    public long getRunningTime(TimeUnit unit) {
+        return unit.convert(runningNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getBlockedTime(TimeUnit unit) {
+        return unit.convert(blockedNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    public double getAverageQueueDepth() {
+        long samples = queueDepthSamples.get();
+        return samples == 0 ? 0 : (double) queueDepthTotal.get() / samples;
+    }
+
+    public long getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    /**
+     * A one-line summary, e.g. {@code deduplicate: 100000 items in 812 ms (123153/s), blocked 12 ms,
+     * queue depth avg 3.2 max 16}.
+     */
+    public String summarize() {
+        long runningMillis = getRunningTime(TimeUnit.MILLISECONDS);
+        long itemsPerSecond = runningNanos.get() == 0 ? 0 : getItems() * TimeUnit.SECONDS.toNanos(1) / runningNanos.get();
+        String summary = String.format("%s: %d items in %d ms (%d/s), blocked %d ms",
+                name, getItems(), runningMillis, itemsPerSecond, getBlockedTime(TimeUnit.MILLISECONDS));
+        if (queueDepthSamples.get() > 0) {
+            summary += String.format(", queue depth avg %.1f max %d", getAverageQueueDepth(), getMaxQueueDepth());
+        }
+        return summary;
+    }
+}
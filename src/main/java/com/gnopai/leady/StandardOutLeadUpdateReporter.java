@@ -1,17 +1,33 @@
 package com.gnopai.leady;
 
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
 public class StandardOutLeadUpdateReporter implements LeadUpdateReporter {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // buffered rather than System.out directly, which takes a lock and may flush on every call
+    private final PrintWriter out;
+
+    public StandardOutLeadUpdateReporter() {
+        this(new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), BUFFER_SIZE)));
+    }
+
+    StandardOutLeadUpdateReporter(PrintWriter out) {
+        this.out = out;
+    }
 
     @Override
     public void reportLeadAdded(Lead lead) {
-        System.out.printf("Lead %s/%s was added\n", lead.getId(), lead.getEmail());
+        out.printf("Lead %s/%s was added\n", lead.getId(), lead.getEmail());
     }
 
     @Override
     public void reportLeadChanged(LeadChange leadChange) {
-        System.out.printf("Lead %s/%s was updated\n", leadChange.getOriginalId(), leadChange.getOriginalEmail());
+        out.printf("Lead %s/%s was updated\n", leadChange.getOriginalId(), leadChange.getOriginalEmail());
         leadChange.getFieldDiffs().forEach(fieldChange ->
-                System.out.printf("    field '%s' changed from '%s' to '%s'\n",
+                out.printf("    field '%s' changed from '%s' to '%s'\n",
                         fieldChange.getFieldName(),
                         fieldChange.getOldValue(),
                         fieldChange.getNewValue()
@@ -21,6 +37,11 @@ public class StandardOutLeadUpdateReporter implements LeadUpdateReporter {
 
     @Override
     public void reportLeadIgnored(Lead lead) {
-        System.out.printf("Lead update for %s/%s was ignored due to a newer entry\n", lead.getId(), lead.getEmail());
+        out.printf("Lead update for %s/%s was ignored due to a newer entry\n", lead.getId(), lead.getEmail());
+    }
+
+    @Override
+    public void flush() {
+        out.flush();
     }
 }
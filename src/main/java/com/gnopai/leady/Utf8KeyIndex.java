@@ -0,0 +1,208 @@
+package com.gnopai.leady;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.ObjIntConsumer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * An open-addressing map from string keys to int values. Keys are copied once into a shared UTF-8
+ * byte arena, so an entry costs a few primitive array slots instead of a map entry, a String and a
+ * boxed value. Lookups compare the probe string against the arena bytes without allocating.
+ */
+class Utf8KeyIndex {
+    private static final int NO_VALUE = LeadStore.NO_LEAD;
+
+    private byte[] keyBytes = new byte[1 << 12];
+    private int keyBytesUsed;
+
+    // per entry; entry i's key is keyBytes[keyOffsets[i] .. keyOffsets[i + 1])
+    private int[] keyOffsets = new int[1 << 8];
+    private int[] keyHashes = new int[1 << 8];
+    private int[] values = new int[1 << 8];
+    private int entryCount;
+
+    // entry index + 1 per slot, 0 meaning empty
+    private int[] slots = new int[1 << 9];
+
+    private int nullKeyValue = NO_VALUE;
+
+    int get(String key) {
+        if (key == null) {
+            return nullKeyValue;
+        }
+        int hash = hash(key);
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int entry = slots[slot] - 1;
+            if (keyHashes[entry] == hash && keyEquals(entry, key)) {
+                return values[entry];
+            }
+        }
+        return NO_VALUE;
+    }
+
+    void put(String key, int value) {
+        if (key == null) {
+            nullKeyValue = value;
+            return;
+        }
+        int hash = hash(key);
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        for (; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int entry = slots[slot] - 1;
+            if (keyHashes[entry] == hash && keyEquals(entry, key)) {
+                values[entry] = value;
+                return;
+            }
+        }
+        slots[slot] = addEntry(key, hash, value) + 1;
+        if (entryCount * 2 > slots.length) {
+            rehash();
+        }
+    }
+
+    int size() {
+        return entryCount + (nullKeyValue == NO_VALUE ? 0 : 1);
+    }
+
+    /**
+     * Decodes every key; meant for persisting the index rather than for hot paths.
+     */
+    void forEach(ObjIntConsumer<String> consumer) {
+        if (nullKeyValue != NO_VALUE) {
+            consumer.accept(null, nullKeyValue);
+        }
+        for (int entry = 0; entry < entryCount; entry++) {
+            int offset = keyOffsets[entry];
+            consumer.accept(new String(keyBytes, offset, keyOffsets[entry + 1] - offset, UTF_8), values[entry]);
+        }
+    }
+
+    void writeTo(LeadSnapshot.Output out) throws IOException {
+        out.putInt(nullKeyValue);
+        out.putInt(entryCount);
+        out.putInt(keyBytesUsed);
+        out.putBytes(keyBytes, keyBytesUsed);
+        out.putInts(keyOffsets, entryCount + 1);
+        out.putInts(keyHashes, entryCount);
+        out.putInts(values, entryCount);
+    }
+
+    /**
+     * Restores an index saved by {@link #writeTo}. The key hashes are saved along with the keys, so
+     * nothing gets decoded or rehashed; only the slot table is rebuilt.
+     */
+    static Utf8KeyIndex readFrom(LeadSnapshot.Input in) throws IOException {
+        Utf8KeyIndex index = new Utf8KeyIndex();
+        index.nullKeyValue = in.getInt();
+        int entryCount = in.getInt();
+        int keyBytesUsed = in.getInt();
+        index.keyBytes = in.getBytes(new byte[Math.max(keyBytesUsed, 1 << 12)], keyBytesUsed);
+        index.keyBytesUsed = keyBytesUsed;
+
+        int capacity = Math.max(entryCount + 2, 1 << 8);
+        index.keyOffsets = in.getInts(new int[capacity], entryCount + 1);
+        index.keyHashes = in.getInts(new int[capacity], entryCount);
+        index.values = in.getInts(new int[capacity], entryCount);
+        index.entryCount = entryCount;
+
+        int slotCount = 1 << 9;
+        while (entryCount * 2L > slotCount) {
+            slotCount *= 2;
+        }
+        index.rebuildSlots(slotCount);
+        return index;
+    }
+
+    private int addEntry(String key, int hash, int value) {
+        if (entryCount + 2 > keyOffsets.length) {
+            int capacity = keyOffsets.length * 2;
+            keyOffsets = Arrays.copyOf(keyOffsets, capacity);
+            keyHashes = Arrays.copyOf(keyHashes, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        appendKey(key);
+        int entry = entryCount++;
+        keyHashes[entry] = hash;
+        values[entry] = value;
+        keyOffsets[entryCount] = keyBytesUsed;
+        return entry;
+    }
+
+    private void appendKey(String key) {
+        if (isAscii(key)) {
+            ensureKeyCapacity(key.length());
+            for (int i = 0; i < key.length(); i++) {
+                keyBytes[keyBytesUsed++] = (byte) key.charAt(i);
+            }
+        } else {
+            byte[] encoded = key.getBytes(UTF_8);
+            ensureKeyCapacity(encoded.length);
+            System.arraycopy(encoded, 0, keyBytes, keyBytesUsed, encoded.length);
+            keyBytesUsed += encoded.length;
+        }
+    }
+
+    private void ensureKeyCapacity(int length) {
+        long required = (long) keyBytesUsed + length;
+        if (required > keyBytes.length) {
+            long capacity = Math.max(required, (long) keyBytes.length * 2);
+            if (capacity > Integer.MAX_VALUE - 8) {
+                if (required > Integer.MAX_VALUE - 8) {
+                    throw new IllegalStateException("Key index is full at " + entryCount + " keys");
+                }
+                capacity = Integer.MAX_VALUE - 8;
+            }
+            keyBytes = Arrays.copyOf(keyBytes, (int) capacity);
+        }
+    }
+
+    private boolean keyEquals(int entry, String key) {
+        int position = keyOffsets[entry];
+        int end = keyOffsets[entry + 1];
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c >= 0x80) {
+                byte[] encoded = key.getBytes(UTF_8);
+                return Arrays.equals(encoded, 0, encoded.length, keyBytes, keyOffsets[entry], end);
+            }
+            if (position == end || keyBytes[position++] != (byte) c) {
+                return false;
+            }
+        }
+        return position == end;
+    }
+
+    private void rehash() {
+        rebuildSlots(slots.length * 2);
+    }
+
+    private void rebuildSlots(int slotCount) {
+        slots = new int[slotCount];
+        int mask = slots.length - 1;
+        for (int entry = 0; entry < entryCount; entry++) {
+            int slot = keyHashes[entry] & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = entry + 1;
+        }
+    }
+
+    private static boolean isAscii(String key) {
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(String key) {
+        int hash = key.hashCode() * 0x9E3779B9; // String caches its hash code, so this doesn't rescan the key
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,39 @@
+package com.gnopai.leady;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Gives each distinct value an int code, so a column of repetitive values can be stored as codes with
+ * each value kept once. Codes count up from 0 in order of first appearance and never change, and null
+ * is always {@link #NULL_CODE}.
+ */
+class ValueDictionary<T> {
+    static final int NULL_CODE = -1;
+
+    private final Map<T, Integer> codes = new HashMap<>();
+    private final List<T> values = new ArrayList<>();
+
+    int encode(T value) {
+        if (value == null) {
+            return NULL_CODE;
+        }
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = values.size();
+            codes.put(value, code);
+            values.add(value);
+        }
+        return code;
+    }
+
+    T decode(int code) {
+        return code == NULL_CODE ? null : values.get(code);
+    }
+
+    int size() {
+        return values.size();
+    }
+}
@@ -0,0 +1,147 @@
+package com.gnopai.leady;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Writes to its delegate on a dedicated thread, so that an expensive stream, such as a compressor,
+ * runs alongside whatever produces the bytes rather than alternating with it. Bytes are collected
+ * into blocks and handed over through a bounded queue. A write failure surfaces on the producer's
+ * side at its next write, flush or close.
+ * <p>
+ * {@link #flush()} hands over the bytes written so far but doesn't flush the delegate, since a
+ * compressor would compress worse for it. {@link #close()} waits for everything to be written.
+ */
+class WriteBehindOutputStream extends OutputStream {
+    private static final byte[] END_OF_STREAM = new byte[0];
+
+    private final OutputStream delegate;
+    private final int blockSize;
+    private final BlockingQueue<byte[]> blocks;
+    private final Thread writerThread;
+    private volatile Throwable writerFailure;
+    private byte[] block;
+    private int position;
+    private boolean closed;
+
+    WriteBehindOutputStream(OutputStream delegate, int blockSize, int blocksAhead, String threadName) {
+        if (blockSize <= 0 || blocksAhead <= 0) {
+            throw new IllegalArgumentException("Block size and blocks ahead must be positive, got " + blockSize + " and " + blocksAhead);
+        }
+        this.delegate = delegate;
+        this.blockSize = blockSize;
+        this.blocks = new ArrayBlockingQueue<>(blocksAhead);
+        this.block = new byte[blockSize];
+        this.writerThread = new Thread(this::writeBlocks, threadName);
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (position == block.length) {
+            handOverBlock();
+        }
+        block[position++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (position == block.length) {
+                handOverBlock();
+            }
+            int count = Math.min(length, block.length - position);
+            System.arraycopy(bytes, offset, block, position, count);
+            position += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (position > 0) {
+            handOverBlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            if (writerFailure == null) {
+                flush();
+            }
+        } finally {
+            // the writer thread closes the delegate once it sees the end, even after a failure
+            closed = true;
+            putBlock(END_OF_STREAM);
+            try {
+                writerThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for " + writerThread.getName());
+            }
+        }
+        checkWriterFailure();
+    }
+
+    private void handOverBlock() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        checkWriterFailure();
+        byte[] fullBlock = position == block.length ? block : Arrays.copyOf(block, position);
+        putBlock(fullBlock);
+        if (fullBlock == block) {
+            block = new byte[blockSize];
+        }
+        position = 0;
+    }
+
+    private void putBlock(byte[] nextBlock) throws IOException {
+        try {
+            blocks.put(nextBlock);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + writerThread.getName());
+        }
+    }
+
+    private void checkWriterFailure() throws IOException {
+        if (writerFailure != null) {
+            throw new IOException("Failed to write on " + writerThread.getName(), writerFailure);
+        }
+    }
+
+    private void writeBlocks() {
+        try {
+            for (byte[] nextBlock = blocks.take(); nextBlock != END_OF_STREAM; nextBlock = blocks.take()) {
+                // after a failure, blocks are still taken so the producer never waits on a full queue
+                if (writerFailure == null) {
+                    try {
+                        delegate.write(nextBlock);
+                    } catch (Throwable e) {
+                        writerFailure = e;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            writerFailure = e;
+        }
+        try {
+            delegate.close();
+        } catch (Throwable e) {
+            if (writerFailure == null) {
+                writerFailure = e;
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.gnopai.leady;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+class AsyncLeadUpdateReporterTest {
+    private final LeadUpdateReporter delegate = mock(LeadUpdateReporter.class);
+
+    @Test
+    void testUpdatesAreWrittenInOrder() {
+        // given
+        Lead lead1 = Lead.builder().id("1").build();
+        Lead lead2 = Lead.builder().id("2").build();
+        LeadChange leadChange = new LeadChange("1", "A", Set.of());
+
+        AsyncLeadUpdateReporter testClass = new AsyncLeadUpdateReporter(delegate, 2, 2, AsyncLeadUpdateReporter.BackPressure.BLOCK);
+
+        // when
+        testClass.reportLeadAdded(lead1);
+        testClass.reportLeadChanged(leadChange);
+        testClass.reportLeadIgnored(lead2);
+        testClass.reportLeadAdded(lead2);
+        testClass.close();
+
+        // then
+        InOrder inOrder = inOrder(delegate);
+        inOrder.verify(delegate).reportLeadAdded(lead1);
+        inOrder.verify(delegate).reportLeadChanged(leadChange);
+        inOrder.verify(delegate).reportLeadIgnored(lead2);
+        inOrder.verify(delegate).reportLeadAdded(lead2);
+        inOrder.verify(delegate).close();
+        verifyNoMoreInteractions(delegate);
+    }
+
+    @Test
+    void testFlushWaitsForWrittenUpdates() {
+        // given
+        Lead lead = Lead.builder().id("1").build();
+        AsyncLeadUpdateReporter testClass = new AsyncLeadUpdateReporter(delegate);
+
+        // when
+        testClass.reportLeadAdded(lead);
+        testClass.flush();
+
+        // then
+        InOrder inOrder = inOrder(delegate);
+        inOrder.verify(delegate).reportLeadAdded(lead);
+        inOrder.verify(delegate).flush();
+        testClass.close();
+    }
+
+    @Test
+    void testDropsUpdatesWhenFull() throws Exception {
+        // given
+        CountDownLatch writerBlocked = new CountDownLatch(1);
+        CountDownLatch releaseWriter = new CountDownLatch(1);
+        Lead blockingLead = Lead.builder().id("blocking").build();
+        doAnswer(invocation -> {
+            writerBlocked.countDown();
+            releaseWriter.await();
+            return null;
+        }).when(delegate).reportLeadAdded(blockingLead);
+
+        AsyncLeadUpdateReporter testClass = new AsyncLeadUpdateReporter(delegate, 1, 1, AsyncLeadUpdateReporter.BackPressure.DROP);
+        testClass.reportLeadAdded(blockingLead);
+        writerBlocked.await();
+
+        // when
+        testClass.reportLeadIgnored(blockingLead); // fills the buffer
+        testClass.reportLeadIgnored(blockingLead);
+        testClass.reportLeadIgnored(blockingLead);
+        releaseWriter.countDown();
+        testClass.close();
+
+        // then
+        assertEquals(2, testClass.getDroppedUpdates());
+        verify(delegate, times(1)).reportLeadIgnored(blockingLead);
+    }
+
+    @Test
+    void testWriterFailureSurfacesOnClose() {
+        // given
+        Lead lead = Lead.builder().id("1").build();
+        doThrow(new IllegalStateException("disk full")).when(delegate).reportLeadAdded(lead);
+
+        AsyncLeadUpdateReporter testClass = new AsyncLeadUpdateReporter(delegate);
+
+        // when
+        testClass.reportLeadAdded(lead);
+
+        // then
+        RuntimeException exception = assertThrows(RuntimeException.class, testClass::close);
+        assertEquals("disk full", exception.getCause().getMessage());
+    }
+
+    @Test
+    void testRejectsUpdatesAfterClose() {
+        // given
+        Lead lead = Lead.builder().id("1").build();
+        // a single slot, which a report after close would otherwise wait on forever
+        AsyncLeadUpdateReporter testClass = new AsyncLeadUpdateReporter(delegate, 1, 1, AsyncLeadUpdateReporter.BackPressure.BLOCK);
+
+        // when
+        testClass.close();
+
+        // then
+        assertThrows(IllegalStateException.class, () -> testClass.reportLeadAdded(lead));
+        assertThrows(IllegalStateException.class, () -> testClass.reportLeadIgnored(lead));
+        assertThrows(IllegalStateException.class, testClass::flush);
+        verify(delegate, never()).reportLeadAdded(any());
+    }
+
+    @Test
+    void testCloseIsIdempotent() {
+        // given
+        AsyncLeadUpdateReporter testClass = new AsyncLeadUpdateReporter(delegate);
+
+        // when
+        testClass.close();
+        testClass.close();
+
+        // then
+        verify(delegate, times(1)).close();
+    }
+
+    @Test
+    void testCountsWrittenUpdates() {
+        // given
+        Lead lead = Lead.builder().id("1").build();
+        AsyncLeadUpdateReporter testClass = new AsyncLeadUpdateReporter(delegate, 4, 2, AsyncLeadUpdateReporter.BackPressure.BLOCK);
+
+        // when
+        for (int i = 0; i < 10; i++) {
+            testClass.reportLeadAdded(lead);
+        }
+        testClass.close();
+
+        // then
+        StageCounters counters = testClass.getCounters();
+        assertEquals("report", counters.getName());
+        assertEquals(10, counters.getItems());
+        assertTrue(counters.getMaxQueueDepth() <= 4);
+        assertTrue(counters.getRunningTime(TimeUnit.NANOSECONDS) > 0);
+    }
+}
@@ -0,0 +1,107 @@
+package com.gnopai.leady;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BinaryLeadUpdateReporterTest {
+    @TempDir
+    Path tempDirectory;
+
+    @Test
+    void testDecodedLogMatchesTextReport() {
+        // given
+        Lead lead = Lead.builder().id("1").email("a@b.com").build();
+        Lead leadWithNulls = Lead.builder().build();
+        LeadChange leadChange = new LeadChange("1", "a@b.com", new LinkedHashSet<>(List.of(
+                new LeadChange.FieldDiff("entryDate",
+                        ZonedDateTime.of(2014, 5, 7, 17, 30, 20, 0, ZoneOffset.ofHours(-4)),
+                        ZonedDateTime.of(2014, 5, 7, 17, 33, 20, 123_000_000, ZoneId.of("Europe/Paris"))),
+                new LeadChange.FieldDiff("firstName", "J\u00f6rg", null),
+                new LeadChange.FieldDiff("email", "a@b.com", "c@d.com")
+        )));
+        LeadChange secondLeadChange = new LeadChange("2", null, Set.of(
+                new LeadChange.FieldDiff("entryDate",
+                        ZonedDateTime.of(2013, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC),
+                        ZonedDateTime.of(2014, 5, 7, 17, 30, 20, 0, ZoneOffset.ofHours(-4)))
+        ));
+
+        Path auditLog = tempDirectory.resolve("logs/audit.log");
+        StringWriter expected = new StringWriter();
+        LeadUpdateReporter textReporter = new StandardOutLeadUpdateReporter(new PrintWriter(expected));
+
+        // when
+        try (LeadUpdateReporter testClass = new BinaryLeadUpdateReporter(auditLog)) {
+            for (LeadUpdateReporter reporter : List.of(testClass, textReporter)) {
+                reporter.reportLeadAdded(lead);
+                reporter.reportLeadChanged(leadChange);
+                reporter.reportLeadIgnored(leadWithNulls);
+                reporter.reportLeadChanged(secondLeadChange);
+            }
+        }
+        textReporter.flush();
+
+        StringWriter decoded = new StringWriter();
+        try (LeadUpdateReporter reporter = new StandardOutLeadUpdateReporter(new PrintWriter(decoded))) {
+            new LeadAuditLogDecoder().decode(auditLog, reporter);
+        }
+
+        // then
+        assertEquals(expected.toString(), decoded.toString());
+    }
+
+    @Test
+    void testRecordsLargerThanTheBufferAreWritten() {
+        // given
+        String longEmail = "x".repeat(200_000) + "@example.com";
+        Lead lead = Lead.builder().id("1").email(longEmail).build();
+        Path auditLog = tempDirectory.resolve("audit.log");
+
+        // when
+        try (LeadUpdateReporter testClass = new BinaryLeadUpdateReporter(auditLog)) {
+            testClass.reportLeadAdded(Lead.builder().id("0").build());
+            testClass.reportLeadAdded(lead);
+            testClass.reportLeadIgnored(lead);
+        }
+
+        StringWriter decoded = new StringWriter();
+        try (LeadUpdateReporter reporter = new StandardOutLeadUpdateReporter(new PrintWriter(decoded))) {
+            new LeadAuditLogDecoder().decode(auditLog, reporter);
+        }
+
+        // then
+        String expected = "Lead 0/null was added\n"
+                + "Lead 1/" + longEmail + " was added\n"
+                + "Lead update for 1/" + longEmail + " was ignored due to a newer entry\n";
+        assertEquals(expected, decoded.toString());
+    }
+
+    @Test
+    void testTruncatedLogFails() throws Exception {
+        // given
+        Path auditLog = tempDirectory.resolve("audit.log");
+        try (LeadUpdateReporter testClass = new BinaryLeadUpdateReporter(auditLog)) {
+            testClass.reportLeadAdded(Lead.builder().id("1").email("a@b.com").build());
+        }
+        byte[] bytes = Files.readAllBytes(auditLog);
+        Files.write(auditLog, Arrays.copyOf(bytes, bytes.length - 3));
+
+        // when / then
+        LeadUpdateReporter reporter = new StandardOutLeadUpdateReporter(new PrintWriter(new StringWriter()));
+        assertThrows(RuntimeException.class, () -> new LeadAuditLogDecoder().decode(auditLog, reporter));
+    }
+}
@@ -0,0 +1,161 @@
+package com.gnopai.leady;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.gnopai.leady.LeadStore.NO_LEAD;
+import static java.time.ZoneOffset.UTC;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+class BloomFilterLeadStoreTest {
+    private static final ZonedDateTime START = ZonedDateTime.of(2014, 5, 7, 17, 30, 20, 0, UTC);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testSkipsStoreForUnseenKeys() {
+        // given
+        CompactLeadStore leadStore = spy(new CompactLeadStore());
+        BloomFilterLeadStore.Counters counters = new BloomFilterLeadStore.Counters();
+        BloomFilterLeadStore testClass = new BloomFilterLeadStore(leadStore, 0.01, counters);
+        int handle = testClass.addLead(lead("1", "a@foo.com"));
+
+        // when / then
+        assertEquals(handle, testClass.findLeadById("1"));
+        assertEquals(handle, testClass.findLeadByEmail("a@foo.com"));
+        assertEquals(NO_LEAD, testClass.findLeadById("2"));
+        assertEquals(NO_LEAD, testClass.findLeadByEmail("b@foo.com"));
+        verify(leadStore, never()).findLeadById("2");
+        verify(leadStore, never()).findLeadByEmail("b@foo.com");
+        assertEquals(2, counters.getHits());
+        assertEquals(2, counters.getSkipped());
+        assertEquals(0, counters.getFalsePositives());
+    }
+
+    @Test
+    void testLooksUpNullKeysInStore() {
+        // given
+        CompactLeadStore leadStore = spy(new CompactLeadStore());
+        BloomFilterLeadStore.Counters counters = new BloomFilterLeadStore.Counters();
+        BloomFilterLeadStore testClass = new BloomFilterLeadStore(leadStore, 0.01, counters);
+        int handle = testClass.addLead(lead("1", null));
+
+        // when / then
+        assertEquals(handle, testClass.findLeadByEmail(null));
+        assertEquals(NO_LEAD, testClass.findLeadById(null));
+        verify(leadStore).findLeadByEmail(null);
+        assertEquals(0, counters.getHits() + counters.getSkipped() + counters.getFalsePositives());
+    }
+
+    @Test
+    void testFindsKeysAlreadyInStore() {
+        // given
+        try (MVStoreLeadStore leadStore = MVStoreLeadStore.open(tempDir.resolve("leads.mv"), 1)) {
+            int first = leadStore.addLead(lead("1", "a@foo.com"));
+            leadStore.updateLead(first, lead("2", "b@foo.com"));
+            int second = leadStore.addLead(lead("3", "c@foo.com"));
+
+            // when
+            BloomFilterLeadStore testClass = new BloomFilterLeadStore(leadStore, 0.01, new BloomFilterLeadStore.Counters());
+
+            // then
+            assertEquals(first, testClass.findLeadById("1"));
+            assertEquals(first, testClass.findLeadByEmail("b@foo.com"));
+            assertEquals(second, testClass.findLeadById("3"));
+            assertEquals(NO_LEAD, testClass.findLeadById("4"));
+        }
+    }
+
+    @Test
+    void testFindsKeysThatDontSurviveEncodingAfterRebuild() {
+        // given
+        CompactLeadStore leadStore = new CompactLeadStore();
+        BloomFilterLeadStore testClass = new BloomFilterLeadStore(leadStore, 0.01, new BloomFilterLeadStore.Counters());
+        int handle = testClass.addLead(lead("x\uD800", "x\uDC00@foo.com"));
+
+        // when
+        for (int i = 0; i < BloomFilterLeadStore.MIN_CAPACITY; i++) {
+            testClass.addLead(lead("id" + i, "email" + i + "@foo.com"));
+        }
+
+        // then
+        assertEquals(handle, leadStore.findLeadById("x\uD800"));
+        assertEquals(handle, testClass.findLeadById("x\uD800"));
+        assertEquals(handle, testClass.findLeadByEmail("x\uDC00@foo.com"));
+    }
+
+    @Test
+    void testMatchesHashMapLeadStoreAsFiltersGrow() {
+        // given
+        Random random = new Random(17);
+        HashMapLeadStore referenceStore = new HashMapLeadStore();
+        BloomFilterLeadStore.Counters counters = new BloomFilterLeadStore.Counters();
+        BloomFilterLeadStore testClass = new BloomFilterLeadStore(new ColumnarLeadStore(), 0.01, counters);
+
+        // when / then
+        for (int i = 0; i < 300_000; i++) {
+            Lead lead = lead("id" + random.nextInt(200_000), random.nextInt(50) == 0 ? null : "email" + random.nextInt(200_000) + "@foo.com");
+            int existingLead = referenceStore.findLeadById(lead.getId());
+            assertEquals(existingLead, testClass.findLeadById(lead.getId()));
+            assertEquals(referenceStore.findLeadByEmail(lead.getEmail()), testClass.findLeadByEmail(lead.getEmail()));
+
+            if (existingLead == NO_LEAD) {
+                assertEquals(referenceStore.addLead(lead), testClass.addLead(lead));
+            } else {
+                referenceStore.updateLead(existingLead, lead);
+                testClass.updateLead(existingLead, lead);
+            }
+        }
+        assertEquals(referenceStore.getLeads(), new ArrayList<>(testClass.getLeads()));
+        assertTrue(counters.getSkipped() > 0);
+        assertTrue(counters.getFalsePositiveRate() < 0.02, counters.summarize());
+    }
+
+    @Test
+    void testPassesThroughOtherCalls() {
+        // given
+        CompactLeadStore leadStore = spy(new CompactLeadStore());
+        BloomFilterLeadStore testClass = new BloomFilterLeadStore(leadStore, 0.01, new BloomFilterLeadStore.Counters());
+        int handle = testClass.addLead(lead("1", "a@foo.com"));
+        List<String> ids = new ArrayList<>();
+
+        // when
+        testClass.updateLead(handle, lead("2", "a@foo.com"));
+        testClass.forEachId(ids::add);
+
+        // then
+        assertEquals(lead("2", "a@foo.com"), testClass.getLead(handle));
+        assertEquals(1, testClass.size());
+        assertEquals(List.of("1", "2"), ids);
+        assertFalse(testClass.isEnteredAfter(handle, START));
+        verify(leadStore, never()).findLeadById(anyString());
+    }
+
+    @Test
+    void testRejectsBadFalsePositiveRate() {
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilterLeadStore(new CompactLeadStore(), 0, new BloomFilterLeadStore.Counters()));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilterLeadStore(new CompactLeadStore(), 1, new BloomFilterLeadStore.Counters()));
+    }
+
+    private static Lead lead(String id, String email) {
+        return Lead.builder()
+                .id(id)
+                .email(email)
+                .entryDate(START)
+                .build();
+    }
+}
@@ -0,0 +1,72 @@
+package com.gnopai.leady;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BloomFilterTest {
+
+    @Test
+    void testHasNoFalseNegatives() {
+        // given
+        BloomFilter testClass = new BloomFilter(10_000, 0.01);
+
+        // when
+        for (int i = 0; i < 10_000; i++) {
+            testClass.put("key" + i);
+        }
+
+        // then
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(testClass.mightContain("key" + i));
+        }
+    }
+
+    @Test
+    void testCountsRepeatedKeysOnce() {
+        // given
+        BloomFilter testClass = new BloomFilter(100, 0.01);
+
+        // when
+        for (int i = 0; i < 1_000; i++) {
+            testClass.put("key" + i % 50);
+        }
+
+        // then
+        assertFalse(testClass.isFull());
+    }
+
+    @Test
+    void testKeepsToFalsePositiveRate() {
+        // given
+        BloomFilter testClass = new BloomFilter(100_000, 0.01);
+        for (int i = 0; i < 100_000; i++) {
+            testClass.put("email" + i + "@foo.com");
+        }
+
+        // when
+        int falsePositives = 0;
+        for (int i = 100_000; i < 300_000; i++) {
+            if (testClass.mightContain("email" + i + "@foo.com")) {
+                falsePositives++;
+            }
+        }
+
+        // then
+        assertTrue(falsePositives < 200_000 * 0.01, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void testSizesBitsToPowerOfTwo() {
+        // given
+        BloomFilter testClass = new BloomFilter(1_000, 0.01);
+
+        // when / then
+        // 1000 keys at 1% need 9586 bits
+        assertEquals(16_384, testClass.getBitCount());
+        assertFalse(testClass.isFull());
+        assertFalse(testClass.mightContain(""));
+    }
+}
@@ -0,0 +1,136 @@
+package com.gnopai.leady;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.gnopai.leady.LeadDeduplicator.LEAD_ORDER;
+import static com.gnopai.leady.LeadStore.NO_LEAD;
+import static java.time.ZoneOffset.UTC;
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class ColumnarLeadStoreTest {
+    private static final ZonedDateTime START = ZonedDateTime.of(2014, 5, 7, 17, 30, 20, 0, UTC);
+    private static final List<ZoneId> ZONES = List.of(UTC, ZoneOffset.ofHours(-5), ZoneId.of("Europe/Oslo"), ZoneId.of("America/New_York"));
+
+    @Test
+    void testRebuildsLeads() {
+        // given
+        ColumnarLeadStore testClass = new ColumnarLeadStore();
+        Lead first = Lead.builder()
+                .id("1")
+                .email("bob@foo.com")
+                .firstName("B\u00f8b")
+                .lastName("Smith")
+                .address("1 Main St")
+                .entryDate(ZonedDateTime.of(2014, 10, 26, 2, 30, 0, 123_456_789, ZoneId.of("Europe/Oslo")).withLaterOffsetAtOverlap())
+                .build();
+        Lead second = Lead.builder().id("2").firstName("Bob").lastName("Smith").build();
+        Lead third = first.withId("3").withEntryDate(ZonedDateTime.of(1500, 1, 1, 0, 0, 0, 1, ZoneOffset.ofHoursMinutes(5, 30)));
+
+        // when
+        int firstHandle = testClass.addLead(first);
+        int secondHandle = testClass.addLead(second);
+        int thirdHandle = testClass.addLead(third);
+
+        // then
+        assertEquals(first, testClass.getLead(firstHandle));
+        assertEquals(second, testClass.getLead(secondHandle));
+        assertEquals(third, testClass.getLead(thirdHandle));
+        assertEquals(List.of(first, second, third), testClass.getLeads());
+        assertThrows(IndexOutOfBoundsException.class, () -> testClass.getLead(3));
+    }
+
+    @Test
+    void testMatchesHashMapLeadStore() {
+        // given
+        Random random = new Random(13);
+        HashMapLeadStore referenceStore = new HashMapLeadStore();
+        ColumnarLeadStore testClass = new ColumnarLeadStore();
+
+        // when / then
+        for (int i = 0; i < 20_000; i++) {
+            Lead lead = generateLead(random);
+            int existingLead = referenceStore.findLeadById(lead.getId());
+            assertEquals(existingLead, testClass.findLeadById(lead.getId()));
+            assertEquals(referenceStore.findLeadByEmail(lead.getEmail()), testClass.findLeadByEmail(lead.getEmail()));
+
+            if (existingLead == NO_LEAD) {
+                assertEquals(referenceStore.addLead(lead), testClass.addLead(lead));
+            } else {
+                assertEquals(referenceStore.isEnteredAfter(existingLead, lead.getEntryDate()), testClass.isEnteredAfter(existingLead, lead.getEntryDate()));
+                referenceStore.updateLead(existingLead, lead);
+                testClass.updateLead(existingLead, lead);
+            }
+        }
+        assertEquals(referenceStore.getLeads(), new ArrayList<>(testClass.getLeads()));
+        assertEquals(referenceStore.getLeads().stream().sorted(LEAD_ORDER).collect(toList()), new ArrayList<>(testClass.getSortedLeads()));
+    }
+
+    @Test
+    void testComparesEntryDatesToTheNanosecond() {
+        // given
+        ColumnarLeadStore testClass = new ColumnarLeadStore();
+        int handle = testClass.addLead(Lead.builder().id("1").entryDate(START.plusNanos(5)).build());
+
+        // when / then
+        assertTrue(testClass.isEnteredAfter(handle, START.plusNanos(4)));
+        assertFalse(testClass.isEnteredAfter(handle, START.plusNanos(5)));
+        assertFalse(testClass.isEnteredAfter(handle, START.plusNanos(5).withZoneSameInstant(ZoneOffset.ofHours(3))));
+        assertFalse(testClass.isEnteredAfter(handle, START.plusSeconds(1)));
+        assertTrue(testClass.isEnteredAfter(handle, START.minusSeconds(1).plusNanos(999_999_999)));
+    }
+
+    @Test
+    void testSortsLeadsWithoutEntryDates() {
+        // given
+        ColumnarLeadStore testClass = new ColumnarLeadStore();
+        testClass.addLead(Lead.builder().id("1").entryDate(START).build());
+        testClass.addLead(Lead.builder().id("2").build());
+
+        // when / then
+        assertThrows(NullPointerException.class, testClass::getSortedLeads);
+    }
+
+    @Test
+    void testDeduplicatesLikeCompactLeadStore() {
+        // given
+        Random random = new Random(21);
+        List<Lead> leads = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            leads.add(generateLead(random));
+        }
+        LeadDeduplicator compactLeadDeduplicator = new LeadDeduplicator(new LeadChangeFinder(), mock(LeadUpdateReporter.class));
+        LeadDeduplicator testClass = new LeadDeduplicator(new LeadChangeFinder(), mock(LeadUpdateReporter.class), ColumnarLeadStore::new);
+
+        // when
+        LeadList dedupedLeadList = testClass.deduplicateLeads(leads.stream());
+
+        // then
+        assertEquals(compactLeadDeduplicator.deduplicateLeads(leads.stream()).getLeads(), new ArrayList<>(dedupedLeadList.getLeads()));
+    }
+
+    // few distinct names and addresses, and entry dates that often tie or go backwards
+    private static Lead generateLead(Random random) {
+        return Lead.builder()
+                .id("id" + random.nextInt(5_000))
+                .email(random.nextInt(50) == 0 ? null : "email" + random.nextInt(5_000) + "@foo.com")
+                .firstName(random.nextInt(50) == 0 ? null : "First" + random.nextInt(20))
+                .lastName("Last" + random.nextInt(50))
+                .address(random.nextInt(100) + " Main St")
+                .entryDate(START.plusSeconds(random.nextInt(2_000))
+                        .plusNanos(random.nextBoolean() ? 0 : random.nextInt(1_000))
+                        .withZoneSameInstant(ZONES.get(random.nextInt(ZONES.size()))))
+                .build();
+    }
+}
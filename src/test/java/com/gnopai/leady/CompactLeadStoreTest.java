@@ -0,0 +1,69 @@
+package com.gnopai.leady;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Random;
+
+import static com.gnopai.leady.LeadStore.NO_LEAD;
+import static java.time.ZoneOffset.UTC;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CompactLeadStoreTest {
+    private static final List<String> KEY_PREFIXES = List.of("", "bob@foo.com", "b\u00f8b@f\u00f8\u00f8.com", "\ud83d\ude00");
+
+    private final ZonedDateTime now = ZonedDateTime.now(UTC);
+
+    @Test
+    void testFindsLatestHandlePerKey() {
+        CompactLeadStore testClass = new CompactLeadStore();
+
+        int first = testClass.addLead(lead("1", "A"));
+        int second = testClass.addLead(lead("2", "B"));
+        testClass.updateLead(first, lead("3", "B"));
+
+        assertEquals(first, testClass.findLeadById("1"));
+        assertEquals(second, testClass.findLeadById("2"));
+        assertEquals(first, testClass.findLeadById("3"));
+        assertEquals(first, testClass.findLeadByEmail("A"));
+        assertEquals(first, testClass.findLeadByEmail("B"));
+        assertEquals(NO_LEAD, testClass.findLeadById("4"));
+        assertEquals(NO_LEAD, testClass.findLeadByEmail(null));
+        assertEquals(List.of(lead("3", "B"), lead("2", "B")), testClass.getLeads());
+    }
+
+    @Test
+    void testMatchesHashMapLeadStore() {
+        Random random = new Random(7);
+        CompactLeadStore testClass = new CompactLeadStore();
+        HashMapLeadStore referenceStore = new HashMapLeadStore();
+
+        for (int i = 0; i < 20_000; i++) {
+            Lead lead = lead(randomKey(random), random.nextInt(100) == 0 ? null : randomKey(random));
+            int existingLead = referenceStore.findLeadById(lead.getId());
+            assertEquals(existingLead, testClass.findLeadById(lead.getId()));
+            assertEquals(referenceStore.findLeadByEmail(lead.getEmail()), testClass.findLeadByEmail(lead.getEmail()));
+
+            if (existingLead == NO_LEAD) {
+                assertEquals(referenceStore.addLead(lead), testClass.addLead(lead));
+            } else {
+                referenceStore.updateLead(existingLead, lead);
+                testClass.updateLead(existingLead, lead);
+            }
+        }
+        assertEquals(referenceStore.getLeads(), testClass.getLeads());
+    }
+
+    private String randomKey(Random random) {
+        return KEY_PREFIXES.get(random.nextInt(KEY_PREFIXES.size())) + random.nextInt(5_000);
+    }
+
+    private Lead lead(String id, String email) {
+        return Lead.builder()
+                .id(id)
+                .email(email)
+                .entryDate(now)
+                .build();
+    }
+}
@@ -0,0 +1,158 @@
+package com.gnopai.leady;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.time.ZoneOffset.UTC;
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CompressionTest {
+    private final Gson gson = LeadyMain.createGson();
+    private final ZonedDateTime now = ZonedDateTime.of(2014, 5, 7, 17, 30, 20, 0, UTC);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testWritesAndReadsGzippedJson() throws Exception {
+        // given
+        List<Lead> leads = generateLeads(5000);
+        Path path = tempDir.resolve("leads.json.gz");
+
+        // when
+        new JsonLeadWriter(gson).writeLeads(leads, path);
+
+        // then
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(path))) {
+            assertEquals(gson.toJson(new LeadList(leads)), new String(in.readAllBytes(), UTF_8));
+        }
+        try (Stream<Lead> readLeads = new JsonLeadReader(gson).readLeads(path)) {
+            assertEquals(leads, readLeads.collect(toList()));
+        }
+    }
+
+    @Test
+    void testDetectsCompressedInputByContent() throws Exception {
+        // given
+        List<Lead> leads = generateLeads(5000);
+        Path path = tempDir.resolve("leads.ndjson");
+        new NdjsonLeadWriter(gson, JsonLeadWriter.DEFAULT_BUFFER_SIZE, Compression.GZIP).writeLeads(leads, path);
+
+        // when
+        List<Lead> readLeads;
+        try (Stream<Lead> leadStream = new NdjsonLeadReader(gson).readLeads(path)) {
+            readLeads = leadStream.collect(toList());
+        }
+
+        // then
+        assertEquals(leads, readLeads);
+        assertEquals(true, Compression.isCompressed(path));
+    }
+
+    @Test
+    void testReadsMultiMemberGzip() throws Exception {
+        // given
+        Path path = tempDir.resolve("leads.ndjson.gz");
+        List<Lead> leads = generateLeads(100);
+        try (OutputStream out = Files.newOutputStream(path)) {
+            for (List<Lead> part : List.of(leads.subList(0, 40), leads.subList(40, 100))) {
+                GZIPOutputStream member = new GZIPOutputStream(out);
+                for (Lead lead : part) {
+                    member.write((gson.toJson(lead) + "\n").getBytes(UTF_8));
+                }
+                member.finish();
+            }
+        }
+
+        // when
+        List<Lead> readLeads;
+        try (Stream<Lead> leadStream = new NdjsonLeadReader(gson).readLeads(path)) {
+            readLeads = leadStream.collect(toList());
+        }
+
+        // then
+        assertEquals(leads, readLeads);
+    }
+
+    @Test
+    void testLeavesPlainOutputUncompressed() throws Exception {
+        // given
+        Path path = tempDir.resolve("leads.json");
+        List<Lead> leads = generateLeads(10);
+
+        // when
+        new JsonLeadWriter(gson, JsonLeadWriter.DEFAULT_BUFFER_SIZE, Compression.NONE).writeLeads(leads, path);
+
+        // then
+        assertEquals(gson.toJson(new LeadList(leads)), Files.readString(path));
+        assertEquals(false, Compression.isCompressed(path));
+    }
+
+    @Test
+    void testRejectsMappingCompressedInput() throws Exception {
+        // given
+        Path path = tempDir.resolve("leads.json.gz");
+        new JsonLeadWriter(gson).writeLeads(generateLeads(10), path);
+
+        // when / then
+        assertThrows(IllegalArgumentException.class, () -> new MappedLeadReader().readLeads(path));
+    }
+
+    @Test
+    void testStreamsRoundTripAcrossBlocks() throws Exception {
+        // given
+        byte[] bytes = new byte[100_000];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (i * 31);
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+        // when
+        try (OutputStream out = new WriteBehindOutputStream(new GZIPOutputStream(compressed), 1000, 2, "test-writer")) {
+            out.write(bytes, 0, 10);
+            out.write(bytes[10]);
+            out.flush();
+            out.write(bytes, 11, bytes.length - 11);
+        }
+        byte[] decompressed;
+        try (InputStream in = new ReadAheadInputStream(new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray())), 777, 2, "test-reader")) {
+            decompressed = in.readAllBytes();
+        }
+
+        // then
+        assertArrayEquals(bytes, decompressed);
+    }
+
+    private List<Lead> generateLeads(int count) {
+        List<Lead> leads = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            leads.add(Lead.builder()
+                    .id("id" + i)
+                    .email("email" + (i % 1000) + "@foo.com")
+                    .firstName("First" + i)
+                    .lastName("Last")
+                    .address(i + " Street St")
+                    .entryDate(now.plusSeconds(i))
+                    .build());
+        }
+        return leads;
+    }
+}
@@ -0,0 +1,148 @@
+package com.gnopai.leady;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.time.ZoneOffset.UTC;
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeltaLeadWriterTest {
+    private static final ZonedDateTime START = ZonedDateTime.of(2014, 5, 7, 17, 30, 20, 0, UTC);
+
+    private final Gson gson = LeadyMain.createGson();
+    private final JsonLeadReader leadReader = new JsonLeadReader(gson);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testInsertsEverythingWithoutPreviousOutput() throws IOException {
+        // given
+        Path outputFile = tempDir.resolve("out/leads.json");
+        Path deltaFile = tempDir.resolve("out/delta.ndjson");
+        List<Lead> leads = List.of(lead("1", 0), lead("2", 1));
+        DeltaLeadWriter testClass = createDeltaLeadWriter(null, deltaFile);
+
+        // when
+        testClass.writeLeads(leads, outputFile);
+
+        // then
+        assertEquals(leads, readLeads(outputFile));
+        assertEquals(List.of(
+                "{\"op\":\"insert\",\"lead\":{\"_id\":\"1\",\"email\":\"1@foo.com\",\"entryDate\":\"2014-05-07T17:30:20Z\"}}",
+                "{\"op\":\"insert\",\"lead\":{\"_id\":\"2\",\"email\":\"2@foo.com\",\"entryDate\":\"2014-05-07T17:30:21Z\"}}"
+        ), Files.readAllLines(deltaFile, UTF_8));
+    }
+
+    @Test
+    void testWritesOnlyChangesSincePreviousOutput() throws IOException {
+        // given
+        Path outputFile = tempDir.resolve("leads.json");
+        Path deltaFile = tempDir.resolve("delta.ndjson");
+        new JsonLeadWriter(gson).writeLeads(List.of(lead("1", 0), lead("2", 1), lead("3", 2), lead("4", 3)), outputFile);
+        List<Lead> leads = List.of(
+                lead("1", 0),
+                lead("3", 2).withEmail(null).withFirstName("Bob"),
+                lead("5", 4),
+                lead("2", 5)
+        );
+        DeltaLeadWriter testClass = createDeltaLeadWriter(null, deltaFile);
+
+        // when
+        testClass.writeLeads(leads, outputFile);
+
+        // then
+        assertEquals(leads, readLeads(outputFile));
+        assertEquals(List.of("delta.ndjson", "leads.json"), listFiles());
+        assertEquals(List.of(
+                "{\"op\":\"update\",\"_id\":\"3\",\"email\":\"3@foo.com\",\"changes\":[{\"field\":\"email\",\"old\":\"3@foo.com\",\"new\":null},{\"field\":\"firstName\",\"old\":null,\"new\":\"Bob\"}]}",
+                "{\"op\":\"update\",\"_id\":\"2\",\"email\":\"2@foo.com\",\"changes\":[{\"field\":\"entryDate\",\"old\":\"2014-05-07T17:30:21Z\",\"new\":\"2014-05-07T17:30:25Z\"}]}",
+                "{\"op\":\"remove\",\"_id\":\"4\",\"email\":\"4@foo.com\"}",
+                "{\"op\":\"insert\",\"lead\":{\"_id\":\"5\",\"email\":\"5@foo.com\",\"entryDate\":\"2014-05-07T17:30:24Z\"}}"
+        ), Files.readAllLines(deltaFile, UTF_8));
+    }
+
+    @Test
+    void testKeepsCompressionWhenReplacingPreviousOutput() throws IOException {
+        // given
+        Path outputFile = tempDir.resolve("leads.json.gz");
+        Path deltaFile = tempDir.resolve("delta.ndjson");
+        new JsonLeadWriter(gson).writeLeads(List.of(lead("1", 0)), outputFile);
+        DeltaLeadWriter testClass = createDeltaLeadWriter(null, deltaFile);
+
+        // when
+        testClass.writeLeads(List.of(lead("1", 0), lead("2", 1)), outputFile);
+
+        // then
+        assertTrue(Compression.isCompressed(outputFile));
+        assertEquals(List.of(lead("1", 0), lead("2", 1)), readLeads(outputFile));
+        assertEquals(List.of("delta.ndjson", "leads.json.gz"), listFiles());
+    }
+
+    @Test
+    void testComparesAgainstSeparatePreviousOutput() throws IOException {
+        // given
+        Path previousOutputFile = tempDir.resolve("previous.json");
+        Path outputFile = tempDir.resolve("leads.json");
+        Path deltaFile = tempDir.resolve("delta.ndjson");
+        new JsonLeadWriter(gson).writeLeads(List.of(lead("1", 0), lead("2", 1)), previousOutputFile);
+        DeltaLeadWriter testClass = createDeltaLeadWriter(previousOutputFile, deltaFile);
+
+        // when
+        testClass.writeLeads(List.of(lead("2", 1)), outputFile);
+
+        // then
+        assertEquals(List.of(lead("1", 0), lead("2", 1)), readLeads(previousOutputFile));
+        assertEquals(List.of(lead("2", 1)), readLeads(outputFile));
+        assertEquals(List.of("{\"op\":\"remove\",\"_id\":\"1\",\"email\":\"1@foo.com\"}"), Files.readAllLines(deltaFile, UTF_8));
+    }
+
+    @Test
+    void testRejectsUnsortedPreviousOutput() throws IOException {
+        // given
+        Path outputFile = tempDir.resolve("leads.json");
+        new JsonLeadWriter(gson).writeLeads(List.of(lead("2", 1), lead("1", 0)), outputFile);
+        DeltaLeadWriter testClass = createDeltaLeadWriter(null, tempDir.resolve("delta.ndjson"));
+
+        // when / then
+        assertThrows(IllegalArgumentException.class, () -> testClass.writeLeads(List.of(lead("1", 0)), outputFile));
+        assertEquals(List.of(lead("2", 1), lead("1", 0)), readLeads(outputFile));
+        assertEquals(List.of("delta.ndjson", "leads.json"), listFiles());
+    }
+
+    private DeltaLeadWriter createDeltaLeadWriter(Path previousOutputFile, Path deltaFile) {
+        return new DeltaLeadWriter(new JsonLeadWriter(gson), leadReader, previousOutputFile, deltaFile, new LeadChangeFinder(), gson);
+    }
+
+    private List<String> listFiles() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.map(file -> file.getFileName().toString()).sorted().collect(toList());
+        }
+    }
+
+    private List<Lead> readLeads(Path file) throws IOException {
+        try (Stream<Lead> leads = leadReader.readLeads(file)) {
+            return leads.collect(toList());
+        }
+    }
+
+    private static Lead lead(String id, int seconds) {
+        return Lead.builder()
+                .id(id)
+                .email(id + "@foo.com")
+                .entryDate(START.plusSeconds(seconds))
+                .build();
+    }
+}
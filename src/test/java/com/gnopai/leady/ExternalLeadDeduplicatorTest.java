@@ -0,0 +1,186 @@
+package com.gnopai.leady;
+
+import com.fatboyindustrial.gsonjavatime.ZonedDateTimeConverter;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.fatboyindustrial.gsonjavatime.Converters.ZONED_DATE_TIME_TYPE;
+import static java.time.ZoneOffset.UTC;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class ExternalLeadDeduplicatorTest {
+    private final Gson gson = new GsonBuilder()
+            .registerTypeAdapter(ZONED_DATE_TIME_TYPE, new ZonedDateTimeConverter())
+            .create();
+    private final JsonLeadWriter jsonLeadWriter = new JsonLeadWriter(gson);
+    private final ZonedDateTime now = ZonedDateTime.now(UTC);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testMatchesInMemoryDeduplication() throws Exception {
+        // given
+        List<Lead> leads = generateLeads();
+        LeadList inMemoryLeads = new LeadDeduplicator(new LeadChangeFinder(), mock(LeadUpdateReporter.class))
+                .deduplicateLeads(new LeadList(leads));
+        Path expectedFile = tempDir.resolve("expected.json");
+        jsonLeadWriter.writeLeads(inMemoryLeads.getLeads(), expectedFile);
+
+        ExternalLeadDeduplicator testClass = new ExternalLeadDeduplicator(
+                new LeadChangeFinder(),
+                mock(LeadUpdateReporter.class),
+                jsonLeadWriter,
+                gson,
+                128 * 1024, // small enough to force more buckets than files open at once
+                tempDir.resolve("spill")
+        );
+
+        // when
+        Path outputFile = tempDir.resolve("output.json");
+        testClass.deduplicateLeads(leads::stream, outputFile);
+
+        // then
+        assertArrayEquals(Files.readAllBytes(expectedFile), Files.readAllBytes(outputFile));
+        assertEquals(List.of(), List.of(tempDir.resolve("spill").toFile().list()));
+    }
+
+    @Test
+    void testSplitsAndMergesInBatchesOfOpenFiles() throws Exception {
+        // given
+        List<Lead> leads = generateLeads();
+        LeadList inMemoryLeads = new LeadDeduplicator(new LeadChangeFinder(), mock(LeadUpdateReporter.class))
+                .deduplicateLeads(new LeadList(leads));
+        Path expectedFile = tempDir.resolve("expected.json");
+        jsonLeadWriter.writeLeads(inMemoryLeads.getLeads(), expectedFile);
+        // with only 3 files open at once, the buckets are split over a few passes and merged in batches
+        ExternalLeadDeduplicator testClass = new ExternalLeadDeduplicator(
+                new LeadChangeFinder(),
+                mock(LeadUpdateReporter.class),
+                jsonLeadWriter,
+                gson,
+                256 * 1024,
+                tempDir.resolve("spill"),
+                3,
+                null
+        );
+
+        // when
+        Path outputFile = tempDir.resolve("output.json");
+        testClass.deduplicateLeads(leads::stream, outputFile);
+
+        // then
+        assertArrayEquals(Files.readAllBytes(expectedFile), Files.readAllBytes(outputFile));
+        assertEquals(List.of(), List.of(tempDir.resolve("spill").toFile().list()));
+    }
+
+    @Test
+    void testCountsIntoMetrics() throws Exception {
+        // given
+        List<Lead> leads = generateLeads();
+        LeadyMetrics inMemoryMetrics = new LeadyMetrics();
+        new LeadDeduplicator(new LeadChangeFinder(), mock(LeadUpdateReporter.class), CompactLeadStore::new, inMemoryMetrics)
+                .deduplicateLeads(leads.stream());
+        LeadyMetrics externalMetrics = new LeadyMetrics();
+        ExternalLeadDeduplicator testClass = new ExternalLeadDeduplicator(
+                new LeadChangeFinder(),
+                mock(LeadUpdateReporter.class),
+                jsonLeadWriter,
+                gson,
+                128 * 1024,
+                tempDir.resolve("spill"),
+                ExternalLeadDeduplicator.DEFAULT_MAX_OPEN_FILES,
+                externalMetrics
+        );
+
+        // when
+        testClass.deduplicateLeads(leads::stream, tempDir.resolve("output.json"));
+
+        // then
+        assertEquals(inMemoryMetrics.getIdMatches(), externalMetrics.getIdMatches());
+        assertEquals(inMemoryMetrics.getEmailMatches(), externalMetrics.getEmailMatches());
+        // timed once per bucket
+        assertTrue(externalMetrics.getDeduplicateTimer().getCount() > 1);
+    }
+
+    @Test
+    void testCountsInputOnceWithUnmeteredGroupingPass() throws Exception {
+        // given
+        List<Lead> leads = generateLeads();
+        Path inputFile = tempDir.resolve("input.json");
+        jsonLeadWriter.writeLeads(leads, inputFile);
+        LeadyMetrics leadyMetrics = new LeadyMetrics();
+        LeadReader leadReader = new JsonLeadReader(gson);
+        LeadReader meteredLeadReader = leadyMetrics.instrument(leadReader);
+        ExternalLeadDeduplicator testClass = new ExternalLeadDeduplicator(
+                new LeadChangeFinder(),
+                mock(LeadUpdateReporter.class),
+                jsonLeadWriter,
+                gson,
+                128 * 1024,
+                tempDir.resolve("spill"),
+                ExternalLeadDeduplicator.DEFAULT_MAX_OPEN_FILES,
+                leadyMetrics
+        );
+
+        // when
+        testClass.deduplicateLeads(() -> leadReader.readLeads(inputFile), () -> meteredLeadReader.readLeads(inputFile), tempDir.resolve("output.json"));
+
+        // then
+        assertEquals(leads.size(), leadyMetrics.getLeadsRead());
+        assertEquals(1, leadyMetrics.getParseTimer().getCount());
+    }
+
+    @Test
+    void testRejectsGroupBiggerThanBudget() {
+        // given
+        // leads without an email are all linked through it, so they have to be deduplicated together
+        List<Lead> leads = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            leads.add(Lead.builder().id(String.valueOf(i)).entryDate(now).build());
+        }
+        ExternalLeadDeduplicator testClass = new ExternalLeadDeduplicator(
+                new LeadChangeFinder(),
+                mock(LeadUpdateReporter.class),
+                jsonLeadWriter,
+                gson,
+                256 * 1024,
+                tempDir.resolve("spill")
+        );
+
+        // when / then
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> testClass.deduplicateLeads(leads::stream, tempDir.resolve("output.json")));
+        assertTrue(e.getMessage().contains("biggest group"), e.getMessage());
+        assertFalse(Files.exists(tempDir.resolve("output.json")));
+    }
+
+    // ids 2k and 2k + 1 share emails, so leads fall into small groups
+    private List<Lead> generateLeads() {
+        Random random = new Random(42);
+        List<Lead> leads = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            int id = random.nextInt(800);
+            leads.add(Lead.builder()
+                    .id(String.valueOf(id))
+                    .email("email" + (random.nextBoolean() ? id : id ^ 1))
+                    .firstName("name" + random.nextInt(3))
+                    .entryDate(now.minusMinutes(random.nextInt(60)))
+                    .build());
+        }
+        return leads;
+    }
+}
@@ -0,0 +1,75 @@
+package com.gnopai.leady;
+
+import com.fatboyindustrial.gsonjavatime.ZonedDateTimeConverter;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static com.fatboyindustrial.gsonjavatime.Converters.ZONED_DATE_TIME_TYPE;
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JsonLeadReaderTest {
+    private final JsonLeadReader testClass = new JsonLeadReader(new GsonBuilder()
+            .registerTypeAdapter(ZONED_DATE_TIME_TYPE, new ZonedDateTimeConverter())
+            .create());
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testReadLeadsInFileOrder() throws Exception {
+        Path file = write("{\"other\": [1, 2], \"leads\": [\n" +
+                "{\"_id\": \"2\", \"email\": \"b@foo.com\", \"firstName\": \"bob\", \"entryDate\": \"2014-05-07T17:31:20+00:00\"},\n" +
+                "{\"_id\": \"1\", \"email\": \"a@foo.com\", \"unknown\": {\"x\": 1}, \"entryDate\": \"2014-05-07T17:30:20+00:00\"}\n" +
+                "], \"trailer\": true}");
+
+        List<Lead> leads = readAll(file);
+
+        List<Lead> expectedLeads = List.of(
+                Lead.builder()
+                        .id("2")
+                        .email("b@foo.com")
+                        .firstName("bob")
+                        .entryDate(ZonedDateTime.parse("2014-05-07T17:31:20Z"))
+                        .build(),
+                Lead.builder()
+                        .id("1")
+                        .email("a@foo.com")
+                        .entryDate(ZonedDateTime.parse("2014-05-07T17:30:20Z"))
+                        .build()
+        );
+        assertEquals(expectedLeads, leads);
+    }
+
+    @Test
+    void testEmptyLeads() throws Exception {
+        assertEquals(List.of(), readAll(write("{\"leads\": []}")));
+        assertEquals(List.of(), readAll(write("{}")));
+    }
+
+    @Test
+    void testMalformedInput() throws Exception {
+        Path file = write("{\"leads\": [{\"_id\": \"1\"}, {\"_id\": ");
+
+        assertThrows(JsonParseException.class, () -> readAll(file));
+    }
+
+    private List<Lead> readAll(Path file) {
+        try (Stream<Lead> leads = testClass.readLeads(file)) {
+            return leads.collect(toList());
+        }
+    }
+
+    private Path write(String json) throws Exception {
+        return Files.writeString(tempDir.resolve("leads.json"), json);
+    }
+}
@@ -0,0 +1,119 @@
+package com.gnopai.leady;
+
+import com.fatboyindustrial.gsonjavatime.ZonedDateTimeConverter;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static com.fatboyindustrial.gsonjavatime.Converters.ZONED_DATE_TIME_TYPE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonLeadWriterTest {
+    private static final ZonedDateTime START = ZonedDateTime.of(2014, 5, 7, 17, 30, 20, 123_000_000, ZoneId.of("Europe/Oslo"));
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testMatchesGsonOutput() throws IOException {
+        // given
+        Gson gson = LeadyMain.createGson();
+        JsonLeadWriter testClass = new JsonLeadWriter(gson);
+
+        // when
+        testClass.writeLeads(leads(), tempDir.resolve("leads.json"));
+
+        // then
+        assertEquals(gson.toJson(new LeadList(leads())), Files.readString(tempDir.resolve("leads.json"), UTF_8));
+    }
+
+    @Test
+    void testMatchesGsonOutputWithReflectiveLeadAdapter() throws IOException {
+        // given
+        Gson gson = new GsonBuilder()
+                .registerTypeAdapter(ZONED_DATE_TIME_TYPE, new ZonedDateTimeConverter())
+                .create();
+        // a buffer smaller than a lead, so leads are split across writes
+        JsonLeadWriter testClass = new JsonLeadWriter(gson, 16);
+
+        // when
+        testClass.writeLeads(leads(), tempDir.resolve("leads.json"));
+
+        // then
+        assertEquals(gson.toJson(new LeadList(leads())), Files.readString(tempDir.resolve("leads.json"), UTF_8));
+    }
+
+    @Test
+    void testWritesEmptyList() throws IOException {
+        // given
+        Gson gson = LeadyMain.createGson();
+        JsonLeadWriter testClass = new JsonLeadWriter(gson);
+
+        // when
+        testClass.writeLeads(List.of(), tempDir.resolve("leads.json"));
+
+        // then
+        assertEquals(gson.toJson(new LeadList(List.of())), Files.readString(tempDir.resolve("leads.json"), UTF_8));
+    }
+
+    @Test
+    void testCompressesByFileName() throws IOException {
+        // given
+        Gson gson = LeadyMain.createGson();
+        JsonLeadWriter testClass = new JsonLeadWriter(gson);
+        Path outputFile = tempDir.resolve("out/leads.json.gz");
+
+        // when
+        testClass.writeLeads(leads(), outputFile);
+
+        // then
+        assertTrue(Compression.isCompressed(outputFile));
+        try (InputStream in = Compression.newInputStream(outputFile)) {
+            assertEquals(gson.toJson(new LeadList(leads())), new String(in.readAllBytes(), UTF_8));
+        }
+    }
+
+    @Test
+    void testRejectsBadBufferSize() {
+        assertThrows(IllegalArgumentException.class, () -> new JsonLeadWriter(LeadyMain.createGson(), 0));
+    }
+
+    private static List<Lead> leads() {
+        return List.of(
+                Lead.builder()
+                        .id("jkj238238jdsnfsj23")
+                        .email("foo@bar.com")
+                        .firstName("John")
+                        .lastName("Smith")
+                        .address("123 Street St")
+                        .entryDate(START)
+                        .build(),
+                // null fields are left out
+                Lead.builder()
+                        .id("edu45238jdsnfsj23")
+                        .entryDate(START.plusSeconds(1))
+                        .build(),
+                // non-ASCII is written as is, and HTML characters are escaped
+                Lead.builder()
+                        .id("<script>&'=\"")
+                        .email("b\u00f8b@f\u00f8\u00f8.com")
+                        .firstName("\ud83d\ude00")
+                        .lastName("O'Brien")
+                        .address("1 Main St\n\"Apt\" 2\\3")
+                        .entryDate(START.plusDays(1))
+                        .build()
+        );
+    }
+}
@@ -1,12 +1,21 @@
 package com.gnopai.leady;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
 import java.time.ZonedDateTime;
+import java.util.Random;
 import java.util.Set;
 
+import static java.beans.Introspector.getBeanInfo;
 import static java.time.ZoneOffset.UTC;
+import static java.util.Arrays.stream;
+import static java.util.stream.Collectors.toSet;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 class LeadChangeFinderTest {
     private final ZonedDateTime now = ZonedDateTime.now(UTC);
@@ -88,4 +97,60 @@ class LeadChangeFinderTest {
         assertEquals(expectedLeadChange, leadChange);
     }
 
-}
\ No newline at end of file
+    @Test
+    void testNoFieldsChangedReturnsSharedEmptySet() {
+        Lead lead = Lead.builder().id("1").email("one@foo.com").entryDate(now).build();
+
+        LeadChangeFinder testClass = new LeadChangeFinder();
+
+        assertSame(Set.of(), testClass.findLeadChanges(lead, lead).getFieldDiffs());
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {1, 2, 3, 4, 5})
+    void testMatchesReflectiveFieldDiffs(long seed) throws Exception {
+        Random random = new Random(seed);
+        LeadChangeFinder testClass = new LeadChangeFinder();
+
+        for (int i = 0; i < 1_000; i++) {
+            Lead oldLead = randomLead(random);
+            Lead newLead = randomLead(random);
+
+            assertEquals(findLeadChangesReflectively(oldLead, newLead), testClass.findLeadChanges(oldLead, newLead));
+        }
+    }
+
+    private Lead randomLead(Random random) {
+        return Lead.builder()
+                .id(randomValue(random, "1", "2"))
+                .email(randomValue(random, "one@foo.com", "two@foo.com"))
+                .firstName(randomValue(random, "bob", "michael"))
+                .lastName(randomValue(random, "bobson", "michaelson"))
+                .address(randomValue(random, "123 main st", "456 shady st"))
+                .entryDate(randomValue(random, now, now.minusHours(2)))
+                .build();
+    }
+
+    private <T> T randomValue(Random random, T first, T second) {
+        int choice = random.nextInt(3);
+        return choice == 0 ? null : choice == 1 ? first : second;
+    }
+
+    // the original bean-introspection implementation, kept as the reference behavior
+    private LeadChange findLeadChangesReflectively(Lead oldLead, Lead newLead) throws Exception {
+        Set<LeadChange.FieldDiff> fieldDiffs = stream(getBeanInfo(Lead.class).getPropertyDescriptors())
+                .map(propertyDescriptor -> createFieldDiff(propertyDescriptor, oldLead, newLead))
+                .filter(LeadChange.FieldDiff::hasChanged)
+                .collect(toSet());
+        return new LeadChange(oldLead.getId(), oldLead.getEmail(), fieldDiffs);
+    }
+
+    private LeadChange.FieldDiff createFieldDiff(PropertyDescriptor propertyDescriptor, Lead oldLead, Lead newLead) {
+        try {
+            Method getter = propertyDescriptor.getReadMethod();
+            return new LeadChange.FieldDiff(propertyDescriptor.getName(), getter.invoke(oldLead), getter.invoke(newLead));
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
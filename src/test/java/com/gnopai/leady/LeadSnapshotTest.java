@@ -0,0 +1,147 @@
+package com.gnopai.leady;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static java.time.ZoneOffset.UTC;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LeadSnapshotTest {
+    private final ZonedDateTime now = ZonedDateTime.of(2014, 5, 7, 17, 30, 20, 0, UTC);
+
+    @TempDir
+    Path tempDirectory;
+
+    @Test
+    void testLoadedStoreMatchesSavedStore() {
+        // given
+        CompactLeadStore leadStore = new CompactLeadStore();
+        int handle = leadStore.addLead(lead("1", "a@b.com", 10));
+        leadStore.updateLead(handle, lead("2", "c@d.com", 5));
+        leadStore.addLead(lead("3", null, 3).withFirstName("J\u00f6rg").withAddress("\u6771\u4eac"));
+        leadStore.addLead(Lead.builder().id("4").build());
+        leadStore.addLead(lead("5", "e@f.com", 1).withEntryDate(ZonedDateTime.of(2014, 5, 7, 17, 30, 20, 123, ZoneId.of("Europe/Paris"))));
+        Path snapshot = tempDirectory.resolve("snapshots/leads.snapshot");
+
+        // when
+        LeadSnapshot.save(leadStore, snapshot);
+        CompactLeadStore testClass = LeadSnapshot.load(snapshot);
+
+        // then
+        assertEquals(leadStore.getLeads(), testClass.getLeads());
+        for (String key : List.of("1", "2", "3", "4", "5", "6")) {
+            assertEquals(leadStore.findLeadById(key), testClass.findLeadById(key));
+        }
+        for (String key : List.of("a@b.com", "c@d.com", "e@f.com", "g@h.com")) {
+            assertEquals(leadStore.findLeadByEmail(key), testClass.findLeadByEmail(key));
+        }
+        assertEquals(leadStore.findLeadByEmail(null), testClass.findLeadByEmail(null));
+    }
+
+    @Test
+    void testLoadedStoreKeepsGrowing() {
+        // given
+        Path snapshot = tempDirectory.resolve("leads.snapshot");
+        LeadSnapshot.save(new CompactLeadStore(), snapshot);
+        CompactLeadStore testClass = LeadSnapshot.load(snapshot);
+
+        // when
+        for (int i = 0; i < 1000; i++) {
+            testClass.addLead(lead("id" + i, "email" + i, i));
+        }
+
+        // then
+        assertEquals(1000, testClass.size());
+        assertEquals(999, testClass.findLeadById("id999"));
+        assertEquals(500, testClass.findLeadByEmail("email500"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {1, 2, 3, 4, 5})
+    void testIncrementalRunsMatchFullRun(long seed) {
+        // given
+        Random random = new Random(seed);
+        List<Lead> firstDay = randomLeads(random, 2000);
+        List<Lead> secondDay = randomLeads(random, 200);
+        List<Lead> allLeads = new ArrayList<>(firstDay);
+        allLeads.addAll(secondDay);
+
+        RecordingLeadUpdateReporter fullRunReporter = new RecordingLeadUpdateReporter();
+        LeadList fullRunLeads = new LeadDeduplicator(new LeadChangeFinder(), fullRunReporter)
+                .deduplicateLeads(new LeadList(allLeads));
+
+        Path snapshot = tempDirectory.resolve("leads.snapshot");
+        RecordingLeadUpdateReporter incrementalReporter = new RecordingLeadUpdateReporter();
+        LeadDeduplicator testClass = new LeadDeduplicator(new LeadChangeFinder(), incrementalReporter);
+
+        // when
+        CompactLeadStore leadStore = new CompactLeadStore();
+        testClass.deduplicateLeads(firstDay.stream(), leadStore);
+        LeadSnapshot.save(leadStore, snapshot);
+        LeadList incrementalLeads = testClass.deduplicateLeads(secondDay.stream(), LeadSnapshot.load(snapshot));
+
+        // then
+        assertEquals(fullRunLeads, incrementalLeads);
+        assertEquals(fullRunReporter.updates, incrementalReporter.updates);
+    }
+
+    @Test
+    void testCorruptSnapshotFails() throws Exception {
+        // given
+        Path snapshot = tempDirectory.resolve("leads.snapshot");
+        Files.write(snapshot, "not a snapshot".getBytes());
+
+        // when / then
+        assertThrows(RuntimeException.class, () -> LeadSnapshot.load(snapshot));
+    }
+
+    private List<Lead> randomLeads(Random random, int leadCount) {
+        List<Lead> leads = new ArrayList<>();
+        for (int i = 0; i < leadCount; i++) {
+            leads.add(lead(
+                    String.valueOf(random.nextInt(1000)),
+                    random.nextInt(50) == 0 ? null : "email" + random.nextInt(1000),
+                    random.nextInt(20)
+            ).withFirstName("name" + random.nextInt(3)));
+        }
+        return leads;
+    }
+
+    private Lead lead(String id, String email, int minutesAgo) {
+        return Lead.builder()
+                .id(id)
+                .email(email)
+                .entryDate(now.minusMinutes(minutesAgo))
+                .build();
+    }
+
+    private static class RecordingLeadUpdateReporter implements LeadUpdateReporter {
+        private final List<Object> updates = new ArrayList<>();
+
+        @Override
+        public void reportLeadAdded(Lead lead) {
+            updates.add(List.of("added", lead));
+        }
+
+        @Override
+        public void reportLeadChanged(LeadChange leadChange) {
+            updates.add(List.of("changed", leadChange));
+        }
+
+        @Override
+        public void reportLeadIgnored(Lead lead) {
+            updates.add(List.of("ignored", lead));
+        }
+    }
+}
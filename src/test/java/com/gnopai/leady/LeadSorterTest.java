@@ -0,0 +1,99 @@
+package com.gnopai.leady;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.gnopai.leady.LeadDeduplicator.LEAD_ORDER;
+import static java.time.ZoneOffset.UTC;
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LeadSorterTest {
+    private static final ZonedDateTime START = ZonedDateTime.of(2014, 5, 7, 17, 30, 20, 0, UTC);
+    private static final List<ZoneId> ZONES = List.of(UTC, ZoneOffset.ofHours(-5), ZoneOffset.ofHoursMinutes(5, 30), ZoneId.of("Europe/Oslo"));
+
+    @Test
+    void testMatchesComparatorOrder() {
+        // given
+        List<Lead> leads = generateLeads(new Random(17), 5000, START);
+
+        // when
+        List<Lead> sortedLeads = LeadSorter.sortLeads(leads);
+
+        // then
+        assertEquals(leads.stream().sorted(LEAD_ORDER).collect(toList()), sortedLeads);
+    }
+
+    @Test
+    void testMatchesComparatorOrderAcrossEpoch() {
+        // given
+        List<Lead> leads = generateLeads(new Random(3), 2000, ZonedDateTime.of(1969, 12, 31, 23, 59, 0, 0, UTC));
+
+        // when
+        List<Lead> sortedLeads = LeadSorter.sortLeads(leads);
+
+        // then
+        assertEquals(leads.stream().sorted(LEAD_ORDER).collect(toList()), sortedLeads);
+    }
+
+    @Test
+    void testFallsBackForDatesOutsideNanosecondRange() {
+        // given
+        List<Lead> leads = new ArrayList<>(generateLeads(new Random(5), 1000, START));
+        leads.add(Lead.builder().id("far").entryDate(ZonedDateTime.of(2500, 1, 1, 0, 0, 0, 0, UTC)).build());
+        leads.add(Lead.builder().id("early").entryDate(ZonedDateTime.of(1500, 1, 1, 0, 0, 0, 0, UTC)).build());
+
+        // when
+        List<Lead> sortedLeads = LeadSorter.sortLeads(leads);
+
+        // then
+        assertEquals(leads.stream().sorted(LEAD_ORDER).collect(toList()), sortedLeads);
+    }
+
+    @Test
+    void testSortsSmallLists() {
+        // given
+        Lead first = Lead.builder().id("b").entryDate(START).build();
+        Lead second = Lead.builder().id("a").entryDate(START.plusNanos(1)).build();
+        Lead third = Lead.builder().id("c").entryDate(START.plusNanos(1)).build();
+
+        // when
+        List<Lead> sortedLeads = LeadSorter.sortLeads(List.of(third, second, first));
+
+        // then
+        assertEquals(List.of(first, second, third), sortedLeads);
+    }
+
+    @Test
+    void testRejectsMissingEntryDate() {
+        // given
+        List<Lead> leads = new ArrayList<>(generateLeads(new Random(11), 1000, START));
+        leads.add(Lead.builder().id("none").build());
+
+        // when / then
+        assertThrows(NullPointerException.class, () -> LeadSorter.sortLeads(leads));
+    }
+
+    // plenty of equal instants, some written in different zones, to exercise the tie-breaking
+    private static List<Lead> generateLeads(Random random, int count, ZonedDateTime start) {
+        List<Lead> leads = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ZonedDateTime entryDate = start.plusSeconds(random.nextInt(count / 4))
+                    .plusNanos(random.nextBoolean() ? 0 : random.nextInt(1000))
+                    .withZoneSameInstant(ZONES.get(random.nextInt(ZONES.size())));
+            leads.add(Lead.builder()
+                    .id("id" + random.nextInt(count))
+                    .email("email" + i + "@foo.com")
+                    .entryDate(entryDate)
+                    .build());
+        }
+        return leads;
+    }
+}
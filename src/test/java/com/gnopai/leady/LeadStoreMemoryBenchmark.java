@@ -0,0 +1,160 @@
+package com.gnopai.leady;
+
+import java.lang.ref.Reference;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static com.gnopai.leady.LeadStore.NO_LEAD;
+import static java.time.ZoneOffset.UTC;
+
+/**
+ * Prints the heap retained per surviving lead by each {@link LeadStore}, after feeding it a synthetic
+ * run with duplicate ids and emails. Run with {@code ./gradlew leadStoreMemoryBenchmark}, optionally
+ * passing the number of input leads as an argument.
+ */
+public class LeadStoreMemoryBenchmark {
+    private static final ZonedDateTime START = ZonedDateTime.of(2014, 5, 7, 17, 30, 20, 0, UTC);
+
+    public static void main(String[] args) {
+        int leadCount = args.length >= 1 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        measure("before (maps + LeadRecord)", RecordLeadStore::new, leadCount);
+        measure("HashMapLeadStore", HashMapLeadStore::new, leadCount);
+        measure("CompactLeadStore", CompactLeadStore::new, leadCount);
+        measure("ColumnarLeadStore", ColumnarLeadStore::new, leadCount);
+    }
+
+    private static void measure(String name, Supplier<LeadStore> leadStoreFactory, int leadCount) {
+        long heapBefore = usedHeap();
+        LeadStore leadStore = fill(leadStoreFactory.get(), leadCount);
+        long heapWithStore = usedHeap();
+        List<Lead> leads = new ArrayList<>(leadStore.getLeads());
+        int keptLeads = leads.size();
+        leadStore = null;
+        long heapWithLeads = usedHeap();
+
+        // stores that make leads as they're read, like ColumnarLeadStore, hand out copies here, so the
+        // second figure only means something for stores that keep the lead objects themselves
+        System.out.printf("%-28s %,d leads kept, %,d bytes per lead, of which %,d are the store's own%n",
+                name, keptLeads, (heapWithStore - heapBefore) / keptLeads, (heapWithStore - heapWithLeads) / keptLeads);
+        Reference.reachabilityFence(leads);
+    }
+
+    private static LeadStore fill(LeadStore leadStore, int leadCount) {
+        Random random = new Random(0);
+        for (int i = 0; i < leadCount; i++) {
+            // a fifth of the input updates an earlier lead, by id or by email
+            int identity = i > 0 && random.nextInt(5) == 0 ? random.nextInt(i) : i;
+            boolean sameId = random.nextBoolean();
+            Lead lead = Lead.builder()
+                    .id("lead-" + (sameId ? identity : i) + "-" + Integer.toHexString(identity * 31))
+                    .email("user" + (sameId ? i : identity) + "@example.com")
+                    .firstName("First" + random.nextInt(1_000))
+                    .lastName("Last" + random.nextInt(10_000))
+                    .address(random.nextInt(10_000) + " Main St")
+                    .entryDate(START.plusSeconds(i))
+                    .build();
+
+            int existingLead = leadStore.findLeadById(lead.getId());
+            existingLead = existingLead != NO_LEAD ? existingLead : leadStore.findLeadByEmail(lead.getEmail());
+            if (existingLead == NO_LEAD) {
+                leadStore.addLead(lead);
+            } else {
+                leadStore.updateLead(existingLead, lead);
+            }
+        }
+        return leadStore;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * The layout the deduplicator used before {@link LeadStore} was extracted: three string-keyed
+     * maps, and a fresh record wrapper on every save.
+     */
+    private static class RecordLeadStore implements LeadStore {
+        private final Map<String, String> leadKeysById = new HashMap<>();
+        private final Map<String, String> leadKeysByEmail = new HashMap<>();
+        private final Map<String, LeadRecord> leadRecords = new HashMap<>();
+        private final List<String> keysByHandle = new ArrayList<>();
+
+        @Override
+        public int findLeadById(String id) {
+            return findLead(leadKeysById.get(id));
+        }
+
+        @Override
+        public int findLeadByEmail(String email) {
+            return findLead(leadKeysByEmail.get(email));
+        }
+
+        private int findLead(String key) {
+            return key == null ? NO_LEAD : leadRecords.get(key).handle;
+        }
+
+        @Override
+        public Lead getLead(int handle) {
+            return leadRecords.get(keysByHandle.get(handle)).lead;
+        }
+
+        @Override
+        public int addLead(Lead lead) {
+            keysByHandle.add(lead.getId());
+            int handle = keysByHandle.size() - 1;
+            updateLead(handle, lead);
+            return handle;
+        }
+
+        @Override
+        public void updateLead(int handle, Lead lead) {
+            String key = keysByHandle.get(handle);
+            leadRecords.put(key, new LeadRecord(handle, lead));
+            leadKeysById.put(lead.getId(), key);
+            leadKeysByEmail.put(lead.getEmail(), key);
+        }
+
+        @Override
+        public void forEachId(Consumer<String> consumer) {
+            leadKeysById.keySet().forEach(consumer);
+        }
+
+        @Override
+        public void forEachEmail(Consumer<String> consumer) {
+            leadKeysByEmail.keySet().forEach(consumer);
+        }
+
+        @Override
+        public int size() {
+            return keysByHandle.size();
+        }
+
+        @Override
+        public List<Lead> getLeads() {
+            List<Lead> leads = new ArrayList<>(keysByHandle.size());
+            keysByHandle.forEach(key -> leads.add(leadRecords.get(key).lead));
+            return leads;
+        }
+    }
+
+    private static class LeadRecord {
+        private final int handle;
+        private final Lead lead;
+
+        LeadRecord(int handle, Lead lead) {
+            this.handle = handle;
+            this.lead = lead;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.gnopai.leady;
+
+import com.fatboyindustrial.gsonjavatime.ZonedDateTimeConverter;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Random;
+
+import static com.fatboyindustrial.gsonjavatime.Converters.ZONED_DATE_TIME_TYPE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LeadTypeAdapterTest {
+    // the setup before LeadTypeAdapter was registered
+    private final Gson reflectiveGson = new GsonBuilder()
+            .registerTypeAdapter(ZONED_DATE_TIME_TYPE, new ZonedDateTimeConverter())
+            .create();
+    private final Gson testClass = LeadyMain.createGson();
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "{\"_id\": \"1\", \"email\": \"a@b.com\", \"firstName\": \"John\", \"lastName\": \"Smith\", \"address\": \"123 Street St\", \"entryDate\": \"2014-05-07T17:30:20+00:00\"}",
+            "{\"entryDate\": \"2014-05-07T17:30:20Z\", \"address\": \"1 Main St\", \"_id\": \"1\"}",
+            "{\"_id\": \"1\", \"email\": null, \"entryDate\": null}",
+            "{\"_id\": 42, \"email\": true, \"unknown\": {\"nested\": [1, 2]}, \"entryDate\": \"2014-05-07T17:30:20.5-04:00\"}",
+            "{\"_id\": \"1\", \"_id\": \"2\", \"entryDate\": \"2014-05-07T17:30:20.123456789+05:45\"}",
+            "{\"_id\": \"1\", \"entryDate\": \"2014-05-07T17:30:20.1234567-00:00\"}",
+            "{\"_id\": \"1\", \"entryDate\": \"2014-05-07T17:30+01:00\"}",
+            "{\"_id\": \"1\", \"entryDate\": \"2014-05-07T17:30:20.Z\"}",
+            "{\"_id\": \"1\", \"entryDate\": \"2014-05-07T17:30:20+01:00[Europe/Paris]\"}",
+            "{\"_id\": \"1\", \"entryDate\": \"2014-05-07T17:30:20+01:00:30\"}",
+            "{\"_id\": \"1\", \"entryDate\": \"+12014-05-07T17:30:20Z\"}",
+            "{}"
+    })
+    void testReadsSameLeadsAsReflectiveAdapter(String json) {
+        // when
+        Lead lead = testClass.fromJson(json, Lead.class);
+
+        // then
+        assertEquals(reflectiveGson.fromJson(json, Lead.class), lead);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "2014-02-30T17:30:20Z",
+            "2014-05-07T24:00:00Z",
+            "2014-05-07T17:30:20.1234567891Z",
+            "2014-05-07T17:30:20+19:00",
+            "2014-05-07T17:30:20",
+            "2014-05-07 17:30:20Z",
+            "yesterday"
+    })
+    void testRejectsInvalidEntryDates(String entryDate) {
+        // given
+        String json = "{\"_id\": \"1\", \"entryDate\": \"" + entryDate + "\"}";
+
+        // when / then
+        assertThrows(JsonParseException.class, () -> testClass.fromJson(json, Lead.class));
+    }
+
+    @Test
+    void testParsesRandomEntryDatesLikeFormatter() {
+        Random random = new Random(0);
+        for (int i = 0; i < 10_000; i++) {
+            // given
+            Instant instant = Instant.ofEpochSecond(random.nextInt(), random.nextBoolean() ? 0 : random.nextInt(1_000_000_000));
+            ZoneOffset offset = ZoneOffset.ofTotalSeconds((random.nextInt(18 * 4 * 2 + 1) - 18 * 4) * 15 * 60);
+            String entryDate = ZonedDateTime.ofInstant(instant, offset).toString();
+
+            // when
+            ZonedDateTime parsed = LeadTypeAdapter.parseEntryDate(entryDate);
+
+            // then
+            assertEquals(ZonedDateTime.parse(entryDate), parsed, entryDate);
+        }
+    }
+
+    @Test
+    void testWritesSameJsonAsReflectiveAdapter() {
+        // given
+        Lead lead = Lead.builder()
+                .id("1")
+                .email("a@b.com")
+                .lastName("Smith")
+                .address("\"quoted\" <address>")
+                .entryDate(ZonedDateTime.of(2014, 5, 7, 17, 30, 20, 120_000_000, ZoneId.of("Europe/Paris")))
+                .build();
+        LeadList leadList = new LeadList(lead, Lead.builder().build(), lead.withEntryDate(lead.getEntryDate().withZoneSameInstant(ZoneOffset.UTC)));
+
+        // when
+        String json = testClass.toJson(leadList);
+
+        // then
+        assertEquals(reflectiveGson.toJson(leadList), json);
+    }
+}
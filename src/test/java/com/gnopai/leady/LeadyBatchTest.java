@@ -0,0 +1,147 @@
+package com.gnopai.leady;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class LeadyBatchTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testRunsJobsConcurrentlyAndReturnsResultsInOrder() {
+        // given
+        CountDownLatch started = new CountDownLatch(2);
+        LeadyBatch testClass = new LeadyBatch(2, (job, leadyMetrics) -> {
+            started.countDown();
+            // each job waits for the other, so this only finishes if they run at once
+            if (!started.await(10, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Jobs didn't run concurrently");
+            }
+        });
+        List<BatchJob> jobs = List.of(new BatchJob("a.json", "out/a.json"), new BatchJob("b.json", "out/b.json"));
+
+        // when
+        List<BatchJobResult> results = testClass.run(jobs);
+
+        // then
+        assertEquals(2, results.size());
+        assertEquals("a.json", results.get(0).getInputFile());
+        assertEquals("out/b.json", results.get(1).getOutputFile());
+        assertNull(results.get(0).getError());
+        assertNull(results.get(1).getError());
+    }
+
+    @Test
+    void testRecordsFailedJobsWithoutStoppingOthers() {
+        // given
+        LeadyBatch testClass = new LeadyBatch(1, (job, leadyMetrics) -> {
+            if (job.getInputFile().equals("bad.json")) {
+                throw new RuntimeException("Failed to read leads from input file bad.json", new IOException("no such file"));
+            }
+            leadyMetrics.instrument(mock(LeadUpdateReporter.class)).reportLeadAdded(Lead.builder().id("1").build());
+        });
+        List<BatchJob> jobs = List.of(new BatchJob("bad.json", "out/bad.json"), new BatchJob("good.json", "out/good.json"));
+
+        // when
+        List<BatchJobResult> results = testClass.run(jobs);
+
+        // then
+        assertTrue(results.get(0).isFailed());
+        assertEquals("Failed to read leads from input file bad.json: java.io.IOException: no such file", results.get(0).getError());
+        assertFalse(results.get(1).isFailed());
+        assertEquals(1, results.get(1).getLeadsAdded());
+        String summary = LeadyBatch.summarize(results, 5);
+        assertTrue(summary.contains("FAILED: Failed to read leads from input file bad.json"));
+        assertTrue(summary.contains("2 jobs, 1 failed, 0 leads read in 5 ms"));
+    }
+
+    @Test
+    void testReadsManifest() throws IOException {
+        // given
+        Path manifest = tempDir.resolve("batch.txt");
+        Files.write(manifest, List.of("# nightly feeds", "feeds/a.json", "", "  feeds/b.ndjson   results/b.json  "));
+
+        // when
+        List<BatchJob> jobs = LeadyBatch.findJobs(manifest.toString(), Path.of("out"));
+
+        // then
+        assertEquals(List.of(
+                new BatchJob("feeds/a.json", Path.of("out", "a.json").toString()),
+                new BatchJob("feeds/b.ndjson", "results/b.json")
+        ), jobs);
+    }
+
+    @Test
+    void testRejectsMalformedManifestLine() throws IOException {
+        // given
+        Path manifest = tempDir.resolve("batch.txt");
+        Files.write(manifest, List.of("a.json b.json c.json"));
+
+        // when / then
+        assertThrows(IllegalArgumentException.class, () -> LeadyBatch.findJobs(manifest.toString(), Path.of("out")));
+    }
+
+    @Test
+    void testFindsFilesMatchingGlob() throws IOException {
+        // given
+        Path feeds = Files.createDirectories(tempDir.resolve("feeds"));
+        Files.createDirectories(feeds.resolve("old"));
+        Files.write(feeds.resolve("b.json"), List.of());
+        Files.write(feeds.resolve("a.json"), List.of());
+        Files.write(feeds.resolve("notes.txt"), List.of());
+        Files.write(feeds.resolve("old").resolve("c.json"), List.of());
+        Path outputDirectory = tempDir.resolve("out");
+
+        // when
+        List<BatchJob> jobs = LeadyBatch.findJobs(feeds + "/*.json", outputDirectory);
+        List<BatchJob> recursiveJobs = LeadyBatch.findJobs(feeds + "/**.json", outputDirectory);
+
+        // then
+        assertEquals(List.of(
+                new BatchJob(feeds.resolve("a.json").toString(), outputDirectory.resolve("a.json").toString()),
+                new BatchJob(feeds.resolve("b.json").toString(), outputDirectory.resolve("b.json").toString())
+        ), jobs);
+        assertEquals(3, recursiveJobs.size());
+        assertEquals(feeds.resolve("old").resolve("c.json").toString(), recursiveJobs.get(2).getInputFile());
+    }
+
+    @Test
+    void testRejectsGlobWithoutMatches() {
+        // when / then
+        assertThrows(IllegalArgumentException.class, () -> LeadyBatch.findJobs(tempDir + "/*.json", Path.of("out")));
+    }
+
+    @Test
+    void testRejectsJobsWritingTheSameFile() throws IOException {
+        // given
+        Path manifest = tempDir.resolve("batch.txt");
+        Files.write(manifest, List.of("2019/leads.json", "2020/leads.json"));
+
+        // when / then
+        assertThrows(IllegalArgumentException.class, () -> LeadyBatch.findJobs(manifest.toString(), Path.of("out")));
+    }
+
+    @Test
+    void testRejectsOutputOverwritingInput() throws IOException {
+        // given
+        Path feeds = Files.createDirectories(tempDir.resolve("feeds"));
+        Files.write(feeds.resolve("a.json"), List.of());
+
+        // when / then
+        assertThrows(IllegalArgumentException.class, () -> LeadyBatch.findJobs(feeds + "/*.json", feeds));
+    }
+}
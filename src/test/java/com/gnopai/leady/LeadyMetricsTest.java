@@ -0,0 +1,145 @@
+package com.gnopai.leady;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LeadyMetricsTest {
+    private static final ZonedDateTime NOW = ZonedDateTime.parse("2014-05-07T17:30:20Z");
+
+    private final LeadUpdateReporter leadUpdateReporter = mock(LeadUpdateReporter.class);
+    private final LeadyMetrics testClass = new LeadyMetrics();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testCountsDeduplicationOutcomes() {
+        // given
+        List<Lead> leads = List.of(
+                Lead.builder().id("1").email("a@foo.com").entryDate(NOW).build(),
+                Lead.builder().id("1").email("b@foo.com").entryDate(NOW.plusDays(1)).build(), // id match, replaces
+                Lead.builder().id("2").email("b@foo.com").entryDate(NOW).build(), // email match, older so ignored
+                Lead.builder().id("3").email("c@foo.com").entryDate(NOW).build()
+        );
+        LeadDeduplicator leadDeduplicator = new LeadDeduplicator(
+                testClass.instrument(new LeadChangeFinder()),
+                testClass.instrument(leadUpdateReporter),
+                CompactLeadStore::new,
+                testClass
+        );
+
+        // when
+        leadDeduplicator.deduplicateLeads(leads.stream());
+
+        // then
+        assertEquals(2, testClass.getLeadsAdded());
+        assertEquals(1, testClass.getLeadsChanged());
+        assertEquals(1, testClass.getLeadsIgnored());
+        assertEquals(1, testClass.getIdMatches());
+        assertEquals(1, testClass.getEmailMatches());
+        assertEquals(1, testClass.getDiffCount());
+        assertEquals(1, testClass.getDeduplicateTimer().getCount());
+        assertEquals(1, testClass.getSortTimer().getCount());
+    }
+
+    @Test
+    void testTimesReadsAndWrites() throws Exception {
+        // given
+        List<Lead> leads = List.of(Lead.builder().id("1").build(), Lead.builder().id("2").build());
+        Path path = tempDir.resolve("leads.json");
+        LeadReader leadReader = mock(LeadReader.class);
+        when(leadReader.readLeads(path)).thenReturn(leads.stream());
+        LeadWriter leadWriter = mock(LeadWriter.class);
+
+        // when
+        List<Lead> readLeads;
+        try (Stream<Lead> leadStream = testClass.instrument(leadReader).readLeads(path)) {
+            readLeads = leadStream.collect(toList());
+        }
+        testClass.instrument(leadWriter).writeLeads(readLeads, path);
+
+        // then
+        assertEquals(leads, readLeads);
+        assertEquals(2, testClass.getLeadsRead());
+        assertEquals(1, testClass.getParseTimer().getCount());
+        assertEquals(1, testClass.getWriteTimer().getCount());
+        verify(leadWriter).writeLeads(readLeads, path);
+    }
+
+    @Test
+    void testPhaseTimerPercentiles() {
+        // given
+        PhaseTimer phaseTimer = new PhaseTimer();
+
+        // when
+        for (int i = 1; i <= 100; i++) {
+            phaseTimer.record(i * 1000);
+        }
+
+        // then
+        assertEquals(100, phaseTimer.getCount());
+        assertEquals(5050, phaseTimer.getTotalTime(TimeUnit.MICROSECONDS));
+        assertEquals(100, phaseTimer.getMaxTime(TimeUnit.MICROSECONDS));
+        // bucket limits are powers of two, so percentiles are rounded up to the next one
+        assertEquals(65536, phaseTimer.getPercentileNanos(50));
+        assertEquals(100_000, phaseTimer.getPercentileNanos(99));
+        assertEquals(1024, phaseTimer.getPercentileNanos(0));
+    }
+
+    @Test
+    void testWritesSummary() throws Exception {
+        // given
+        testClass.instrument(leadUpdateReporter).reportLeadAdded(Lead.builder().id("1").build());
+        testClass.getDiffTimer().record(1500);
+        testClass.takeMemorySnapshot("end");
+        Path summaryFile = tempDir.resolve("metrics/summary.json");
+
+        // when
+        testClass.writeSummary(summaryFile);
+
+        // then
+        JsonObject summary = new JsonParser().parse(Files.readString(summaryFile)).getAsJsonObject();
+        assertEquals(1, summary.getAsJsonObject("leads").get("added").getAsLong());
+        JsonObject diff = summary.getAsJsonObject("phases").getAsJsonObject("diff");
+        assertEquals(1, diff.get("count").getAsLong());
+        assertEquals(2048, diff.getAsJsonArray("histogram").get(0).getAsJsonObject().get("belowNanos").getAsLong());
+        assertTrue(summary.getAsJsonObject("memory").getAsJsonObject("end").get("heapUsedBytes").getAsLong() > 0);
+    }
+
+    @Test
+    void testRegistersMBean() throws Exception {
+        // given
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = new ObjectName(LeadyMetrics.MBEAN_NAME);
+        testClass.instrument(leadUpdateReporter).reportLeadIgnored(Lead.builder().id("1").build());
+
+        // when
+        testClass.registerMBean();
+
+        // then
+        try {
+            assertEquals(1L, mBeanServer.getAttribute(objectName, "LeadsIgnored"));
+        } finally {
+            mBeanServer.unregisterMBean(objectName);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.gnopai.leady;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static java.time.ZoneOffset.UTC;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+class LeadyServerTest {
+    private final Gson gson = LeadyMain.createGson();
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final LeadUpdateReporter leadUpdateReporter = mock(LeadUpdateReporter.class);
+    private final ZonedDateTime now = ZonedDateTime.of(2014, 5, 7, 17, 30, 20, 0, UTC);
+    private LeadyServer testClass;
+
+    @BeforeEach
+    void startServer() {
+        testClass = new LeadyServer(gson, new LeadChangeFinder(), leadUpdateReporter, new CompactLeadStore());
+        testClass.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 4);
+    }
+
+    @AfterEach
+    void stopServer() {
+        testClass.close();
+    }
+
+    @Test
+    void testBatchesAreDeduplicatedAgainstEarlierBatches() throws Exception {
+        // given
+        Lead lead1 = lead("1", "a@b.com", 10);
+        Lead lead2 = lead("2", "c@d.com", 5);
+        Lead newerLead1 = lead("1", "e@f.com", 1);
+        Lead olderLead2 = lead("2", "c@d.com", 20);
+
+        // when
+        HttpResponse<String> firstResponse = post(new LeadList(lead1, lead2));
+        HttpResponse<String> secondResponse = post(new LeadList(newerLead1, olderLead2));
+
+        // then
+        assertEquals(200, firstResponse.statusCode());
+        JsonArray firstUpdates = gson.fromJson(firstResponse.body(), JsonObject.class).getAsJsonArray("updates");
+        assertEquals(2, firstUpdates.size());
+        assertEquals("added", firstUpdates.get(0).getAsJsonObject().get("type").getAsString());
+        assertEquals(lead1, gson.fromJson(firstUpdates.get(0).getAsJsonObject().get("lead"), Lead.class));
+
+        JsonArray secondUpdates = gson.fromJson(secondResponse.body(), JsonObject.class).getAsJsonArray("updates");
+        JsonObject change = secondUpdates.get(0).getAsJsonObject();
+        assertEquals("changed", change.get("type").getAsString());
+        assertEquals("a@b.com", change.getAsJsonObject("change").get("originalEmail").getAsString());
+        assertEquals("ignored", secondUpdates.get(1).getAsJsonObject().get("type").getAsString());
+
+        verify(leadUpdateReporter).reportLeadAdded(lead1);
+        verify(leadUpdateReporter).reportLeadAdded(lead2);
+        verify(leadUpdateReporter).reportLeadChanged(any());
+        verify(leadUpdateReporter).reportLeadIgnored(olderLead2);
+    }
+
+    @Test
+    void testGetReturnsSortedLeads() throws Exception {
+        // given
+        Lead lead1 = lead("1", "a@b.com", 1);
+        Lead lead2 = lead("2", "c@d.com", 5);
+        post(new LeadList(lead1, lead2));
+
+        // when
+        HttpResponse<String> response = httpClient.send(request().GET().build(), HttpResponse.BodyHandlers.ofString());
+
+        // then
+        assertEquals(200, response.statusCode());
+        assertEquals(new LeadList(lead2, lead1), gson.fromJson(response.body(), LeadList.class));
+    }
+
+    @Test
+    void testUpdatesAreFlushedAfterEachBatch() throws Exception {
+        // given
+        Lead lead1 = lead("1", "a@b.com", 10);
+        Lead lead2 = lead("2", "c@d.com", 5);
+
+        // when
+        post(new LeadList(lead1));
+        post(new LeadList(lead2));
+
+        // then
+        InOrder inOrder = inOrder(leadUpdateReporter);
+        inOrder.verify(leadUpdateReporter).reportLeadAdded(lead1);
+        inOrder.verify(leadUpdateReporter).flush();
+        inOrder.verify(leadUpdateReporter).reportLeadAdded(lead2);
+        inOrder.verify(leadUpdateReporter).flush();
+    }
+
+    @Test
+    void testConcurrentBatchesAreAllApplied() throws Exception {
+        // given
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+
+        // when
+        for (int i = 0; i < 50; i++) {
+            LeadList batch = new LeadList(lead("id" + i, "email" + i + "@b.com", i), lead("other" + i, "other" + i + "@b.com", i));
+            responses.add(httpClient.sendAsync(postRequest(batch), HttpResponse.BodyHandlers.ofString()));
+        }
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            assertEquals(200, response.get().statusCode());
+        }
+        HttpResponse<String> leads = httpClient.send(request().GET().build(), HttpResponse.BodyHandlers.ofString());
+
+        // then
+        verify(leadUpdateReporter, times(100)).reportLeadAdded(any());
+        assertEquals(100, gson.fromJson(leads.body(), LeadList.class).getLeads().size());
+    }
+
+    @Test
+    void testMalformedBatchIsRejected() throws Exception {
+        // when
+        HttpResponse<String> malformed = httpClient.send(
+                request().POST(HttpRequest.BodyPublishers.ofString("{\"leads\": [{\"_id\": ")).build(),
+                HttpResponse.BodyHandlers.ofString()
+        );
+        HttpResponse<String> missingEntryDate = post(new LeadList(Lead.builder().id("1").build()));
+
+        // then
+        assertEquals(400, malformed.statusCode());
+        assertEquals(400, missingEntryDate.statusCode());
+        verifyNoMoreInteractions(leadUpdateReporter);
+    }
+
+    @Test
+    void testUnsupportedMethodIsRejected() throws Exception {
+        // when
+        HttpResponse<String> response = httpClient.send(request().DELETE().build(), HttpResponse.BodyHandlers.ofString());
+
+        // then
+        assertEquals(405, response.statusCode());
+    }
+
+    private HttpResponse<String> post(LeadList leadList) throws IOException, InterruptedException {
+        return httpClient.send(postRequest(leadList), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpRequest postRequest(LeadList leadList) {
+        return request().POST(HttpRequest.BodyPublishers.ofString(gson.toJson(leadList))).build();
+    }
+
+    private HttpRequest.Builder request() {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + testClass.getPort() + LeadyServer.LEADS_PATH));
+    }
+
+    private Lead lead(String id, String email, int minutesAgo) {
+        return Lead.builder()
+                .id(id)
+                .email(email)
+                .entryDate(now.minusMinutes(minutesAgo))
+                .build();
+    }
+}
@@ -0,0 +1,143 @@
+package com.gnopai.leady;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.gnopai.leady.LeadStore.NO_LEAD;
+import static java.time.ZoneOffset.UTC;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+class MVStoreLeadStoreTest {
+    private static final List<String> KEY_PREFIXES = List.of("", "bob@foo.com", "b\u00f8b@f\u00f8\u00f8.com", "\ud83d\ude00");
+
+    private final ZonedDateTime now = ZonedDateTime.now(UTC);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testFindsLatestHandlePerKey() {
+        try (MVStoreLeadStore testClass = MVStoreLeadStore.open(tempDir.resolve("leads.mv"), 1)) {
+            int first = testClass.addLead(lead("1", "A"));
+            int second = testClass.addLead(lead("2", "B"));
+            testClass.updateLead(first, lead("3", "B"));
+
+            assertEquals(first, testClass.findLeadById("1"));
+            assertEquals(second, testClass.findLeadById("2"));
+            assertEquals(first, testClass.findLeadById("3"));
+            assertEquals(first, testClass.findLeadByEmail("A"));
+            assertEquals(first, testClass.findLeadByEmail("B"));
+            assertEquals(NO_LEAD, testClass.findLeadById("4"));
+            assertEquals(NO_LEAD, testClass.findLeadByEmail(null));
+            assertEquals(List.of(lead("3", "B"), lead("2", "B")), testClass.getLeads());
+            assertEquals(List.of(lead("3", "B"), lead("2", "B")), new ArrayList<>(testClass.getLeads()));
+        }
+    }
+
+    @Test
+    void testMatchesHashMapLeadStore() {
+        Random random = new Random(7);
+        HashMapLeadStore referenceStore = new HashMapLeadStore();
+
+        try (MVStoreLeadStore testClass = MVStoreLeadStore.open(tempDir.resolve("leads.mv"), 1)) {
+            for (int i = 0; i < 20_000; i++) {
+                Lead lead = lead(randomKey(random), random.nextInt(100) == 0 ? null : randomKey(random));
+                int existingLead = referenceStore.findLeadById(lead.getId());
+                assertEquals(existingLead, testClass.findLeadById(lead.getId()));
+                assertEquals(referenceStore.findLeadByEmail(lead.getEmail()), testClass.findLeadByEmail(lead.getEmail()));
+
+                if (existingLead == NO_LEAD) {
+                    assertEquals(referenceStore.addLead(lead), testClass.addLead(lead));
+                } else {
+                    referenceStore.updateLead(existingLead, lead);
+                    testClass.updateLead(existingLead, lead);
+                }
+            }
+            assertEquals(referenceStore.getLeads(), new ArrayList<>(testClass.getLeads()));
+        }
+    }
+
+    @Test
+    void testReopensStore() {
+        // given
+        Path file = tempDir.resolve("store/leads.mv");
+        Lead first = lead("1", "A").withEntryDate(ZonedDateTime.of(2014, 5, 7, 17, 30, 20, 123, ZoneId.of("Europe/Oslo")));
+        Lead second = lead("2", null).withFirstName("B\u00f8b");
+        LeadDeduplicator leadDeduplicator = new LeadDeduplicator(new LeadChangeFinder(), mock(LeadUpdateReporter.class));
+        try (MVStoreLeadStore leadStore = MVStoreLeadStore.open(file, 1)) {
+            leadStore.addLead(first);
+            leadStore.addLead(second);
+        }
+
+        // when
+        List<Lead> dedupedLeads;
+        try (MVStoreLeadStore testClass = MVStoreLeadStore.open(file, 1)) {
+            // the sorted leads are read from the store, so they have to be copied out before it's closed
+            dedupedLeads = new ArrayList<>(leadDeduplicator.deduplicateLeads(List.of(lead("3", "A")).stream(), testClass).getLeads());
+        }
+
+        // then
+        try (MVStoreLeadStore testClass = MVStoreLeadStore.open(file, 1)) {
+            assertEquals(2, testClass.size());
+            assertEquals(lead("3", "A"), testClass.getLead(0));
+            assertEquals(second, testClass.getLead(1));
+            assertEquals(0, testClass.findLeadById("1"));
+            assertEquals(0, testClass.findLeadById("3"));
+            assertEquals(1, testClass.findLeadByEmail(null));
+        }
+        assertEquals(List.of(second, lead("3", "A")), dedupedLeads);
+    }
+
+    @Test
+    void testSortsLikeOtherStores() {
+        // given
+        Random random = new Random(11);
+        List<Lead> leads = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            // few distinct dates, so plenty of ties to break by id
+            leads.add(lead(randomKey(random), randomKey(random)).withEntryDate(now.minusSeconds(random.nextInt(100))));
+        }
+
+        try (MVStoreLeadStore testClass = MVStoreLeadStore.open(tempDir.resolve("leads.mv"), 1)) {
+            leads.forEach(testClass::addLead);
+
+            // when
+            List<Lead> sortedLeads = testClass.getSortedLeads();
+
+            // then
+            assertEquals(LeadSorter.sortLeads(leads), sortedLeads);
+        }
+    }
+
+    @Test
+    void testSortsDatesOutOfSortKeyRange() {
+        try (MVStoreLeadStore testClass = MVStoreLeadStore.open(tempDir.resolve("leads.mv"), 1)) {
+            Lead farFuture = lead("1", "A").withEntryDate(ZonedDateTime.of(2300, 1, 1, 0, 0, 0, 0, UTC));
+            Lead current = lead("2", "B");
+            testClass.addLead(farFuture);
+            testClass.addLead(current);
+
+            assertEquals(List.of(current, farFuture), testClass.getSortedLeads());
+        }
+    }
+
+    private String randomKey(Random random) {
+        return KEY_PREFIXES.get(random.nextInt(KEY_PREFIXES.size())) + random.nextInt(5_000);
+    }
+
+    private Lead lead(String id, String email) {
+        return Lead.builder()
+                .id(id)
+                .email(email)
+                .entryDate(now)
+                .build();
+    }
+}
@@ -0,0 +1,150 @@
+package com.gnopai.leady;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MappedLeadReaderTest {
+    private final Gson gson = LeadyMain.createGson();
+    private final JsonLeadReader jsonLeadReader = new JsonLeadReader(gson);
+
+    @TempDir
+    Path tempDir;
+
+    @ParameterizedTest
+    @ValueSource(longs = {1, 2, 7, 64, MappedLeadReader.DEFAULT_WINDOW_SIZE})
+    void testReadsSameLeadsAsJsonReader(long windowSize) throws Exception {
+        // given
+        Path file = write("{\"other\": [1, {\"leads\": []}, \"x\\\"]\"], \"leads\" : [\n" +
+                "  {\"_id\": \"2\", \"email\": \"b@foo.com\", \"firstName\": \"b\\u00f6b \\\"the\\\" \\\\ builder\\n\", \"entryDate\": \"2014-05-07T17:31:20+00:00\"},\n" +
+                "  {\"_id\": 17, \"email\": null, \"unknown\": {\"x\": [1, true, null, \"}\"]}, \"lastName\": \"\u6771\u4eac \ud83d\ude00\", \"entryDate\": \"2014-05-07T17:30:20.5-04:00\"},\n" +
+                "  {\"address\": false, \"lastName\": -1.5e3, \"entryDate\": \"2014-05-07T17:30:20+01:00[Europe/Paris]\"},\n" +
+                "  {}\n" +
+                "]\t,\r\n \"trailer\": true}");
+        MappedLeadReader testClass = new MappedLeadReader(windowSize);
+
+        // when
+        List<Lead> leads = readAll(testClass, file);
+
+        // then
+        assertEquals(readAll(jsonLeadReader, file), leads);
+        assertEquals(4, leads.size());
+    }
+
+    @Test
+    void testReadsGeneratedFile() throws Exception {
+        // given
+        Random random = new Random(0);
+        List<Lead> expectedLeads = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            expectedLeads.add(Lead.builder()
+                    .id("id" + random.nextInt(500))
+                    .email(random.nextInt(10) == 0 ? null : "user" + random.nextInt(500) + "@example.com")
+                    .firstName(randomString(random))
+                    .lastName(randomString(random))
+                    .address(random.nextInt(1000) + " Main St")
+                    .entryDate(ZonedDateTime.of(2014, 5, 7, 17, 30, 20, random.nextInt(1000) * 1000, ZoneOffset.ofHours(random.nextInt(25) - 12)))
+                    .build());
+        }
+        Path file = write(gson.toJson(new LeadList(expectedLeads)));
+        MappedLeadReader testClass = new MappedLeadReader(4096);
+
+        // when
+        List<Lead> leads = readAll(testClass, file);
+
+        // then
+        assertEquals(expectedLeads, leads);
+    }
+
+    @Test
+    void testEmptyLeads() throws Exception {
+        MappedLeadReader testClass = new MappedLeadReader();
+
+        assertEquals(List.of(), readAll(testClass, write("{\"leads\": []}")));
+        assertEquals(List.of(), readAll(testClass, write(" { } ")));
+        assertEquals(List.of(), readAll(testClass, write("{\"leads\": null, \"other\": 1}")));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "",
+            "{\"leads\": [{\"_id\": \"1\"}, {\"_id\": ",
+            "{\"leads\": [{\"_id\": \"1\"} {\"_id\": \"2\"}]}",
+            "{\"leads\": [{\"_id\": \"1\\q\"}]}",
+            "{\"leads\": [{\"_id\": \"1\", \"entryDate\": \"yesterday\"}]}",
+            "{\"leads\": [null]}",
+            "{\"leads\": [{\"_id\": [\"1\"]}]}",
+            "{\"leads\": [{\"_id\": \"1\"}]"
+    })
+    void testMalformedInput(String json) throws Exception {
+        // given
+        Path file = write(json);
+        MappedLeadReader testClass = new MappedLeadReader();
+
+        // when / then
+        assertThrows(JsonParseException.class, () -> readAll(testClass, file));
+    }
+
+    @Test
+    void testMalformedUtf8() throws Exception {
+        // given
+        Path file = tempDir.resolve("leads.json");
+        byte[] prefix = "{\"leads\": [{\"_id\": \"".getBytes(UTF_8);
+        byte[] suffix = "\"}]}".getBytes(UTF_8);
+        byte[] bytes = new byte[prefix.length + 2 + suffix.length];
+        System.arraycopy(prefix, 0, bytes, 0, prefix.length);
+        bytes[prefix.length] = (byte) 0xC3;
+        bytes[prefix.length + 1] = (byte) 0x28;
+        System.arraycopy(suffix, 0, bytes, prefix.length + 2, suffix.length);
+        Files.write(file, bytes);
+        MappedLeadReader testClass = new MappedLeadReader();
+
+        // when / then
+        assertThrows(JsonParseException.class, () -> readAll(testClass, file));
+    }
+
+    private String randomString(Random random) {
+        StringBuilder value = new StringBuilder();
+        int length = random.nextInt(12);
+        for (int i = 0; i < length; i++) {
+            int kind = random.nextInt(10);
+            if (kind == 0) {
+                value.append("\"\\/\n\t\u0001".charAt(random.nextInt(6)));
+            } else if (kind == 1) {
+                value.append((char) (0xA0 + random.nextInt(0x700)));
+            } else if (kind == 2) {
+                value.appendCodePoint(0x1F600 + random.nextInt(50));
+            } else {
+                value.append((char) ('a' + random.nextInt(26)));
+            }
+        }
+        return value.toString();
+    }
+
+    private List<Lead> readAll(LeadReader leadReader, Path file) {
+        try (Stream<Lead> leads = leadReader.readLeads(file)) {
+            return leads.collect(toList());
+        }
+    }
+
+    private Path write(String json) throws Exception {
+        return Files.writeString(tempDir.resolve("leads.json"), json);
+    }
+}
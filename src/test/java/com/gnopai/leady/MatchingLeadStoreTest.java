@@ -0,0 +1,107 @@
+package com.gnopai.leady;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static com.gnopai.leady.LeadStore.NO_LEAD;
+import static java.time.ZoneOffset.UTC;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class MatchingLeadStoreTest {
+    private final LeadChangeFinder leadChangeFinder = new LeadChangeFinder();
+    private final LeadUpdateReporter leadUpdateReporter = mock(LeadUpdateReporter.class);
+    private final ZonedDateTime now = ZonedDateTime.now(UTC);
+
+    @Test
+    void testMatchesNormalizedEmail() {
+        // given
+        Lead oldLead = Lead.builder().id("1").email("john@x.com").entryDate(now.minusMinutes(5)).build();
+        Lead newLead = Lead.builder().id("2").email(" John@X.com ").entryDate(now).build();
+        LeadDeduplicator testClass = new LeadDeduplicator(leadChangeFinder, leadUpdateReporter,
+                () -> new MatchingLeadStore(new CompactLeadStore(), List.of(new EmailLeadMatcher())));
+
+        // when
+        LeadList dedupedLeadList = testClass.deduplicateLeads(new LeadList(oldLead, newLead));
+
+        // then
+        assertEquals(new LeadList(newLead), dedupedLeadList);
+        verify(leadUpdateReporter).reportLeadChanged(leadChangeFinder.findLeadChanges(oldLead, newLead));
+    }
+
+    @Test
+    void testMatchesSimilarNameAndAddress() {
+        // given
+        Lead oldLead = lead("1", "a@foo.com", "Jon", "Smith", "123 Street St.");
+        Lead newLead = lead("2", "b@foo.com", "John", "Smyth", "123 street st");
+        Lead otherAddress = lead("3", "c@foo.com", "John", "Smith", "99 Street St");
+        Lead otherName = lead("4", "d@foo.com", "Mary", "Smith", "123 Street St");
+        MatchingLeadStore testClass = new MatchingLeadStore(new CompactLeadStore(), List.of(new NameAddressLeadMatcher()));
+        int oldHandle = testClass.addLead(oldLead);
+
+        // when / then
+        assertEquals(oldHandle, testClass.findMatchingLead(newLead));
+        assertEquals(NO_LEAD, testClass.findMatchingLead(otherAddress));
+        assertEquals(NO_LEAD, testClass.findMatchingLead(otherName));
+        assertEquals(NO_LEAD, testClass.findMatchingLead(Lead.builder().id("5").build()));
+    }
+
+    @Test
+    void testFindsMostRecentMatch() {
+        // given
+        MatchingLeadStore testClass = new MatchingLeadStore(new CompactLeadStore(), List.of(new EmailLeadMatcher()));
+        int first = testClass.addLead(lead("1", "A@foo.com", null, null, null));
+        int second = testClass.addLead(lead("2", "a@foo.com", null, null, null));
+
+        // when
+        int match = testClass.findMatchingLead(lead("3", "A@FOO.COM", null, null, null));
+
+        // then
+        assertEquals(second, match);
+        testClass.updateLead(first, lead("4", "a@foo.com", null, null, null));
+        assertEquals(first, testClass.findMatchingLead(lead("5", "a@foo.com", null, null, null)));
+    }
+
+    @Test
+    void testDropsCandidatesBeyondLimit() {
+        // given
+        Lead oldLead = lead("1", "a@foo.com", "Jon", "Smith", "123 Street St.");
+        Lead newLead = lead("2", "b@foo.com", "John", "Smyth", "123 street st");
+        MatchingLeadStore testClass = new MatchingLeadStore(new CompactLeadStore(), List.of(new NameAddressLeadMatcher()));
+        int oldHandle = testClass.addLead(oldLead);
+        // same block, but not similar enough to match
+        for (int i = 1; i < MatchingLeadStore.MAX_CANDIDATES; i++) {
+            testClass.addLead(lead("other" + i, "other" + i + "@foo.com", "Mary", "Smith", "123 Street St"));
+        }
+
+        // when / then
+        assertEquals(oldHandle, testClass.findMatchingLead(newLead));
+        testClass.addLead(lead("last", "last@foo.com", "Mary", "Smith", "123 Street St"));
+        assertEquals(NO_LEAD, testClass.findMatchingLead(newLead));
+    }
+
+    @Test
+    void testRejectsStoreWithLeads() {
+        // given
+        CompactLeadStore leadStore = new CompactLeadStore();
+        leadStore.addLead(lead("1", "John@X.com", null, null, null));
+
+        // when / then
+        assertThrows(IllegalArgumentException.class, () -> new MatchingLeadStore(leadStore, List.of(new EmailLeadMatcher())));
+    }
+
+    private Lead lead(String id, String email, String firstName, String lastName, String address) {
+        return Lead.builder()
+                .id(id)
+                .email(email)
+                .firstName(firstName)
+                .lastName(lastName)
+                .address(address)
+                .entryDate(now)
+                .build();
+    }
+}
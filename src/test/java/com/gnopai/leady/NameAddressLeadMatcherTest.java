@@ -0,0 +1,60 @@
+package com.gnopai.leady;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NameAddressLeadMatcherTest {
+    private final NameAddressLeadMatcher testClass = new NameAddressLeadMatcher();
+
+    @Test
+    void testSoundex() {
+        assertEquals("R163", NameAddressLeadMatcher.soundex("robert"));
+        assertEquals("R163", NameAddressLeadMatcher.soundex("rupert"));
+        assertEquals("A261", NameAddressLeadMatcher.soundex("ashcraft"));
+        assertEquals("T522", NameAddressLeadMatcher.soundex("tymczak"));
+        assertEquals("P236", NameAddressLeadMatcher.soundex("pfister"));
+        assertEquals("L000", NameAddressLeadMatcher.soundex("lee"));
+        assertEquals("", NameAddressLeadMatcher.soundex("123"));
+    }
+
+    @Test
+    void testJaroWinkler() {
+        assertEquals(1.0, NameAddressLeadMatcher.jaroWinkler("martha", "martha"));
+        assertEquals(0.961, NameAddressLeadMatcher.jaroWinkler("martha", "marhta"), 0.001);
+        assertEquals(0.840, NameAddressLeadMatcher.jaroWinkler("dwayne", "duane"), 0.001);
+        assertEquals(0.0, NameAddressLeadMatcher.jaroWinkler("abc", "xyz"));
+        assertEquals(0.0, NameAddressLeadMatcher.jaroWinkler("", "xyz"));
+    }
+
+    @Test
+    void testMatchKeys() {
+        Lead lead = Lead.builder().firstName("Zo\u00eb").lastName("O'Brien").address("Apt 4, 12 Main St").build();
+
+        assertEquals(List.of("O165:4"), testClass.getMatchKeys(lead));
+        assertEquals(List.of("O165:M500"), testClass.getMatchKeys(lead.withAddress("Main Street")));
+        assertEquals(List.of(), testClass.getMatchKeys(lead.withLastName(" ")));
+        assertEquals(List.of(), testClass.getMatchKeys(lead.withAddress(null)));
+    }
+
+    @Test
+    void testMatches() {
+        Lead lead = Lead.builder().firstName("Zo\u00eb").lastName("O'Brien").address("12 Main St").build();
+
+        assertTrue(testClass.matches(lead, lead.withFirstName("zoe").withLastName("OBrien")));
+        assertTrue(testClass.matches(lead, lead.withAddress("12 Main St.")));
+        assertFalse(testClass.matches(lead, lead.withFirstName("Adam")));
+        assertFalse(testClass.matches(lead, lead.withAddress("12 Elm Rd")));
+    }
+
+    @Test
+    void testRejectsBadThreshold() {
+        assertThrows(IllegalArgumentException.class, () -> new NameAddressLeadMatcher(0));
+        assertThrows(IllegalArgumentException.class, () -> new NameAddressLeadMatcher(1.5));
+    }
+}
@@ -0,0 +1,179 @@
+package com.gnopai.leady;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NdjsonLeadReaderTest {
+    private final Gson gson = LeadyMain.createGson();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testReadLeadsInFileOrder() throws Exception {
+        // given
+        Path file = write("{\"_id\": \"2\", \"email\": \"b@foo.com\", \"firstName\": \"bob\", \"entryDate\": \"2014-05-07T17:31:20+00:00\"}\n" +
+                "\n" +
+                "  {\"_id\": \"1\", \"email\": \"a@foo.com\", \"unknown\": {\"x\": 1}, \"entryDate\": \"2014-05-07T17:30:20+00:00\"}\r\n" +
+                "{}");
+        NdjsonLeadReader testClass = new NdjsonLeadReader(gson);
+
+        // when
+        List<Lead> leads = readAll(testClass, file);
+
+        // then
+        List<Lead> expectedLeads = List.of(
+                Lead.builder()
+                        .id("2")
+                        .email("b@foo.com")
+                        .firstName("bob")
+                        .entryDate(ZonedDateTime.parse("2014-05-07T17:31:20Z"))
+                        .build(),
+                Lead.builder()
+                        .id("1")
+                        .email("a@foo.com")
+                        .entryDate(ZonedDateTime.parse("2014-05-07T17:30:20Z"))
+                        .build(),
+                Lead.builder().build()
+        );
+        assertEquals(expectedLeads, leads);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 50, 1000, NdjsonLeadReader.DEFAULT_CHUNK_SIZE})
+    void testKeepsFileOrderAcrossChunks(int chunkSize) throws Exception {
+        // given
+        List<Lead> expectedLeads = generateLeads(5000);
+        Path file = tempDir.resolve("leads.ndjson");
+        new NdjsonLeadWriter(gson).writeLeads(expectedLeads, file);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        NdjsonLeadReader testClass = new NdjsonLeadReader(gson, executor, chunkSize, 8);
+
+        // when
+        List<Lead> leads = readAll(testClass, file);
+
+        // then
+        assertEquals(expectedLeads, leads);
+        executor.shutdown();
+    }
+
+    @Test
+    void testWritesSameLeadsAsJsonLeadWriter() throws Exception {
+        // given
+        List<Lead> leads = generateLeads(100);
+        Path file = tempDir.resolve("leads.ndjson");
+        NdjsonLeadWriter testClass = new NdjsonLeadWriter(gson);
+
+        // when
+        testClass.writeLeads(leads, file);
+
+        // then
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(leads.stream().map(gson::toJson).collect(toList()), lines);
+    }
+
+    @Test
+    void testEscapesHtmlCharactersLikeJsonLeadWriter() throws Exception {
+        // given
+        Lead lead = Lead.builder()
+                .id("<script>&'=\"")
+                .email("b\u00f8b@f\u00f8\u00f8.com")
+                .lastName("O'Brien")
+                .entryDate(ZonedDateTime.of(2014, 5, 7, 17, 30, 20, 0, ZoneOffset.UTC))
+                .build();
+        Path file = tempDir.resolve("leads.ndjson");
+        NdjsonLeadWriter testClass = new NdjsonLeadWriter(gson);
+
+        // when
+        testClass.writeLeads(List.of(lead), file);
+
+        // then
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(List.of(gson.toJson(lead)), lines);
+        assertTrue(lines.get(0).contains("\\u003cscript\\u003e\\u0026\\u0027\\u003d"), lines.get(0));
+    }
+
+    @Test
+    void testEmptyFile() throws Exception {
+        NdjsonLeadReader testClass = new NdjsonLeadReader(gson);
+
+        assertEquals(List.of(), readAll(testClass, write("")));
+        assertEquals(List.of(), readAll(testClass, write("\n \r\n\n")));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "{\"_id\": \"1\"}\n{\"_id\": \"2\"}\n{\"_id\": }\n{\"_id\": \"4\"}",
+            "{\"_id\": \"1\"}\n{\"_id\": \"2\"}\n{\"_id\": \"3\"} {\"_id\": \"3\"}\n{\"_id\": \"4\"}",
+            "{\"_id\": \"1\"}\n{\"_id\": \"2\"}\n{\"_id\": \"3\",\n\"email\": \"a@foo.com\"}",
+            "{\"_id\": \"1\"}\n{\"_id\": \"2\"}\nnull",
+            "{\"_id\": \"1\"}\n{\"_id\": \"2\"}\n[{\"_id\": \"3\"}]",
+            "{\"_id\": \"1\"}\n{\"_id\": \"2\"}\n{\"_id\": \"3\", \"entryDate\": \"yesterday\"}"
+    })
+    void testMalformedLineAfterEarlierLeads(String ndjson) throws Exception {
+        // given
+        Path file = write(ndjson);
+        NdjsonLeadReader testClass = new NdjsonLeadReader(gson, Runnable::run, 20, 2);
+        List<Lead> leads = new ArrayList<>();
+
+        // when
+        JsonParseException exception = assertThrows(JsonParseException.class, () -> {
+            try (Stream<Lead> leadStream = testClass.readLeads(file)) {
+                for (Iterator<Lead> iterator = leadStream.iterator(); iterator.hasNext(); ) {
+                    leads.add(iterator.next());
+                }
+            }
+        });
+
+        // then
+        assertEquals(List.of(Lead.builder().id("1").build(), Lead.builder().id("2").build()), leads);
+        assertTrue(exception.getMessage().contains("line 3"), exception.getMessage());
+    }
+
+    private List<Lead> generateLeads(int count) {
+        Random random = new Random(0);
+        List<Lead> leads = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            leads.add(Lead.builder()
+                    .id("id" + random.nextInt(count / 2))
+                    .email(random.nextInt(10) == 0 ? null : "user" + random.nextInt(count / 2) + "@example.com")
+                    .firstName("first \"" + i + "\"")
+                    .lastName("last\n" + i)
+                    .address(random.nextInt(1000) + " Main St \u00e9")
+                    .entryDate(ZonedDateTime.of(2014, 5, 7, 17, 30, 20, random.nextInt(1000) * 1000, ZoneOffset.ofHours(random.nextInt(25) - 12)))
+                    .build());
+        }
+        return leads;
+    }
+
+    private List<Lead> readAll(LeadReader leadReader, Path file) {
+        try (Stream<Lead> leads = leadReader.readLeads(file)) {
+            return leads.collect(toList());
+        }
+    }
+
+    private Path write(String ndjson) throws Exception {
+        return Files.writeString(tempDir.resolve("leads.ndjson"), ndjson);
+    }
+}
@@ -0,0 +1,209 @@
+package com.gnopai.leady;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static java.time.ZoneOffset.UTC;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ParallelLeadDeduplicatorTest {
+    private static final ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+    private final ZonedDateTime now = ZonedDateTime.now(UTC);
+
+    @AfterAll
+    static void shutDownPool() {
+        forkJoinPool.shutdown();
+    }
+
+    @Test
+    void testChainedDuplicates() {
+        // given
+        LeadList leadList = new LeadList(
+                lead("1", "A", 20),
+                lead("2", "B", 15),
+                lead("3", "C", 5),
+                lead("2", "A", 10),
+                lead("4", "C", 30),
+                lead("5", null, 1),
+                lead("6", null, 2)
+        );
+
+        // then
+        assertSameAsSequential(leadList);
+    }
+
+    @ParameterizedTest
+    @MethodSource("seeds")
+    void testRandomLeadsMatchSequential(long seed) {
+        Random random = new Random(seed);
+        int leadCount = 1 + random.nextInt(500);
+        int keySpace = 1 + random.nextInt(leadCount);
+
+        List<Lead> leads = new ArrayList<>();
+        for (int i = 0; i < leadCount; i++) {
+            leads.add(lead(
+                    String.valueOf(random.nextInt(keySpace)),
+                    random.nextInt(50) == 0 ? null : "email" + random.nextInt(keySpace),
+                    random.nextInt(20)
+            ).withFirstName("name" + random.nextInt(3)));
+        }
+
+        assertSameAsSequential(new LeadList(leads));
+    }
+
+    @Test
+    void testCountsIntoMetrics() {
+        // given
+        LeadList leadList = new LeadList(
+                lead("1", "A", 20),
+                lead("2", "B", 15),
+                lead("2", "A", 10),
+                lead("3", "C", 5)
+        );
+        LeadyMetrics sequentialMetrics = new LeadyMetrics();
+        new LeadDeduplicator(new LeadChangeFinder(), new RecordingLeadUpdateReporter(), CompactLeadStore::new, sequentialMetrics)
+                .deduplicateLeads(leadList);
+        LeadyMetrics parallelMetrics = new LeadyMetrics();
+        ParallelLeadDeduplicator testClass = new ParallelLeadDeduplicator(new LeadChangeFinder(), new RecordingLeadUpdateReporter(), forkJoinPool, parallelMetrics);
+
+        // when
+        testClass.deduplicateLeads(leadList);
+
+        // then
+        assertEquals(sequentialMetrics.getIdMatches(), parallelMetrics.getIdMatches());
+        assertEquals(sequentialMetrics.getEmailMatches(), parallelMetrics.getEmailMatches());
+        assertEquals(1, parallelMetrics.getDeduplicateTimer().getCount());
+        assertEquals(1, parallelMetrics.getSortTimer().getCount());
+    }
+
+    @Test
+    void testBuildsOnLeadsAlreadyInStore() {
+        // given
+        List<Lead> storedLeads = List.of(
+                lead("1", "A", 20),
+                lead("2", "B", 15),
+                lead("3", "C", 40)
+        );
+        List<Lead> leads = List.of(
+                // replaces stored lead 1 with a new email, which a later lead finds it by
+                lead("1", "D", 10),
+                lead("5", "D", 5),
+                // older than stored lead 3
+                lead("6", "C", 50),
+                lead("7", "E", 1),
+                lead("8", "B", 1),
+                lead("7", "F", 0)
+        );
+
+        // then
+        assertSameAsSequentialOnStore(storedLeads, leads);
+    }
+
+    @ParameterizedTest
+    @MethodSource("seeds")
+    void testRandomLeadsOnStoreMatchSequential(long seed) {
+        Random random = new Random(seed);
+        int leadCount = 2 + random.nextInt(500);
+        int keySpace = 1 + random.nextInt(leadCount);
+
+        List<Lead> leads = new ArrayList<>();
+        for (int i = 0; i < leadCount; i++) {
+            leads.add(lead(
+                    String.valueOf(random.nextInt(keySpace)),
+                    random.nextInt(50) == 0 ? null : "email" + random.nextInt(keySpace),
+                    random.nextInt(20)
+            ).withFirstName("name" + random.nextInt(3)));
+        }
+
+        int storedLeadCount = random.nextInt(leadCount);
+        assertSameAsSequentialOnStore(leads.subList(0, storedLeadCount), leads.subList(storedLeadCount, leadCount));
+    }
+
+    @Test
+    void testRejectsStoreWithLeadMatchers() {
+        // given
+        ParallelLeadDeduplicator testClass = new ParallelLeadDeduplicator(new LeadChangeFinder(), new RecordingLeadUpdateReporter(), forkJoinPool);
+        LeadStore leadStore = new MatchingLeadStore(new CompactLeadStore(), List.of(new EmailLeadMatcher()));
+
+        // when / then
+        assertThrows(IllegalArgumentException.class, () -> testClass.deduplicateLeads(Stream.of(lead("1", "A", 1)), leadStore));
+    }
+
+    static LongStream seeds() {
+        return LongStream.range(0, 200);
+    }
+
+    private void assertSameAsSequential(LeadList leadList) {
+        RecordingLeadUpdateReporter sequentialReporter = new RecordingLeadUpdateReporter();
+        LeadList sequentialLeads = new LeadDeduplicator(new LeadChangeFinder(), sequentialReporter)
+                .deduplicateLeads(leadList);
+
+        RecordingLeadUpdateReporter parallelReporter = new RecordingLeadUpdateReporter();
+        LeadList parallelLeads = new ParallelLeadDeduplicator(new LeadChangeFinder(), parallelReporter, forkJoinPool)
+                .deduplicateLeads(leadList);
+
+        assertEquals(sequentialLeads, parallelLeads);
+        assertEquals(sequentialReporter.updates, parallelReporter.updates);
+    }
+
+    private void assertSameAsSequentialOnStore(List<Lead> storedLeads, List<Lead> leads) {
+        LeadStore sequentialStore = new CompactLeadStore();
+        storedLeads.forEach(sequentialStore::addLead);
+        RecordingLeadUpdateReporter sequentialReporter = new RecordingLeadUpdateReporter();
+        LeadList sequentialLeads = new LeadDeduplicator(new LeadChangeFinder(), sequentialReporter)
+                .deduplicateLeads(leads.stream(), sequentialStore);
+
+        LeadStore parallelStore = new CompactLeadStore();
+        storedLeads.forEach(parallelStore::addLead);
+        RecordingLeadUpdateReporter parallelReporter = new RecordingLeadUpdateReporter();
+        LeadList parallelLeads = new ParallelLeadDeduplicator(new LeadChangeFinder(), parallelReporter, forkJoinPool)
+                .deduplicateLeads(leads.stream(), parallelStore);
+
+        assertEquals(sequentialLeads, parallelLeads);
+        assertEquals(sequentialReporter.updates, parallelReporter.updates);
+        // same leads under the same handles, and the same keys pointing at them
+        assertEquals(sequentialStore.getLeads(), parallelStore.getLeads());
+        for (Lead lead : leads) {
+            assertEquals(sequentialStore.findLeadById(lead.getId()), parallelStore.findLeadById(lead.getId()));
+            assertEquals(sequentialStore.findLeadByEmail(lead.getEmail()), parallelStore.findLeadByEmail(lead.getEmail()));
+        }
+    }
+
+    private Lead lead(String id, String email, int minutesAgo) {
+        return Lead.builder()
+                .id(id)
+                .email(email)
+                .entryDate(now.minusMinutes(minutesAgo))
+                .build();
+    }
+
+    private static class RecordingLeadUpdateReporter implements LeadUpdateReporter {
+        private final List<Object> updates = new ArrayList<>();
+
+        @Override
+        public void reportLeadAdded(Lead lead) {
+            updates.add(List.of("added", lead));
+        }
+
+        @Override
+        public void reportLeadChanged(LeadChange leadChange) {
+            updates.add(List.of("changed", leadChange));
+        }
+
+        @Override
+        public void reportLeadIgnored(Lead lead) {
+            updates.add(List.of("ignored", lead));
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.gnopai.leady;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.time.ZoneOffset.UTC;
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PartitionedLeadWriterTest {
+    private static final ZonedDateTime START = ZonedDateTime.of(2014, 5, 7, 17, 30, 20, 0, UTC);
+
+    private final Gson gson = LeadyMain.createGson();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testSplitsByRows() throws IOException {
+        // given
+        List<Lead> leads = generateLeads(2_500, 60);
+        PartitionedLeadWriter testClass = new PartitionedLeadWriter(new NdjsonLeadWriter(gson), PartitionedLeadWriter.Partitioning.parse("rows:1000"), 3);
+
+        // when
+        testClass.writeLeads(leads, tempDir.resolve("out/leads.ndjson"));
+
+        // then
+        JsonObject manifest = readManifest(tempDir.resolve("out/leads.manifest.json"));
+        assertEquals("rows:1000", manifest.get("partitioning").getAsString());
+        assertEquals(2_500, manifest.get("leadCount").getAsLong());
+        JsonArray parts = manifest.getAsJsonArray("parts");
+        assertEquals(3, parts.size());
+        assertEquals("leads-part-00000.ndjson", parts.get(0).getAsJsonObject().get("file").getAsString());
+        assertEquals(1_000, parts.get(1).getAsJsonObject().get("leadCount").getAsInt());
+        assertEquals(500, parts.get(2).getAsJsonObject().get("leadCount").getAsInt());
+        assertEquals("id1000", parts.get(1).getAsJsonObject().get("firstId").getAsString());
+        assertEquals("id1999", parts.get(1).getAsJsonObject().get("lastId").getAsString());
+        assertEquals("2014-05-08T10:10:20Z", parts.get(1).getAsJsonObject().get("firstEntryDate").getAsString());
+        assertEquals(Files.size(tempDir.resolve("out/leads-part-00001.ndjson")), parts.get(1).getAsJsonObject().get("bytes").getAsLong());
+        assertEquals(leads, readParts(tempDir.resolve("out"), parts));
+        assertFalse(Files.exists(tempDir.resolve("out/leads.ndjson")));
+    }
+
+    @Test
+    void testSplitsByEntryDate() throws IOException {
+        // given
+        List<Lead> leads = generateLeads(100, 3_600);
+        PartitionedLeadWriter testClass = new PartitionedLeadWriter(new JsonLeadWriter(gson), PartitionedLeadWriter.Partitioning.parse("date:day"), 2);
+
+        // when
+        testClass.writeLeads(leads, tempDir.resolve("leads.json.gz"));
+
+        // then
+        JsonArray parts = readManifest(tempDir.resolve("leads.manifest.json")).getAsJsonArray("parts");
+        // the first day starts at 17:30 and takes 7 hours, then a day has 24
+        assertEquals(List.of(7, 24, 24, 24, 21), leadCounts(parts));
+        assertEquals("leads-part-00001.json.gz", parts.get(1).getAsJsonObject().get("file").getAsString());
+        assertEquals("2014-05-08T00:30:20Z", parts.get(1).getAsJsonObject().get("firstEntryDate").getAsString());
+        assertTrue(Compression.isCompressed(tempDir.resolve("leads-part-00001.json.gz")));
+        assertEquals(leads, readParts(tempDir, parts));
+    }
+
+    @Test
+    void testSplitsBySize() throws IOException {
+        // given
+        List<Lead> leads = generateLeads(1_000, 1);
+        long leadBytes = PartitionedLeadWriter.Partitioning.estimateBytes(leads.get(0));
+        PartitionedLeadWriter testClass = new PartitionedLeadWriter(new NdjsonLeadWriter(gson), PartitionedLeadWriter.Partitioning.parse("size:" + leadBytes * 300), 2);
+
+        // when
+        testClass.writeLeads(leads, tempDir.resolve("leads.ndjson"));
+
+        // then
+        JsonArray parts = readManifest(tempDir.resolve("leads.manifest.json")).getAsJsonArray("parts");
+        assertEquals(List.of(300, 300, 300, 100), leadCounts(parts));
+        assertEquals(leads, readParts(tempDir, parts));
+    }
+
+    @Test
+    void testReplacesPartsFromEarlierRun() throws IOException {
+        // given
+        Path outputFile = tempDir.resolve("leads.ndjson");
+        new PartitionedLeadWriter(new NdjsonLeadWriter(gson), PartitionedLeadWriter.Partitioning.parse("rows:10"), 2).writeLeads(generateLeads(50, 1), outputFile);
+        Files.write(tempDir.resolve("leads-part-notes.ndjson"), List.of("kept"));
+        PartitionedLeadWriter testClass = new PartitionedLeadWriter(new NdjsonLeadWriter(gson), PartitionedLeadWriter.Partitioning.parse("rows:25"), 2);
+
+        // when
+        testClass.writeLeads(generateLeads(30, 1), outputFile);
+
+        // then
+        assertTrue(Files.exists(tempDir.resolve("leads-part-00001.ndjson")));
+        assertFalse(Files.exists(tempDir.resolve("leads-part-00002.ndjson")));
+        assertTrue(Files.exists(tempDir.resolve("leads-part-notes.ndjson")));
+        assertEquals(List.of(25, 5), leadCounts(readManifest(tempDir.resolve("leads.manifest.json")).getAsJsonArray("parts")));
+    }
+
+    @Test
+    void testFailedPartLeavesNoManifest() throws IOException {
+        // given
+        Path outputFile = tempDir.resolve("leads.ndjson");
+        new PartitionedLeadWriter(new NdjsonLeadWriter(gson), PartitionedLeadWriter.Partitioning.parse("rows:10"), 2).writeLeads(generateLeads(50, 1), outputFile);
+        NdjsonLeadWriter ndjsonLeadWriter = new NdjsonLeadWriter(gson);
+        LeadWriter failingLeadWriter = (leads, path) -> {
+            if (path.getFileName().toString().equals("leads-part-00002.ndjson")) {
+                throw new IOException("disk full");
+            }
+            ndjsonLeadWriter.writeLeads(leads, path);
+        };
+        PartitionedLeadWriter testClass = new PartitionedLeadWriter(failingLeadWriter, PartitionedLeadWriter.Partitioning.parse("rows:10"), 2);
+
+        // when
+        assertThrows(IOException.class, () -> testClass.writeLeads(generateLeads(50, 1), outputFile));
+
+        // then
+        assertFalse(Files.exists(tempDir.resolve("leads.manifest.json")));
+        assertFalse(Files.exists(tempDir.resolve("leads-part-00002.ndjson")));
+    }
+
+    @Test
+    void testWritesEmptyManifestWithoutLeads() throws IOException {
+        // given
+        PartitionedLeadWriter testClass = new PartitionedLeadWriter(new NdjsonLeadWriter(gson), PartitionedLeadWriter.Partitioning.parse("rows:10"), 2);
+
+        // when
+        testClass.writeLeads(List.of(), tempDir.resolve("leads.ndjson"));
+
+        // then
+        JsonObject manifest = readManifest(tempDir.resolve("leads.manifest.json"));
+        assertEquals(0, manifest.get("leadCount").getAsLong());
+        assertEquals(0, manifest.getAsJsonArray("parts").size());
+    }
+
+    @Test
+    void testRejectsUnknownPartitioning() {
+        assertThrows(IllegalArgumentException.class, () -> PartitionedLeadWriter.Partitioning.parse("bytes:10"));
+        assertThrows(IllegalArgumentException.class, () -> PartitionedLeadWriter.Partitioning.parse("date:week"));
+        assertThrows(IllegalArgumentException.class, () -> PartitionedLeadWriter.Partitioning.parse("rows:0"));
+    }
+
+    private List<Lead> readParts(Path directory, JsonArray parts) throws IOException {
+        List<Lead> leads = new ArrayList<>();
+        for (int i = 0; i < parts.size(); i++) {
+            Path part = directory.resolve(parts.get(i).getAsJsonObject().get("file").getAsString());
+            LeadReader leadReader = part.toString().contains(".ndjson") ? new NdjsonLeadReader(gson) : new JsonLeadReader(gson);
+            try (Stream<Lead> partLeads = leadReader.readLeads(part)) {
+                partLeads.forEachOrdered(leads::add);
+            }
+        }
+        return leads;
+    }
+
+    private static List<Integer> leadCounts(JsonArray parts) {
+        List<Integer> leadCounts = new ArrayList<>();
+        parts.forEach(part -> leadCounts.add(part.getAsJsonObject().get("leadCount").getAsInt()));
+        return leadCounts;
+    }
+
+    private static JsonObject readManifest(Path manifest) throws IOException {
+        return new JsonParser().parse(Files.readString(manifest, UTF_8)).getAsJsonObject();
+    }
+
+    private static List<Lead> generateLeads(int count, int secondsApart) {
+        return Stream.iterate(0, i -> i + 1)
+                .limit(count)
+                .map(i -> Lead.builder()
+                        .id(String.format("id%04d", i))
+                        .email(String.format("email%04d@foo.com", i))
+                        .firstName("First")
+                        .lastName("Last")
+                        .address("1 Main St")
+                        .entryDate(START.plusSeconds((long) i * secondsApart))
+                        .build())
+                .collect(toList());
+    }
+}
@@ -0,0 +1,106 @@
+package com.gnopai.leady;
+
+import com.google.gson.JsonSyntaxException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PrefetchingLeadReaderTest {
+    private final LeadReader delegate = mock(LeadReader.class);
+    private final Path path = Paths.get("leads.json");
+
+    @Test
+    void testReadsLeadsInDelegateOrder() {
+        // given
+        List<Lead> expectedLeads = createLeads(1000);
+        when(delegate.readLeads(path)).thenReturn(expectedLeads.stream());
+        PrefetchingLeadReader testClass = new PrefetchingLeadReader(delegate, 2, 7);
+
+        // when
+        List<Lead> leads;
+        try (Stream<Lead> leadStream = testClass.readLeads(path)) {
+            leads = leadStream.collect(toList());
+        }
+
+        // then
+        assertEquals(expectedLeads, leads);
+        assertEquals(1000, testClass.getParseCounters().getItems());
+        assertEquals(1000, testClass.getDeduplicateCounters().getItems());
+        assertTrue(testClass.getDeduplicateCounters().getMaxQueueDepth() <= 2);
+    }
+
+    @Test
+    void testEmptyInput() {
+        // given
+        when(delegate.readLeads(path)).thenReturn(Stream.empty());
+        PrefetchingLeadReader testClass = new PrefetchingLeadReader(delegate, 2, 7);
+
+        // when / then
+        try (Stream<Lead> leadStream = testClass.readLeads(path)) {
+            assertEquals(List.of(), leadStream.collect(toList()));
+        }
+    }
+
+    @Test
+    void testParseFailureSurfacesAfterEarlierLeads() {
+        // given
+        List<Lead> goodLeads = createLeads(10);
+        Stream<Lead> failingLeads = Stream.concat(goodLeads.stream(), Stream.generate(() -> {
+            throw new JsonSyntaxException("bad lead");
+        }));
+        when(delegate.readLeads(path)).thenReturn(failingLeads);
+        PrefetchingLeadReader testClass = new PrefetchingLeadReader(delegate, 2, 3);
+        List<Lead> leads = new ArrayList<>();
+
+        // when
+        JsonSyntaxException exception = assertThrows(JsonSyntaxException.class, () -> {
+            try (Stream<Lead> leadStream = testClass.readLeads(path)) {
+                for (Iterator<Lead> iterator = leadStream.iterator(); iterator.hasNext(); ) {
+                    leads.add(iterator.next());
+                }
+            }
+        });
+
+        // then
+        assertEquals("bad lead", exception.getMessage());
+        assertEquals(goodLeads, leads);
+    }
+
+    @Test
+    void testClosingEarlyStopsParserAndClosesDelegateStream() {
+        // given
+        AtomicBoolean delegateClosed = new AtomicBoolean();
+        Stream<Lead> endlessLeads = Stream.generate(() -> Lead.builder().id("1").build())
+                .onClose(() -> delegateClosed.set(true));
+        when(delegate.readLeads(path)).thenReturn(endlessLeads);
+        PrefetchingLeadReader testClass = new PrefetchingLeadReader(delegate, 2, 3);
+
+        // when
+        try (Stream<Lead> leadStream = testClass.readLeads(path)) {
+            leadStream.iterator().next();
+        }
+
+        // then
+        assertTrue(delegateClosed.get());
+        assertTrue(testClass.getParseCounters().getRunningTime(TimeUnit.NANOSECONDS) > 0);
+    }
+
+    private List<Lead> createLeads(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> Lead.builder().id(String.valueOf(i)).build())
+                .collect(toList());
+    }
+}
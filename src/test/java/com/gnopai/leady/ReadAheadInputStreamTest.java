@@ -0,0 +1,60 @@
+package com.gnopai.leady;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ReadAheadInputStreamTest {
+
+    @Test
+    void testReadsBytesBeforeFailure() throws Exception {
+        // given
+        IOException failure = new IOException("Corrupt input");
+        InputStream failingInput = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw failure;
+            }
+        };
+        InputStream delegate = new SequenceInputStream(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5}), failingInput);
+
+        // when
+        try (ReadAheadInputStream testClass = new ReadAheadInputStream(delegate, 2, 1, "test-reader")) {
+            byte[] bytes = new byte[4];
+
+            // then
+            assertEquals(4, testClass.readNBytes(bytes, 0, 4));
+            assertArrayEquals(new byte[]{1, 2, 3, 4}, bytes);
+            IOException e = assertThrows(IOException.class, testClass::readAllBytes);
+            assertSame(failure, e.getCause());
+        }
+    }
+
+    @Test
+    void testStopsReadingWhenClosedEarly() throws Exception {
+        // given
+        InputStream endless = new InputStream() {
+            @Override
+            public int read() {
+                return 7;
+            }
+        };
+        ReadAheadInputStream testClass = new ReadAheadInputStream(endless, 16, 2, "test-reader");
+
+        // when
+        int first = testClass.read();
+        testClass.close();
+
+        // then
+        assertEquals(7, first);
+        assertEquals(-1, testClass.read());
+    }
+}
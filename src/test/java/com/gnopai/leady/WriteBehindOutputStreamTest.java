@@ -0,0 +1,68 @@
+package com.gnopai.leady;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteBehindOutputStreamTest {
+
+    @Test
+    void testWritesEverythingBeforeClosing() throws Exception {
+        // given
+        ByteArrayOutputStream delegate = new ByteArrayOutputStream();
+        byte[] bytes = new byte[1000];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+
+        // when
+        try (WriteBehindOutputStream testClass = new WriteBehindOutputStream(delegate, 64, 1, "test-writer")) {
+            testClass.write(bytes, 0, 500);
+            testClass.flush();
+            testClass.write(bytes, 500, 500);
+        }
+
+        // then
+        assertArrayEquals(bytes, delegate.toByteArray());
+    }
+
+    @Test
+    void testReportsWriteFailure() throws Exception {
+        // given
+        IOException failure = new IOException("Disk full");
+        boolean[] closed = new boolean[1];
+        OutputStream delegate = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw failure;
+            }
+
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+        WriteBehindOutputStream testClass = new WriteBehindOutputStream(delegate, 4, 1, "test-writer");
+
+        // when
+        for (int i = 0; i < 100; i++) {
+            try {
+                testClass.write(i);
+            } catch (IOException e) {
+                break;
+            }
+        }
+        IOException e = assertThrows(IOException.class, testClass::close);
+
+        // then
+        assertSame(failure, e.getCause());
+        assertTrue(closed[0]);
+    }
+}